@@ -0,0 +1,112 @@
+package benchmark;
+
+import Controller.ControladorUsuario;
+import Exception.ProductoNoEncontradoException;
+import Exception.UsuarioInvalidoException;
+import Model.CatalogoProductos;
+import Model.Cliente;
+import Model.Producto;
+import Model.Usuario;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Búsquedas en memoria: productos por ID con {@link Producto#buscarPorId} (existentes e
+ * inexistentes) y autenticación con {@link ControladorUsuario#autenticar}, sobre colecciones
+ * de distintos tamaños. Cada llamada hace {@value #LOTE} búsquedas con claves al azar, y el
+ * resultado se informa por búsqueda.
+ * @author andres
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class Busquedas {
+    private static final int LOTE = 1024;
+
+    /** Productos del catálogo y usuarios registrados. */
+    @Param({"1000", "100000", "1000000"})
+    public int elementos;
+
+    private CatalogoProductos catalogo;
+    private String[] existentes;
+    private String[] inexistentes;
+    private ControladorUsuario controlador;
+    private String[] emails;
+    private String[] claves;
+
+    /** Arma el catálogo, los usuarios y las claves a buscar. */
+    @Setup(Level.Trial)
+    public void preparar() {
+        SplittableRandom azar = new SplittableRandom(elementos);
+        List<Producto> productos = new ArrayList<>(elementos);
+        List<Usuario> usuarios = new ArrayList<>(elementos);
+        for (int i = 0; i < elementos; i++) {
+            productos.add(new Producto(GeneradorDatos.idProducto(i), "Producto " + i, i * 0.5, i % 100));
+            usuarios.add(new Cliente("Usuario " + i, GeneradorDatos.email(i), GeneradorDatos.contraseña(i)));
+        }
+        catalogo = new CatalogoProductos(productos);
+        controlador = new ControladorUsuario(usuarios);
+
+        existentes = new String[LOTE];
+        inexistentes = new String[LOTE];
+        emails = new String[LOTE];
+        claves = new String[LOTE];
+        for (int i = 0; i < LOTE; i++) {
+            existentes[i] = GeneradorDatos.idProducto(azar.nextInt(elementos));
+            inexistentes[i] = "X" + azar.nextInt();
+            int k = azar.nextInt(elementos);
+            // La mitad con mayúsculas, como si el usuario las escribiera al iniciar sesión.
+            emails[i] = i % 2 == 0 ? GeneradorDatos.email(k) : GeneradorDatos.email(k).toUpperCase(Locale.ROOT);
+            claves[i] = GeneradorDatos.contraseña(k);
+        }
+    }
+
+    /**
+     * @return Suma de las cantidades encontradas.
+     * @throws ProductoNoEncontradoException Si falta un producto que debería existir.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public long buscarPorIdExiste() throws ProductoNoEncontradoException {
+        long suma = 0;
+        for (String id : existentes) {
+            suma += Producto.buscarPorId(catalogo, id).getCantidad();
+        }
+        return suma;
+    }
+
+    /** @return Cantidad de búsquedas que no encontraron el producto. */
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public int buscarPorIdNoExiste() {
+        int fallos = 0;
+        for (String id : inexistentes) {
+            try {
+                Producto.buscarPorId(catalogo, id);
+            } catch (ProductoNoEncontradoException e) {
+                fallos++;
+            }
+        }
+        return fallos;
+    }
+
+    /**
+     * @return Cantidad de usuarios autenticados.
+     * @throws UsuarioInvalidoException Si falla un usuario que debería existir.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public int autenticar() throws UsuarioInvalidoException {
+        int autenticados = 0;
+        for (int i = 0; i < LOTE; i++) {
+            if (controlador.autenticar(emails[i], claves[i]) != null) {
+                autenticados++;
+            }
+        }
+        return autenticados;
+    }
+}
\ No newline at end of file
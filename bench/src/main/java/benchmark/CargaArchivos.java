@@ -0,0 +1,121 @@
+package benchmark;
+
+import Model.GestorCSV;
+import Model.Envio;
+import Model.Pedido;
+import Model.Producto;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Carga de los archivos de datos con {@link GestorCSV}: productos (desde el CSV y desde la
+ * copia binaria), pedidos y envíos. Los archivos se generan con {@link GeneradorDatos} la
+ * primera vez y se reutilizan entre corridas.
+ *
+ * <p>Con 10000000 filas los archivos ocupan cerca de 2 GB y la carga necesita más heap:
+ * agregar {@code -jvmArgsAppend -Xmx8g}, o limitar los tamaños con {@code -p filas=10000,1000000}.</p>
+ * @author andres
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CargaArchivos {
+    private static final int USUARIOS = 10_000;
+
+    /** Filas de productos, pedidos y envíos. */
+    @Param({"10000", "1000000", "10000000"})
+    public int filas;
+
+    private String productos;
+    private String pedidos;
+    private String envios;
+
+    /**
+     * Genera los archivos si todavía no existen.
+     * @throws IOException Si no se pueden escribir.
+     */
+    @Setup(Level.Trial)
+    public void generar() throws IOException {
+        Path datos = GeneradorDatos.directorioMediciones().resolve("n" + filas);
+        GeneradorDatos.generar(datos, filas, USUARIOS);
+        productos = datos.resolve("Productos.txt").toString();
+        pedidos = datos.resolve("Pedidos.txt").toString();
+        envios = datos.resolve("Envios.txt").toString();
+    }
+
+    /** Termina las escrituras en segundo plano antes de que el fork termine. */
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        GestorCSV.cerrarEscrituras();
+    }
+
+    /** Borra la copia binaria antes de cada llamada, para que la carga lea el CSV. */
+    @State(Scope.Thread)
+    public static class SinCopiaBinaria {
+        /**
+         * @param archivos Estado con las rutas de los archivos.
+         * @throws IOException Si no se puede borrar la copia.
+         */
+        @Setup(Level.Invocation)
+        public void borrar(CargaArchivos archivos) throws IOException {
+            Files.deleteIfExists(Paths.get(archivos.productos + ".bin"));
+        }
+    }
+
+    /** Asegura que la copia binaria exista antes de medir su lectura. */
+    @State(Scope.Thread)
+    public static class ConCopiaBinaria {
+        /**
+         * @param archivos Estado con las rutas de los archivos.
+         * @throws IOException Si no se puede leer el CSV.
+         */
+        @Setup(Level.Trial)
+        public void crear(CargaArchivos archivos) throws IOException {
+            GestorCSV.cargarProductos(archivos.productos);
+        }
+    }
+
+    /**
+     * @param sinCopia Borra la copia binaria antes de cada llamada.
+     * @return Productos leídos del CSV.
+     * @throws IOException Si falla la lectura.
+     */
+    @Benchmark
+    public List<Producto> cargarProductosCsv(SinCopiaBinaria sinCopia) throws IOException {
+        return GestorCSV.cargarProductos(productos);
+    }
+
+    /**
+     * @param conCopia Crea la copia binaria antes de medir.
+     * @return Productos leídos de la copia binaria.
+     * @throws IOException Si falla la lectura.
+     */
+    @Benchmark
+    public List<Producto> cargarProductosBinario(ConCopiaBinaria conCopia) throws IOException {
+        return GestorCSV.cargarProductos(productos);
+    }
+
+    /**
+     * @return Pedidos leídos.
+     * @throws IOException Si falla la lectura.
+     */
+    @Benchmark
+    public List<Pedido> cargarPedidos() throws IOException {
+        return GestorCSV.cargarPedidos(pedidos);
+    }
+
+    /**
+     * @return Envíos leídos.
+     * @throws IOException Si falla la lectura.
+     */
+    @Benchmark
+    public List<Envio> cargarEnvios() throws IOException {
+        return GestorCSV.cargarEnvios(envios);
+    }
+}
\ No newline at end of file
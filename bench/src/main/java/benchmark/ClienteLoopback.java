@@ -0,0 +1,123 @@
+package benchmark;
+
+import Controller.ControladorPedido;
+import Controller.ControladorProducto;
+import Controller.ControladorUsuario;
+import Model.Cliente;
+import Model.Persistencia;
+import Model.Producto;
+import Model.Proveedor;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import view.ServidorShopPlus;
+
+/**
+ * Prueba de punta a punta del modo servidor: levanta un {@link ServidorShopPlus} en 127.0.0.1
+ * sobre una persistencia en memoria y lo recorre por TCP como lo haría un cliente real
+ * (LOGIN, COMPRAR, ENVIAR y SALIR). Si alguna respuesta no es la esperada, termina con una
+ * excepción (código de salida distinto de cero).
+ *
+ * <p>Cómo ejecutarlo desde la raíz del proyecto:</p>
+ * <pre>
+ *   mvn -B -f bench/pom.xml package
+ *   java -cp bench/target/benchmarks.jar benchmark.ClienteLoopback
+ * </pre>
+ * @author andres
+ */
+public class ClienteLoopback {
+    private static final String ID = "P-LOOP";
+
+    private final BufferedReader entrada;
+    private final PrintWriter salida;
+
+    private ClienteLoopback(Socket conexion) throws IOException {
+        entrada = new BufferedReader(new InputStreamReader(conexion.getInputStream(), StandardCharsets.UTF_8));
+        salida = new PrintWriter(new OutputStreamWriter(conexion.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /** Envía una orden y devuelve la primera línea de la respuesta. */
+    private String orden(String linea) throws IOException {
+        salida.print(linea + "\n");
+        salida.flush();
+        String respuesta = entrada.readLine();
+        comprobar(respuesta != null, "el servidor cerró la conexión tras '" + linea + "'");
+        return respuesta;
+    }
+
+    /** Envía una orden y exige que la respuesta empiece con el prefijo dado. */
+    private String esperar(String linea, String prefijo) throws IOException {
+        String respuesta = orden(linea);
+        comprobar(respuesta.startsWith(prefijo), "'" + linea + "' respondió '" + respuesta + "', se esperaba '" + prefijo + "...'");
+        return respuesta;
+    }
+
+    private static Socket conectar(int puerto) throws IOException {
+        Socket conexion = new Socket(InetAddress.getLoopbackAddress(), puerto);
+        conexion.setSoTimeout(10_000);
+        return conexion;
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+
+    /**
+     * Punto de entrada.
+     * @param args No se usan.
+     * @throws Exception Si alguna comprobación falla.
+     */
+    public static void main(String[] args) throws Exception {
+        Producto producto = new Producto(ID, "Lámpara", 10, 2);
+        ControladorProducto controladorProducto = new ControladorProducto(List.of(producto));
+        ControladorUsuario controladorUsuario = new ControladorUsuario(List.of(
+                new Cliente("Ana", "ana@shopplus.com", "clave con espacios"),
+                new Proveedor("Beto", "beto@shopplus.com", "clave")));
+        Persistencia persistencia = Persistencia.enMemoria();
+        ControladorPedido controladorPedido = new ControladorPedido(controladorProducto, persistencia);
+
+        try (ServidorShopPlus servidor = new ServidorShopPlus(controladorUsuario, controladorProducto, controladorPedido)) {
+            servidor.iniciar(0);
+            int puerto = servidor.getPuerto();
+
+            try (Socket conexion = conectar(puerto)) {
+                ClienteLoopback cliente = new ClienteLoopback(conexion);
+                cliente.esperar("COMPRAR " + ID, "ERROR");
+                cliente.esperar("LOGIN ana@shopplus.com otra", "ERROR");
+                cliente.esperar("LOGIN ana@shopplus.com clave con espacios", "OK Cliente Ana");
+                cliente.esperar("COMPRAR " + ID, "OK " + ID);
+                cliente.esperar("COMPRAR " + ID, "OK " + ID);
+                cliente.esperar("COMPRAR " + ID, "OK " + ID);
+                cliente.esperar("COMPRAR P-NO-EXISTE", "ERROR");
+                cliente.esperar("ENVIAR " + ID, "ERROR");
+                cliente.esperar("NADA", "ERROR");
+                cliente.esperar("SALIR", "OK");
+                comprobar(cliente.entrada.readLine() == null, "la sesión siguió abierta después de SALIR");
+            }
+            comprobar(controladorPedido.pendientes(ID) == 3, "quedaron " + controladorPedido.pendientes(ID) + " pedidos pendientes, se esperaban 3");
+
+            try (Socket conexion = conectar(puerto)) {
+                ClienteLoopback proveedor = new ClienteLoopback(conexion);
+                proveedor.esperar("LOGIN beto@shopplus.com clave", "OK Proveedor Beto");
+                proveedor.esperar("ENVIAR " + ID, "OK " + ID);
+                proveedor.esperar("ENVIAR " + ID, "OK " + ID);
+                proveedor.esperar("ENVIAR " + ID, "ERROR");
+                proveedor.esperar("REABASTECER " + ID + " 1", "OK 1");
+                proveedor.esperar("ENVIAR " + ID, "OK " + ID);
+                proveedor.esperar("ENVIAR " + ID, "ERROR");
+                proveedor.esperar("SALIR", "OK");
+            }
+            comprobar(producto.getCantidad() == 0, "quedó cantidad " + producto.getCantidad());
+            comprobar(controladorPedido.pendientes(ID) == 0, "quedaron pedidos pendientes");
+            comprobar(controladorPedido.unidadesEnviadas(ID) == 3,
+                    "se enviaron " + controladorPedido.unidadesEnviadas(ID) + " unidades, se esperaban 3");
+        } finally {
+            persistencia.cerrar();
+        }
+        System.out.println("cliente loopback: LOGIN, COMPRAR, ENVIAR y SALIR contra 127.0.0.1 (correcto)");
+    }
+}
\ No newline at end of file
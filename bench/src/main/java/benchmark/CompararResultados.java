@@ -0,0 +1,156 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compara dos corridas de JMH guardadas en CSV ({@code -rf csv -rff <archivo>}) e imprime
+ * el cambio de cada caso. Un caso es una regresión si empeora más que el umbral y la
+ * diferencia supera la suma de los errores informados por JMH. Si hay alguna, el proceso
+ * termina con código 2.
+ *
+ * <p>Uso: {@code java -cp bench/target/benchmarks.jar benchmark.CompararResultados <base.csv> <nuevo.csv> [umbral %]}
+ * (umbral por defecto 10).</p>
+ * @author andres
+ */
+public class CompararResultados {
+
+    /** Resultado de un caso: un método medido con una combinación de parámetros. */
+    static final class Resultado {
+        final String caso;
+        final String modo;
+        final String unidad;
+        final double puntaje;
+        final double error;
+
+        Resultado(String caso, String modo, String unidad, double puntaje, double error) {
+            this.caso = caso;
+            this.modo = modo;
+            this.unidad = unidad;
+            this.puntaje = puntaje;
+            this.error = error;
+        }
+
+        /** @return {@code true} si un puntaje más alto es mejor (operaciones por unidad de tiempo). */
+        boolean masEsMejor() {
+            return modo.equals("thrpt");
+        }
+    }
+
+    /**
+     * Lee un archivo CSV de resultados de JMH.
+     * @param ruta Archivo de resultados.
+     * @return Resultados por caso, en el orden del archivo.
+     * @throws IOException Si no se puede leer o no tiene el formato de JMH.
+     */
+    static Map<String, Resultado> cargar(Path ruta) throws IOException {
+        List<String> lineas = Files.readAllLines(ruta);
+        if (lineas.isEmpty()) {
+            throw new IOException("Archivo de resultados vacío: " + ruta);
+        }
+        List<String> cabecera = campos(lineas.get(0));
+        int benchmark = columna(cabecera, "Benchmark", ruta);
+        int modo = columna(cabecera, "Mode", ruta);
+        int hilos = columna(cabecera, "Threads", ruta);
+        int puntaje = columna(cabecera, "Score", ruta);
+        int error = columna(cabecera, "Score Error (99.9%)", ruta);
+        int unidad = columna(cabecera, "Unit", ruta);
+
+        Map<String, Resultado> resultados = new LinkedHashMap<>();
+        for (String linea : lineas.subList(1, lineas.size())) {
+            if (linea.isBlank()) continue;
+            List<String> c = campos(linea);
+            StringBuilder caso = new StringBuilder(c.get(benchmark).replaceFirst("^benchmark\\.", ""));
+            List<String> parametros = new ArrayList<>();
+            for (int i = 0; i < cabecera.size() && i < c.size(); i++) {
+                if (cabecera.get(i).startsWith("Param: ") && !c.get(i).isEmpty()) {
+                    parametros.add(cabecera.get(i).substring("Param: ".length()) + "=" + c.get(i));
+                }
+            }
+            if (!c.get(hilos).equals("1")) {
+                parametros.add("hilos=" + c.get(hilos));
+            }
+            if (!parametros.isEmpty()) {
+                caso.append(parametros);
+            }
+            double e = Double.parseDouble(c.get(error));
+            resultados.put(caso.toString(), new Resultado(caso.toString(), c.get(modo), c.get(unidad),
+                    Double.parseDouble(c.get(puntaje)), Double.isNaN(e) ? 0 : e));
+        }
+        return resultados;
+    }
+
+    private static int columna(List<String> cabecera, String nombre, Path ruta) throws IOException {
+        int i = cabecera.indexOf(nombre);
+        if (i < 0) {
+            throw new IOException("Falta la columna '" + nombre + "' en " + ruta + "; ¿se generó con -rf csv?");
+        }
+        return i;
+    }
+
+    /** Separa una línea CSV de JMH: campos opcionalmente entre comillas, sin comillas internas. */
+    private static List<String> campos(String linea) {
+        List<String> campos = new ArrayList<>();
+        for (String campo : linea.split(",", -1)) {
+            if (campo.length() >= 2 && campo.startsWith("\"") && campo.endsWith("\"")) {
+                campo = campo.substring(1, campo.length() - 1);
+            }
+            campos.add(campo);
+        }
+        return campos;
+    }
+
+    /**
+     * Imprime la comparación de cada caso de la corrida nueva con la base.
+     * @param base Resultados de referencia.
+     * @param actuales Resultados de esta corrida.
+     * @param umbralPorcentaje Empeoramiento tolerado, en porcentaje.
+     * @return Cantidad de regresiones encontradas.
+     */
+    static int comparar(Map<String, Resultado> base, Map<String, Resultado> actuales, double umbralPorcentaje) {
+        int regresiones = 0;
+        System.out.printf(Locale.ROOT, "%-60s %14s %14s %9s%n", "caso", "base", "actual", "cambio");
+        for (Resultado r : actuales.values()) {
+            Resultado b = base.get(r.caso);
+            if (b == null || !b.modo.equals(r.modo) || !b.unidad.equals(r.unidad)) {
+                System.out.printf(Locale.ROOT, "%-60s %14s %14s %9s%n", r.caso, "-", formatear(r), "nuevo");
+                continue;
+            }
+            double cambio = (r.puntaje - b.puntaje) / b.puntaje * 100;
+            double empeora = r.masEsMejor() ? -cambio : cambio;
+            boolean regresion = empeora > umbralPorcentaje && Math.abs(r.puntaje - b.puntaje) > r.error + b.error;
+            if (regresion) regresiones++;
+            System.out.printf(Locale.ROOT, "%-60s %14s %14s %+8.1f%%%s%n", r.caso, formatear(b), formatear(r),
+                    cambio, regresion ? "  REGRESIÓN" : "");
+        }
+        for (Resultado b : base.values()) {
+            if (!actuales.containsKey(b.caso)) {
+                System.out.printf(Locale.ROOT, "%-60s %14s %14s %9s%n", b.caso, formatear(b), "-", "no medido");
+            }
+        }
+        return regresiones;
+    }
+
+    private static String formatear(Resultado r) {
+        return String.format(Locale.ROOT, "%.3f %s", r.puntaje, r.unidad);
+    }
+
+    /**
+     * Punto de entrada.
+     * @param args Archivo base, archivo nuevo y, opcionalmente, el umbral en porcentaje.
+     * @throws IOException Si no se puede leer algún archivo.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: CompararResultados <base.csv> <nuevo.csv> [umbral %]");
+            System.exit(1);
+        }
+        double umbral = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        int regresiones = comparar(cargar(Paths.get(args[0])), cargar(Paths.get(args[1])), umbral);
+        if (regresiones > 0) {
+            System.out.println(regresiones + " caso(s) con regresión.");
+            System.exit(2);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package benchmark;
+
+import Controller.ControladorProducto;
+import Model.CatalogoProductos;
+import Model.Producto;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prueba de carga de las reservas de stock: muchos hilos reservan, liberan y reabastecen
+ * el mismo producto a la vez. Comprueba que la cantidad nunca baja de cero y que al final
+ * coincide exactamente con lo que cada hilo hizo, también en el índice por stock del catálogo,
+ * que se consulta mientras tanto. Si algo no se cumple, termina con una
+ * excepción (código de salida distinto de cero).
+ *
+ * <p>Cómo ejecutarlo desde la raíz del proyecto:</p>
+ * <pre>
+ *   mvn -B -f bench/pom.xml package
+ *   java -cp bench/target/benchmarks.jar benchmark.EstresReservas --hilos 32 --operaciones 200000
+ * </pre>
+ * @author andres
+ */
+public class EstresReservas {
+    private static final String ID = "P-ESTRES";
+
+    /**
+     * Reservas, liberaciones y reabastecimientos mezclados al azar, con el índice por stock
+     * ya armado. Un hilo aparte lee la cantidad todo el tiempo, registra si alguna vez la ve
+     * negativa y consulta el índice de vez en cuando.
+     */
+    static void mezcla(int hilos, int operaciones, int stockInicial) throws Exception {
+        Producto producto = new Producto(ID, "Estrés", 1, stockInicial);
+        ControladorProducto controlador = new ControladorProducto(List.of(producto));
+        CatalogoProductos catalogo = controlador.getInventario();
+        // La primera consulta arma el índice: desde ahí cada cambio de stock lo avisa.
+        catalogo.porCantidad(0, Integer.MAX_VALUE, null, 1);
+        long[] reservadas = new long[hilos];
+        long[] liberadas = new long[hilos];
+        long[] agregadas = new long[hilos];
+        AtomicBoolean terminado = new AtomicBoolean();
+        AtomicInteger minimoVisto = new AtomicInteger(Integer.MAX_VALUE);
+        Thread observador = new Thread(() -> {
+            for (int i = 0; !terminado.get(); i++) {
+                int c = producto.getCantidad();
+                if (c < minimoVisto.get()) minimoVisto.set(c);
+                if (i % 1024 == 0) {
+                    catalogo.porCantidad(0, Integer.MAX_VALUE, null, 1);
+                }
+            }
+        }, "observador-stock");
+        observador.setDaemon(true);
+        observador.start();
+
+        correr(hilos, h -> {
+            SplittableRandom azar = new SplittableRandom(h);
+            long enMano = 0;
+            for (int i = 0; i < operaciones; i++) {
+                int tipo = azar.nextInt(10);
+                if (tipo < 7) {
+                    int unidades = 1 + azar.nextInt(3);
+                    if (controlador.intentarReservar(ID, unidades)) {
+                        reservadas[h] += unidades;
+                        enMano += unidades;
+                    }
+                } else if (tipo < 9) {
+                    if (enMano > 0) {
+                        int unidades = (int) Math.min(enMano, 1 + azar.nextInt(3));
+                        controlador.liberar(ID, unidades);
+                        liberadas[h] += unidades;
+                        enMano -= unidades;
+                    }
+                } else {
+                    int unidades = 1 + azar.nextInt(2);
+                    controlador.reabastecer(ID, unidades);
+                    agregadas[h] += unidades;
+                }
+            }
+        });
+        terminado.set(true);
+        observador.join();
+
+        long esperado = stockInicial;
+        for (int h = 0; h < hilos; h++) {
+            esperado += agregadas[h] + liberadas[h] - reservadas[h];
+        }
+        comprobar(minimoVisto.get() >= 0, "la cantidad llegó a " + minimoVisto.get());
+        comprobar(producto.getCantidad() == esperado,
+                "cantidad final " + producto.getCantidad() + ", se esperaba " + esperado);
+        int fin = producto.getCantidad();
+        comprobar(catalogo.porCantidad(fin, fin, null, 1).getElementos().contains(producto),
+                "el índice por stock no ubica el producto en " + fin);
+        System.out.printf("mezcla: %d hilos x %d operaciones, mínimo visto %d, final %d (correcto)%n",
+                hilos, operaciones, minimoVisto.get(), producto.getCantidad());
+    }
+
+    /**
+     * Todos los hilos reservan de a una unidad hasta agotar el stock: las reservas exitosas
+     * tienen que sumar exactamente el stock inicial, sin ninguna de más.
+     */
+    static void agotar(int hilos, int stockInicial) throws Exception {
+        Producto producto = new Producto(ID, "Estrés", 1, stockInicial);
+        AtomicInteger exitosas = new AtomicInteger();
+        correr(hilos, h -> {
+            while (producto.intentarReservar(1)) {
+                exitosas.incrementAndGet();
+            }
+        });
+        comprobar(exitosas.get() == stockInicial,
+                exitosas.get() + " reservas exitosas con stock " + stockInicial);
+        comprobar(producto.getCantidad() == 0, "quedó cantidad " + producto.getCantidad());
+        comprobar(!producto.intentarReservar(1), "se pudo reservar sin stock");
+        System.out.printf("agotar: %d hilos, %d reservas para %d unidades (correcto)%n",
+                hilos, exitosas.get(), stockInicial);
+    }
+
+    /** Trabajo de un hilo, que recibe su número. */
+    private interface Trabajo {
+        void correr(int hilo) throws Exception;
+    }
+
+    /** Arranca todos los hilos juntos y espera a que terminen, propagando el primer error. */
+    private static void correr(int hilos, Trabajo trabajo) throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> futuros = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            futuros.add(ejecutor.submit(() -> {
+                largada.await();
+                trabajo.correr(hilo);
+                return null;
+            }));
+        }
+        largada.countDown();
+        try {
+            for (Future<?> f : futuros) {
+                f.get();
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+
+    /**
+     * Punto de entrada.
+     * @param args {@code --hilos <n>} (por defecto 16) y {@code --operaciones <n>} por hilo (por defecto 100000).
+     * @throws Exception Si alguna comprobación falla.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            opciones.put(args[i], args[i + 1]);
+        }
+        int hilos = Integer.parseInt(opciones.getOrDefault("--hilos", "16"));
+        int operaciones = Integer.parseInt(opciones.getOrDefault("--operaciones", "100000"));
+        // Stock bajo: los hilos pasan casi todo el tiempo peleando por las últimas unidades.
+        mezcla(hilos, operaciones, 50);
+        agotar(hilos, hilos * operaciones / 4);
+    }
+}
\ No newline at end of file
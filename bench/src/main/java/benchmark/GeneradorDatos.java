@@ -0,0 +1,160 @@
+package benchmark;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Generador de datos sintéticos para las mediciones de ShopPlus.
+ * Escribe {@code Productos.txt}, {@code Usuarios.txt}, {@code Pedidos.txt} y {@code Envios.txt}
+ * con el mismo formato que usa la aplicación. La semilla es fija, así dos corridas
+ * con el mismo tamaño producen exactamente los mismos archivos.
+ *
+ * <p>Uso: {@code java -cp bench/target/benchmarks.jar benchmark.GeneradorDatos <directorio> <filas> [usuarios]}</p>
+ * @author andres
+ */
+public class GeneradorDatos {
+    private static final long SEMILLA = 20251022L;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 1, 8, 0);
+
+    private final int productos;
+    private final int usuarios;
+
+    /**
+     * @param productos Cantidad de productos del catálogo.
+     * @param usuarios Cantidad de usuarios registrados.
+     */
+    public GeneradorDatos(int productos, int usuarios) {
+        this.productos = productos;
+        this.usuarios = usuarios;
+    }
+
+    /**
+     * Directorio donde las mediciones generan y reutilizan sus datos: la propiedad de sistema
+     * {@code shopplus.bench.datos} o, si no está definida, {@code shopplus-bench} en el temporal del sistema.
+     * @return Directorio de datos de las mediciones.
+     */
+    public static Path directorioMediciones() {
+        String valor = System.getProperty("shopplus.bench.datos");
+        return valor != null ? Paths.get(valor) : Paths.get(System.getProperty("java.io.tmpdir"), "shopplus-bench");
+    }
+
+    /** @return ID del producto número {@code i}. */
+    public static String idProducto(int i) {
+        return String.format("P%08d", i);
+    }
+
+    /** @return Email del usuario número {@code i}. */
+    public static String email(int i) {
+        return "usuario" + i + "@shopplus.com";
+    }
+
+    /** @return Contraseña del usuario número {@code i}. */
+    public static String contraseña(int i) {
+        return "clave" + i;
+    }
+
+    /**
+     * Escribe el catálogo de productos. Uno de cada diez nombres lleva coma para ejercitar las comillas.
+     * @param ruta Archivo destino.
+     * @throws IOException Si no se puede escribir.
+     */
+    public void escribirProductos(Path ruta) throws IOException {
+        SplittableRandom azar = new SplittableRandom(SEMILLA);
+        try (BufferedWriter writer = Files.newBufferedWriter(ruta)) {
+            for (int i = 0; i < productos; i++) {
+                String nombre = i % 10 == 0 ? "\"Producto " + i + ", edición especial\"" : "Producto " + i;
+                double precio = azar.nextInt(1, 1_000_000) / 100.0;
+                writer.write(idProducto(i) + "," + nombre + "," + precio + "," + azar.nextInt(0, 500));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Escribe los usuarios: uno de cada cincuenta es proveedor y uno de cada mil administrador.
+     * @param ruta Archivo destino.
+     * @throws IOException Si no se puede escribir.
+     */
+    public void escribirUsuarios(Path ruta) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(ruta)) {
+            for (int i = 0; i < usuarios; i++) {
+                String tipo = i % 1000 == 0 ? "Administrador" : i % 50 == 0 ? "Proveedor" : "Cliente";
+                writer.write(tipo + ",Usuario " + i + "," + email(i) + "," + contraseña(i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Escribe pedidos con cliente y producto al azar y fechas crecientes.
+     * @param ruta Archivo destino.
+     * @param filas Cantidad de pedidos.
+     * @throws IOException Si no se puede escribir.
+     */
+    public void escribirPedidos(Path ruta, int filas) throws IOException {
+        SplittableRandom azar = new SplittableRandom(SEMILLA + 1);
+        try (BufferedWriter writer = Files.newBufferedWriter(ruta)) {
+            for (int i = 0; i < filas; i++) {
+                writer.write(email(azar.nextInt(usuarios)) + "," + idProducto(azar.nextInt(productos)) + "," + fecha(azar, i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Escribe envíos con proveedor y producto al azar y fechas crecientes.
+     * @param ruta Archivo destino.
+     * @param filas Cantidad de envíos.
+     * @throws IOException Si no se puede escribir.
+     */
+    public void escribirEnvios(Path ruta, int filas) throws IOException {
+        SplittableRandom azar = new SplittableRandom(SEMILLA + 2);
+        try (BufferedWriter writer = Files.newBufferedWriter(ruta)) {
+            for (int i = 0; i < filas; i++) {
+                int proveedor = azar.nextInt(Math.max(1, usuarios / 50)) * 50;
+                writer.write(email(proveedor) + "," + idProducto(azar.nextInt(productos)) + ","
+                        + azar.nextInt(1, 5) + "," + fecha(azar, i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /** Fecha del registro {@code i}, con fracciones de segundo como las de {@code LocalDateTime.now()}. */
+    private static LocalDateTime fecha(SplittableRandom azar, int i) {
+        return INICIO.plusSeconds(i).withNano(azar.nextInt(1, 1_000_000_000));
+    }
+
+    /**
+     * Genera los cuatro archivos en un directorio, si no existen ya.
+     * @param directorio Directorio destino.
+     * @param filas Filas de productos, pedidos y envíos.
+     * @param usuarios Cantidad de usuarios.
+     * @throws IOException Si no se puede escribir.
+     */
+    public static void generar(Path directorio, int filas, int usuarios) throws IOException {
+        Files.createDirectories(directorio);
+        GeneradorDatos g = new GeneradorDatos(filas, usuarios);
+        if (!Files.exists(directorio.resolve("Productos.txt"))) g.escribirProductos(directorio.resolve("Productos.txt"));
+        if (!Files.exists(directorio.resolve("Usuarios.txt"))) g.escribirUsuarios(directorio.resolve("Usuarios.txt"));
+        if (!Files.exists(directorio.resolve("Pedidos.txt"))) g.escribirPedidos(directorio.resolve("Pedidos.txt"), filas);
+        if (!Files.exists(directorio.resolve("Envios.txt"))) g.escribirEnvios(directorio.resolve("Envios.txt"), filas);
+    }
+
+    /**
+     * Genera un juego de datos desde la línea de comandos.
+     * @param args Directorio, cantidad de filas y, opcionalmente, cantidad de usuarios (por defecto 10000).
+     * @throws IOException Si no se puede escribir.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: GeneradorDatos <directorio> <filas> [usuarios]");
+            return;
+        }
+        int filas = Integer.parseInt(args[1]);
+        int usuarios = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        generar(Paths.get(args[0]), filas, usuarios);
+        System.out.println("Datos generados en " + args[0]);
+    }
+}
\ No newline at end of file
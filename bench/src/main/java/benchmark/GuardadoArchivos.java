@@ -0,0 +1,116 @@
+package benchmark;
+
+import Model.Durabilidad;
+import Model.GestorCSV;
+import Model.Pedido;
+import Model.Producto;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Escritura de archivos con {@link GestorCSV}: el catálogo completo con
+ * {@code guardarProductos} y los pedidos de a uno con {@code guardarPedido}.
+ * @author andres
+ */
+public class GuardadoArchivos {
+    private static final int USUARIOS = 10_000;
+
+    /** Catálogo generado y cargado una vez, que se vuelve a guardar en cada llamada. */
+    @State(Scope.Benchmark)
+    public static class Catalogo {
+        /** Productos del catálogo. */
+        @Param({"10000", "1000000", "10000000"})
+        public int filas;
+
+        List<Producto> productos;
+        String destino;
+
+        /**
+         * @throws IOException Si no se pueden generar o leer los datos.
+         */
+        @Setup(Level.Trial)
+        public void cargar() throws IOException {
+            Path datos = GeneradorDatos.directorioMediciones().resolve("n" + filas);
+            GeneradorDatos.generar(datos, filas, USUARIOS);
+            productos = GestorCSV.cargarProductos(datos.resolve("Productos.txt").toString());
+            destino = datos.resolve("Guardado.txt").toString();
+        }
+    }
+
+    /**
+     * Archivo de pedidos vacío al empezar, con la durabilidad elegida. Con {@code -t <hilos>}
+     * varios hilos agregan a la vez y se ve el efecto de agrupar las escrituras en lotes.
+     */
+    @State(Scope.Benchmark)
+    public static class ArchivoPedidos {
+        /** Momento en que se confirma cada escritura. */
+        @Param({"NINGUNA", "VACIAR", "SINCRONIZAR"})
+        public Durabilidad durabilidad;
+
+        String ruta;
+
+        /**
+         * @throws IOException Si no se puede preparar el directorio.
+         */
+        @Setup(Level.Trial)
+        public void abrir() throws IOException {
+            Path datos = GeneradorDatos.directorioMediciones().resolve("anexos");
+            Files.createDirectories(datos);
+            ruta = datos.resolve("Pedidos.txt").toString();
+            Files.deleteIfExists(Paths.get(ruta));
+            GestorCSV.configurarEscrituraPorLotes(256, 0, durabilidad);
+        }
+
+        /** Escribe lo que quede encolado y vuelve a la configuración por defecto. */
+        @TearDown(Level.Trial)
+        public void cerrar() {
+            GestorCSV.cerrarEscrituras();
+            GestorCSV.configurarEscrituraPorLotes(256, 0, Durabilidad.VACIAR);
+        }
+    }
+
+    /** Número de pedido de cada hilo, para variar cliente y producto. */
+    @State(Scope.Thread)
+    public static class Contador {
+        int siguiente;
+    }
+
+    /**
+     * @param catalogo Catálogo a guardar.
+     * @return Ruta escrita.
+     * @throws IOException Si falla la escritura.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+    public String guardarProductos(Catalogo catalogo) throws IOException {
+        GestorCSV.guardarProductos(catalogo.productos, catalogo.destino);
+        return catalogo.destino;
+    }
+
+    /**
+     * @param archivo Archivo de pedidos.
+     * @param contador Número de pedido del hilo.
+     * @return Pedido guardado.
+     * @throws IOException Si falla la escritura.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public Pedido guardarPedido(ArchivoPedidos archivo, Contador contador) throws IOException {
+        int i = contador.siguiente++;
+        Pedido p = new Pedido(GeneradorDatos.email(i % USUARIOS), GeneradorDatos.idProducto(i % 1000), LocalDateTime.now());
+        GestorCSV.guardarPedido(p, archivo.ruta);
+        return p;
+    }
+}
\ No newline at end of file
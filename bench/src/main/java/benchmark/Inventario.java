@@ -0,0 +1,63 @@
+package benchmark;
+
+import Model.AlmacenColumnar;
+import Model.CatalogoProductos;
+import Model.Producto;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cálculos sobre todo el inventario con productos como objetos y con el almacén columnar,
+ * en el heap o en memoria directa. Cada llamada recorre el catálogo completo.
+ * @author andres
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class Inventario {
+    /** Productos del catálogo. */
+    @Param({"1000", "100000", "1000000"})
+    public int elementos;
+
+    /** {@code objetos}, {@code columnas} (en el heap) o {@code columnas-directo}. */
+    @Param({"objetos", "columnas", "columnas-directo"})
+    public String modo;
+
+    private CatalogoProductos catalogo;
+    private AlmacenColumnar columnas;
+
+    /** Arma el catálogo con el almacén elegido. */
+    @Setup(Level.Trial)
+    public void preparar() {
+        List<Producto> productos = new ArrayList<>(elementos);
+        for (int i = 0; i < elementos; i++) {
+            productos.add(new Producto(GeneradorDatos.idProducto(i), "Producto " + i, i * 0.5, i % 100));
+        }
+        columnas = modo.equals("objetos") ? null
+                : modo.equals("columnas") ? AlmacenColumnar.enHeap() : AlmacenColumnar.fueraDeHeap();
+        catalogo = new CatalogoProductos(productos, columnas);
+    }
+
+    /** @return Valor total del inventario. */
+    @Benchmark
+    public double valorInventario() {
+        return catalogo.valorInventario();
+    }
+
+    /** @return Productos sin stock. */
+    @Benchmark
+    public int stockBajo() {
+        if (columnas != null) {
+            return columnas.stockBajo(0).size();
+        }
+        int encontrados = 0;
+        for (Producto p : catalogo.listar()) {
+            if (p.getCantidad() <= 0) encontrados++;
+        }
+        return encontrados;
+    }
+}
\ No newline at end of file
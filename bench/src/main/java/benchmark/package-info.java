@@ -0,0 +1,44 @@
+/**
+ * Mediciones de ShopPlus con JMH, más el generador de datos sintéticos y pruebas ejecutables.
+ *
+ * <ul>
+ *   <li>{@link benchmark.CargaArchivos}: {@code cargarProductos} (CSV y copia binaria),
+ *       {@code cargarPedidos} y {@code cargarEnvios} con 10000, 1000000 y 10000000 filas.</li>
+ *   <li>{@link benchmark.GuardadoArchivos}: {@code guardarProductos} y los anexos de
+ *       {@code guardarPedido} con cada durabilidad.</li>
+ *   <li>{@link benchmark.Busquedas}: {@code Producto.buscarPorId} y
+ *       {@code ControladorUsuario.autenticar} con 1000, 100000 y 1000000 elementos.</li>
+ *   <li>{@link benchmark.Inventario}: recorridos del inventario con objetos y con almacén columnar.</li>
+ *   <li>{@link benchmark.GeneradorDatos}: archivos de datos con semilla fija, reutilizados entre corridas.</li>
+ * </ul>
+ *
+ * <p>Compilar y ejecutar desde la raíz del proyecto (Maven y JDK 17 o posterior):</p>
+ * <pre>
+ *   mvn -B -f bench/pom.xml package
+ *   java -jar bench/target/benchmarks.jar -l                      # lista de casos
+ *   java -jar bench/target/benchmarks.jar Busquedas               # solo una clase (expresión regular)
+ *   java -jar bench/target/benchmarks.jar -p filas=10000,1000000  # sin el tamaño de 10 millones
+ * </pre>
+ * <p>Cada caso corre en un proceso aparte ({@code @Fork}) con calentamiento y heap fijos
+ * ({@code -Xms2g -Xmx2g}). Los datos se generan en {@code shopplus-bench} dentro del temporal
+ * del sistema; se cambia con {@code -jvmArgsAppend -Dshopplus.bench.datos=<dir>}. Con 10000000
+ * filas los archivos ocupan cerca de 2 GB y hace falta {@code -jvmArgsAppend -Xmx8g}.</p>
+ *
+ * <p>Comparar con una corrida de referencia:</p>
+ * <pre>
+ *   java -jar bench/target/benchmarks.jar -rf csv -rff base.csv
+ *   # ... aplicar el cambio y volver a compilar ...
+ *   java -jar bench/target/benchmarks.jar -rf csv -rff nuevo.csv
+ *   java -cp bench/target/benchmarks.jar benchmark.CompararResultados base.csv nuevo.csv 10
+ * </pre>
+ * <p>{@link benchmark.CompararResultados} termina con código 2 si algún caso empeoró más que
+ * el umbral. Para resultados comparables conviene usar la misma JVM, las mismas opciones
+ * y una máquina sin otra carga.</p>
+ *
+ * <p>Pruebas ejecutables, que terminan con error si alguna comprobación falla:</p>
+ * <pre>
+ *   java -cp bench/target/benchmarks.jar benchmark.EstresReservas
+ *   java -cp bench/target/benchmarks.jar benchmark.ClienteLoopback
+ * </pre>
+ */
+package benchmark;
\ No newline at end of file
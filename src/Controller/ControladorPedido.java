@@ -0,0 +1,291 @@
+package Controller;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import Exception.ProductoNoEncontradoException;
+import Exception.StockInsuficienteException;
+import Model.Envio;
+import Model.MarcaTiempo;
+import Model.Pedido;
+import Model.Persistencia;
+import Model.Producto;
+import Model.RepositorioEnvios;
+import Model.RepositorioPedidos;
+import Model.RepositorioProductos;
+import Model.ReporteVentas;
+import Model.Usuario;
+
+/**
+ * Controlador encargado de las compras, los envíos y el reabastecimiento del sistema ShopPlus.
+ * Reúne en un solo lugar la actualización del stock en memoria y su registro en la
+ * {@link Persistencia} elegida, para que la consola y el servidor hagan exactamente lo mismo.
+ * Puede usarse desde varias sesiones a la vez: el stock se reserva de forma atómica
+ * y un pedido solo puede darse de baja una vez.
+ * @author andres
+ */
+public class ControladorPedido {
+    private final ControladorProducto controladorProducto;
+    private final Persistencia persistencia;
+    private final RepositorioPedidos pedidos;
+    private final RepositorioEnvios envios;
+    private final RepositorioProductos productos;
+
+    /**
+     * Crea un controlador de pedidos.
+     * @param controladorProducto Controlador del inventario compartido.
+     * @param persistencia Donde se guardan pedidos, envíos y cambios de stock.
+     */
+    public ControladorPedido(ControladorProducto controladorProducto, Persistencia persistencia) {
+        this.controladorProducto = controladorProducto;
+        this.persistencia = persistencia;
+        this.pedidos = persistencia.pedidos();
+        this.envios = persistencia.envios();
+        this.productos = persistencia.productos();
+    }
+
+    /**
+     * Registra la compra de un producto por parte de un cliente.
+     * @param cliente Cliente que compra.
+     * @param idProducto ID del producto.
+     * @return Pedido registrado.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     * @throws IOException Si no se puede guardar el pedido.
+     */
+    public Pedido comprar(Usuario cliente, String idProducto) throws ProductoNoEncontradoException, IOException {
+        Producto p = controladorProducto.buscarProducto(idProducto);
+        Pedido pedido = new Pedido(cliente.getEmail(), p.getId(), MarcaTiempo.ahora());
+        pedidos.guardar(pedido);
+        return pedido;
+    }
+
+    /**
+     * Obtiene los pedidos pendientes de un cliente.
+     * @param cliente Cliente.
+     * @return Pedidos del cliente en orden de registro.
+     * @throws IOException Si no se pueden leer los pedidos.
+     */
+    public List<Pedido> pedidosDe(Usuario cliente) throws IOException {
+        return pedidos.pendientesDe(cliente.getEmail());
+    }
+
+    /**
+     * Obtiene todos los pedidos pendientes de envío.
+     * @return Pedidos pendientes en orden de registro.
+     * @throws IOException Si no se pueden leer los pedidos.
+     */
+    public List<Pedido> pendientes() throws IOException {
+        return pedidos.pendientes();
+    }
+
+    /**
+     * Envía un pedido: reserva una unidad, da de baja el pedido y registra el envío.
+     * La baja va primero porque es la que impide que dos sesiones envíen el mismo pedido.
+     * Si después no se puede registrar el cambio de stock o el envío, se deshace lo hecho:
+     * la unidad vuelve al stock y el pedido vuelve a quedar pendiente, al final de la cola.
+     * @param proveedor Proveedor que realiza el envío.
+     * @param pedido Pedido devuelto por el repositorio de pedidos.
+     * @return Envío registrado, o {@code null} si otra sesión ya envió ese pedido.
+     * @throws ProductoNoEncontradoException Si el producto del pedido ya no existe.
+     * @throws StockInsuficienteException Si no quedan unidades del producto.
+     * @throws IOException Si ocurre un error al guardar.
+     */
+    public Envio enviar(Usuario proveedor, Pedido pedido)
+            throws ProductoNoEncontradoException, StockInsuficienteException, IOException {
+        Producto producto = controladorProducto.buscarProducto(pedido.getIdProducto());
+        if (!producto.intentarReservar(1)) {
+            throw new StockInsuficienteException(producto.getId());
+        }
+        boolean reservado = true;
+        try {
+            // Dar de baja el pedido; si otra sesión ya lo envió, devolver la unidad reservada
+            if (!pedidos.marcarEnviado(pedido)) {
+                return null;
+            }
+            reservado = false;
+        } finally {
+            if (reservado) {
+                producto.liberar(1);
+            }
+        }
+        try {
+            productos.registrarCambioStock(producto.getId(), -1);
+        } catch (IOException | RuntimeException e) {
+            deshacerEnvio(pedido, producto, false, e);
+            throw e;
+        }
+        Envio envio = new Envio(proveedor.getEmail(), producto.getId(), 1, MarcaTiempo.ahora());
+        try {
+            envios.guardar(envio);
+        } catch (IOException | RuntimeException e) {
+            deshacerEnvio(pedido, producto, true, e);
+            throw e;
+        }
+        return envio;
+    }
+
+    /**
+     * Deshace un envío que quedó a medias: devuelve la unidad reservada (y anota la devolución
+     * si la baja del stock ya estaba registrada) y vuelve a registrar el pedido como pendiente.
+     * Lo que falle al deshacer se agrega como suprimido al error original.
+     */
+    private void deshacerEnvio(Pedido pedido, Producto producto, boolean stockRegistrado, Exception causa) {
+        producto.liberar(1);
+        try {
+            if (stockRegistrado) {
+                registrarCambioStock(producto.getId(), 1);
+            }
+        } catch (ProductoNoEncontradoException | IOException | RuntimeException e) {
+            causa.addSuppressed(e);
+        }
+        try {
+            pedidos.guardar(new Pedido(pedido.getEmailCliente(), pedido.getIdProducto(), pedido.getMarcaTiempo()));
+        } catch (IOException | RuntimeException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Envía un pedido pendiente a partir de su ID, sin volver a leer la lista de pendientes.
+     * @param proveedor Proveedor que realiza el envío.
+     * @param idPedido ID del pedido ({@link Pedido#getId()}).
+     * @return Envío registrado, o {@code null} si no hay un pedido pendiente con ese ID
+     *         (por ejemplo, porque otra sesión ya lo envió).
+     * @throws ProductoNoEncontradoException Si el producto del pedido ya no existe.
+     * @throws StockInsuficienteException Si no quedan unidades del producto.
+     * @throws IOException Si ocurre un error al leer o guardar.
+     */
+    public Envio enviar(Usuario proveedor, long idPedido)
+            throws ProductoNoEncontradoException, StockInsuficienteException, IOException {
+        Pedido pedido = pedidos.pendiente(idPedido);
+        return pedido == null ? null : enviar(proveedor, pedido);
+    }
+
+    /**
+     * Envía el pedido pendiente más antiguo de un producto, tomándolo del frente de su cola.
+     * Si otra sesión se adelanta con ese pedido, se intenta con el siguiente.
+     * @param proveedor Proveedor que realiza el envío.
+     * @param idProducto ID del producto.
+     * @return Envío registrado, o {@code null} si no hay pedidos pendientes del producto.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     * @throws StockInsuficienteException Si no quedan unidades del producto.
+     * @throws IOException Si ocurre un error al leer o guardar.
+     */
+    public Envio enviarSiguiente(Usuario proveedor, String idProducto)
+            throws ProductoNoEncontradoException, StockInsuficienteException, IOException {
+        controladorProducto.buscarProducto(idProducto);
+        Pedido pedido;
+        while ((pedido = pedidos.siguientePendiente(idProducto)) != null) {
+            Envio envio = enviar(proveedor, pedido);
+            if (envio != null) {
+                return envio;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Agrega unidades al stock de un producto y registra el cambio.
+     * @param idProducto ID del producto.
+     * @param unidades Unidades recibidas (positivas).
+     * @return Cantidad resultante.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     * @throws IOException Si no se puede registrar el cambio; en ese caso las unidades no se agregan.
+     */
+    public int reabastecer(String idProducto, int unidades) throws ProductoNoEncontradoException, IOException {
+        if (unidades <= 0) {
+            throw new IllegalArgumentException("Las unidades deben ser positivas: " + unidades);
+        }
+        int cantidad = controladorProducto.reabastecer(idProducto, unidades);
+        registrarCambioStock(idProducto, unidades);
+        return cantidad;
+    }
+
+    /**
+     * Reemplaza la cantidad de un producto y registra la diferencia.
+     * @param idProducto ID del producto.
+     * @param nuevaCantidad Nueva cantidad en inventario.
+     * @return Cantidad que tenía el producto antes del cambio.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     * @throws IOException Si no se puede registrar el cambio; en ese caso la cantidad se restablece.
+     */
+    public int actualizarCantidad(String idProducto, int nuevaCantidad) throws ProductoNoEncontradoException, IOException {
+        int anterior = controladorProducto.actualizarCantidad(idProducto, nuevaCantidad);
+        registrarCambioStock(idProducto, nuevaCantidad - anterior);
+        return anterior;
+    }
+
+    /**
+     * Registra un cambio de stock ya aplicado en memoria. Si no se puede registrar, lo deshace:
+     * de lo contrario la próxima compactación guardaría una cantidad que el usuario vio fallar.
+     * Se deshace como diferencia, para no pisar reservas de otras sesiones hechas mientras tanto.
+     */
+    private void registrarCambioStock(String idProducto, int delta) throws ProductoNoEncontradoException, IOException {
+        if (delta == 0) {
+            return;
+        }
+        try {
+            productos.registrarCambioStock(idProducto, delta);
+        } catch (IOException e) {
+            controladorProducto.ajustarCantidad(idProducto, -delta);
+            throw e;
+        }
+    }
+
+    /**
+     * Calcula el reporte de ventas sobre los pedidos y envíos guardados.
+     * @return Reporte de ventas.
+     * @throws IOException Si no se pueden leer los pedidos o los envíos.
+     */
+    public ReporteVentas reporteVentas() throws IOException {
+        return persistencia.reporteVentas(controladorProducto.getInventario());
+    }
+
+    /**
+     * Pedidos pendientes de un producto, o de todos si no se indica uno.
+     * A diferencia del reporte de ventas, responde sin recorrer los pedidos.
+     * @param idProducto ID del producto, o {@code null} para el total.
+     * @return Pedidos pendientes.
+     * @throws IOException Si hay que reconstruir los contadores y no se pueden leer los datos.
+     */
+    public long pendientes(String idProducto) throws IOException {
+        return idProducto == null ? pedidos.cantidadPendientes() : pedidos.cantidadPendientes(idProducto);
+    }
+
+    /**
+     * @param dia Día a consultar.
+     * @return Pedidos registrados ese día.
+     * @throws IOException Si hay que reconstruir los contadores y no se pueden leer los datos.
+     */
+    public long pedidosDelDia(LocalDate dia) throws IOException {
+        return pedidos.cantidadDelDia(dia);
+    }
+
+    /**
+     * @param idProducto ID del producto.
+     * @return Unidades enviadas del producto.
+     * @throws IOException Si hay que reconstruir los contadores y no se pueden leer los datos.
+     */
+    public long unidadesEnviadas(String idProducto) throws IOException {
+        return envios.unidadesEnviadas(idProducto);
+    }
+
+    /**
+     * @param dia Día a consultar.
+     * @return Unidades enviadas ese día.
+     * @throws IOException Si hay que reconstruir los contadores y no se pueden leer los datos.
+     */
+    public long unidadesEnviadasDelDia(LocalDate dia) throws IOException {
+        return envios.unidadesDelDia(dia);
+    }
+
+    /**
+     * @param proveedor Proveedor a consultar.
+     * @return Unidades enviadas por el proveedor.
+     * @throws IOException Si hay que reconstruir los contadores y no se pueden leer los datos.
+     */
+    public long unidadesEnviadasPor(Usuario proveedor) throws IOException {
+        return envios.unidadesPorProveedor(proveedor.getEmail());
+    }
+}
\ No newline at end of file
@@ -3,6 +3,9 @@ package Controller;
 import java.util.List;
 
 import Exception.ProductoNoEncontradoException;
+import Model.CatalogoProductos;
+import Model.Metricas;
+import Model.Pagina;
 import Model.Producto;
 
 /**
@@ -11,16 +14,33 @@ import Model.Producto;
  * @author andres
  */
 public class ControladorProducto {
-    private List<Producto> inventario;
+    private static final Metricas.Operacion BUSCAR_PRODUCTO = Metricas.operacion("ControladorProducto.buscarProducto", 16);
+    private static final Metricas.Operacion ACTUALIZAR_CANTIDAD = Metricas.operacion("ControladorProducto.actualizarCantidad", 16);
+    private static final Metricas.Operacion BUSCAR_POR_NOMBRE = Metricas.operacion("ControladorProducto.buscarPorNombre");
+
+    private CatalogoProductos inventario;
 
     /**
      * Crea un controlador de productos con una lista inicial.
      * @param inventario Lista de productos disponibles.
      */
     public ControladorProducto(List<Producto> inventario) {
+        this(new CatalogoProductos(inventario));
+    }
+
+    /**
+     * Crea un controlador de productos sobre un catálogo ya indexado.
+     * @param inventario Catálogo de productos disponibles.
+     */
+    public ControladorProducto(CatalogoProductos inventario) {
         this.inventario = inventario;
     }
 
+    /** @return Catálogo indexado que usa el controlador. */
+    public CatalogoProductos getInventario() {
+        return inventario;
+    }
+
     /**
      * Busca un producto por su ID.
      * @param id ID del producto a buscar.
@@ -28,26 +48,187 @@ public class ControladorProducto {
      * @throws ProductoNoEncontradoException Si no se encuentra el producto.
      */
     public Producto buscarProducto(String id) throws ProductoNoEncontradoException {
-        return Producto.buscarPorId(inventario, id);
+        long inicio = BUSCAR_PRODUCTO.inicio();
+        try {
+            return Producto.buscarPorId(inventario, id);
+        } finally {
+            BUSCAR_PRODUCTO.registrar(inicio);
+        }
+    }
+
+    /**
+     * Busca productos por nombre, sin distinguir mayúsculas ni tildes.
+     * @param texto Texto que debe aparecer en el nombre.
+     * @param limite Cantidad máxima de resultados.
+     * @return Productos encontrados, los más parecidos primero (vacía si no hay ninguno).
+     */
+    public List<Producto> buscarPorNombre(String texto, int limite) {
+        long inicio = BUSCAR_POR_NOMBRE.inicio();
+        try {
+            return inventario.buscarPorNombre(texto, limite);
+        } finally {
+            BUSCAR_POR_NOMBRE.registrar(inicio);
+        }
+    }
+
+    /**
+     * Agrega un producto nuevo al inventario.
+     * @param producto Producto a agregar.
+     * @return {@code true} si se agregó, {@code false} si ya existía un producto con ese ID.
+     */
+    public boolean agregarProducto(Producto producto) {
+        return inventario.agregar(producto);
+    }
+
+    /**
+     * Reemplaza los datos de un producto existente.
+     * @param producto Producto con los datos nuevos (mismo ID).
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     */
+    public void actualizarProducto(Producto producto) throws ProductoNoEncontradoException {
+        if (inventario.actualizar(producto) == null) {
+            throw ProductoNoEncontradoException.paraId(producto.getId());
+        }
+    }
+
+    /**
+     * Elimina un producto del inventario.
+     * @param id ID del producto a eliminar.
+     * @return Producto eliminado.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     */
+    public Producto eliminarProducto(String id) throws ProductoNoEncontradoException {
+        Producto eliminado = inventario.eliminar(id);
+        if (eliminado == null) {
+            throw ProductoNoEncontradoException.paraId(id);
+        }
+        return eliminado;
     }
 
     /**
      * Actualiza la cantidad disponible de un producto.
      * @param id ID del producto.
      * @param nuevaCantidad Nueva cantidad en inventario.
+     * @return Cantidad que tenía el producto antes del cambio.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     */
+    public int actualizarCantidad(String id, int nuevaCantidad) throws ProductoNoEncontradoException {
+        long inicio = ACTUALIZAR_CANTIDAD.inicio();
+        try {
+            return buscarProducto(id).cambiarCantidad(nuevaCantidad);
+        } finally {
+            ACTUALIZAR_CANTIDAD.registrar(inicio);
+        }
+    }
+
+    /**
+     * Intenta reservar unidades de un producto, descontándolas del stock sin bloquear.
+     * @param id ID del producto.
+     * @param unidades Unidades a reservar.
+     * @return {@code true} si había stock suficiente; {@code false} si no se descontó nada.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     */
+    public boolean intentarReservar(String id, int unidades) throws ProductoNoEncontradoException {
+        return buscarProducto(id).intentarReservar(unidades);
+    }
+
+    /**
+     * Devuelve al stock unidades reservadas que no se usaron.
+     * @param id ID del producto.
+     * @param unidades Unidades a devolver.
      * @throws ProductoNoEncontradoException Si el producto no existe.
      */
-    public void actualizarCantidad(String id, int nuevaCantidad) throws ProductoNoEncontradoException {
-        Producto p = buscarProducto(id);
-        p.setCantidad(nuevaCantidad);
+    public void liberar(String id, int unidades) throws ProductoNoEncontradoException {
+        buscarProducto(id).liberar(unidades);
     }
 
     /**
-     * Muestra el inventario completo en consola.
+     * Agrega unidades al stock de un producto.
+     * @param id ID del producto.
+     * @param unidades Unidades recibidas.
+     * @return Cantidad resultante.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     */
+    public int reabastecer(String id, int unidades) throws ProductoNoEncontradoException {
+        return buscarProducto(id).reabastecer(unidades);
+    }
+
+    /**
+     * Suma o resta unidades del stock de un producto, para deshacer un cambio anterior.
+     * @param id ID del producto.
+     * @param delta Unidades a sumar (negativo para restar).
+     * @return Cantidad resultante.
+     * @throws ProductoNoEncontradoException Si el producto no existe.
+     */
+    public int ajustarCantidad(String id, int delta) throws ProductoNoEncontradoException {
+        return buscarProducto(id).ajustarCantidad(delta);
+    }
+
+    /**
+     * Página del inventario en orden de alta.
+     * @param cursor Cursor de la página anterior, o {@code null} para la primera.
+     * @param tamaño Productos por página.
+     * @return Página de productos.
+     */
+    public Pagina<Producto> listarInventario(String cursor, int tamaño) {
+        return inventario.listar(cursor, tamaño);
+    }
+
+    /**
+     * Página de productos con precio entre dos valores, del más barato al más caro.
+     * @param minimo Precio mínimo (incluido).
+     * @param maximo Precio máximo (incluido).
+     * @param cursor Cursor de la página anterior, o {@code null} para la primera.
+     * @param tamaño Productos por página.
+     * @return Página de productos.
+     */
+    public Pagina<Producto> filtrarPorPrecio(double minimo, double maximo, String cursor, int tamaño) {
+        return inventario.porPrecio(minimo, maximo, cursor, tamaño);
+    }
+
+    /**
+     * Página de productos con stock menor o igual al umbral, empezando por los que tienen menos.
+     * @param umbral Stock máximo a incluir.
+     * @param cursor Cursor de la página anterior, o {@code null} para la primera.
+     * @param tamaño Productos por página.
+     * @return Página de productos.
+     */
+    public Pagina<Producto> stockBajo(int umbral, String cursor, int tamaño) {
+        return inventario.porCantidad(Integer.MIN_VALUE, umbral, cursor, tamaño);
+    }
+
+    /** @return Valor del inventario: suma de precio por cantidad de todos los productos. */
+    public double valorInventario() {
+        return inventario.valorInventario();
+    }
+
+    /** @return Unidades en stock sumando todos los productos. */
+    public long unidadesEnStock() {
+        return inventario.unidadesEnStock();
+    }
+
+    /**
+     * Muestra el inventario completo en consola, escribiendo una página por vez.
      */
     public void mostrarInventario() {
-        for (Producto p : inventario) {
-            System.out.println(p.getId() + " - " + p.getNombre() + " - $" + p.getPrecio() + " - Stock: " + p.getCantidad());
+        String cursor = null;
+        do {
+            Pagina<Producto> pagina = inventario.listar(cursor, 500);
+            mostrar(pagina);
+            cursor = pagina.getCursorSiguiente();
+        } while (cursor != null);
+    }
+
+    /**
+     * Muestra en consola los productos de una página.
+     * @param pagina Página a mostrar.
+     */
+    public void mostrar(Pagina<Producto> pagina) {
+        StringBuilder sb = new StringBuilder(pagina.getElementos().size() * 48);
+        for (Producto p : pagina.getElementos()) {
+            sb.append(p.getId()).append(" - ").append(p.getNombre()).append(" - $").append(p.getPrecio())
+                    .append(" - Stock: ").append(p.getCantidad()).append(System.lineSeparator());
         }
+        System.out.print(sb);
     }
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package Controller;
 
+import java.util.Collection;
 import java.util.List;
 
 import Exception.UsuarioInvalidoException;
+import Model.DirectorioUsuarios;
+import Model.Metricas;
 import Model.Usuario;
 
 /**
@@ -11,13 +14,23 @@ import Model.Usuario;
  * @author andres
  */
 public class ControladorUsuario {
-    private List<Usuario> usuarios;
+    private static final Metricas.Operacion AUTENTICAR = Metricas.operacion("ControladorUsuario.autenticar", 16);
+
+    private DirectorioUsuarios usuarios;
 
     /**
      * Crea un controlador de usuarios con una lista inicial.
      * @param usuarios Lista de usuarios registrados.
      */
     public ControladorUsuario(List<Usuario> usuarios) {
+        this(new DirectorioUsuarios(usuarios));
+    }
+
+    /**
+     * Crea un controlador de usuarios sobre un directorio ya indexado.
+     * @param usuarios Directorio de usuarios registrados.
+     */
+    public ControladorUsuario(DirectorioUsuarios usuarios) {
         this.usuarios = usuarios;
     }
 
@@ -29,15 +42,48 @@ public class ControladorUsuario {
      * @throws UsuarioInvalidoException Si no se encuentra un usuario válido.
      */
     public Usuario autenticar(String email, String contraseña) throws UsuarioInvalidoException {
-        for (Usuario u : usuarios) {
-            try {
-                u.validarAcceso(email, contraseña);
-                return u;
-            } catch (UsuarioInvalidoException e) {
-                // Ignorar y seguir buscando
+        long inicio = AUTENTICAR.inicio();
+        try {
+            Usuario u = usuarios.buscar(email);
+            if (u == null || !u.tieneContraseña(contraseña)) {
+                throw new UsuarioInvalidoException("No se encontró un usuario válido con esas credenciales.");
             }
+            return u;
+        } finally {
+            AUTENTICAR.registrar(inicio);
         }
-        throw new UsuarioInvalidoException("No se encontró un usuario válido con esas credenciales.");
+    }
+
+    /**
+     * Busca un usuario por email, sin distinguir mayúsculas.
+     * @param email Email del usuario.
+     * @return Usuario encontrado o {@code null} si no existe.
+     */
+    public Usuario buscarPorEmail(String email) {
+        return usuarios.buscar(email);
+    }
+
+    /**
+     * Registra un usuario nuevo.
+     * @param usuario Usuario a registrar.
+     * @return {@code true} si se registró, {@code false} si el email ya estaba en uso.
+     */
+    public boolean registrar(Usuario usuario) {
+        return usuarios.agregar(usuario);
+    }
+
+    /**
+     * Elimina un usuario por email, sin distinguir mayúsculas.
+     * @param email Email del usuario a eliminar.
+     * @return Usuario eliminado o {@code null} si no existía.
+     */
+    public Usuario eliminarPorEmail(String email) {
+        return usuarios.eliminar(email);
+    }
+
+    /** @return Usuarios registrados en orden de registro. */
+    public Collection<Usuario> listarUsuarios() {
+        return usuarios.listar();
     }
 
     /**
@@ -5,7 +5,43 @@ package Exception;
  * @author andres
  */
 public class ProductoNoEncontradoException extends Exception {
+    private final String idProducto;
+
     public ProductoNoEncontradoException(String mensaje) {
         super(mensaje);
+        this.idProducto = null;
+    }
+
+    /**
+     * Constructor ligero para búsquedas fallidas por ID: no captura la traza
+     * y el mensaje se arma solo si alguien lo pide.
+     * @param idProducto ID buscado.
+     * @param ligera Marca para distinguir este constructor.
+     */
+    private ProductoNoEncontradoException(String idProducto, boolean ligera) {
+        super(null, null, false, false);
+        this.idProducto = idProducto;
+    }
+
+    /**
+     * Crea la excepción para un ID de producto que no existe.
+     * @param idProducto ID buscado.
+     * @return Excepción sin traza con mensaje diferido.
+     */
+    public static ProductoNoEncontradoException paraId(String idProducto) {
+        return new ProductoNoEncontradoException(idProducto, true);
+    }
+
+    /** @return ID del producto que no se encontró, o {@code null} si no aplica. */
+    public String getIdProducto() {
+        return idProducto;
+    }
+
+    @Override
+    public String getMessage() {
+        if (idProducto != null) {
+            return "Producto con ID '" + idProducto + "' no encontrado.";
+        }
+        return super.getMessage();
     }
 }
@@ -0,0 +1,22 @@
+package Exception;
+
+/**
+ * clase que crea el mensaje para la excepcion personalizada StockInsuficienteException.
+ * Se lanza cuando no quedan unidades de un producto para completar una operación.
+ * @author andres
+ */
+public class StockInsuficienteException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String idProducto;
+
+    public StockInsuficienteException(String idProducto) {
+        super("No hay stock suficiente del producto '" + idProducto + "'.");
+        this.idProducto = idProducto;
+    }
+
+    /** @return ID del producto sin stock. */
+    public String getIdProducto() {
+        return idProducto;
+    }
+}
\ No newline at end of file
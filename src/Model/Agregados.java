@@ -0,0 +1,476 @@
+package Model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Contadores de ventas que se mantienen al día con cada pedido, envío y baja, para que
+ * consultas como "pedidos pendientes del producto X" o "unidades enviadas hoy" respondan
+ * al instante sin volver a leer los archivos de datos.
+ *
+ * <p>Hay un juego de contadores por archivo. Para un archivo de pedidos: pendientes por
+ * producto y pedidos por día. Para uno de envíos: unidades por producto, por día y por
+ * proveedor. Se guardan cada {@value #CAMBIOS_POR_PUNTO} cambios (y al cerrar) en
+ * {@code <archivo>.agregados}, junto con el tamaño que tenían el archivo de datos y el de bajas
+ * y una huella (CRC32) de los últimos {@value #BYTES_HUELLA} bytes cubiertos de cada uno.
+ * Al cargarlos se leen solo las filas agregadas después de ese punto; si el archivo no
+ * existe o ya no corresponde a los datos (más corto, o reescrito y con otra huella), los
+ * contadores se reconstruyen con todo el historial.
+ * Como la compactación de pedidos borra las filas ya enviadas, al reconstruir los contadores
+ * de pedidos los pedidos por día se cuentan sobre el historial por períodos
+ * ({@link SegmentosHistorial}), que conserva todos los registrados; el archivo solo aporta
+ * los pendientes.</p>
+ *
+ * <p>Los contadores se actualizan en el mismo bloque en que la línea se encola en el
+ * {@link Anexador}, y el punto de control vacía el anexador antes de medir los archivos: así
+ * lo guardado coincide siempre con las filas que cubre. Para pedidos, el orden de bloqueo
+ * es primero el {@link IndicePedidos}, después el historial por períodos (solo al cargar)
+ * y al final los contadores.</p>
+ * @author andres
+ */
+class Agregados {
+    static final String EXTENSION = ".agregados";
+    static final int CAMBIOS_POR_PUNTO = 1000;
+    static final int BYTES_HUELLA = 4096;
+    private static final String CABECERA = "#agregados,2,";
+
+    private static final Map<String, Agregados> agregados = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Agregados::guardarTodos, "cierre-agregados"));
+    }
+
+    private final boolean pedidos;
+    private final String rutaDatos;
+    private final Path rutaPunto;
+    private final Path rutaBajas;
+
+    private boolean cargado;
+    private final Map<String, long[]> porProducto = new HashMap<>();
+    private final Map<LocalDate, long[]> porDia = new HashMap<>();
+    private final Map<String, long[]> porProveedor = new HashMap<>();
+    private long total;
+    private int cambiosSinGuardar;
+    private CompletableFuture<Void> guardadoEnCurso;
+
+    private Agregados(String rutaDatos, boolean pedidos) {
+        this.pedidos = pedidos;
+        this.rutaDatos = rutaDatos;
+        this.rutaPunto = Paths.get(rutaDatos + EXTENSION);
+        this.rutaBajas = Paths.get(rutaDatos + IndicePedidos.EXTENSION_BAJAS);
+    }
+
+    /**
+     * Obtiene los contadores de un archivo de pedidos.
+     * @param rutaPedidos Ruta del archivo de pedidos.
+     * @return Contadores compartidos para esa ruta.
+     */
+    static Agregados dePedidos(String rutaPedidos) {
+        return agregados.computeIfAbsent("P" + Paths.get(rutaPedidos).toAbsolutePath().normalize(),
+                k -> new Agregados(rutaPedidos, true));
+    }
+
+    /**
+     * Obtiene los contadores de un archivo de envíos.
+     * @param rutaEnvios Ruta del archivo de envíos.
+     * @return Contadores compartidos para esa ruta.
+     */
+    static Agregados deEnvios(String rutaEnvios) {
+        return agregados.computeIfAbsent("E" + Paths.get(rutaEnvios).toAbsolutePath().normalize(),
+                k -> new Agregados(rutaEnvios, false));
+    }
+
+    /**
+     * Guarda el punto de control de todos los contadores cargados.
+     */
+    static void guardarTodos() {
+        for (Agregados a : agregados.values()) {
+            try {
+                a.guardar();
+            } catch (IOException e) {
+                // Al cerrar no hay a quién informar: la próxima carga reconstruye desde los archivos.
+            }
+        }
+    }
+
+    // === CAMBIOS ===
+
+    /**
+     * Cuenta un pedido nuevo y encola su línea, en un mismo paso.
+     * @param pedido Pedido a guardar.
+     * @param linea Línea que se agrega al archivo de pedidos.
+     * @param copia Segmento del historial donde también va la línea, o {@code null}.
+     * @param posicion Futuro que recibe el byte donde quedó la línea, o {@code null}.
+     * @return Futuro de la escritura.
+     */
+    CompletableFuture<Void> anexarPedido(Pedido pedido, String linea, Path copia, CompletableFuture<Long> posicion) {
+        return anexar(pedido.getIdProducto(), null, pedido.getMarcaTiempo(), 1, linea, copia, posicion);
+    }
+
+    /**
+     * Cuenta un envío nuevo y encola su línea, en un mismo paso.
+     * @param envio Envío a guardar.
+     * @param linea Línea que se agrega al archivo de envíos.
+     * @param copia Segmento del historial donde también va la línea, o {@code null}.
+     * @return Futuro de la escritura.
+     */
+    CompletableFuture<Void> anexarEnvio(Envio envio, String linea, Path copia) {
+        return anexar(envio.getIdProducto(), envio.getEmailProveedor(), envio.getMarcaTiempo(), envio.getCantidad(),
+                linea, copia, null);
+    }
+
+    private CompletableFuture<Void> anexar(String idProducto, String proveedor, long fecha, int cantidad,
+            String linea, Path copia, CompletableFuture<Long> posicion) {
+        CompletableFuture<Void> escritura;
+        synchronized (this) {
+            escritura = Anexador.de(rutaDatos).anexar(linea, copia, posicion);
+            if (!cargado) {
+                // Sin contadores en memoria: la próxima carga leerá esta fila del archivo.
+                return escritura;
+            }
+            sumar(idProducto, proveedor, fecha, cantidad);
+            anotarCambio();
+        }
+        // Si la línea no se llegó a escribir, deshacer la cuenta.
+        escritura.whenComplete((v, error) -> {
+            if (error != null) {
+                synchronized (this) {
+                    if (cargado) sumar(idProducto, proveedor, fecha, -cantidad);
+                }
+            }
+        });
+        return escritura;
+    }
+
+    /**
+     * Descuenta un pedido pendiente dado de baja. Se llama con el índice de pedidos bloqueado.
+     * @param pedido Pedido dado de baja.
+     */
+    synchronized void registrarBaja(Pedido pedido) {
+        if (cargado) {
+            sumar(porProducto, pedido.getIdProducto(), -1);
+            total--;
+            anotarCambio();
+        }
+    }
+
+    /**
+     * Descarta los contadores porque el archivo cambió por completo; se reconstruyen al usarlos.
+     * @throws IOException Si no se puede borrar el punto de control.
+     */
+    synchronized void invalidar() throws IOException {
+        Files.deleteIfExists(rutaPunto);
+        cargado = false;
+    }
+
+    /**
+     * Borra el punto de control guardado pero conserva los contadores en memoria. Se llama antes
+     * de reescribir el archivo de datos, para que una caída a mitad de camino no deje un punto
+     * de control con posiciones del archivo anterior.
+     * @throws IOException Si no se puede borrar el punto de control.
+     */
+    synchronized void descartarPunto() throws IOException {
+        Files.deleteIfExists(rutaPunto);
+    }
+
+    private void sumar(String idProducto, String proveedor, long fecha, long cantidad) {
+        if (pedidos) {
+            // En pedidos, por producto se cuentan los pendientes y por día todos los registrados.
+            sumar(porProducto, idProducto, cantidad);
+            sumar(porDia, LocalDate.ofEpochDay(MarcaTiempo.dia(fecha)), cantidad);
+        } else {
+            sumar(porProducto, idProducto, cantidad);
+            sumar(porDia, LocalDate.ofEpochDay(MarcaTiempo.dia(fecha)), cantidad);
+            sumar(porProveedor, proveedor, cantidad);
+        }
+        total += cantidad;
+    }
+
+    private static <K> void sumar(Map<K, long[]> mapa, K clave, long cantidad) {
+        long[] v = mapa.get(clave);
+        if (v == null) {
+            mapa.put(clave, new long[] {cantidad});
+        } else {
+            v[0] += cantidad;
+        }
+    }
+
+    private void anotarCambio() {
+        if (++cambiosSinGuardar >= CAMBIOS_POR_PUNTO) {
+            guardarEnSegundoPlano();
+        }
+    }
+
+    // === CONSULTAS ===
+
+    /**
+     * En pedidos, pendientes del producto; en envíos, unidades enviadas del producto.
+     * @param idProducto ID del producto.
+     * @return Valor del contador.
+     * @throws IOException Si no se pueden cargar los contadores.
+     */
+    long porProducto(String idProducto) throws IOException {
+        asegurarCargado();
+        synchronized (this) {
+            return valor(porProducto, idProducto);
+        }
+    }
+
+    /**
+     * En pedidos, pedidos registrados ese día; en envíos, unidades enviadas ese día.
+     * @param dia Día.
+     * @return Valor del contador.
+     * @throws IOException Si no se pueden cargar los contadores.
+     */
+    long porDia(LocalDate dia) throws IOException {
+        asegurarCargado();
+        synchronized (this) {
+            return valor(porDia, dia);
+        }
+    }
+
+    /**
+     * Unidades enviadas por un proveedor (solo en envíos).
+     * @param emailProveedor Email del proveedor.
+     * @return Valor del contador.
+     * @throws IOException Si no se pueden cargar los contadores.
+     */
+    long porProveedor(String emailProveedor) throws IOException {
+        asegurarCargado();
+        synchronized (this) {
+            return valor(porProveedor, emailProveedor);
+        }
+    }
+
+    /**
+     * En pedidos, pendientes en total; en envíos, unidades enviadas en total.
+     * @return Valor del contador.
+     * @throws IOException Si no se pueden cargar los contadores.
+     */
+    long total() throws IOException {
+        asegurarCargado();
+        synchronized (this) {
+            return total;
+        }
+    }
+
+    private static <K> long valor(Map<K, long[]> mapa, K clave) {
+        long[] v = mapa.get(clave);
+        return v == null ? 0 : v[0];
+    }
+
+    // === PUNTO DE CONTROL ===
+
+    /**
+     * Escribe el punto de control con los contadores y el tamaño de los archivos que cubren.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    void guardar() throws IOException {
+        Object indice = pedidos ? IndicePedidos.de(rutaDatos) : this;
+        synchronized (indice) {
+            synchronized (this) {
+                if (!cargado) {
+                    return;
+                }
+                vaciarAnexadores();
+                Path datos = Paths.get(rutaDatos);
+                long cubiertoDatos = tamaño(datos);
+                long cubiertoBajas = pedidos ? tamaño(rutaBajas) : 0;
+                Path temporal = Paths.get(rutaPunto + ".tmp");
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(temporal.toFile()))) {
+                    writer.write(CABECERA + cubiertoDatos + "," + cubiertoBajas + "," + total + ","
+                            + huella(datos, cubiertoDatos) + "," + huella(rutaBajas, cubiertoBajas));
+                    writer.newLine();
+                    escribir(writer, "P", porProducto);
+                    escribir(writer, "D", porDia);
+                    escribir(writer, "V", porProveedor);
+                }
+                Files.move(temporal, rutaPunto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                cambiosSinGuardar = 0;
+            }
+        }
+    }
+
+    private synchronized void guardarEnSegundoPlano() {
+        if (guardadoEnCurso == null) {
+            guardadoEnCurso = TareasFondo.ejecutar(this::guardar, () -> {
+                synchronized (Agregados.this) {
+                    guardadoEnCurso = null;
+                }
+            });
+        }
+    }
+
+    private static <K> void escribir(BufferedWriter writer, String tipo, Map<K, long[]> mapa) throws IOException {
+        for (Map.Entry<K, long[]> e : mapa.entrySet()) {
+            if (e.getValue()[0] == 0) continue;
+            writer.write(tipo + "," + GestorCSV.campo(e.getKey().toString()) + "," + e.getValue()[0]);
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Carga los contadores si hace falta: desde el punto de control más las filas posteriores,
+     * o desde todo el historial si no hay un punto de control válido.
+     * @throws IOException Si ocurre un error al leer.
+     */
+    void asegurarCargado() throws IOException {
+        synchronized (this) {
+            if (cargado) {
+                return;
+            }
+        }
+        Object indice = pedidos ? IndicePedidos.de(rutaDatos) : this;
+        // Con el historial bloqueado no se registran pedidos mientras se cuentan sus segmentos.
+        Object historial = pedidos ? SegmentosHistorial.dePedidos(rutaDatos) : this;
+        synchronized (indice) {
+            synchronized (historial) {
+                synchronized (this) {
+                    if (!cargado) {
+                        cargar();
+                    }
+                }
+            }
+        }
+    }
+
+    private void cargar() throws IOException {
+        // Lo encolado antes tiene que estar en el archivo para contarlo al leer.
+        vaciarAnexadores();
+        porProducto.clear();
+        porDia.clear();
+        porProveedor.clear();
+        total = 0;
+        long[] cubierto = leerPunto();
+        Path datos = Paths.get(rutaDatos);
+        boolean desdeCero = cubierto == null || cubierto[0] > tamaño(datos) || cubierto[1] > tamaño(rutaBajas)
+                || huella(datos, cubierto[0]) != cubierto[2] || huella(rutaBajas, cubierto[1]) != cubierto[3];
+        if (desdeCero) {
+            porProducto.clear();
+            porDia.clear();
+            porProveedor.clear();
+            total = 0;
+            cubierto = new long[] {0, 0};
+        }
+        Map<Long, Pedido> bajas = pedidos && desdeCero ? IndicePedidos.de(rutaDatos).bajas() : Collections.emptyMap();
+        if (pedidos && desdeCero) {
+            // El archivo ya no tiene los pedidos enviados que se compactaron; el historial sí.
+            try (Stream<Long> fechas = SegmentosHistorial.dePedidos(rutaDatos)
+                    .leer(Long.MIN_VALUE, Long.MAX_VALUE, l -> l.marcaTiempo(2))) {
+                fechas.forEach(fecha -> sumar(porDia, LocalDate.ofEpochDay(MarcaTiempo.dia(fecha)), 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        if (Files.exists(datos)) {
+            try (LectorCSV lector = new LectorCSV(rutaDatos, cubierto[0])) {
+                while (lector.siguienteFila() && lector.filaTerminada()) {
+                    if (pedidos) {
+                        Pedido p = GestorCSV.leerPedido(lector);
+                        if (p == null) continue;
+                        if (!desdeCero) {
+                            sumar(porDia, LocalDate.ofEpochDay(MarcaTiempo.dia(p.getMarcaTiempo())), 1);
+                        }
+                        if (!IndicePedidos.esBaja(bajas, p)) {
+                            sumar(porProducto, p.getIdProducto(), 1);
+                            total++;
+                        }
+                    } else if (lector.numeroCampos() >= 4) {
+                        Envio e = GestorCSV.leerEnvio(lector);
+                        sumar(e.getIdProducto(), e.getEmailProveedor(), e.getMarcaTiempo(), e.getCantidad());
+                    }
+                }
+            }
+        }
+        // Bajas agregadas después del punto de control (al reconstruir ya se aplicaron arriba).
+        if (pedidos && !desdeCero && Files.exists(rutaBajas)) {
+            try (LectorCSV lector = new LectorCSV(rutaBajas.toString(), cubierto[1])) {
+                while (lector.siguienteFila() && lector.filaTerminada()) {
+                    if (lector.numeroCampos() < 4) continue;
+                    sumar(porProducto, lector.texto(2), -1);
+                    total--;
+                }
+            }
+        }
+        cargado = true;
+        cambiosSinGuardar = 0;
+    }
+
+    // Devuelve {bytes de datos, bytes de bajas, huella de datos, huella de bajas} cubiertos,
+    // o null si no hay punto de control válido.
+    private long[] leerPunto() throws IOException {
+        if (!Files.exists(rutaPunto)) {
+            return null;
+        }
+        try (LectorCSV lector = new LectorCSV(rutaPunto.toString())) {
+            if (!lector.siguienteFila() || !lector.campoEs(0, "#agregados") || lector.numeroCampos() < 7
+                    || lector.entero(1) != 2) {
+                return null;
+            }
+            long[] cubierto = {lector.largo(2), lector.largo(3), lector.largo(5), lector.largo(6)};
+            total = lector.largo(4);
+            while (lector.siguienteFila()) {
+                if (lector.numeroCampos() < 3) continue;
+                String clave = lector.texto(1);
+                long valor = lector.largo(2);
+                if (lector.campoEs(0, "P")) {
+                    porProducto.put(clave, new long[] {valor});
+                } else if (lector.campoEs(0, "D")) {
+                    porDia.put(LocalDate.parse(clave), new long[] {valor});
+                } else if (lector.campoEs(0, "V")) {
+                    porProveedor.put(clave, new long[] {valor});
+                }
+            }
+            return cubierto;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Las filas y lápidas encoladas tienen que estar en los archivos antes de medirlos o leerlos.
+    private void vaciarAnexadores() throws IOException {
+        Anexador.de(rutaDatos).vaciar();
+        if (pedidos) {
+            Anexador.de(rutaBajas.toString()).vaciar();
+        }
+    }
+
+    static long tamaño(Path ruta) throws IOException {
+        return Files.exists(ruta) ? Files.size(ruta) : 0;
+    }
+
+    /**
+     * CRC32 de los últimos {@value #BYTES_HUELLA} bytes antes de {@code hasta}: si el archivo se
+     * reescribió y volvió a crecer, el tamaño puede alcanzar, pero la huella ya no coincide.
+     * Devuelve -1 si el archivo es más corto que {@code hasta}.
+     */
+    static long huella(Path ruta, long hasta) throws IOException {
+        if (hasta <= 0) {
+            return 0;
+        }
+        if (tamaño(ruta) < hasta) {
+            return -1;
+        }
+        long desde = Math.max(0, hasta - BYTES_HUELLA);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (hasta - desde));
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (canal.read(buffer, desde + buffer.position()) < 0) {
+                    return -1;
+                }
+            }
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,308 @@
+package Model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Almacén columnar de productos: en lugar de un objeto por producto guarda cada atributo
+ * en su propia columna de tipos primitivos ({@code double} para el precio, {@code int}
+ * para la cantidad), opcionalmente fuera del heap. Los cálculos sobre todo el inventario
+ * (valor total, unidades, stock bajo) recorren arreglos contiguos en vez de saltar de
+ * objeto en objeto, y el compilador JIT puede vectorizar esos bucles.
+ *
+ * <p>Las filas se guardan en bloques de tamaño fijo que nunca se mueven, así agregar filas
+ * no interfiere con los cambios de stock atómicos que se hacen en paralelo. Cada fila tiene
+ * una vista {@link Producto} que lee y escribe directamente en las columnas, sin copiar
+ * datos; el catálogo trabaja con esas vistas como con cualquier otro producto.</p>
+ *
+ * <p>Las filas eliminadas no se reutilizan: quedan marcadas y no cuentan en los cálculos,
+ * y una vista vieja que alguien conserve sigue mostrando sus últimos valores.</p>
+ * @author andres
+ */
+public final class AlmacenColumnar {
+    private static final int BITS_BLOQUE = 14;
+    private static final int FILAS_POR_BLOQUE = 1 << BITS_BLOQUE;
+
+    private static final VarHandle CANTIDAD_HEAP = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle CANTIDAD_DIRECTA = MethodHandles.byteBufferViewVarHandle(int[].class,
+            ByteOrder.nativeOrder());
+
+    /** Filas consecutivas del almacén, con las columnas de precio y cantidad. */
+    abstract static class Bloque {
+        final String[] ids = new String[FILAS_POR_BLOQUE];
+        final String[] nombres = new String[FILAS_POR_BLOQUE];
+        final Producto[] vistas = new Producto[FILAS_POR_BLOQUE];
+        // 1 si la fila está viva, 0 si fue eliminada; multiplica en los cálculos para no tener saltos.
+        final int[] vivas = new int[FILAS_POR_BLOQUE];
+
+        abstract double precio(int fila);
+
+        abstract void setPrecio(int fila, double precio);
+
+        abstract int cantidad(int fila);
+
+        abstract void setCantidad(int fila, int cantidad);
+
+        abstract int compararEIntercambiar(int fila, int esperada, int nueva);
+
+        abstract int obtenerYSumar(int fila, int delta);
+
+        abstract int obtenerYAsignar(int fila, int cantidad);
+
+        abstract double valor(int filas);
+
+        abstract long unidades(int filas);
+
+        abstract int cantidadPlana(int fila);
+    }
+
+    /** Columnas en arreglos del heap. */
+    private static final class BloqueHeap extends Bloque {
+        private final double[] precios = new double[FILAS_POR_BLOQUE];
+        private final int[] cantidades = new int[FILAS_POR_BLOQUE];
+
+        @Override double precio(int fila) { return precios[fila]; }
+
+        @Override void setPrecio(int fila, double precio) { precios[fila] = precio; }
+
+        @Override int cantidad(int fila) { return (int) CANTIDAD_HEAP.getVolatile(cantidades, fila); }
+
+        @Override void setCantidad(int fila, int cantidad) { CANTIDAD_HEAP.setVolatile(cantidades, fila, cantidad); }
+
+        @Override
+        int compararEIntercambiar(int fila, int esperada, int nueva) {
+            return (int) CANTIDAD_HEAP.compareAndExchange(cantidades, fila, esperada, nueva);
+        }
+
+        @Override int obtenerYSumar(int fila, int delta) { return (int) CANTIDAD_HEAP.getAndAdd(cantidades, fila, delta); }
+
+        @Override int obtenerYAsignar(int fila, int cantidad) { return (int) CANTIDAD_HEAP.getAndSet(cantidades, fila, cantidad); }
+
+        @Override int cantidadPlana(int fila) { return cantidades[fila]; }
+
+        @Override
+        double valor(int filas) {
+            // Cuatro acumuladores independientes: la suma no espera al resultado anterior.
+            double a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+            int i = 0;
+            for (; i + 3 < filas; i += 4) {
+                a0 += precios[i] * (cantidades[i] * vivas[i]);
+                a1 += precios[i + 1] * (cantidades[i + 1] * vivas[i + 1]);
+                a2 += precios[i + 2] * (cantidades[i + 2] * vivas[i + 2]);
+                a3 += precios[i + 3] * (cantidades[i + 3] * vivas[i + 3]);
+            }
+            for (; i < filas; i++) {
+                a0 += precios[i] * (cantidades[i] * vivas[i]);
+            }
+            return (a0 + a1) + (a2 + a3);
+        }
+
+        @Override
+        long unidades(int filas) {
+            long total = 0;
+            for (int i = 0; i < filas; i++) {
+                total += cantidades[i] * vivas[i];
+            }
+            return total;
+        }
+    }
+
+    /** Columnas en memoria directa, fuera del heap; no las recorre el recolector de basura. */
+    private static final class BloqueDirecto extends Bloque {
+        private final ByteBuffer bytesCantidades = ByteBuffer.allocateDirect(FILAS_POR_BLOQUE * Integer.BYTES)
+                .order(ByteOrder.nativeOrder());
+        private final DoubleBuffer precios = ByteBuffer.allocateDirect(FILAS_POR_BLOQUE * Double.BYTES)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        private final IntBuffer cantidades = bytesCantidades.asIntBuffer();
+
+        @Override double precio(int fila) { return precios.get(fila); }
+
+        @Override void setPrecio(int fila, double precio) { precios.put(fila, precio); }
+
+        @Override int cantidad(int fila) { return (int) CANTIDAD_DIRECTA.getVolatile(bytesCantidades, fila << 2); }
+
+        @Override void setCantidad(int fila, int cantidad) { CANTIDAD_DIRECTA.setVolatile(bytesCantidades, fila << 2, cantidad); }
+
+        @Override
+        int compararEIntercambiar(int fila, int esperada, int nueva) {
+            return (int) CANTIDAD_DIRECTA.compareAndExchange(bytesCantidades, fila << 2, esperada, nueva);
+        }
+
+        @Override int obtenerYSumar(int fila, int delta) { return (int) CANTIDAD_DIRECTA.getAndAdd(bytesCantidades, fila << 2, delta); }
+
+        @Override int obtenerYAsignar(int fila, int cantidad) { return (int) CANTIDAD_DIRECTA.getAndSet(bytesCantidades, fila << 2, cantidad); }
+
+        @Override int cantidadPlana(int fila) { return cantidades.get(fila); }
+
+        @Override
+        double valor(int filas) {
+            double a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+            int i = 0;
+            for (; i + 3 < filas; i += 4) {
+                a0 += precios.get(i) * (cantidades.get(i) * vivas[i]);
+                a1 += precios.get(i + 1) * (cantidades.get(i + 1) * vivas[i + 1]);
+                a2 += precios.get(i + 2) * (cantidades.get(i + 2) * vivas[i + 2]);
+                a3 += precios.get(i + 3) * (cantidades.get(i + 3) * vivas[i + 3]);
+            }
+            for (; i < filas; i++) {
+                a0 += precios.get(i) * (cantidades.get(i) * vivas[i]);
+            }
+            return (a0 + a1) + (a2 + a3);
+        }
+
+        @Override
+        long unidades(int filas) {
+            long total = 0;
+            for (int i = 0; i < filas; i++) {
+                total += cantidades.get(i) * vivas[i];
+            }
+            return total;
+        }
+    }
+
+    private final boolean fueraDeHeap;
+    private volatile Bloque[] bloques = new Bloque[0];
+    private volatile int filas;
+    private volatile int vivas;
+
+    private AlmacenColumnar(boolean fueraDeHeap) {
+        this.fueraDeHeap = fueraDeHeap;
+    }
+
+    /** @return Almacén vacío con las columnas en el heap. */
+    public static AlmacenColumnar enHeap() {
+        return new AlmacenColumnar(false);
+    }
+
+    /** @return Almacén vacío con las columnas de precio y cantidad en memoria directa. */
+    public static AlmacenColumnar fueraDeHeap() {
+        return new AlmacenColumnar(true);
+    }
+
+    /**
+     * Crea el almacén indicado por la propiedad de sistema {@code shopplus.columnas}:
+     * {@code heap}, {@code directo} o, si no está definida, ninguno.
+     * @return Almacén vacío, o {@code null} si el catálogo debe usar objetos comunes.
+     */
+    public static AlmacenColumnar desdePropiedades() {
+        String valor = System.getProperty("shopplus.columnas", "");
+        switch (valor.toLowerCase(Locale.ROOT)) {
+            case "":
+            case "no":
+                return null;
+            case "heap":
+                return enHeap();
+            case "directo":
+                return fueraDeHeap();
+            default:
+                throw new IllegalArgumentException("Valor inválido para shopplus.columnas: " + valor);
+        }
+    }
+
+    /**
+     * Copia los datos de un producto en una fila nueva.
+     * @param producto Producto a copiar.
+     * @return Vista de la fila nueva.
+     */
+    synchronized Producto agregar(Producto producto) {
+        int fila = filas;
+        int indice = fila & (FILAS_POR_BLOQUE - 1);
+        if (indice == 0) {
+            Bloque[] actuales = bloques;
+            Bloque[] nuevos = Arrays.copyOf(actuales, actuales.length + 1);
+            nuevos[actuales.length] = fueraDeHeap ? new BloqueDirecto() : new BloqueHeap();
+            bloques = nuevos;
+        }
+        Bloque bloque = bloques[fila >>> BITS_BLOQUE];
+        bloque.ids[indice] = producto.getId();
+        bloque.nombres[indice] = producto.getNombre();
+        bloque.setPrecio(indice, producto.getPrecio());
+        bloque.setCantidad(indice, producto.getCantidad());
+        bloque.vivas[indice] = 1;
+        Producto vista = new ProductoColumnar(bloque, indice);
+        bloque.vistas[indice] = vista;
+        vivas++;
+        // La escritura volátil publica la fila completa a quienes recorren el almacén.
+        filas = fila + 1;
+        return vista;
+    }
+
+    /**
+     * Marca como eliminada la fila de una vista de este almacén.
+     * @param producto Vista devuelta por {@link #agregar(Producto)}.
+     */
+    synchronized void quitar(Producto producto) {
+        if (producto instanceof ProductoColumnar) {
+            ProductoColumnar vista = (ProductoColumnar) producto;
+            if (vista.bloque.vistas[vista.fila] == vista && vista.bloque.vivas[vista.fila] == 1) {
+                vista.bloque.vivas[vista.fila] = 0;
+                vivas--;
+            }
+        }
+    }
+
+    /** @return Cantidad de productos vivos en el almacén. */
+    public int tamaño() {
+        return vivas;
+    }
+
+    /** @return {@code true} si las columnas numéricas están fuera del heap. */
+    public boolean esFueraDeHeap() {
+        return fueraDeHeap;
+    }
+
+    /**
+     * Valor del inventario: suma de precio por cantidad de todos los productos.
+     * Si hay cambios de stock en curso, el resultado puede no reflejar los más recientes.
+     * @return Valor total del stock.
+     */
+    public double valorTotal() {
+        int total = filas;
+        Bloque[] b = bloques;
+        double valor = 0;
+        for (int i = 0; i * FILAS_POR_BLOQUE < total; i++) {
+            valor += b[i].valor(Math.min(FILAS_POR_BLOQUE, total - i * FILAS_POR_BLOQUE));
+        }
+        return valor;
+    }
+
+    /** @return Unidades en stock sumando todos los productos. */
+    public long unidadesTotales() {
+        int total = filas;
+        Bloque[] b = bloques;
+        long unidades = 0;
+        for (int i = 0; i * FILAS_POR_BLOQUE < total; i++) {
+            unidades += b[i].unidades(Math.min(FILAS_POR_BLOQUE, total - i * FILAS_POR_BLOQUE));
+        }
+        return unidades;
+    }
+
+    /**
+     * Recorre la columna de cantidades y devuelve los productos con stock menor o igual al umbral.
+     * @param umbral Stock máximo a incluir.
+     * @return Vistas de los productos, en orden de alta.
+     */
+    public List<Producto> stockBajo(int umbral) {
+        int total = filas;
+        Bloque[] b = bloques;
+        List<Producto> resultado = new ArrayList<>();
+        for (int i = 0; i * FILAS_POR_BLOQUE < total; i++) {
+            Bloque bloque = b[i];
+            int n = Math.min(FILAS_POR_BLOQUE, total - i * FILAS_POR_BLOQUE);
+            for (int fila = 0; fila < n; fila++) {
+                if (bloque.cantidadPlana(fila) <= umbral && bloque.vivas[fila] == 1) {
+                    resultado.add(bloque.vistas[fila]);
+                }
+            }
+        }
+        return resultado;
+    }
+}
\ No newline at end of file
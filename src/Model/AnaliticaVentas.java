@@ -0,0 +1,323 @@
+package Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Reportes de ventas calculados en paralelo sobre los archivos de pedidos y envíos.
+ *
+ * <p>Cada archivo se divide en tramos de bytes que se procesan con un {@link ForkJoinPool}:
+ * una tarea parte su tramo a la mitad hasta que es lo bastante chico y lo recorre con su
+ * propio {@link LectorCSV}, acumulando en mapas locales, sin nada compartido entre hilos.
+ * Los resultados parciales se combinan al unir las tareas. Un tramo empieza en la primera
+ * fila que comienza dentro de él y termina con la fila que cruza su final, así cada fila
+ * se cuenta una sola vez. Se asume que los campos no contienen saltos de línea, lo que
+ * vale para los emails, IDs y fechas que se guardan en estos archivos.</p>
+ *
+ * <p>Cada pedido es una unidad. Las unidades pedidas de un producto son sus pedidos
+ * pendientes más las unidades enviadas: al compactar el archivo de pedidos los que ya se
+ * enviaron desaparecen de él, pero siguen en el de envíos. Los pedidos por día y por hora
+ * se cuentan sobre el historial por períodos ({@link SegmentosHistorial}), que guarda todos
+ * los registrados, así no cambian al enviar ni al compactar. Los ingresos se calculan con
+ * el precio actual del catálogo.</p>
+ * @author andres
+ */
+public final class AnaliticaVentas {
+    private static final Metricas.Operacion CALCULAR = Metricas.operacion("AnaliticaVentas.calcular");
+    private static final long TRAMO_MINIMO = 8L << 20;
+
+    private AnaliticaVentas() {
+    }
+
+    /**
+     * Calcula el reporte con el pool común de fork-join.
+     * @param rutaPedidos Archivo de pedidos.
+     * @param rutaEnvios Archivo de envíos.
+     * @param catalogo Catálogo del que se toman nombres y precios.
+     * @return Reporte de ventas.
+     * @throws IOException Si no se puede leer algún archivo.
+     */
+    public static ReporteVentas calcular(String rutaPedidos, String rutaEnvios, CatalogoProductos catalogo) throws IOException {
+        return calcular(rutaPedidos, rutaEnvios, catalogo, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calcula el reporte con un pool dado, por ejemplo para limitar los hilos usados.
+     * @param rutaPedidos Archivo de pedidos (si no existe, no hay pedidos).
+     * @param rutaEnvios Archivo de envíos (si no existe, no hay envíos).
+     * @param catalogo Catálogo del que se toman nombres y precios.
+     * @param pool Pool donde corren las tareas.
+     * @return Reporte de ventas.
+     * @throws IOException Si no se puede leer algún archivo.
+     */
+    public static ReporteVentas calcular(String rutaPedidos, String rutaEnvios, CatalogoProductos catalogo,
+            ForkJoinPool pool) throws IOException {
+        long inicio = CALCULAR.inicio();
+        long comienzo = System.nanoTime();
+        try {
+            Parcial total = new Parcial();
+            try {
+                if (Files.exists(Paths.get(rutaPedidos))) {
+                    Map<Long, Pedido> bajas = IndicePedidos.de(rutaPedidos).bajas();
+                    total.combinar(pool.invoke(new Tramo(rutaPedidos, Contenido.PENDIENTES, bajas, 0,
+                            Files.size(Paths.get(rutaPedidos)), tramoPara(rutaPedidos, pool))));
+                    // Un tramo por segmento (las cabeceras no son filas); los grandes se siguen partiendo.
+                    List<Tramo> historial = new ArrayList<>();
+                    for (Path segmento : SegmentosHistorial.dePedidos(rutaPedidos).rutas()) {
+                        String ruta = segmento.toString();
+                        historial.add(new Tramo(ruta, Contenido.HISTORIAL, null, SegmentosHistorial.LARGO_CABECERA,
+                                Files.size(segmento), tramoPara(ruta, pool)));
+                    }
+                    if (!historial.isEmpty()) {
+                        total.combinar(pool.invoke(new Union(historial)));
+                    }
+                }
+                if (Files.exists(Paths.get(rutaEnvios))) {
+                    total.combinar(pool.invoke(new Tramo(rutaEnvios, Contenido.ENVIOS, null, 0,
+                            Files.size(Paths.get(rutaEnvios)), tramoPara(rutaEnvios, pool))));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return armarReporte(total, catalogo, (System.nanoTime() - comienzo) / 1_000_000);
+        } finally {
+            CALCULAR.registrar(inicio);
+        }
+    }
+
+    /**
+     * Calcula el reporte sobre pedidos y envíos que ya están en memoria (persistencia binaria o en memoria).
+     * @param registrados Todos los pedidos registrados, también los ya enviados.
+     * @param pendientes Pedidos todavía pendientes.
+     * @param envios Envíos registrados.
+     * @param catalogo Catálogo del que se toman nombres y precios.
+     * @return Reporte de ventas (sin bytes leídos).
+     */
+    static ReporteVentas calcular(Collection<Pedido> registrados, Collection<Pedido> pendientes,
+            Collection<Envio> envios, CatalogoProductos catalogo) {
+        long inicio = CALCULAR.inicio();
+        long comienzo = System.nanoTime();
+        try {
+            Parcial total = new Parcial();
+            for (Pedido p : registrados) {
+                Parcial.sumar(total.porDia, MarcaTiempo.dia(p.getMarcaTiempo()), 1);
+                total.porHora[MarcaTiempo.hora(p.getMarcaTiempo())]++;
+            }
+            for (Pedido p : pendientes) {
+                Parcial.sumar(total.pendientes, p.getIdProducto(), 1);
+            }
+            for (Envio e : envios) {
+                Parcial.sumar(total.enviadas, e.getIdProducto(), e.getCantidad());
+                Parcial.sumar(total.porProveedor, e.getEmailProveedor(), e.getCantidad());
+            }
+            return armarReporte(total, catalogo, (System.nanoTime() - comienzo) / 1_000_000);
+        } finally {
+            CALCULAR.registrar(inicio);
+        }
+    }
+
+    // Unos cuatro tramos por hilo, para repartir bien aunque algunos terminen antes.
+    private static long tramoPara(String ruta, ForkJoinPool pool) throws IOException {
+        return Math.max(TRAMO_MINIMO, Files.size(Paths.get(ruta)) / (4L * pool.getParallelism()) + 1);
+    }
+
+    private static ReporteVentas armarReporte(Parcial total, CatalogoProductos catalogo, long milisegundos) {
+        Set<String> ids = new HashSet<>(total.pendientes.keySet());
+        ids.addAll(total.enviadas.keySet());
+        List<ReporteVentas.PorProducto> productos = ids.parallelStream()
+                .map(id -> {
+                    Producto p = catalogo.buscar(id);
+                    long pendientes = valor(total.pendientes, id);
+                    long enviadas = valor(total.enviadas, id);
+                    return new ReporteVentas.PorProducto(id, p == null ? null : p.getNombre(), pendientes, enviadas,
+                            p == null ? 0 : enviadas * p.getPrecio());
+                })
+                .sorted(Comparator.comparingDouble(ReporteVentas.PorProducto::getIngresos).reversed()
+                        .thenComparing(ReporteVentas.PorProducto::getIdProducto))
+                .collect(Collectors.toList());
+
+        SortedMap<LocalDate, Long> porDia = new TreeMap<>();
+        for (Map.Entry<Long, long[]> e : total.porDia.entrySet()) {
+            porDia.put(LocalDate.ofEpochDay(e.getKey()), e.getValue()[0]);
+        }
+        Map<String, Long> porProveedor = total.porProveedor.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue()[0], (a, b) -> a, LinkedHashMap::new));
+        return new ReporteVentas(productos, porDia, total.porHora, porProveedor, total.bytes, milisegundos);
+    }
+
+    private static long valor(Map<String, long[]> mapa, String clave) {
+        long[] v = mapa.get(clave);
+        return v == null ? 0 : v[0];
+    }
+
+    /** Acumuladores de un tramo; los contadores son {@code long[1]} para sumar sin crear objetos. */
+    private static final class Parcial {
+        final Map<String, long[]> pendientes = new HashMap<>();
+        final Map<String, long[]> enviadas = new HashMap<>();
+        final Map<String, long[]> porProveedor = new HashMap<>();
+        final Map<Long, long[]> porDia = new HashMap<>();
+        final long[] porHora = new long[24];
+        long bytes;
+
+        void combinar(Parcial otro) {
+            sumar(pendientes, otro.pendientes);
+            sumar(enviadas, otro.enviadas);
+            sumar(porProveedor, otro.porProveedor);
+            sumar(porDia, otro.porDia);
+            for (int h = 0; h < 24; h++) {
+                porHora[h] += otro.porHora[h];
+            }
+            bytes += otro.bytes;
+        }
+
+        private static <K> void sumar(Map<K, long[]> destino, Map<K, long[]> origen) {
+            for (Map.Entry<K, long[]> e : origen.entrySet()) {
+                long[] v = destino.putIfAbsent(e.getKey(), e.getValue());
+                if (v != null) {
+                    v[0] += e.getValue()[0];
+                }
+            }
+        }
+
+        static <K> void sumar(Map<K, long[]> mapa, K clave, long cantidad) {
+            long[] v = mapa.get(clave);
+            if (v == null) {
+                mapa.put(clave, new long[] {cantidad});
+            } else {
+                v[0] += cantidad;
+            }
+        }
+    }
+
+    /** Qué se cuenta en las filas de un tramo. */
+    private enum Contenido {
+        /** Archivo de pedidos: pendientes por producto, sin los que tienen lápida. */
+        PENDIENTES,
+        /** Segmento del historial de pedidos: pedidos por día y por hora. */
+        HISTORIAL,
+        /** Archivo de envíos: unidades por producto y por proveedor. */
+        ENVIOS
+    }
+
+    /** Varios tramos que corren a la vez y suman sus resultados. */
+    private static final class Union extends RecursiveTask<Parcial> {
+        private static final long serialVersionUID = 1L;
+        private final List<Tramo> tramos;
+
+        Union(List<Tramo> tramos) {
+            this.tramos = tramos;
+        }
+
+        @Override
+        protected Parcial compute() {
+            Parcial resultado = new Parcial();
+            for (Tramo t : invokeAll(tramos)) {
+                resultado.combinar(t.join());
+            }
+            return resultado;
+        }
+    }
+
+    /** Tramo de bytes de un archivo [desde, hasta). */
+    private static final class Tramo extends RecursiveTask<Parcial> {
+        private static final long serialVersionUID = 1L;
+        private final String ruta;
+        private final Contenido contenido;
+        private final Map<Long, Pedido> bajas;
+        private final long desde;
+        private final long hasta;
+        private final long tamañoHoja;
+
+        Tramo(String ruta, Contenido contenido, Map<Long, Pedido> bajas, long desde, long hasta, long tamañoHoja) {
+            this.ruta = ruta;
+            this.contenido = contenido;
+            this.bajas = bajas;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.tamañoHoja = tamañoHoja;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (hasta - desde > tamañoHoja) {
+                long medio = desde + (hasta - desde) / 2;
+                Tramo derecha = new Tramo(ruta, contenido, bajas, medio, hasta, tamañoHoja);
+                derecha.fork();
+                Parcial resultado = new Tramo(ruta, contenido, bajas, desde, medio, tamañoHoja).compute();
+                resultado.combinar(derecha.join());
+                return resultado;
+            }
+            try {
+                return recorrer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Parcial recorrer() throws IOException {
+            Parcial parcial = new Parcial();
+            // Empezando un byte antes, la primera "fila" leída es el resto de la que cruza 'desde'
+            // (o solo su salto de línea): al descartarla quedamos al inicio de una fila propia.
+            try (LectorCSV lector = new LectorCSV(ruta, Math.max(0, desde - 1))) {
+                if (desde > 0 && !lector.siguienteFila()) {
+                    return parcial;
+                }
+                long comienzo = lector.posicionSiguiente();
+                while (lector.posicionSiguiente() < hasta && lector.siguienteFila()) {
+                    switch (contenido) {
+                        case PENDIENTES:
+                            contarPendiente(lector, parcial);
+                            break;
+                        case HISTORIAL:
+                            contarRegistrado(lector, parcial);
+                            break;
+                        default:
+                            contarEnvio(lector, parcial);
+                    }
+                }
+                parcial.bytes = lector.posicionSiguiente() - comienzo;
+            }
+            return parcial;
+        }
+
+        private void contarPendiente(LectorCSV lector, Parcial parcial) {
+            if (lector.numeroCampos() < 3) {
+                return;
+            }
+            if (!bajas.isEmpty() && bajas.containsKey(lector.posicionFila())
+                    && IndicePedidos.esBaja(bajas, GestorCSV.leerPedido(lector))) {
+                return;
+            }
+            Parcial.sumar(parcial.pendientes, lector.texto(1), 1);
+        }
+
+        private void contarRegistrado(LectorCSV lector, Parcial parcial) {
+            // La última fila del segmento abierto puede estar a medio escribir.
+            if (!lector.filaTerminada() || lector.numeroCampos() < 3) {
+                return;
+            }
+            // Cuenta aunque el pedido ya se haya enviado: sigue siendo un pedido de ese día.
+            long fecha = lector.marcaTiempo(2);
+            Parcial.sumar(parcial.porDia, MarcaTiempo.dia(fecha), 1);
+            parcial.porHora[MarcaTiempo.hora(fecha)]++;
+        }
+
+        private void contarEnvio(LectorCSV lector, Parcial parcial) {
+            if (lector.numeroCampos() < 4) {
+                return;
+            }
+            int cantidad = lector.entero(2);
+            Parcial.sumar(parcial.enviadas, lector.texto(1), cantidad);
+            Parcial.sumar(parcial.porProveedor, lector.texto(0), cantidad);
+        }
+    }
+}
\ No newline at end of file
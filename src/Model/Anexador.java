@@ -0,0 +1,486 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Servicio de escritura por lotes para archivos que solo crecen al final (pedidos, envíos y
+ * las lápidas de pedidos enviados).
+ * Las líneas se encolan y un único hilo por archivo las escribe juntas, con una sola
+ * llamada de escritura (y un solo fsync, si corresponde) por lote. El orden de llegada se
+ * conserva. Cada llamada recibe un futuro que se completa según la {@link Durabilidad}.
+ * Una línea puede llevar además un archivo de copia (el segmento del historial por períodos):
+ * el mismo hilo la escribe también ahí, en el mismo lote. Quien necesita saber en qué byte quedó
+ * la línea (los pedidos, que la usan como ID) lo pide con un futuro más.
+ *
+ * <p>Si escribir el lote falla, el archivo se recorta al largo que tenía antes, para no dejar una
+ * línea a medias, y los futuros del lote fallan. Un error al escribir una copia no afecta a esos
+ * futuros, porque las líneas ya están en el archivo principal: la copia se recorta igual, se avisa
+ * por la métrica {@code anexador.copiasFallidas} y las líneas se reintentan en el lote siguiente.
+ * Cualquier otro error (una excepción no comprobada, por ejemplo) hace fallar los futuros del
+ * lote con esa causa, se cuenta en {@code anexador.erroresInesperados} y el hilo sigue vivo, así
+ * que {@link #vaciar()} y el cierre no quedan esperando.</p>
+ * @author andres
+ */
+class Anexador {
+    private static final Map<String, Anexador> anexadores = new ConcurrentHashMap<>();
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("csv.bytesEscritos");
+    private static final Metricas.Contador LOTES = Metricas.contador("anexador.lotes");
+    private static final Metricas.Contador COPIAS_FALLIDAS = Metricas.contador("anexador.copiasFallidas");
+    private static final Metricas.Contador ERRORES_INESPERADOS = Metricas.contador("anexador.erroresInesperados");
+
+    private static volatile int tamañoLote = 256;
+    private static volatile long esperaMaximaNanos = 0;
+    private static volatile Durabilidad durabilidad = Durabilidad.VACIAR;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Anexador::cerrarTodos, "cierre-anexadores"));
+    }
+
+    /** Línea pendiente de escribir. */
+    private static final class Registro {
+        final String linea;
+        final Path copia;
+        final CompletableFuture<Void> futuro;
+        final CompletableFuture<Long> posicion;
+        final Durabilidad durabilidad;
+        // Bytes de la línea con su salto, calculados al codificar el lote.
+        int largo;
+
+        Registro(String linea, Path copia, CompletableFuture<Void> futuro, CompletableFuture<Long> posicion,
+                Durabilidad durabilidad) {
+            this.linea = linea;
+            this.copia = copia;
+            this.futuro = futuro;
+            this.posicion = posicion;
+            this.durabilidad = durabilidad;
+        }
+    }
+
+    private final String rutaArchivo;
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] finDeLinea = System.lineSeparator().getBytes(charset);
+
+    private final ReentrantLock cola = new ReentrantLock();
+    private final Condition hayRegistros = cola.newCondition();
+    private final Condition colaVacia = cola.newCondition();
+    private final ArrayDeque<Registro> pendientes = new ArrayDeque<>();
+    private boolean escribiendo;
+    private Thread escritor;
+
+    // Protege el canal: el hilo escritor lo toma durante cada lote y pausar() mientras reemplazan el archivo.
+    private final ReentrantLock archivo = new ReentrantLock();
+    private FileChannel canal;
+    private final Map<Path, FileChannel> copias = new HashMap<>();
+    // Líneas que no se pudieron escribir en su copia, en orden; van antes que las nuevas de esa copia.
+    private final Map<Path, List<Registro>> atrasadas = new LinkedHashMap<>();
+
+    private Anexador(String rutaArchivo) {
+        this.rutaArchivo = rutaArchivo;
+    }
+
+    /**
+     * Obtiene el anexador asociado a un archivo.
+     * @param rutaArchivo Ruta del archivo.
+     * @return Anexador compartido para esa ruta.
+     */
+    static Anexador de(String rutaArchivo) {
+        return anexadores.computeIfAbsent(Paths.get(rutaArchivo).toAbsolutePath().normalize().toString(),
+                k -> new Anexador(rutaArchivo));
+    }
+
+    /**
+     * Cambia la configuración de todos los anexadores. Aplica a los lotes siguientes.
+     * @param lote Cantidad máxima de líneas por lote.
+     * @param esperaMaximaMs Tiempo que se espera a que lleguen más líneas antes de escribir un lote incompleto.
+     * @param nivel Durabilidad con la que se confirman las escrituras.
+     */
+    static void configurar(int lote, long esperaMaximaMs, Durabilidad nivel) {
+        if (lote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo: " + lote);
+        }
+        tamañoLote = lote;
+        esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, esperaMaximaMs));
+        durabilidad = nivel;
+    }
+
+    /**
+     * Encola una línea para agregarla al final del archivo.
+     * @param linea Línea sin el salto de línea final.
+     * @return Futuro que se completa según la durabilidad configurada, o falla con la excepción de escritura.
+     */
+    CompletableFuture<Void> anexar(String linea) {
+        return anexar(linea, null);
+    }
+
+    /**
+     * Encola una línea para agregarla al final del archivo y al final de un archivo de copia.
+     * @param linea Línea sin el salto de línea final.
+     * @param copia Archivo donde también se agrega la línea, o {@code null} si no hay copia.
+     * @return Futuro que se completa cuando la línea está en el archivo principal, según la durabilidad
+     *         configurada. Si falla la copia, la línea se reintenta después sin afectar al futuro.
+     */
+    CompletableFuture<Void> anexar(String linea, Path copia) {
+        return anexar(linea, copia, null);
+    }
+
+    /**
+     * Igual que {@link #anexar(String, Path)}, y además informa en qué byte del archivo quedó la línea.
+     * @param linea Línea sin el salto de línea final.
+     * @param copia Archivo donde también se agrega la línea, o {@code null} si no hay copia.
+     * @param posicion Futuro que el hilo escritor completa con el byte donde empieza la línea, cuando
+     *        ya está escrita (aun con durabilidad {@link Durabilidad#NINGUNA}), o con el error de la
+     *        escritura. Puede ser {@code null}.
+     * @return Futuro que se completa según la durabilidad configurada.
+     */
+    CompletableFuture<Void> anexar(String linea, Path copia, CompletableFuture<Long> posicion) {
+        Durabilidad nivel = durabilidad;
+        CompletableFuture<Void> futuro = new CompletableFuture<>();
+        cola.lock();
+        try {
+            if (escritor == null) {
+                escritor = new Thread(this::escribirLotes, "anexador-" + Paths.get(rutaArchivo).getFileName());
+                escritor.setDaemon(true);
+                escritor.start();
+            }
+            pendientes.addLast(new Registro(linea, copia, futuro, posicion, nivel));
+            hayRegistros.signal();
+        } finally {
+            cola.unlock();
+        }
+        if (nivel == Durabilidad.NINGUNA) {
+            futuro.complete(null);
+        }
+        return futuro;
+    }
+
+    /**
+     * Espera a que todo lo encolado hasta ahora esté escrito.
+     * @throws IOException Si el hilo es interrumpido mientras espera.
+     */
+    void vaciar() throws IOException {
+        cola.lock();
+        try {
+            while (!pendientes.isEmpty() || escribiendo) {
+                colaVacia.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido mientras se vaciaba " + rutaArchivo, e);
+        } finally {
+            cola.unlock();
+        }
+    }
+
+    /**
+     * Ejecuta una tarea que reemplaza o reescribe el archivo, con el canal cerrado
+     * y sin que el hilo escritor pueda escribir mientras tanto. Las líneas ya escritas
+     * quedan en el archivo antes de la tarea; las que lleguen durante la tarea se
+     * escriben después, en el archivo nuevo.
+     * @param tarea Tarea a ejecutar.
+     * @throws IOException Si la tarea falla.
+     */
+    void pausar(TareasFondo.Tarea tarea) throws IOException {
+        archivo.lock();
+        try {
+            cerrarCanal();
+            tarea.ejecutar();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            archivo.unlock();
+        }
+    }
+
+    /**
+     * Escribe todo lo encolado hasta ahora y cierra un archivo de copia. Quien llama debe
+     * asegurar que no se encolen más líneas para esa copia.
+     * @param copia Archivo de copia.
+     * @throws IOException Si el hilo es interrumpido mientras espera, o si quedan líneas que
+     *         no se pudieron escribir en la copia (siguen pendientes).
+     */
+    void soltarCopia(Path copia) throws IOException {
+        vaciar();
+        archivo.lock();
+        try {
+            List<Registro> faltan = atrasadas.remove(copia);
+            if (faltan != null) {
+                try {
+                    escribirCopia(copia, faltan, false);
+                } catch (IOException e) {
+                    atrasadas.put(copia, faltan);
+                    throw e;
+                }
+            }
+            FileChannel c = copias.remove(copia);
+            if (c != null) {
+                c.close();
+            }
+        } finally {
+            archivo.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} si ninguna copia tiene líneas atrasadas por un error al escribirla.
+     */
+    boolean copiasAlDia() {
+        archivo.lock();
+        try {
+            return atrasadas.isEmpty();
+        } finally {
+            archivo.unlock();
+        }
+    }
+
+    /**
+     * Escribe lo pendiente de todos los anexadores y cierra sus archivos.
+     */
+    static void cerrarTodos() {
+        for (Anexador a : anexadores.values()) {
+            try {
+                a.vaciar();
+                a.archivo.lock();
+                try {
+                    a.escribirCopias(List.of(), true);
+                    a.cerrarCanal();
+                } finally {
+                    a.archivo.unlock();
+                }
+            } catch (IOException e) {
+                // Al cerrar no hay a quién informar: lo encolado con durabilidad NINGUNA se pierde.
+            }
+        }
+    }
+
+    private void escribirLotes() {
+        List<Registro> lote = new ArrayList<>();
+        while (true) {
+            lote.clear();
+            cola.lock();
+            try {
+                while (pendientes.isEmpty()) {
+                    hayRegistros.awaitUninterruptibly();
+                }
+                long espera = esperaMaximaNanos;
+                int maximo = tamañoLote;
+                while (espera > 0 && pendientes.size() < maximo) {
+                    try {
+                        espera = hayRegistros.awaitNanos(espera);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                while (!pendientes.isEmpty() && lote.size() < maximo) {
+                    lote.add(pendientes.pollFirst());
+                }
+                escribiendo = true;
+            } finally {
+                cola.unlock();
+            }
+
+            try {
+                escribirLote(lote);
+            } catch (Throwable t) {
+                // Un error inesperado no puede matar al único hilo escritor: fallan los futuros
+                // del lote que no se completaron y el hilo sigue con los lotes siguientes.
+                ERRORES_INESPERADOS.sumar(1);
+                for (Registro r : lote) {
+                    r.futuro.completeExceptionally(t);
+                    if (r.posicion != null) r.posicion.completeExceptionally(t);
+                }
+            } finally {
+                cola.lock();
+                try {
+                    escribiendo = false;
+                    if (pendientes.isEmpty()) {
+                        colaVacia.signalAll();
+                    }
+                } finally {
+                    cola.unlock();
+                }
+            }
+        }
+    }
+
+    /** Escribe un lote en el archivo principal y en sus copias, y completa sus futuros. */
+    private void escribirLote(List<Registro> lote) {
+        IOException error = null;
+        long largoAnterior = -1;
+        boolean sincronizar = false;
+        for (Registro r : lote) {
+            sincronizar |= r.durabilidad == Durabilidad.SINCRONIZAR;
+        }
+        ByteBuffer datos = codificar(lote);
+        archivo.lock();
+        try {
+            try {
+                if (canal == null) {
+                    canal = FileChannel.open(Paths.get(rutaArchivo), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                largoAnterior = canal.size();
+                while (datos.hasRemaining()) {
+                    canal.write(datos);
+                }
+                if (sincronizar) {
+                    canal.force(false);
+                }
+                BYTES_ESCRITOS.sumar(datos.limit());
+                LOTES.sumar(1);
+            } catch (IOException e) {
+                error = e;
+                recortar(canal, largoAnterior);
+                cerrarCanal();
+            }
+            if (error == null) {
+                // Las líneas ya están en el archivo principal: un error en las copias no las hace fallar.
+                BYTES_ESCRITOS.sumar(escribirCopias(lote, sincronizar));
+            }
+        } finally {
+            archivo.unlock();
+        }
+
+        long inicio = largoAnterior;
+        for (Registro r : lote) {
+            if (error != null) {
+                r.futuro.completeExceptionally(error);
+                if (r.posicion != null) r.posicion.completeExceptionally(error);
+            } else {
+                r.futuro.complete(null);
+                if (r.posicion != null) r.posicion.complete(inicio);
+            }
+            inicio += r.largo;
+        }
+    }
+
+    /**
+     * Escribe las líneas del lote que llevan copia, agrupadas por archivo, después de las atrasadas
+     * de cada uno. Las de una copia que falla quedan atrasadas. Devuelve los bytes escritos.
+     */
+    private long escribirCopias(List<Registro> lote, boolean sincronizar) {
+        Map<Path, List<Registro>> porCopia = null;
+        if (!atrasadas.isEmpty()) {
+            porCopia = new LinkedHashMap<>(atrasadas);
+            atrasadas.clear();
+        }
+        for (Registro r : lote) {
+            if (r.copia == null) continue;
+            if (porCopia == null) porCopia = new LinkedHashMap<>();
+            porCopia.computeIfAbsent(r.copia, k -> new ArrayList<>()).add(r);
+        }
+        if (porCopia == null) {
+            return 0;
+        }
+        long escritos = 0;
+        for (Map.Entry<Path, List<Registro>> e : porCopia.entrySet()) {
+            try {
+                escritos += escribirCopia(e.getKey(), e.getValue(), sincronizar);
+            } catch (IOException ex) {
+                atrasadas.put(e.getKey(), e.getValue());
+                // Se cuenta en la métrica y se reintenta en el próximo lote.
+                COPIAS_FALLIDAS.sumar(1);
+            }
+        }
+        return escritos;
+    }
+
+    /** Agrega líneas a un archivo de copia; si falla, lo recorta al largo que tenía y lo cierra. */
+    private long escribirCopia(Path ruta, List<Registro> registros, boolean sincronizar) throws IOException {
+        FileChannel c = copias.get(ruta);
+        long largoAnterior = -1;
+        try {
+            if (c == null) {
+                c = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                copias.put(ruta, c);
+            }
+            largoAnterior = c.size();
+            ByteBuffer datos = codificar(registros);
+            while (datos.hasRemaining()) {
+                c.write(datos);
+            }
+            if (sincronizar) {
+                c.force(false);
+            }
+            return datos.limit();
+        } catch (IOException e) {
+            recortar(c, largoAnterior);
+            copias.remove(ruta);
+            if (c != null) {
+                try {
+                    c.close();
+                } catch (IOException ignorada) {
+                    // Se vuelve a abrir en el próximo intento.
+                }
+            }
+            throw e;
+        }
+    }
+
+    /** Deja el archivo con el largo que tenía antes de una escritura fallida, si se conoce. */
+    private static void recortar(FileChannel c, long largo) {
+        if (c == null || largo < 0) {
+            return;
+        }
+        try {
+            c.truncate(largo);
+        } catch (IOException e) {
+            // Si ni siquiera se puede recortar no hay más que hacer: el error ya se informó.
+        }
+    }
+
+    private ByteBuffer codificar(List<Registro> lote) {
+        List<byte[]> lineas = new ArrayList<>(lote.size());
+        int total = 0;
+        for (Registro r : lote) {
+            byte[] bytes = r.linea.getBytes(charset);
+            lineas.add(bytes);
+            r.largo = bytes.length + finDeLinea.length;
+            total += r.largo;
+        }
+        ByteBuffer datos = ByteBuffer.allocate(total);
+        for (byte[] bytes : lineas) {
+            datos.put(bytes).put(finDeLinea);
+        }
+        datos.flip();
+        return datos;
+    }
+
+    private void cerrarCanal() {
+        if (canal != null) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // El canal se vuelve a abrir en el próximo lote.
+            }
+            canal = null;
+        }
+        for (FileChannel c : copias.values()) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // Igual que el principal, se vuelve a abrir cuando haga falta.
+            }
+        }
+        copias.clear();
+    }
+}
@@ -0,0 +1,218 @@
+package Model;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Archivo CSV de usuarios que solo crece al final. Registrar un usuario agrega su fila y dar
+ * uno de baja agrega una lápida {@code Baja,,<email>,}; ninguna de las dos reescribe el archivo.
+ * Al cargar, las filas se aplican en orden: una lápida borra lo registrado antes con ese email
+ * (sin distinguir mayúsculas), pero no un registro posterior. Las escrituras pasan por el
+ * {@link Anexador} del archivo, así los registros simultáneos se agrupan en un solo lote.
+ *
+ * <p>Cuando las lápidas llegan al umbral, el archivo se compacta en el hilo de fondo: se
+ * reescribe solo con los usuarios vigentes. Mientras tanto, las escrituras nuevas esperan en la
+ * cola del anexador y se agregan después al archivo compactado. La cantidad de lápidas se guarda
+ * en la copia binaria, para no perder la cuenta entre arranques.</p>
+ * @author andres
+ */
+final class ArchivoUsuarios {
+    /** Tipo de las filas que dan de baja un email. */
+    static final String BAJA = "Baja";
+
+    private static final Map<String, ArchivoUsuarios> archivos = new ConcurrentHashMap<>();
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("csv.bytesEscritos");
+    private static volatile int umbralCompactacion = 1000;
+
+    private final String rutaArchivo;
+    private long bajas;
+    private CompletableFuture<Void> compactacionEnCurso;
+
+    private ArchivoUsuarios(String rutaArchivo) {
+        this.rutaArchivo = rutaArchivo;
+    }
+
+    /**
+     * Obtiene el archivo de usuarios de una ruta.
+     * @param rutaArchivo Ruta del CSV de usuarios.
+     * @return Archivo compartido para esa ruta.
+     */
+    static ArchivoUsuarios de(String rutaArchivo) {
+        return archivos.computeIfAbsent(Paths.get(rutaArchivo).toAbsolutePath().normalize().toString(),
+                k -> new ArchivoUsuarios(rutaArchivo));
+    }
+
+    /**
+     * Cambia la cantidad de bajas a partir de la cual se compacta en segundo plano.
+     * @param umbral Bajas toleradas; 0 o menos desactiva la compactación automática.
+     */
+    static void setUmbralCompactacion(int umbral) {
+        umbralCompactacion = umbral;
+    }
+
+    /** @return Bajas a partir de las cuales se compacta; 0 o menos si no se compacta solo. */
+    static int umbralCompactacion() {
+        return umbralCompactacion;
+    }
+
+    /**
+     * Lee los usuarios vigentes, de la copia binaria si está al día o del CSV.
+     * @return Usuarios en orden de registro.
+     * @throws IOException Si no se puede leer el archivo.
+     */
+    List<Usuario> cargar() throws IOException {
+        Anexador.de(rutaArchivo).vaciar();
+        long[] leidas = new long[1];
+        List<Usuario> usuarios = leer(leidas);
+        synchronized (this) {
+            bajas = leidas[0];
+        }
+        return usuarios;
+    }
+
+    /**
+     * Reemplaza el archivo por los usuarios dados, sin lápidas.
+     * @param usuarios Usuarios a guardar.
+     * @throws IOException Si no se puede escribir.
+     */
+    void guardar(Collection<Usuario> usuarios) throws IOException {
+        Anexador.de(rutaArchivo).pausar(() -> {
+            escribir(usuarios);
+            synchronized (this) {
+                bajas = 0;
+            }
+        });
+    }
+
+    /**
+     * Encola la fila de un usuario nuevo. No comprueba si el email ya existe: eso lo hace
+     * quien registra, con el {@link DirectorioUsuarios}.
+     * @param usuario Usuario a agregar.
+     * @return Futuro de la escritura.
+     */
+    CompletableFuture<Void> registrar(Usuario usuario) {
+        return Anexador.de(rutaArchivo).anexar(GestorCSV.filaUsuario(usuario));
+    }
+
+    /**
+     * Encola la lápida de un email y, si se juntaron muchas, lanza la compactación.
+     * @param email Email del usuario dado de baja.
+     * @return Futuro de la escritura.
+     */
+    CompletableFuture<Void> darDeBaja(String email) {
+        CompletableFuture<Void> escritura = Anexador.de(rutaArchivo).anexar(BAJA + ",," + GestorCSV.campo(email) + ",");
+        boolean compactar;
+        synchronized (this) {
+            bajas++;
+            int umbral = umbralCompactacion;
+            compactar = umbral > 0 && bajas >= umbral && compactacionEnCurso == null;
+        }
+        if (compactar) {
+            compactarEnSegundoPlano();
+        }
+        return escritura;
+    }
+
+    /**
+     * Reescribe el archivo solo con los usuarios vigentes, de forma síncrona.
+     * Lo que se encole mientras tanto se escribe después, en el archivo nuevo.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    void compactar() throws IOException {
+        Anexador.de(rutaArchivo).pausar(() -> {
+            long[] leidas = new long[1];
+            List<Usuario> vigentes = leer(leidas);
+            escribir(vigentes);
+            synchronized (this) {
+                // Las lápidas encoladas durante la compactación quedan para la próxima.
+                bajas = Math.max(0, bajas - leidas[0]);
+            }
+        });
+    }
+
+    /**
+     * Lanza una compactación en el hilo de fondo, o devuelve la que ya está en curso.
+     * @return Futuro que se completa cuando termina la compactación.
+     */
+    synchronized CompletableFuture<Void> compactarEnSegundoPlano() {
+        if (compactacionEnCurso == null) {
+            compactacionEnCurso = TareasFondo.ejecutar(this::compactar, () -> {
+                synchronized (ArchivoUsuarios.this) {
+                    compactacionEnCurso = null;
+                }
+            });
+        }
+        return compactacionEnCurso;
+    }
+
+    /** @return Bajas anotadas en el archivo que todavía no se compactaron. */
+    synchronized long bajas() {
+        return bajas;
+    }
+
+    // === ARCHIVO ===
+
+    private List<Usuario> leer(long[] bajasLeidas) throws IOException {
+        List<Usuario> usuarios = InstantaneaBinaria.cargarUsuarios(rutaArchivo, bajasLeidas);
+        if (usuarios != null) {
+            return usuarios;
+        }
+        usuarios = new ArrayList<>();
+        long lapidas = 0;
+        // Posiciones en la lista de cada email vigente, para que una lápida los encuentre sin recorrerla.
+        Map<String, List<Integer>> porEmail = new HashMap<>();
+        boolean hayBorrados = false;
+        try (LectorCSV lector = new LectorCSV(rutaArchivo)) {
+            while (lector.siguienteFila()) {
+                if (lector.numeroCampos() < 4) continue;
+                String tipo = lector.texto(0).trim().toLowerCase();
+                if (tipo.equals("baja")) {
+                    lapidas++;
+                    List<Integer> posiciones = porEmail.remove(DirectorioUsuarios.normalizar(lector.texto(2)));
+                    if (posiciones != null) {
+                        for (int i : posiciones) usuarios.set(i, null);
+                        hayBorrados = true;
+                    }
+                    continue;
+                }
+                String nombre = lector.texto(1);
+                String email = lector.texto(2);
+                String contraseña = lector.texto(3);
+
+                Usuario u = switch (tipo) {
+                    case "cliente" -> new Cliente(nombre, email, contraseña);
+                    case "administrador" -> new Administrador(nombre, email, contraseña);
+                    case "proveedor" -> new Proveedor(nombre, email, contraseña);
+                    default -> null;
+                };
+                if (u != null) {
+                    porEmail.computeIfAbsent(DirectorioUsuarios.normalizar(email), k -> new ArrayList<>(1)).add(usuarios.size());
+                    usuarios.add(u);
+                }
+            }
+        }
+        if (hayBorrados) {
+            usuarios.removeIf(Objects::isNull);
+        }
+        bajasLeidas[0] = lapidas;
+        InstantaneaBinaria.guardarUsuariosSinFallar(usuarios, lapidas, rutaArchivo);
+        return usuarios;
+    }
+
+    private void escribir(Collection<Usuario> usuarios) throws IOException {
+        Path destino = Paths.get(rutaArchivo);
+        Path temporal = Paths.get(rutaArchivo + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temporal.toFile()))) {
+            for (Usuario u : usuarios) {
+                writer.write(GestorCSV.filaUsuario(u));
+                writer.newLine();
+            }
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        BYTES_ESCRITOS.sumar(Files.size(destino));
+        InstantaneaBinaria.guardarUsuariosSinFallar(usuarios, 0, rutaArchivo);
+    }
+}
\ No newline at end of file
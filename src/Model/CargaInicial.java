@@ -0,0 +1,129 @@
+package Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Carga de arranque de ShopPlus. Usuarios y productos son independientes, así que se leen
+ * a la vez, cada uno en su hilo; el menú puede mostrarse en cuanto terminan los dos.
+ * Los pedidos y envíos no se leen al arrancar: cada {@link Persistencia} los carga la
+ * primera vez que se usan y desde entonces los conserva en memoria.
+ * @author andres
+ */
+public final class CargaInicial {
+    private static final Metricas.Operacion USUARIOS = Metricas.operacion("CargaInicial.usuarios");
+    private static final Metricas.Operacion PRODUCTOS = Metricas.operacion("CargaInicial.productos");
+
+    private final long comienzo = System.nanoTime();
+    private final CompletableFuture<List<Usuario>> usuarios;
+    private final CompletableFuture<List<Producto>> productos;
+    private final Tiempo tiempoUsuarios = new Tiempo();
+    private final Tiempo tiempoProductos = new Tiempo();
+
+    /** Duración de una carga y momento en que terminó, según {@link System#nanoTime()}. */
+    private static final class Tiempo {
+        volatile long nanos;
+        volatile long fin;
+    }
+
+    /** Una tarea de carga que puede fallar con {@link IOException}. */
+    private interface Carga<T> {
+        T cargar() throws IOException;
+    }
+
+    private CargaInicial(Persistencia persistencia) {
+        Executor hilos = tarea -> {
+            Thread hilo = new Thread(tarea, "carga-inicial");
+            hilo.setDaemon(true);
+            hilo.start();
+        };
+        usuarios = CompletableFuture.supplyAsync(() -> medir(USUARIOS, persistencia.usuarios()::cargar, tiempoUsuarios), hilos);
+        productos = CompletableFuture.supplyAsync(
+                () -> medir(PRODUCTOS, persistencia.productos()::cargar, tiempoProductos), hilos);
+    }
+
+    /**
+     * Empieza a cargar usuarios y productos en segundo plano.
+     * @param persistencia Persistencia de la que se cargan.
+     * @return Carga en curso.
+     */
+    public static CargaInicial iniciar(Persistencia persistencia) {
+        return new CargaInicial(persistencia);
+    }
+
+    /**
+     * Espera a que terminen de cargarse los usuarios.
+     * @return Usuarios cargados.
+     * @throws IOException Si no se pudieron leer.
+     */
+    public List<Usuario> usuarios() throws IOException {
+        return esperar(usuarios);
+    }
+
+    /**
+     * Espera a que terminen de cargarse los productos.
+     * @return Productos cargados.
+     * @throws IOException Si no se pudieron leer.
+     */
+    public List<Producto> productos() throws IOException {
+        return esperar(productos);
+    }
+
+    /**
+     * Resumen de los tiempos de arranque, para mostrar al usuario. Espera a que termine la carga.
+     * @return Por ejemplo {@code "Datos listos en 85 ms (usuarios 12 ms, productos 80 ms); arranque total 310 ms."}
+     */
+    public String resumen() {
+        try {
+            CompletableFuture.allOf(usuarios, productos).join();
+        } catch (CompletionException e) {
+            // Los errores se informan al pedir cada resultado.
+        }
+        long total = Math.max(tiempoUsuarios.fin, tiempoProductos.fin) - comienzo;
+        long arranque = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        return "Datos listos en " + milisegundos(total) + " ms (usuarios " + milisegundos(tiempoUsuarios.nanos)
+                + " ms, productos " + milisegundos(tiempoProductos.nanos) + " ms); arranque total " + arranque + " ms.";
+    }
+
+    private static <T> T medir(Metricas.Operacion operacion, Carga<T> carga, Tiempo tiempo) {
+        long inicio = operacion.inicio();
+        long antes = System.nanoTime();
+        try {
+            return carga.cargar();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            tiempo.fin = System.nanoTime();
+            tiempo.nanos = tiempo.fin - antes;
+            operacion.registrar(inicio);
+        }
+    }
+
+    private static long milisegundos(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido mientras se cargaban los datos", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) causa).getCause();
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new IOException(causa);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,275 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Almacén indexado de productos del sistema ShopPlus.
+ * Mantiene los productos en un mapa por ID para que la búsqueda sea O(1),
+ * conservando el orden de inserción para los listados y el guardado en CSV.
+ * Es seguro usarlo desde varias sesiones a la vez: las búsquedas no se bloquean.
+ * También permite buscar por nombre ({@link IndiceNombres}) y recorrer por rangos de precio
+ * o de stock con paginación por cursor ({@link IndiceRangos}); ambos índices se arman la
+ * primera vez que se usan.
+ * Opcionalmente los datos pueden vivir en un {@link AlmacenColumnar}: en ese caso el catálogo
+ * guarda las vistas del almacén en lugar de los objetos recibidos.
+ * @author andres
+ */
+public class CatalogoProductos {
+
+    /** Producto junto con su número de orden de inserción. */
+    private static final class Entrada {
+        final long orden;
+        final Producto producto;
+
+        Entrada(long orden, Producto producto) {
+            this.orden = orden;
+            this.producto = producto;
+        }
+    }
+
+    private final ConcurrentMap<String, Entrada> indice;
+    private final ConcurrentSkipListMap<Long, Producto> enOrden = new ConcurrentSkipListMap<>();
+    private final AtomicLong siguienteOrden = new AtomicLong();
+    private final IndiceNombres nombres = new IndiceNombres();
+    private final IndiceRangos rangos = new IndiceRangos();
+    private final AlmacenColumnar columnas;
+
+    /**
+     * Crea un catálogo vacío.
+     */
+    public CatalogoProductos() {
+        this.indice = new ConcurrentHashMap<>();
+        this.columnas = null;
+    }
+
+    /**
+     * Crea un catálogo a partir de una colección de productos.
+     * Si hay IDs repetidos se conserva el último producto leído.
+     * @param productos Productos iniciales.
+     */
+    public CatalogoProductos(Collection<Producto> productos) {
+        this(productos, null);
+    }
+
+    /**
+     * Crea un catálogo cuyos datos se guardan en un almacén columnar.
+     * Los productos recibidos se copian al almacén; desde entonces el catálogo devuelve
+     * vistas del almacén, también para los productos que se agreguen después.
+     * @param productos Productos iniciales.
+     * @param columnas Almacén vacío donde guardar los datos, o {@code null} para usar los objetos tal cual.
+     */
+    public CatalogoProductos(Collection<Producto> productos, AlmacenColumnar columnas) {
+        this.indice = new ConcurrentHashMap<>(Math.max(16, (int) (productos.size() / 0.75f) + 1));
+        this.columnas = columnas;
+        for (Producto p : productos) {
+            if (!agregar(p)) {
+                actualizar(p);
+            }
+        }
+    }
+
+    /**
+     * Busca un producto por su ID.
+     * @param id ID del producto.
+     * @return Producto encontrado o {@code null} si no existe.
+     */
+    public Producto buscar(String id) {
+        Entrada e = indice.get(id);
+        return e == null ? null : e.producto;
+    }
+
+    /**
+     * Indica si existe un producto con el ID dado.
+     * @param id ID del producto.
+     * @return {@code true} si el producto está en el catálogo.
+     */
+    public boolean contiene(String id) {
+        return indice.containsKey(id);
+    }
+
+    /**
+     * Agrega un producto nuevo al catálogo.
+     * @param producto Producto a agregar.
+     * @return {@code true} si se agregó, {@code false} si ya existía un producto con ese ID.
+     */
+    public boolean agregar(Producto producto) {
+        boolean[] agregado = new boolean[1];
+        // Cada cambio se hace dentro de compute para que el índice y el orden no diverjan por ID.
+        indice.computeIfAbsent(producto.getId(), k -> {
+            Producto guardado = columnas == null ? producto : columnas.agregar(producto);
+            Entrada nueva = new Entrada(siguienteOrden.getAndIncrement(), guardado);
+            enOrden.put(nueva.orden, guardado);
+            nombres.agregar(guardado);
+            rangos.incorporar(guardado, nueva.orden);
+            agregado[0] = true;
+            return nueva;
+        });
+        return agregado[0];
+    }
+
+    /**
+     * Reemplaza un producto existente por otro con el mismo ID.
+     * @param producto Producto con los datos actualizados.
+     * @return Producto anterior o {@code null} si no existía (en ese caso no se agrega).
+     */
+    public Producto actualizar(Producto producto) {
+        Producto[] anterior = new Producto[1];
+        indice.computeIfPresent(producto.getId(), (k, e) -> {
+            anterior[0] = e.producto;
+            Producto guardado = producto;
+            if (columnas != null) {
+                columnas.quitar(e.producto);
+                guardado = columnas.agregar(producto);
+            }
+            enOrden.put(e.orden, guardado);
+            nombres.agregar(guardado);
+            rangos.quitar(e.producto);
+            rangos.incorporar(guardado, e.orden);
+            return new Entrada(e.orden, guardado);
+        });
+        return anterior[0];
+    }
+
+    /**
+     * Elimina un producto del catálogo.
+     * @param id ID del producto a eliminar.
+     * @return Producto eliminado o {@code null} si no existía.
+     */
+    public Producto eliminar(String id) {
+        Producto[] eliminado = new Producto[1];
+        indice.computeIfPresent(id, (k, e) -> {
+            eliminado[0] = e.producto;
+            enOrden.remove(e.orden);
+            nombres.eliminar(e.producto);
+            rangos.quitar(e.producto);
+            if (columnas != null) {
+                columnas.quitar(e.producto);
+            }
+            return null;
+        });
+        return eliminado[0];
+    }
+
+    /**
+     * Busca productos por nombre, sin distinguir mayúsculas ni tildes.
+     * Primero van los nombres que empiezan con el texto, después los que tienen una
+     * palabra que empieza con él y por último los que lo contienen en cualquier parte.
+     * @param consulta Texto a buscar (por ejemplo {@code "lampara"} encuentra "Lámpara").
+     * @param limite Cantidad máxima de resultados.
+     * @return Productos encontrados, mejores primero.
+     */
+    public List<Producto> buscarPorNombre(String consulta, int limite) {
+        return nombres.buscar(consulta, limite, enOrden.values());
+    }
+
+    /**
+     * Recorre por páginas los productos con precio dentro de un rango, del más barato al más caro.
+     * @param minimo Precio mínimo (incluido).
+     * @param maximo Precio máximo (incluido).
+     * @param cursor Cursor devuelto por la página anterior, o {@code null} para empezar.
+     * @param tamaño Cantidad máxima de productos por página.
+     * @return Página de productos; vacía si el mínimo es mayor que el máximo.
+     * @throws IllegalArgumentException Si el cursor no es válido o el tamaño no es positivo.
+     */
+    public Pagina<Producto> porPrecio(double minimo, double maximo, String cursor, int tamaño) {
+        return rangos.porPrecio(minimo, maximo, cursor, tamaño, enOrden.values());
+    }
+
+    /**
+     * Recorre por páginas los productos con stock dentro de un rango, del menor al mayor stock.
+     * Por ejemplo, {@code porCantidad(0, 5, null, 20)} da los primeros 20 con stock bajo.
+     * @param minimo Cantidad mínima (incluida).
+     * @param maximo Cantidad máxima (incluida).
+     * @param cursor Cursor devuelto por la página anterior, o {@code null} para empezar.
+     * @param tamaño Cantidad máxima de productos por página.
+     * @return Página de productos; vacía si el mínimo es mayor que el máximo.
+     * @throws IllegalArgumentException Si el cursor no es válido o el tamaño no es positivo.
+     */
+    public Pagina<Producto> porCantidad(int minimo, int maximo, String cursor, int tamaño) {
+        return rangos.porCantidad(minimo, maximo, cursor, tamaño, enOrden.values());
+    }
+
+    /**
+     * @return Vista de solo lectura de los productos en orden de inserción.
+     */
+    public Collection<Producto> listar() {
+        return Collections.unmodifiableCollection(enOrden.values());
+    }
+
+    /**
+     * Recorre por páginas todos los productos en orden de inserción.
+     * @param cursor Cursor devuelto por la página anterior, o {@code null} para empezar.
+     * @param tamaño Cantidad máxima de productos por página.
+     * @return Página de productos.
+     * @throws IllegalArgumentException Si el cursor no es válido o el tamaño no es positivo.
+     */
+    public Pagina<Producto> listar(String cursor, int tamaño) {
+        if (tamaño <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser positivo: " + tamaño);
+        }
+        Map<Long, Producto> resto = enOrden;
+        if (cursor != null) {
+            try {
+                resto = enOrden.tailMap(Long.parseLong(cursor), false);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+        List<Producto> elementos = new ArrayList<>(Math.min(tamaño, 1024));
+        Iterator<Map.Entry<Long, Producto>> it = resto.entrySet().iterator();
+        long ultimo = -1;
+        while (elementos.size() < tamaño && it.hasNext()) {
+            Map.Entry<Long, Producto> e = it.next();
+            elementos.add(e.getValue());
+            ultimo = e.getKey();
+        }
+        return new Pagina<>(elementos, it.hasNext() ? String.valueOf(ultimo) : null);
+    }
+
+    /**
+     * Valor del inventario: suma de precio por cantidad de todos los productos.
+     * Con almacén columnar es un recorrido de columnas; sin él, se recorren los objetos.
+     * @return Valor total del stock.
+     */
+    public double valorInventario() {
+        if (columnas != null) {
+            return columnas.valorTotal();
+        }
+        double valor = 0;
+        for (Producto p : enOrden.values()) {
+            valor += p.getPrecio() * p.getCantidad();
+        }
+        return valor;
+    }
+
+    /** @return Unidades en stock sumando todos los productos. */
+    public long unidadesEnStock() {
+        if (columnas != null) {
+            return columnas.unidadesTotales();
+        }
+        long unidades = 0;
+        for (Producto p : enOrden.values()) {
+            unidades += p.getCantidad();
+        }
+        return unidades;
+    }
+
+    /** @return Almacén columnar que guarda los datos, o {@code null} si se usan objetos comunes. */
+    public AlmacenColumnar getColumnas() {
+        return columnas;
+    }
+
+    /** @return Cantidad de productos en el catálogo. */
+    public int tamaño() {
+        return indice.size();
+    }
+}
\ No newline at end of file
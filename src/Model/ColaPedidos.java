@@ -0,0 +1,128 @@
+package Model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pedidos pendientes en memoria, con una cola por producto para repartir los envíos.
+ * El ID de cada pedido ({@link Pedido#getId()}) es su posición en el almacenamiento
+ * ({@link Pedido#getPosicion()}), así un pedido conserva su ID al volver a cargarlo tras reiniciar.
+ * Con el ID, buscar y quitar un pedido es O(1), también de los pedidos de su cliente;
+ * el más antiguo de un producto es el primero de su cola, también O(1).
+ *
+ * <p>Las colas no se recorren al quitar: un pedido quitado se descarta cuando llega al frente.</p>
+ *
+ * <p>No es segura entre hilos: quien la usa la protege con su propio cerrojo.</p>
+ * @author andres
+ */
+final class ColaPedidos {
+    // Pedidos por ID, en orden de registro.
+    private final LinkedHashMap<Long, Pedido> porId = new LinkedHashMap<>();
+    private final Map<String, ArrayDeque<Pedido>> porProducto = new HashMap<>();
+    // Pedidos de cada cliente por ID, en orden de registro.
+    private final Map<String, LinkedHashMap<Long, Pedido>> porCliente = new HashMap<>();
+
+    /**
+     * Agrega un pedido al final de la cola de su producto y le asigna su posición como ID.
+     * @param pedido Pedido pendiente, con su posición.
+     * @return ID asignado.
+     */
+    long agregar(Pedido pedido) {
+        long id = pedido.getPosicion();
+        if (id < 0) {
+            throw new IllegalArgumentException("Pedido sin posición: " + pedido);
+        }
+        // Otra fila en la misma posición reemplaza a la anterior, también en su cliente.
+        quitar(id);
+        pedido.setId(id);
+        porId.put(id, pedido);
+        porProducto.computeIfAbsent(pedido.getIdProducto(), k -> new ArrayDeque<>()).addLast(pedido);
+        porCliente.computeIfAbsent(pedido.getEmailCliente(), k -> new LinkedHashMap<>()).put(id, pedido);
+        return id;
+    }
+
+    /**
+     * @param id ID del pedido.
+     * @return Pedido pendiente con ese ID, o {@code null} si no está.
+     */
+    Pedido buscar(long id) {
+        return porId.get(id);
+    }
+
+    /**
+     * @param idProducto ID del producto.
+     * @return Pedido pendiente más antiguo del producto, o {@code null} si no tiene.
+     */
+    Pedido siguiente(String idProducto) {
+        ArrayDeque<Pedido> cola = porProducto.get(idProducto);
+        if (cola == null) {
+            return null;
+        }
+        Pedido p;
+        while ((p = cola.peekFirst()) != null && buscar(p.getId()) != p) {
+            cola.pollFirst();
+        }
+        if (p == null) {
+            porProducto.remove(idProducto);
+        }
+        return p;
+    }
+
+    /**
+     * Quita un pedido de los pendientes.
+     * @param id ID del pedido.
+     * @return Pedido quitado, o {@code null} si no estaba.
+     */
+    Pedido quitar(long id) {
+        Pedido p = porId.remove(id);
+        if (p == null) {
+            return null;
+        }
+        // Casi siempre sale el primero de la cola: descartarlo ya evita que se acumulen.
+        siguiente(p.getIdProducto());
+        LinkedHashMap<Long, Pedido> delCliente = porCliente.get(p.getEmailCliente());
+        delCliente.remove(id);
+        if (delCliente.isEmpty()) {
+            porCliente.remove(p.getEmailCliente());
+        }
+        return p;
+    }
+
+    /** @return Pedidos pendientes en orden de registro. */
+    List<Pedido> todos() {
+        return new ArrayList<>(porId.values());
+    }
+
+    /**
+     * @param emailCliente Email del cliente.
+     * @return Pedidos pendientes del cliente en orden de registro.
+     */
+    List<Pedido> deCliente(String emailCliente) {
+        LinkedHashMap<Long, Pedido> delCliente = porCliente.get(emailCliente);
+        return delCliente == null ? new ArrayList<>() : new ArrayList<>(delCliente.values());
+    }
+
+    /**
+     * @param idProducto ID del producto.
+     * @return Pedidos pendientes del producto en orden de registro.
+     */
+    List<Pedido> deProducto(String idProducto) {
+        List<Pedido> lista = new ArrayList<>();
+        ArrayDeque<Pedido> cola = porProducto.get(idProducto);
+        if (cola != null) {
+            for (Pedido p : cola) {
+                if (buscar(p.getId()) == p) lista.add(p);
+            }
+        }
+        return lista;
+    }
+
+    /** @return Cantidad de pedidos pendientes. */
+    int tamaño() {
+        return porId.size();
+    }
+}
\ No newline at end of file
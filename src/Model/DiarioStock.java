@@ -0,0 +1,262 @@
+package Model;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Diario de cambios de stock asociado a un archivo de productos.
+ * Cada cambio se agrega como una línea {@code secuencia,idProducto,delta} en
+ * {@code <archivo>.diario}, así registrar un envío no obliga a reescribir el catálogo.
+ * La instantánea (el archivo de productos) guarda en su primera línea
+ * {@code #diario,<secuencia>} la última secuencia que ya incluye, por lo que al
+ * cargar solo se reaplican los registros posteriores.
+ * @author andres
+ */
+class DiarioStock {
+    static final String EXTENSION = ".diario";
+    static final String MARCA = "#diario";
+    static final String CABECERA = MARCA + ",";
+
+    private static final Map<String, DiarioStock> diarios = new ConcurrentHashMap<>();
+    private static volatile int umbralCompactacion = 1000;
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("csv.bytesEscritos");
+
+    private final Path rutaProductos;
+    private final Path rutaDiario;
+    private long ultimaSecuencia = -1;
+    private int registrosEnDiario = -1;
+    // Última secuencia encontrada por aplicarDiario en la lectura más reciente.
+    private long ultimaLeida = -1;
+    // Cambia cada vez que se escribe una instantánea completa desde memoria.
+    private long generacion;
+    private CompletableFuture<Void> compactacionEnCurso;
+
+    private DiarioStock(String rutaProductos) {
+        this.rutaProductos = Paths.get(rutaProductos);
+        this.rutaDiario = Paths.get(rutaProductos + EXTENSION);
+    }
+
+    /**
+     * Obtiene el diario asociado a un archivo de productos.
+     * @param rutaProductos Ruta del archivo de productos.
+     * @return Diario compartido para esa ruta.
+     */
+    static DiarioStock de(String rutaProductos) {
+        return diarios.computeIfAbsent(Paths.get(rutaProductos).toAbsolutePath().normalize().toString(),
+                k -> new DiarioStock(rutaProductos));
+    }
+
+    /**
+     * Cambia la cantidad de registros a partir de la cual se compacta en segundo plano.
+     * @param umbral Registros pendientes tolerados; 0 o menos desactiva la compactación automática.
+     */
+    static void setUmbralCompactacion(int umbral) {
+        umbralCompactacion = umbral;
+    }
+
+    /**
+     * Agrega un cambio de stock al diario.
+     * @param idProducto ID del producto modificado.
+     * @param delta Unidades sumadas (positivo) o restadas (negativo).
+     * @throws IOException Si no se puede escribir el diario.
+     */
+    void registrar(String idProducto, int delta) throws IOException {
+        boolean compactar;
+        synchronized (this) {
+            inicializar();
+            long secuencia = ++ultimaSecuencia;
+            String linea = secuencia + "," + GestorCSV.campo(idProducto) + "," + delta;
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaDiario.toFile(), true))) {
+                writer.write(linea);
+                writer.newLine();
+            }
+            BYTES_ESCRITOS.sumar(linea.length() + System.lineSeparator().length());
+            registrosEnDiario++;
+            int umbral = umbralCompactacion;
+            compactar = umbral > 0 && registrosEnDiario >= umbral && compactacionEnCurso == null;
+        }
+        if (compactar) {
+            compactarEnSegundoPlano();
+        }
+    }
+
+    /**
+     * Reaplica sobre los productos cargados los cambios posteriores a la instantánea.
+     * @param productos Productos leídos de la instantánea.
+     * @param secuenciaInstantanea Última secuencia incluida en la instantánea (-1 si no tenía cabecera).
+     * @throws IOException Si no se puede leer el diario.
+     */
+    synchronized void reaplicar(List<Producto> productos, long secuenciaInstantanea) throws IOException {
+        Map<String, Producto> porId = new HashMap<>(Math.max(16, (int) (productos.size() / 0.75f) + 1));
+        for (Producto p : productos) {
+            porId.put(p.getId(), p);
+        }
+        int leidos = aplicarDiario(porId, secuenciaInstantanea, Long.MAX_VALUE);
+        ultimaSecuencia = Math.max(ultimaSecuencia, Math.max(secuenciaInstantanea, ultimaLeida));
+        registrosEnDiario = leidos;
+    }
+
+    /**
+     * Escribe una instantánea completa y descarta el diario, que ya queda incluido en ella.
+     * @param productos Productos a guardar.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    synchronized void guardarInstantanea(Collection<Producto> productos) throws IOException {
+        inicializar();
+        escribirInstantanea(productos, ultimaSecuencia);
+        Files.deleteIfExists(rutaDiario);
+        registrosEnDiario = 0;
+        generacion++;
+    }
+
+    /**
+     * Compacta el diario de forma síncrona.
+     * La instantánea nueva se arma sin bloquear a quienes registran cambios;
+     * solo el reemplazo final de archivos se hace con el diario bloqueado.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    void compactar() throws IOException {
+        long hasta;
+        long generacionInicial;
+        synchronized (this) {
+            inicializar();
+            hasta = ultimaSecuencia;
+            generacionInicial = generacion;
+        }
+
+        long[] secuenciaBase = new long[1];
+        List<Producto> productos = leerInstantanea(secuenciaBase);
+        Map<String, Producto> porId = new LinkedHashMap<>(Math.max(16, (int) (productos.size() / 0.75f) + 1));
+        for (Producto p : productos) {
+            porId.put(p.getId(), p);
+        }
+        synchronized (this) {
+            aplicarDiario(porId, secuenciaBase[0], hasta);
+        }
+
+        synchronized (this) {
+            if (generacion != generacionInicial) {
+                // Se guardó una instantánea completa mientras tanto: ya no hay nada que compactar.
+                return;
+            }
+            escribirInstantanea(porId.values(), hasta);
+            // Conservar solo los registros que llegaron mientras se armaba la instantánea.
+            List<String> pendientes = new ArrayList<>();
+            if (Files.exists(rutaDiario)) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(rutaDiario.toFile()))) {
+                    String linea;
+                    while ((linea = reader.readLine()) != null) {
+                        int coma = linea.indexOf(',');
+                        if (coma > 0 && Long.parseLong(linea.substring(0, coma)) > hasta) {
+                            pendientes.add(linea);
+                        }
+                    }
+                }
+            }
+            Path temporal = Paths.get(rutaDiario + ".tmp");
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(temporal.toFile()))) {
+                for (String linea : pendientes) {
+                    writer.write(linea);
+                    writer.newLine();
+                }
+            }
+            Files.move(temporal, rutaDiario, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            registrosEnDiario = pendientes.size();
+        }
+    }
+
+    /**
+     * Lanza una compactación en el hilo de fondo, o devuelve la que ya está en curso.
+     * @return Futuro que se completa cuando termina la compactación.
+     */
+    synchronized CompletableFuture<Void> compactarEnSegundoPlano() {
+        if (compactacionEnCurso == null) {
+            compactacionEnCurso = TareasFondo.ejecutar(this::compactar, () -> {
+                synchronized (DiarioStock.this) {
+                    compactacionEnCurso = null;
+                }
+            });
+        }
+        return compactacionEnCurso;
+    }
+
+    private int aplicarDiario(Map<String, Producto> porId, long desde, long hasta) throws IOException {
+        ultimaLeida = -1;
+        if (!Files.exists(rutaDiario)) {
+            return 0;
+        }
+        int leidos = 0;
+        try (LectorCSV lector = new LectorCSV(rutaDiario.toString())) {
+            while (lector.siguienteFila()) {
+                if (lector.numeroCampos() < 3) continue;
+                long secuencia = lector.largo(0);
+                ultimaLeida = Math.max(ultimaLeida, secuencia);
+                leidos++;
+                if (secuencia <= desde || secuencia > hasta) continue;
+                Producto p = porId.get(lector.texto(1));
+                if (p != null) {
+                    p.setCantidad(p.getCantidad() + lector.entero(2));
+                }
+            }
+        }
+        return leidos;
+    }
+
+    private void inicializar() throws IOException {
+        if (registrosEnDiario >= 0) {
+            return;
+        }
+        long[] secuenciaBase = new long[1];
+        secuenciaBase[0] = -1;
+        if (Files.exists(rutaProductos)) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(rutaProductos.toFile()))) {
+                secuenciaBase[0] = leerCabecera(reader.readLine());
+            }
+        }
+        registrosEnDiario = aplicarDiario(new HashMap<>(), Long.MAX_VALUE, Long.MAX_VALUE);
+        ultimaSecuencia = Math.max(secuenciaBase[0], ultimaLeida);
+    }
+
+    private List<Producto> leerInstantanea(long[] secuenciaBase) throws IOException {
+        List<Producto> productos = new ArrayList<>();
+        secuenciaBase[0] = -1;
+        if (!Files.exists(rutaProductos)) {
+            return productos;
+        }
+        try (LectorCSV lector = new LectorCSV(rutaProductos.toString())) {
+            secuenciaBase[0] = GestorCSV.leerProductos(lector, productos);
+        }
+        return productos;
+    }
+
+    private void escribirInstantanea(Collection<Producto> productos, long secuencia) throws IOException {
+        Path temporal = Paths.get(rutaProductos + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temporal.toFile()))) {
+            if (secuencia >= 0) {
+                writer.write(CABECERA + secuencia);
+                writer.newLine();
+            }
+            for (Producto p : productos) {
+                writer.write(GestorCSV.filaProducto(p));
+                writer.newLine();
+            }
+        }
+        Files.move(temporal, rutaProductos, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        BYTES_ESCRITOS.sumar(Files.size(rutaProductos));
+        InstantaneaBinaria.guardarProductosSinFallar(productos, secuencia, rutaProductos.toString());
+    }
+
+    /**
+     * Lee la secuencia de una línea de cabecera.
+     * @param linea Primera línea del archivo de productos.
+     * @return Secuencia incluida en la instantánea, o -1 si la línea no es una cabecera.
+     */
+    static long leerCabecera(String linea) {
+        if (linea == null || !linea.startsWith(CABECERA)) {
+            return -1;
+        }
+        return Long.parseLong(linea.substring(CABECERA.length()).trim());
+    }
+}
@@ -0,0 +1,219 @@
+package Model;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Diccionario de textos repetidos (emails e IDs de producto) para las cargas del historial.
+ * Cada valor distinto recibe un código entero consecutivo y una única cadena compartida:
+ * millones de pedidos de unos pocos miles de clientes terminan apuntando a las mismas
+ * cadenas en lugar de tener una copia cada uno.
+ *
+ * <p>La búsqueda compara los bytes del campo copiados del buffer del {@link LectorCSV},
+ * así que la cadena solo se crea la primera vez que aparece cada valor. Para las cargas
+ * el diccionario tiene un máximo ({@link #paraCarga()}): los valores casi únicos no
+ * ganan nada al compartirse y una tabla enorme hace lenta cada búsqueda, así que pasado
+ * el máximo los valores nuevos se devuelven como cadenas comunes; y si en un campo casi
+ * ninguna búsqueda encuentra el valor, ese campo deja de buscarse. No es seguro usarlo
+ * desde varios hilos a la vez; cada carga usa el suyo.</p>
+ * @author andres
+ */
+final class Diccionario {
+    /** Máximo de valores que guarda un diccionario de carga. */
+    static final int MAXIMO_CARGA = 1 << 18;
+    // Búsquedas por campo con el diccionario lleno antes de decidir si conviene seguir buscando.
+    private static final int MUESTRA_ACIERTOS = 1 << 16;
+
+    private final Charset charset = Charset.defaultCharset();
+    private final int maximo;
+
+    // Texto de cada código.
+    private String[] textos = new String[64];
+    private int tamaño;
+
+    // Tabla abierta: hash en los 32 bits altos y código + 1 en los bajos (0 es ranura libre).
+    private long[] tabla = new long[128];
+    private byte[] auxiliar = new byte[128];
+
+    // Por índice de campo, con el diccionario lleno: búsquedas, aciertos y si se dejó de buscar.
+    private int[] consultas = new int[8];
+    private int[] aciertos = new int[8];
+    private boolean[] descartado = new boolean[8];
+
+    /**
+     * Crea un diccionario sin máximo, que asigna código a todos los valores.
+     */
+    Diccionario() {
+        this(Integer.MAX_VALUE);
+    }
+
+    private Diccionario(int maximo) {
+        this.maximo = maximo;
+    }
+
+    /** @return Diccionario limitado a {@value #MAXIMO_CARGA} valores, para compartir textos al cargar. */
+    static Diccionario paraCarga() {
+        return new Diccionario(MAXIMO_CARGA);
+    }
+
+    /**
+     * Obtiene el código de un campo de la fila actual, agregándolo si es nuevo.
+     * @param lector Lector posicionado en una fila.
+     * @param campo Índice del campo.
+     * @return Código del valor.
+     * @throws IllegalStateException Si el valor es nuevo y el diccionario está lleno.
+     */
+    int codigo(LectorCSV lector, int campo) {
+        int c = buscar(copiar(lector, campo), null);
+        if (c < 0) {
+            throw new IllegalStateException("Diccionario lleno: " + tamaño + " valores");
+        }
+        return c;
+    }
+
+    /**
+     * Devuelve la cadena compartida de un campo de la fila actual.
+     * @param lector Lector posicionado en una fila.
+     * @param campo Índice del campo.
+     * @return Texto del campo: la misma instancia para valores iguales, salvo los que no entraron en el diccionario.
+     */
+    String texto(LectorCSV lector, int campo) {
+        if (tamaño < maximo) {
+            int c = buscar(copiar(lector, campo), null);
+            return textos[c];
+        }
+        if (campo >= descartado.length) {
+            consultas = Arrays.copyOf(consultas, campo + 1);
+            aciertos = Arrays.copyOf(aciertos, campo + 1);
+            descartado = Arrays.copyOf(descartado, campo + 1);
+        }
+        if (descartado[campo]) {
+            return lector.texto(campo);
+        }
+        int largo = copiar(lector, campo);
+        int c = buscar(largo, null);
+        if (c >= 0) {
+            aciertos[campo]++;
+        }
+        if (++consultas[campo] == MUESTRA_ACIERTOS) {
+            // Si menos de la mitad de los valores ya estaban, buscarlos cuesta más de lo que ahorra.
+            descartado[campo] = aciertos[campo] < MUESTRA_ACIERTOS / 2;
+            consultas[campo] = 0;
+            aciertos[campo] = 0;
+        }
+        return c >= 0 ? textos[c] : new String(auxiliar, 0, largo, charset);
+    }
+
+    /**
+     * Devuelve la cadena compartida igual a un texto, agregándolo si es nuevo.
+     * @param texto Texto (no nulo).
+     * @return Cadena compartida, o el mismo texto si no entró en el diccionario.
+     */
+    String compartido(String texto) {
+        byte[] b = texto.getBytes(charset);
+        if (b.length > auxiliar.length) {
+            auxiliar = Arrays.copyOf(b, b.length);
+        } else {
+            System.arraycopy(b, 0, auxiliar, 0, b.length);
+        }
+        int c = buscar(b.length, texto);
+        return c >= 0 ? textos[c] : texto;
+    }
+
+    /**
+     * @param codigo Código asignado por este diccionario.
+     * @return Texto con ese código.
+     */
+    String texto(int codigo) {
+        if (codigo < 0 || codigo >= tamaño) {
+            throw new IllegalArgumentException("Código fuera del diccionario: " + codigo);
+        }
+        return textos[codigo];
+    }
+
+    /** @return Cantidad de valores distintos. */
+    int tamaño() {
+        return tamaño;
+    }
+
+    private int copiar(LectorCSV lector, int campo) {
+        int largo;
+        while ((largo = lector.copiarCampo(campo, auxiliar)) < 0) {
+            auxiliar = new byte[auxiliar.length * 2];
+        }
+        return largo;
+    }
+
+    // Busca los primeros 'largo' bytes del auxiliar; si no están, los agrega con el texto dado
+    // (o uno nuevo). Devuelve el código, o -1 si no estaban y el diccionario está lleno.
+    private int buscar(int largo, String texto) {
+        byte[] b = auxiliar;
+        int hash = 1;
+        boolean ascii = true;
+        for (int k = 0; k < largo; k++) {
+            hash = 31 * hash + b[k];
+            ascii &= b[k] >= 0;
+        }
+        int mascara = tabla.length - 1;
+        for (int r = mezclar(hash) & mascara; ; r = (r + 1) & mascara) {
+            long entrada = tabla[r];
+            if (entrada == 0) {
+                if (tamaño >= maximo) {
+                    return -1;
+                }
+                return agregar(texto != null ? texto : new String(b, 0, largo, charset), hash, r);
+            }
+            int c = (int) entrada - 1;
+            if ((int) (entrada >>> 32) == hash && iguales(textos[c], b, largo, ascii)) {
+                return c;
+            }
+        }
+    }
+
+    // Compara sin guardar los bytes de cada texto: en ASCII cada byte es un carácter.
+    private boolean iguales(String texto, byte[] b, int largo, boolean ascii) {
+        if (!ascii) {
+            return texto.equals(new String(b, 0, largo, charset));
+        }
+        if (texto.length() != largo) {
+            return false;
+        }
+        for (int k = 0; k < largo; k++) {
+            if (texto.charAt(k) != b[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int agregar(String texto, int hash, int ranura) {
+        if (tamaño == textos.length) {
+            textos = Arrays.copyOf(textos, tamaño * 2);
+        }
+        int c = tamaño++;
+        textos[c] = texto;
+        tabla[ranura] = ((long) hash << 32) | (c + 1);
+        if (tamaño * 2 > tabla.length) {
+            agrandar();
+        }
+        return c;
+    }
+
+    private void agrandar() {
+        long[] nueva = new long[tabla.length * 2];
+        int mascara = nueva.length - 1;
+        for (long entrada : tabla) {
+            if (entrada == 0) continue;
+            int r = mezclar((int) (entrada >>> 32)) & mascara;
+            while (nueva[r] != 0) {
+                r = (r + 1) & mascara;
+            }
+            nueva[r] = entrada;
+        }
+        tabla = nueva;
+    }
+
+    private static int mezclar(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package Model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Directorio de usuarios del sistema ShopPlus indexado por email normalizado.
+ * El email se compara sin distinguir mayúsculas ni espacios en los extremos,
+ * de modo que iniciar sesión o buscar un usuario cuesta una sola consulta al mapa.
+ * Desde {@value #USUARIOS_PARA_FILTRO} usuarios, las búsquedas pasan antes por un {@link FiltroBloom}:
+ * un email que no está registrado (el caso común al registrarse) se descarta sin tocar el mapa.
+ * Es seguro usarlo desde varias sesiones a la vez.
+ * @author andres
+ */
+public class DirectorioUsuarios {
+    /** Cantidad de usuarios a partir de la cual se usa el filtro. */
+    public static final int USUARIOS_PARA_FILTRO = 100_000;
+
+    /** Usuario junto con su número de orden de registro. */
+    private static final class Entrada {
+        final long orden;
+        final Usuario usuario;
+
+        Entrada(long orden, Usuario usuario) {
+            this.orden = orden;
+            this.usuario = usuario;
+        }
+    }
+
+    private final ConcurrentMap<String, Entrada> porEmail;
+    private final ConcurrentSkipListMap<Long, Usuario> enOrden = new ConcurrentSkipListMap<>();
+    private final AtomicLong siguienteOrden = new AtomicLong();
+    private volatile FiltroBloom filtro;
+
+    /**
+     * Crea un directorio vacío.
+     */
+    public DirectorioUsuarios() {
+        this.porEmail = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Crea un directorio a partir de una colección de usuarios.
+     * Si hay emails repetidos se conserva el primero leído.
+     * @param usuarios Usuarios iniciales.
+     */
+    public DirectorioUsuarios(Collection<Usuario> usuarios) {
+        this.porEmail = new ConcurrentHashMap<>(Math.max(16, (int) (usuarios.size() / 0.75f) + 1));
+        for (Usuario u : usuarios) {
+            agregar(u);
+        }
+    }
+
+    /**
+     * Normaliza un email para usarlo como clave del directorio.
+     * @param email Email tal como fue ingresado.
+     * @return Email sin espacios en los extremos y en minúsculas, o {@code null} si es nulo.
+     */
+    public static String normalizar(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Busca un usuario por email.
+     * @param email Email a buscar (se normaliza).
+     * @return Usuario encontrado o {@code null} si no existe.
+     */
+    public Usuario buscar(String email) {
+        if (email == null) {
+            return null;
+        }
+        String clave = normalizar(email);
+        FiltroBloom f = filtro;
+        if (f != null && !f.puedeContener(clave)) {
+            return null;
+        }
+        Entrada e = porEmail.get(clave);
+        return e == null ? null : e.usuario;
+    }
+
+    /**
+     * Indica si ya hay un usuario registrado con el email dado.
+     * @param email Email a comprobar.
+     * @return {@code true} si el email está en uso.
+     */
+    public boolean contiene(String email) {
+        if (email == null) {
+            return false;
+        }
+        String clave = normalizar(email);
+        FiltroBloom f = filtro;
+        return (f == null || f.puedeContener(clave)) && porEmail.containsKey(clave);
+    }
+
+    /**
+     * Agrega un usuario nuevo.
+     * @param usuario Usuario a agregar.
+     * @return {@code true} si se agregó, {@code false} si el email ya estaba registrado.
+     */
+    public boolean agregar(Usuario usuario) {
+        boolean[] agregado = new boolean[1];
+        // Las altas se hacen de a una para que el filtro no se rearme mientras se marca un email.
+        synchronized (this) {
+            FiltroBloom f = filtro;
+            porEmail.computeIfAbsent(normalizar(usuario.getEmail()), k -> {
+                // El email se marca en el filtro antes de ser visible en el mapa.
+                if (f != null) f.agregar(k);
+                Entrada nueva = new Entrada(siguienteOrden.getAndIncrement(), usuario);
+                enOrden.put(nueva.orden, usuario);
+                agregado[0] = true;
+                return nueva;
+            });
+            if (agregado[0]) {
+                ampliarFiltro();
+            }
+        }
+        return agregado[0];
+    }
+
+    /** Arma el filtro al llegar al umbral, y uno del doble de capacidad cuando se llena. */
+    private void ampliarFiltro() {
+        int n = porEmail.size();
+        FiltroBloom f = filtro;
+        if (f == null ? n >= USUARIOS_PARA_FILTRO : n > f.capacidad()) {
+            FiltroBloom nuevo = new FiltroBloom(2 * n);
+            for (String clave : porEmail.keySet()) {
+                nuevo.agregar(clave);
+            }
+            filtro = nuevo;
+        }
+    }
+
+    /**
+     * Elimina un usuario por email.
+     * @param email Email del usuario a eliminar.
+     * @return Usuario eliminado o {@code null} si no existía.
+     */
+    public Usuario eliminar(String email) {
+        if (email == null) {
+            return null;
+        }
+        Usuario[] eliminado = new Usuario[1];
+        porEmail.computeIfPresent(normalizar(email), (k, e) -> {
+            eliminado[0] = e.usuario;
+            enOrden.remove(e.orden);
+            return null;
+        });
+        return eliminado[0];
+    }
+
+    /**
+     * @return Vista de solo lectura de los usuarios en orden de registro.
+     */
+    public Collection<Usuario> listar() {
+        return Collections.unmodifiableCollection(enOrden.values());
+    }
+
+    /** @return Cantidad de usuarios registrados. */
+    public int tamaño() {
+        return porEmail.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package Model;
+
+/**
+ * Nivel de durabilidad con el que se confirma una escritura agregada a un archivo.
+ * @author andres
+ */
+public enum Durabilidad {
+    /** Se confirma en cuanto el registro entra en la cola; se escribe con el siguiente lote. */
+    NINGUNA,
+    /** Se confirma cuando el lote se entregó al sistema operativo. */
+    VACIAR,
+    /** Se confirma cuando el lote quedó sincronizado en disco (fsync). */
+    SINCRONIZAR
+}
\ No newline at end of file
@@ -11,7 +11,8 @@ public class Envio {
     private String emailProveedor;
     private String idProducto;
     private int cantidad;
-    private LocalDateTime fecha;
+    // Fecha y hora del envío, como MarcaTiempo.
+    private long fecha;
 
     /**
      * Constructor completo para crear un objeto Envio.
@@ -22,10 +23,22 @@ public class Envio {
      * @param fecha Fecha y hora del envío
      */
     public Envio(String emailProveedor, String idProducto, int cantidad, LocalDateTime fecha) {
+        this(emailProveedor, idProducto, cantidad, MarcaTiempo.desde(fecha));
+    }
+
+    /**
+     * Crea un envío con la fecha como marca de tiempo, sin pasar por {@link LocalDateTime}.
+     *
+     * @param emailProveedor Correo electrónico del proveedor
+     * @param idProducto Identificador del producto enviado
+     * @param cantidad Cantidad de unidades enviadas
+     * @param marcaTiempo Fecha y hora del envío (ver {@link MarcaTiempo})
+     */
+    public Envio(String emailProveedor, String idProducto, int cantidad, long marcaTiempo) {
         this.emailProveedor = emailProveedor;
         this.idProducto = idProducto;
         this.cantidad = cantidad;
-        this.fecha = fecha;
+        this.fecha = marcaTiempo;
     }
 
     /** @return Correo electrónico del proveedor */
@@ -60,12 +73,22 @@ public class Envio {
 
     /** @return Fecha y hora del envío */
     public LocalDateTime getFecha() {
-        return fecha;
+        return MarcaTiempo.aFecha(fecha);
     }
 
     /** @param fecha Nueva fecha y hora del envío */
     public void setFecha(LocalDateTime fecha) {
-        this.fecha = fecha;
+        this.fecha = MarcaTiempo.desde(fecha);
+    }
+
+    /** @return Fecha y hora del envío como {@link MarcaTiempo} */
+    public long getMarcaTiempo() {
+        return fecha;
+    }
+
+    /** @param marcaTiempo Nueva fecha y hora del envío como {@link MarcaTiempo} */
+    public void setMarcaTiempo(long marcaTiempo) {
+        this.fecha = marcaTiempo;
     }
 
     /**
@@ -75,6 +98,6 @@ public class Envio {
      */
     @Override
     public String toString() {
-        return emailProveedor + "," + idProducto + "," + cantidad + "," + fecha;
+        return emailProveedor + "," + idProducto + "," + cantidad + "," + MarcaTiempo.texto(fecha);
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package Model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom por bloques para textos: responde "seguro que no está" o "puede estar".
+ * Cada texto marca 4 bits dentro de una sola palabra de 64 bits, así consultar es leer una
+ * única posición de memoria en lugar de recorrer un mapa. Con al menos 16 bits por elemento
+ * previsto, los falsos positivos rondan el 0,3%. No permite quitar elementos: los bits de un texto
+ * eliminado quedan marcados y solo hacen que alguna consulta vaya de más al mapa.
+ * Es seguro usarlo desde varios hilos a la vez.
+ * @author andres
+ */
+final class FiltroBloom {
+    private final AtomicLongArray bits;
+    private final int mascara;
+    private final int capacidad;
+
+    /**
+     * @param capacidad Cantidad de elementos prevista; con más, los falsos positivos aumentan.
+     */
+    FiltroBloom(int capacidad) {
+        int palabras = Integer.highestOneBit(Math.max(64, capacidad / 4 - 1)) * 2;
+        this.bits = new AtomicLongArray(palabras);
+        this.mascara = palabras - 1;
+        this.capacidad = capacidad;
+    }
+
+    /** @return Cantidad de elementos para la que se dimensionó el filtro. */
+    int capacidad() {
+        return capacidad;
+    }
+
+    /**
+     * Marca un texto como presente.
+     * @param texto Texto a agregar.
+     */
+    void agregar(String texto) {
+        long h = mezclar(texto);
+        long marca = marca(h);
+        int i = palabra(h);
+        long actual;
+        do {
+            actual = bits.get(i);
+        } while ((actual & marca) != marca && !bits.compareAndSet(i, actual, actual | marca));
+    }
+
+    /**
+     * @param texto Texto a consultar.
+     * @return {@code false} si el texto seguro no se agregó; {@code true} si puede haberse agregado.
+     */
+    boolean puedeContener(String texto) {
+        long h = mezclar(texto);
+        long marca = marca(h);
+        return (bits.get(palabra(h)) & marca) == marca;
+    }
+
+    private int palabra(long h) {
+        return (int) (h >>> 40) & mascara;
+    }
+
+    // Los cuatro bits salen de distintos tramos del mismo hash.
+    private static long marca(long h) {
+        return (1L << (h & 63)) | (1L << ((h >>> 6) & 63)) | (1L << ((h >>> 12) & 63)) | (1L << ((h >>> 18) & 63));
+    }
+
+    // El hashCode de String queda guardado en la cadena; se mezcla para repartir bien sus bits.
+    private static long mezclar(String texto) {
+        long h = texto.hashCode() * 0x9E3779B97F4A7C15L + texto.length();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
\ No newline at end of file
@@ -1,60 +1,215 @@
 package Model;
 import java.io.*;
 import java.util.*;
-import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.time.LocalDate;
 
 /**
  * Clase utilitaria para la gestión de archivos CSV relacionados con usuarios, productos, pedidos y envíos.
  * Proporciona métodos para cargar y guardar datos en archivos de texto plano.
+ * La lectura se hace con {@link LectorCSV}; al escribir, los campos con comas,
+ * comillas o saltos de línea se encierran entre comillas (RFC 4180).
  * @author andres
  */
 public class GestorCSV {
+    private static final Metricas.Operacion CARGAR_USUARIOS = Metricas.operacion("GestorCSV.cargarUsuarios");
+    private static final Metricas.Operacion GUARDAR_USUARIOS = Metricas.operacion("GestorCSV.guardarUsuarios");
+    private static final Metricas.Operacion REGISTRAR_USUARIO = Metricas.operacion("GestorCSV.registrarUsuario");
+    private static final Metricas.Operacion ELIMINAR_USUARIO = Metricas.operacion("GestorCSV.eliminarUsuario");
+    private static final Metricas.Operacion COMPACTAR_USUARIOS = Metricas.operacion("GestorCSV.compactarUsuarios");
+    private static final Metricas.Operacion CARGAR_PRODUCTOS = Metricas.operacion("GestorCSV.cargarProductos");
+    private static final Metricas.Operacion GUARDAR_PRODUCTOS = Metricas.operacion("GestorCSV.guardarProductos");
+    private static final Metricas.Operacion REGISTRAR_CAMBIO_STOCK = Metricas.operacion("GestorCSV.registrarCambioStock");
+    private static final Metricas.Operacion COMPACTAR_PRODUCTOS = Metricas.operacion("GestorCSV.compactarProductos");
+    private static final Metricas.Operacion GUARDAR_PEDIDO = Metricas.operacion("GestorCSV.guardarPedido");
+    private static final Metricas.Operacion CARGAR_PEDIDOS_CLIENTE = Metricas.operacion("GestorCSV.cargarPedidosCliente");
+    private static final Metricas.Operacion MARCAR_PEDIDO_ENVIADO = Metricas.operacion("GestorCSV.marcarPedidoEnviado");
+    private static final Metricas.Operacion COMPACTAR_PEDIDOS = Metricas.operacion("GestorCSV.compactarPedidos");
+    private static final Metricas.Operacion CARGAR_PEDIDOS = Metricas.operacion("GestorCSV.cargarPedidos");
+    private static final Metricas.Operacion GUARDAR_PEDIDOS = Metricas.operacion("GestorCSV.guardarPedidos");
+    private static final Metricas.Operacion GUARDAR_ENVIO = Metricas.operacion("GestorCSV.guardarEnvio");
+    private static final Metricas.Operacion CARGAR_ENVIOS = Metricas.operacion("GestorCSV.cargarEnvios");
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("csv.bytesEscritos");
+
+    /**
+     * Prepara un valor para escribirlo como campo CSV.
+     *
+     * @param valor Texto del campo
+     * @return El mismo texto, o el texto entre comillas si contiene caracteres especiales
+     */
+    static String campo(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + valor.replace("\"", "\"\"") + '"';
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Arma la línea CSV de un producto.
+     *
+     * @param p Producto
+     * @return Línea {@code id,nombre,precio,cantidad} sin salto de línea
+     */
+    static String filaProducto(Producto p) {
+        return campo(p.getId()) + "," + campo(p.getNombre()) + "," + p.getPrecio() + "," + p.getCantidad();
+    }
+
+    /**
+     * Arma la línea CSV de un pedido. La fecha se escribe con {@link MarcaTiempo}.
+     *
+     * @param p Pedido
+     * @return Línea {@code email,idProducto,fecha} sin salto de línea
+     */
+    static String filaPedido(Pedido p) {
+        StringBuilder fila = new StringBuilder(80);
+        fila.append(campo(p.getEmailCliente())).append(',').append(campo(p.getIdProducto())).append(',');
+        return MarcaTiempo.escribir(p.getMarcaTiempo(), fila).toString();
+    }
+
+    /**
+     * Arma la línea CSV de un envío. La fecha se escribe con {@link MarcaTiempo}.
+     *
+     * @param e Envío
+     * @return Línea {@code email,idProducto,cantidad,fecha} sin salto de línea
+     */
+    static String filaEnvio(Envio e) {
+        StringBuilder fila = new StringBuilder(80);
+        fila.append(campo(e.getEmailProveedor())).append(',').append(campo(e.getIdProducto())).append(',')
+                .append(e.getCantidad()).append(',');
+        return MarcaTiempo.escribir(e.getMarcaTiempo(), fila).toString();
+    }
+
+    /**
+     * Arma la línea CSV de un usuario.
+     *
+     * @param u Usuario
+     * @return Línea {@code tipo,nombre,email,contraseña} sin salto de línea
+     */
+    static String filaUsuario(Usuario u) {
+        return u.getClass().getSimpleName() + "," + campo(u.getNombre()) + "," + campo(u.getEmail()) + "," + campo(u.getContraseña());
+    }
 
     // === USUARIOS ===
 
     /**
      * Carga una lista de usuarios desde un archivo CSV.
+     * Si existe una copia binaria vigente ({@code rutaArchivo + ".bin"}) se lee esa;
+     * si no, se lee el CSV y se deja escrita la copia para el próximo arranque.
+     * Las filas {@code Baja,,email,} borran a los usuarios registrados antes con ese email.
      *
      * @param rutaArchivo Ruta del archivo que contiene los usuarios
      * @return Lista de objetos Usuario cargados
      * @throws IOException Si ocurre un error al leer el archivo
      */
     public static List<Usuario> cargarUsuarios(String rutaArchivo) throws IOException {
-        List<Usuario> usuarios = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaArchivo))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] partes = linea.split(",");
-                if (partes.length < 4) continue;
-                String tipo = partes[0].trim().toLowerCase();
-                String nombre = partes[1];
-                String email = partes[2];
-                String contraseña = partes[3];
-
-                Usuario u = switch (tipo) {
-                    case "cliente" -> new Cliente(nombre, email, contraseña);
-                    case "administrador" -> new Administrador(nombre, email, contraseña);
-                    case "proveedor" -> new Proveedor(nombre, email, contraseña);
-                    default -> null;
-                };
-                if (u != null) usuarios.add(u);
-            }
+        long inicio = CARGAR_USUARIOS.inicio();
+        try {
+            return ArchivoUsuarios.de(rutaArchivo).cargar();
+        } finally {
+            CARGAR_USUARIOS.registrar(inicio);
         }
-        return usuarios;
     }
 
     /**
-     * Guarda una lista de usuarios en un archivo CSV.
+     * Guarda una lista de usuarios en un archivo CSV y actualiza su copia binaria.
+     * El archivo se reescribe completo y queda sin bajas anotadas.
      *
-     * @param usuarios Lista de usuarios a guardar
+     * @param usuarios Usuarios a guardar
      * @param rutaArchivo Ruta del archivo destino
      * @throws IOException Si ocurre un error al escribir el archivo
      */
-    public static void guardarUsuarios(List<Usuario> usuarios, String rutaArchivo) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaArchivo))) {
+    public static void guardarUsuarios(Collection<Usuario> usuarios, String rutaArchivo) throws IOException {
+        long inicio = GUARDAR_USUARIOS.inicio();
+        try {
+            ArchivoUsuarios.de(rutaArchivo).guardar(usuarios);
+        } finally {
+            GUARDAR_USUARIOS.registrar(inicio);
+        }
+    }
+
+    /**
+     * Agrega un usuario nuevo al final del archivo, sin reescribirlo.
+     * No comprueba duplicados: el email ya debe estar validado contra los usuarios cargados.
+     *
+     * @param usuario Usuario a registrar
+     * @param rutaArchivo Ruta del archivo de usuarios
+     * @throws IOException Si ocurre un error al escribir el archivo
+     */
+    public static void registrarUsuario(Usuario usuario, String rutaArchivo) throws IOException {
+        long inicio = REGISTRAR_USUARIO.inicio();
+        try {
+            esperar(ArchivoUsuarios.de(rutaArchivo).registrar(usuario));
+        } finally {
+            REGISTRAR_USUARIO.registrar(inicio);
+        }
+    }
+
+    /**
+     * Da de baja un usuario agregando una fila {@code Baja,,email,} al archivo.
+     * Si las bajas anotadas superan el umbral, el archivo se compacta en segundo plano.
+     *
+     * @param email Email del usuario a eliminar
+     * @param rutaArchivo Ruta del archivo de usuarios
+     * @throws IOException Si ocurre un error al escribir el archivo
+     */
+    public static void eliminarUsuario(String email, String rutaArchivo) throws IOException {
+        long inicio = ELIMINAR_USUARIO.inicio();
+        try {
+            esperar(ArchivoUsuarios.de(rutaArchivo).darDeBaja(email));
+        } finally {
+            ELIMINAR_USUARIO.registrar(inicio);
+        }
+    }
+
+    /**
+     * Reescribe el archivo de usuarios sin las bajas anotadas, de forma síncrona.
+     *
+     * @param rutaArchivo Ruta del archivo de usuarios
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static void compactarUsuarios(String rutaArchivo) throws IOException {
+        long inicio = COMPACTAR_USUARIOS.inicio();
+        try {
+            ArchivoUsuarios.de(rutaArchivo).compactar();
+        } finally {
+            COMPACTAR_USUARIOS.registrar(inicio);
+        }
+    }
+
+    /**
+     * Cambia la cantidad de bajas anotadas que dispara la compactación automática del archivo de usuarios.
+     *
+     * @param umbral Bajas toleradas en el archivo; 0 o menos la desactiva
+     */
+    public static void setUmbralCompactacionUsuarios(int umbral) {
+        ArchivoUsuarios.setUmbralCompactacion(umbral);
+    }
+
+    /**
+     * Exporta una copia binaria de usuarios a CSV, para revisarla a mano.
+     *
+     * @param rutaBinaria Ruta del archivo binario (por ejemplo {@code Usuarios.txt.bin})
+     * @param rutaDestino Ruta del CSV a escribir
+     * @throws IOException Si el binario no es válido o no se puede escribir el CSV
+     */
+    public static void exportarUsuariosCSV(String rutaBinaria, String rutaDestino) throws IOException {
+        List<Usuario> usuarios = InstantaneaBinaria.leerUsuarios(rutaBinaria);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaDestino))) {
             for (Usuario u : usuarios) {
-                String tipo = u.getClass().getSimpleName();
-                writer.write(tipo + "," + u.getNombre() + "," + u.getEmail() + "," + u.getContraseña());
+                writer.write(filaUsuario(u));
                 writer.newLine();
             }
         }
@@ -64,96 +219,429 @@ public class GestorCSV {
 
     /**
      * Carga una lista de productos desde un archivo CSV.
+     * Si existe una copia binaria vigente ({@code rutaArchivo + ".bin"}) se lee esa;
+     * si no, se lee el CSV y se deja escrita la copia para el próximo arranque.
+     * Después de leer la instantánea reaplica los cambios de stock pendientes
+     * del diario ({@code rutaArchivo + ".diario"}).
      *
      * @param rutaArchivo Ruta del archivo que contiene los productos
      * @return Lista de objetos Producto cargados
      * @throws IOException Si ocurre un error al leer el archivo
      */
     public static List<Producto> cargarProductos(String rutaArchivo) throws IOException {
-        List<Producto> productos = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaArchivo))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] partes = linea.split(",");
-                if (partes.length < 4) continue;
-                String id = partes[0];
-                String nombre = partes[1];
-                double precio = Double.parseDouble(partes[2]);
-                int cantidad = Integer.parseInt(partes[3]);
-                productos.add(new Producto(id, nombre, precio, cantidad));
+        long inicio = CARGAR_PRODUCTOS.inicio();
+        try {
+            long[] secuenciaInstantanea = {-1};
+            List<Producto> productos = InstantaneaBinaria.cargarProductos(rutaArchivo, secuenciaInstantanea);
+            if (productos == null) {
+                productos = new ArrayList<>();
+                try (LectorCSV lector = new LectorCSV(rutaArchivo)) {
+                    secuenciaInstantanea[0] = leerProductos(lector, productos);
+                }
+                InstantaneaBinaria.guardarProductosSinFallar(productos, secuenciaInstantanea[0], rutaArchivo);
+            }
+            DiarioStock.de(rutaArchivo).reaplicar(productos, secuenciaInstantanea[0]);
+            return productos;
+        } finally {
+            CARGAR_PRODUCTOS.registrar(inicio);
+        }
+    }
+
+    /**
+     * Lee las filas de productos de un lector, incluida la cabecera del diario si existe.
+     *
+     * @param lector Lector posicionado al inicio del archivo
+     * @param productos Lista donde se agregan los productos leídos
+     * @return Secuencia del diario incluida en la instantánea, o -1 si no tiene cabecera
+     * @throws IOException Si ocurre un error al leer
+     */
+    static long leerProductos(LectorCSV lector, List<Producto> productos) throws IOException {
+        long secuencia = -1;
+        while (lector.siguienteFila()) {
+            if (lector.numeroCampos() == 2 && lector.campoEs(0, DiarioStock.MARCA)) {
+                secuencia = lector.largo(1);
+                continue;
             }
+            if (lector.numeroCampos() < 4) continue;
+            String id = lector.texto(0);
+            String nombre = lector.texto(1);
+            double precio = lector.decimal(2);
+            int cantidad = lector.entero(3);
+            productos.add(new Producto(id, nombre, precio, cantidad));
         }
-        return productos;
+        return secuencia;
     }
 
     /**
      * Guarda una lista de productos en un archivo CSV.
+     * Es una instantánea completa: el diario de stock queda vacío porque sus cambios ya están incluidos.
      *
-     * @param productos Lista de productos a guardar
+     * @param productos Productos a guardar
      * @param rutaArchivo Ruta del archivo destino
      * @throws IOException Si ocurre un error al escribir el archivo
      */
-    public static void guardarProductos(List<Producto> productos, String rutaArchivo) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaArchivo))) {
+    public static void guardarProductos(Collection<Producto> productos, String rutaArchivo) throws IOException {
+        long inicio = GUARDAR_PRODUCTOS.inicio();
+        try {
+            DiarioStock.de(rutaArchivo).guardarInstantanea(productos);
+        } finally {
+            GUARDAR_PRODUCTOS.registrar(inicio);
+        }
+    }
+
+    /**
+     * Exporta una copia binaria de productos a CSV, para revisarla a mano.
+     * Si la copia incluye cambios del diario, el CSV conserva la cabecera {@code #diario,<secuencia>}.
+     *
+     * @param rutaBinaria Ruta del archivo binario (por ejemplo {@code Productos.txt.bin})
+     * @param rutaDestino Ruta del CSV a escribir
+     * @throws IOException Si el binario no es válido o no se puede escribir el CSV
+     */
+    public static void exportarProductosCSV(String rutaBinaria, String rutaDestino) throws IOException {
+        long[] secuencia = {-1};
+        List<Producto> productos = InstantaneaBinaria.leerProductos(rutaBinaria, secuencia);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaDestino))) {
+            if (secuencia[0] >= 0) {
+                writer.write(DiarioStock.CABECERA + secuencia[0]);
+                writer.newLine();
+            }
             for (Producto p : productos) {
-                writer.write(p.getId() + "," + p.getNombre() + "," + p.getPrecio() + "," + p.getCantidad());
+                writer.write(filaProducto(p));
                 writer.newLine();
             }
         }
     }
 
+    /**
+     * Registra un cambio de stock agregando una línea al diario del archivo de productos,
+     * sin reescribir el catálogo. Si el diario supera el umbral se compacta en segundo plano.
+     *
+     * @param idProducto ID del producto modificado
+     * @param delta Unidades sumadas (positivo) o restadas (negativo)
+     * @param rutaArchivo Ruta del archivo de productos
+     * @throws IOException Si ocurre un error al escribir el diario
+     */
+    public static void registrarCambioStock(String idProducto, int delta, String rutaArchivo) throws IOException {
+        long inicio = REGISTRAR_CAMBIO_STOCK.inicio();
+        try {
+            DiarioStock.de(rutaArchivo).registrar(idProducto, delta);
+        } finally {
+            REGISTRAR_CAMBIO_STOCK.registrar(inicio);
+        }
+    }
+
+    /**
+     * Incorpora el diario de stock al archivo de productos de forma síncrona.
+     *
+     * @param rutaArchivo Ruta del archivo de productos
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static void compactarProductos(String rutaArchivo) throws IOException {
+        long inicio = COMPACTAR_PRODUCTOS.inicio();
+        try {
+            DiarioStock.de(rutaArchivo).compactar();
+        } finally {
+            COMPACTAR_PRODUCTOS.registrar(inicio);
+        }
+    }
+
+    /**
+     * Incorpora el diario de stock al archivo de productos en un hilo de fondo.
+     *
+     * @param rutaArchivo Ruta del archivo de productos
+     * @return Futuro que se completa al terminar la compactación
+     */
+    public static CompletableFuture<Void> compactarProductosEnSegundoPlano(String rutaArchivo) {
+        return DiarioStock.de(rutaArchivo).compactarEnSegundoPlano();
+    }
+
+    /**
+     * Cambia la cantidad de cambios de stock acumulados que dispara la compactación automática.
+     *
+     * @param umbral Registros tolerados en el diario; 0 o menos la desactiva
+     */
+    public static void setUmbralCompactacionStock(int umbral) {
+        DiarioStock.setUmbralCompactacion(umbral);
+    }
+
     // === PEDIDOS ===
 
     /**
      * Guarda un pedido individual en un archivo CSV.
+     * La línea pasa por el anexador del archivo, que agrupa las escrituras concurrentes;
+     * el método espera a que se confirme según la durabilidad configurada.
+     * El índice por cliente incorpora la fila la próxima vez que se consulta.
+     * La fila también se agrega al segmento de su período (ver {@link #leerPedidosEntre}).
      *
      * @param pedido Pedido a guardar
      * @param rutaArchivo Ruta del archivo destino
      * @throws IOException Si ocurre un error al escribir el archivo
      */
     public static void guardarPedido(Pedido pedido, String rutaArchivo) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaArchivo, true))) {
-            writer.write(pedido.getEmailCliente() + "," + pedido.getIdProducto() + "," + pedido.getFecha());
-            writer.newLine();
+        long inicio = GUARDAR_PEDIDO.inicio();
+        try {
+            esperar(guardarPedidoAsincrono(pedido, rutaArchivo));
+        } finally {
+            GUARDAR_PEDIDO.registrar(inicio);
+        }
+    }
+
+    /**
+     * Encola un pedido para agregarlo al archivo sin esperar la escritura.
+     *
+     * @param pedido Pedido a guardar
+     * @param rutaArchivo Ruta del archivo destino
+     * @return Futuro que se completa según la durabilidad configurada
+     */
+    public static CompletableFuture<Void> guardarPedidoAsincrono(Pedido pedido, String rutaArchivo) {
+        return guardarPedidoAsincrono(pedido, rutaArchivo, null);
+    }
+
+    /**
+     * Guarda un pedido y le asigna la posición donde quedó su fila ({@link Pedido#setPosicion}).
+     * A diferencia de {@link #guardarPedido}, espera a que la fila esté escrita aun con
+     * durabilidad {@link Durabilidad#NINGUNA}, porque la posición se conoce recién entonces.
+     *
+     * @param pedido Pedido a guardar
+     * @param rutaArchivo Ruta del archivo destino
+     * @throws IOException Si ocurre un error al escribir el archivo
+     */
+    static void guardarPedidoConPosicion(Pedido pedido, String rutaArchivo) throws IOException {
+        long inicio = GUARDAR_PEDIDO.inicio();
+        try {
+            CompletableFuture<Long> posicion = new CompletableFuture<>();
+            esperar(guardarPedidoAsincrono(pedido, rutaArchivo, posicion));
+            pedido.setPosicion(esperar(posicion));
+        } finally {
+            GUARDAR_PEDIDO.registrar(inicio);
+        }
+    }
+
+    private static CompletableFuture<Void> guardarPedidoAsincrono(Pedido pedido, String rutaArchivo,
+            CompletableFuture<Long> posicion) {
+        String linea = filaPedido(pedido);
+        return SegmentosHistorial.dePedidos(rutaArchivo).anexar(pedido.getMarcaTiempo(),
+                segmento -> Agregados.dePedidos(rutaArchivo).anexarPedido(pedido, linea, segmento, posicion));
+    }
+
+    /**
+     * Carga los pedidos de un cliente usando el índice por cliente,
+     * leyendo solo las filas de ese cliente en lugar de todo el archivo.
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los pedidos
+     * @param emailCliente Email exacto del cliente
+     * @return Pedidos del cliente en el orden del archivo
+     * @throws IOException Si ocurre un error al leer el archivo o el índice
+     */
+    public static List<Pedido> cargarPedidosCliente(String rutaArchivo, String emailCliente) throws IOException {
+        long inicio = CARGAR_PEDIDOS_CLIENTE.inicio();
+        try {
+            IndicePedidos indice = IndicePedidos.de(rutaArchivo);
+            long[] posiciones = indice.posiciones(emailCliente);
+            Map<Long, Pedido> bajas = indice.bajas();
+            List<Pedido> pedidos = new ArrayList<>(posiciones.length);
+            if (posiciones.length == 0) {
+                return pedidos;
+            }
+            try (LectorCSV lector = new LectorCSV(rutaArchivo, posiciones[0])) {
+                byte[] email = lector.codificar(emailCliente);
+                Diccionario diccionario = Diccionario.paraCarga();
+                for (long posicion : posiciones) {
+                    lector.posicionar(posicion);
+                    if (lector.siguienteFila() && lector.numeroCampos() >= 3 && lector.campoIgual(0, email)) {
+                        Pedido p = leerPedido(lector, diccionario);
+                        if (!IndicePedidos.esBaja(bajas, p)) pedidos.add(p);
+                    }
+                }
+            }
+            return pedidos;
+        } finally {
+            CARGAR_PEDIDOS_CLIENTE.registrar(inicio);
+        }
+    }
+
+    /**
+     * Da de baja un pedido ya enviado agregando una lápida en {@code rutaArchivo + ".bajas"},
+     * sin reescribir el archivo de pedidos. Las lecturas posteriores omiten el pedido y,
+     * cuando la proporción de bajas supera el umbral, el archivo se compacta en segundo plano.
+     *
+     * @param pedido Pedido leído del archivo (con su posición)
+     * @param rutaArchivo Ruta del archivo que contiene los pedidos
+     * @return {@code true} si se dio de baja, {@code false} si el pedido ya no estaba pendiente
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static boolean marcarPedidoEnviado(Pedido pedido, String rutaArchivo) throws IOException {
+        long inicio = MARCAR_PEDIDO_ENVIADO.inicio();
+        try {
+            return IndicePedidos.de(rutaArchivo).darDeBaja(pedido);
+        } finally {
+            MARCAR_PEDIDO_ENVIADO.registrar(inicio);
+        }
+    }
+
+    /**
+     * Reescribe el archivo de pedidos sin los pedidos dados de baja, de forma síncrona.
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los pedidos
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static void compactarPedidos(String rutaArchivo) throws IOException {
+        long inicio = COMPACTAR_PEDIDOS.inicio();
+        try {
+            IndicePedidos.de(rutaArchivo).compactar();
+        } finally {
+            COMPACTAR_PEDIDOS.registrar(inicio);
         }
     }
 
     /**
-     * Carga una lista de pedidos desde un archivo CSV.
+     * Cambia la proporción de pedidos dados de baja a partir de la cual se compacta el archivo.
+     *
+     * @param proporcion Valor entre 0 y 1 (por defecto 0.5)
+     */
+    public static void setProporcionCompactacionPedidos(double proporcion) {
+        IndicePedidos.setProporcionCompactacion(proporcion);
+    }
+
+    /**
+     * Vuelve a construir el índice por cliente a partir del archivo de pedidos.
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los pedidos
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static void reconstruirIndicePedidos(String rutaArchivo) throws IOException {
+        IndicePedidos.de(rutaArchivo).reconstruir();
+    }
+
+    /**
+     * Carga una lista de pedidos desde un archivo CSV, omitiendo los dados de baja.
+     * Los emails e IDs repetidos comparten una misma cadena. Si hay una versión codificada
+     * vigente (ver {@link #codificarPedidos}), se usa para la parte que cubre y del CSV solo
+     * se leen las filas agregadas después. Si lo que queda por leer del CSV es grande,
+     * se lee por tramos en paralelo (ver {@link LecturaParalela}).
      *
      * @param rutaArchivo Ruta del archivo que contiene los pedidos
      * @return Lista de objetos Pedido cargados
      * @throws IOException Si ocurre un error al leer el archivo
      */
     public static List<Pedido> cargarPedidos(String rutaArchivo) throws IOException {
-        List<Pedido> pedidos = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaArchivo))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] partes = linea.split(",");
-                if (partes.length < 3) continue;
-                String email = partes[0];
-                String idProducto = partes[1];
-                LocalDateTime fecha = LocalDateTime.parse(partes[2]);
-                pedidos.add(new Pedido(email, idProducto, fecha));
-            }
+        long inicio = CARGAR_PEDIDOS.inicio();
+        try {
+            List<Pedido> pedidos = new ArrayList<>();
+            Map<Long, Pedido> bajas = IndicePedidos.de(rutaArchivo).bajas();
+            Diccionario diccionario = Diccionario.paraCarga();
+            long desde = HistorialCodificado.cargarPedidos(rutaArchivo, diccionario, bajas, pedidos);
+            Supplier<Diccionario> diccionarios = diccionariosPorTramo(diccionario);
+            pedidos.addAll(LecturaParalela.leer(rutaArchivo, desde, () -> {
+                Diccionario propio = diccionarios.get();
+                return lector -> {
+                    Pedido p = leerPedido(lector, propio);
+                    return p == null || IndicePedidos.esBaja(bajas, p) ? null : p;
+                };
+            }));
+            return pedidos;
+        } finally {
+            CARGAR_PEDIDOS.registrar(inicio);
         }
-        return pedidos;
+    }
+
+    /**
+     * Recorre los pedidos de un archivo CSV de forma perezosa, sin cargarlos todos en memoria.
+     * El flujo mantiene el archivo abierto: debe cerrarse (por ejemplo con try-with-resources).
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los pedidos
+     * @return Flujo de pedidos en el orden del archivo
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public static Stream<Pedido> leerPedidos(String rutaArchivo) throws IOException {
+        return leerPedidos(rutaArchivo, null, null);
+    }
+
+    /**
+     * Recorre de forma perezosa los pedidos vigentes que cumplen un filtro.
+     * El filtro se evalúa sobre los bytes de cada fila antes de crear el pedido,
+     * así las filas descartadas no generan objetos.
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los pedidos
+     * @param emailCliente Email exacto del cliente, o {@code null} para no filtrar
+     * @param idProducto ID exacto del producto, o {@code null} para no filtrar
+     * @return Flujo de pedidos que cumplen el filtro; debe cerrarse
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public static Stream<Pedido> leerPedidos(String rutaArchivo, String emailCliente, String idProducto) throws IOException {
+        Map<Long, Pedido> bajas = IndicePedidos.de(rutaArchivo).bajas();
+        LectorCSV lector = new LectorCSV(rutaArchivo);
+        byte[] filtroEmail = lector.codificar(emailCliente);
+        byte[] filtroProducto = lector.codificar(idProducto);
+        Diccionario diccionario = Diccionario.paraCarga();
+        return flujo(lector, l -> {
+            if (l.numeroCampos() < 3) return null;
+            if (filtroEmail != null && !l.campoIgual(0, filtroEmail)) return null;
+            if (filtroProducto != null && !l.campoIgual(1, filtroProducto)) return null;
+            Pedido p = leerPedido(l, diccionario);
+            return IndicePedidos.esBaja(bajas, p) ? null : p;
+        });
+    }
+
+    /**
+     * Construye un pedido a partir de la fila actual de un lector.
+     *
+     * @param lector Lector posicionado en una fila de pedidos
+     * @return Pedido leído, o {@code null} si la fila no tiene suficientes campos
+     */
+    static Pedido leerPedido(LectorCSV lector) {
+        return leerPedido(lector, null);
+    }
+
+    /**
+     * Construye un pedido a partir de la fila actual de un lector, tomando los textos de un diccionario.
+     *
+     * @param lector Lector posicionado en una fila de pedidos
+     * @param diccionario Diccionario que comparte los textos repetidos, o {@code null} para crear cadenas nuevas
+     * @return Pedido leído, o {@code null} si la fila no tiene suficientes campos
+     */
+    static Pedido leerPedido(LectorCSV lector, Diccionario diccionario) {
+        if (lector.numeroCampos() < 3) return null;
+        String email = diccionario == null ? lector.texto(0) : diccionario.texto(lector, 0);
+        String idProducto = diccionario == null ? lector.texto(1) : diccionario.texto(lector, 1);
+        Pedido pedido = new Pedido(email, idProducto, lector.marcaTiempo(2));
+        pedido.setPosicion(lector.posicionFila());
+        return pedido;
     }
 
     /**
      * Guarda una lista completa de pedidos en un archivo CSV, sobrescribiendo el contenido anterior.
+     * Como las posiciones cambian, el índice por cliente se reconstruye y las bajas pendientes se descartan;
+     * los contadores de pedidos se vuelven a calcular desde el archivo nuevo la próxima vez que se consultan.
      *
      * @param pedidos Lista de pedidos a guardar
      * @param rutaArchivo Ruta del archivo destino
      * @throws IOException Si ocurre un error al escribir el archivo
      */
     public static void guardarPedidos(List<Pedido> pedidos, String rutaArchivo) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaArchivo))) {
-            for (Pedido p : pedidos) {
-                writer.write(p.getEmailCliente() + "," + p.getIdProducto() + "," + p.getFecha());
-                writer.newLine();
+        long inicio = GUARDAR_PEDIDOS.inicio();
+        try {
+            IndicePedidos indice = IndicePedidos.de(rutaArchivo);
+            SegmentosHistorial historial = SegmentosHistorial.dePedidos(rutaArchivo);
+            synchronized (indice) {
+                historial.preparar();
+                Anexador.de(rutaArchivo).pausar(() -> {
+                    try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaArchivo))) {
+                        for (Pedido p : pedidos) {
+                            writer.write(filaPedido(p));
+                            writer.newLine();
+                        }
+                    }
+                    BYTES_ESCRITOS.sumar(new File(rutaArchivo).length());
+                    indice.descartarBajas();
+                    indice.reconstruir();
+                    Agregados.dePedidos(rutaArchivo).invalidar();
+                    HistorialCodificado.descartar(rutaArchivo);
+                });
+                historial.registrarEstado();
             }
+        } finally {
+            GUARDAR_PEDIDOS.registrar(inicio);
         }
     }
 
@@ -161,39 +649,350 @@ public class GestorCSV {
 
     /**
      * Guarda un envío individual en un archivo CSV.
+     * Igual que {@link #guardarPedido}, la escritura se agrupa con las demás del mismo archivo
+     * y la fila también va al segmento de su período (ver {@link #leerEnviosEntre}).
      *
      * @param envio Envío a guardar
      * @param rutaArchivo Ruta del archivo destino
      * @throws IOException Si ocurre un error al escribir el archivo
      */
     public static void guardarEnvio(Envio envio, String rutaArchivo) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaArchivo, true))) {
-            writer.write(envio.getEmailProveedor() + "," + envio.getIdProducto() + "," + envio.getCantidad() + "," + envio.getFecha());
-            writer.newLine();
+        long inicio = GUARDAR_ENVIO.inicio();
+        try {
+            esperar(guardarEnvioAsincrono(envio, rutaArchivo));
+        } finally {
+            GUARDAR_ENVIO.registrar(inicio);
         }
     }
 
+    /**
+     * Encola un envío para agregarlo al archivo sin esperar la escritura.
+     *
+     * @param envio Envío a guardar
+     * @param rutaArchivo Ruta del archivo destino
+     * @return Futuro que se completa según la durabilidad configurada
+     */
+    public static CompletableFuture<Void> guardarEnvioAsincrono(Envio envio, String rutaArchivo) {
+        String linea = filaEnvio(envio);
+        return SegmentosHistorial.deEnvios(rutaArchivo).anexar(envio.getMarcaTiempo(),
+                segmento -> Agregados.deEnvios(rutaArchivo).anexarEnvio(envio, linea, segmento));
+    }
+
     /**
      * Carga una lista de envíos desde un archivo CSV.
+     * Igual que {@link #cargarPedidos}, comparte los textos repetidos, aprovecha la
+     * versión codificada si está vigente (ver {@link #codificarEnvios}) y lee por tramos en paralelo si es grande.
      *
      * @param rutaArchivo Ruta del archivo que contiene los envíos
      * @return Lista de objetos Envio cargados
      * @throws IOException Si ocurre un error al leer el archivo
      */
     public static List<Envio> cargarEnvios(String rutaArchivo) throws IOException {
-        List<Envio> envios = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaArchivo))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] partes = linea.split(",");
-                if (partes.length < 4) continue;
-                String email = partes[0];
-                String idProducto = partes[1];
-                int cantidad = Integer.parseInt(partes[2]);
-                LocalDateTime fecha = LocalDateTime.parse(partes[3]);
-                envios.add(new Envio(email, idProducto, cantidad, fecha));
+        long inicio = CARGAR_ENVIOS.inicio();
+        try {
+            List<Envio> envios = new ArrayList<>();
+            Diccionario diccionario = Diccionario.paraCarga();
+            long desde = HistorialCodificado.cargarEnvios(rutaArchivo, diccionario, envios);
+            Supplier<Diccionario> diccionarios = diccionariosPorTramo(diccionario);
+            envios.addAll(LecturaParalela.leer(rutaArchivo, desde, () -> {
+                Diccionario propio = diccionarios.get();
+                return lector -> leerEnvio(lector, propio);
+            }));
+            return envios;
+        } finally {
+            CARGAR_ENVIOS.registrar(inicio);
+        }
+    }
+
+    /**
+     * Diccionarios para una lectura por tramos: el primer tramo sigue con el diccionario ya usado
+     * para la versión codificada y los demás reciben uno propio, porque no es seguro compartirlo entre hilos.
+     */
+    private static Supplier<Diccionario> diccionariosPorTramo(Diccionario primero) {
+        AtomicBoolean entregado = new AtomicBoolean();
+        return () -> entregado.getAndSet(true) ? Diccionario.paraCarga() : primero;
+    }
+
+    /**
+     * Recorre los envíos de un archivo CSV de forma perezosa, sin cargarlos todos en memoria.
+     * El flujo mantiene el archivo abierto: debe cerrarse (por ejemplo con try-with-resources).
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los envíos
+     * @return Flujo de envíos en el orden del archivo
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public static Stream<Envio> leerEnvios(String rutaArchivo) throws IOException {
+        return leerEnvios(rutaArchivo, null, null);
+    }
+
+    /**
+     * Recorre de forma perezosa los envíos que cumplen un filtro.
+     * El filtro se evalúa sobre los bytes de cada fila antes de crear el envío.
+     *
+     * @param rutaArchivo Ruta del archivo que contiene los envíos
+     * @param emailProveedor Email exacto del proveedor, o {@code null} para no filtrar
+     * @param idProducto ID exacto del producto, o {@code null} para no filtrar
+     * @return Flujo de envíos que cumplen el filtro; debe cerrarse
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public static Stream<Envio> leerEnvios(String rutaArchivo, String emailProveedor, String idProducto) throws IOException {
+        LectorCSV lector = new LectorCSV(rutaArchivo);
+        byte[] filtroEmail = lector.codificar(emailProveedor);
+        byte[] filtroProducto = lector.codificar(idProducto);
+        Diccionario diccionario = Diccionario.paraCarga();
+        return flujo(lector, l -> {
+            if (l.numeroCampos() < 4) return null;
+            if (filtroEmail != null && !l.campoIgual(0, filtroEmail)) return null;
+            if (filtroProducto != null && !l.campoIgual(1, filtroProducto)) return null;
+            return leerEnvio(l, diccionario);
+        });
+    }
+
+    /**
+     * Construye un envío a partir de la fila actual de un lector.
+     *
+     * @param lector Lector posicionado en una fila de envíos
+     * @return Envío leído, o {@code null} si la fila no tiene suficientes campos
+     */
+    static Envio leerEnvio(LectorCSV lector) {
+        return leerEnvio(lector, null);
+    }
+
+    /**
+     * Construye un envío a partir de la fila actual de un lector, tomando los textos de un diccionario.
+     *
+     * @param lector Lector posicionado en una fila de envíos
+     * @param diccionario Diccionario que comparte los textos repetidos, o {@code null} para crear cadenas nuevas
+     * @return Envío leído, o {@code null} si la fila no tiene suficientes campos
+     */
+    static Envio leerEnvio(LectorCSV lector, Diccionario diccionario) {
+        if (lector.numeroCampos() < 4) return null;
+        String email = diccionario == null ? lector.texto(0) : diccionario.texto(lector, 0);
+        String idProducto = diccionario == null ? lector.texto(1) : diccionario.texto(lector, 1);
+        int cantidad = lector.entero(2);
+        return new Envio(email, idProducto, cantidad, lector.marcaTiempo(3));
+    }
+
+    // === HISTORIAL POR PERÍODOS ===
+
+    /**
+     * Recorre de forma perezosa los pedidos registrados con fecha en {@code [desde, hasta)},
+     * incluidos los que ya se enviaron. Los pedidos se guardan también en segmentos por período
+     * ({@code rutaArchivo + ".segmentos"}), cada uno con las fechas extremas que contiene en su
+     * cabecera, y solo se abren los segmentos que se superponen con el rango. La primera vez,
+     * los segmentos se arman con lo que tenga el archivo de pedidos.
+     * Los pedidos devueltos no tienen posición: son historial, no sirven para darlos de baja.
+     *
+     * @param rutaArchivo Ruta del archivo de pedidos
+     * @param desde Marca de tiempo mínima, incluida (ver {@link MarcaTiempo})
+     * @param hasta Marca de tiempo máxima, excluida
+     * @return Flujo de pedidos del rango, por período y en orden de registro; debe cerrarse
+     * @throws IOException Si no se pueden preparar los segmentos
+     */
+    public static Stream<Pedido> leerPedidosEntre(String rutaArchivo, long desde, long hasta) throws IOException {
+        Diccionario diccionario = Diccionario.paraCarga();
+        return SegmentosHistorial.dePedidos(rutaArchivo).leer(desde, hasta, l -> {
+            Pedido p = leerPedido(l, diccionario);
+            if (p != null) p.setPosicion(-1);
+            return p;
+        });
+    }
+
+    /**
+     * Recorre de forma perezosa los envíos con fecha en {@code [desde, hasta)}, abriendo solo
+     * los segmentos por período que se superponen con el rango (ver {@link #leerPedidosEntre}).
+     *
+     * @param rutaArchivo Ruta del archivo de envíos
+     * @param desde Marca de tiempo mínima, incluida
+     * @param hasta Marca de tiempo máxima, excluida
+     * @return Flujo de envíos del rango, por período y en orden de registro; debe cerrarse
+     * @throws IOException Si no se pueden preparar los segmentos
+     */
+    public static Stream<Envio> leerEnviosEntre(String rutaArchivo, long desde, long hasta) throws IOException {
+        Diccionario diccionario = Diccionario.paraCarga();
+        return SegmentosHistorial.deEnvios(rutaArchivo).leer(desde, hasta, l -> leerEnvio(l, diccionario));
+    }
+
+    /**
+     * Cambia el período de los segmentos del historial de pedidos y envíos (por defecto, mensual).
+     * Los segmentos ya creados no cambian.
+     *
+     * @param particion Un segmento por día o por mes
+     */
+    public static void setParticionHistorial(Particion particion) {
+        SegmentosHistorial.setParticion(particion);
+    }
+
+    // === HISTORIAL CODIFICADO ===
+
+    /**
+     * Escribe la versión codificada con diccionario del archivo de pedidos ({@code rutaArchivo + ".cod"}).
+     * El CSV sigue siendo el archivo principal: {@link #cargarPedidos} usa la versión codificada
+     * para la parte que cubre y lee del CSV solo lo agregado después. Al compactar, se vuelve a codificar.
+     *
+     * @param rutaArchivo Ruta del archivo de pedidos
+     * @return Tamaño en bytes del archivo codificado
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static long codificarPedidos(String rutaArchivo) throws IOException {
+        // Con el índice bloqueado no puede haber una compactación reescribiendo el archivo.
+        synchronized (IndicePedidos.de(rutaArchivo)) {
+            return HistorialCodificado.guardarPedidos(rutaArchivo);
+        }
+    }
+
+    /**
+     * Escribe la versión codificada con diccionario del archivo de envíos ({@code rutaArchivo + ".cod"}).
+     *
+     * @param rutaArchivo Ruta del archivo de envíos
+     * @return Tamaño en bytes del archivo codificado
+     * @throws IOException Si ocurre un error al leer o escribir
+     */
+    public static long codificarEnvios(String rutaArchivo) throws IOException {
+        return HistorialCodificado.guardarEnvios(rutaArchivo);
+    }
+
+    // === INDICADORES ===
+
+    /**
+     * Cantidad de pedidos pendientes de un producto, sin leer el archivo de pedidos:
+     * sale de contadores que se actualizan con cada pedido guardado y cada pedido enviado.
+     *
+     * @param rutaPedidos Ruta del archivo de pedidos
+     * @param idProducto ID del producto
+     * @return Pedidos pendientes del producto
+     * @throws IOException Si hay que reconstruir los contadores y ocurre un error al leer
+     */
+    public static long pedidosPendientes(String rutaPedidos, String idProducto) throws IOException {
+        return Agregados.dePedidos(rutaPedidos).porProducto(idProducto);
+    }
+
+    /**
+     * Cantidad total de pedidos pendientes.
+     *
+     * @param rutaPedidos Ruta del archivo de pedidos
+     * @return Pedidos pendientes
+     * @throws IOException Si hay que reconstruir los contadores y ocurre un error al leer
+     */
+    public static long pedidosPendientes(String rutaPedidos) throws IOException {
+        return Agregados.dePedidos(rutaPedidos).total();
+    }
+
+    /**
+     * Cantidad de pedidos registrados en un día, incluidos los que ya se enviaron y se
+     * compactaron: si hay que reconstruir los contadores, se cuentan en el historial por períodos.
+     *
+     * @param rutaPedidos Ruta del archivo de pedidos
+     * @param dia Día a consultar
+     * @return Pedidos de ese día
+     * @throws IOException Si hay que reconstruir los contadores y ocurre un error al leer
+     */
+    public static long pedidosDelDia(String rutaPedidos, LocalDate dia) throws IOException {
+        return Agregados.dePedidos(rutaPedidos).porDia(dia);
+    }
+
+    /**
+     * Unidades enviadas de un producto, sin leer el archivo de envíos.
+     *
+     * @param rutaEnvios Ruta del archivo de envíos
+     * @param idProducto ID del producto
+     * @return Unidades enviadas
+     * @throws IOException Si hay que reconstruir los contadores y ocurre un error al leer
+     */
+    public static long unidadesEnviadas(String rutaEnvios, String idProducto) throws IOException {
+        return Agregados.deEnvios(rutaEnvios).porProducto(idProducto);
+    }
+
+    /**
+     * Unidades enviadas en un día.
+     *
+     * @param rutaEnvios Ruta del archivo de envíos
+     * @param dia Día a consultar
+     * @return Unidades enviadas ese día
+     * @throws IOException Si hay que reconstruir los contadores y ocurre un error al leer
+     */
+    public static long unidadesEnviadasDelDia(String rutaEnvios, LocalDate dia) throws IOException {
+        return Agregados.deEnvios(rutaEnvios).porDia(dia);
+    }
+
+    /**
+     * Unidades enviadas por un proveedor.
+     *
+     * @param rutaEnvios Ruta del archivo de envíos
+     * @param emailProveedor Email del proveedor
+     * @return Unidades enviadas por el proveedor
+     * @throws IOException Si hay que reconstruir los contadores y ocurre un error al leer
+     */
+    public static long unidadesEnviadasPorProveedor(String rutaEnvios, String emailProveedor) throws IOException {
+        return Agregados.deEnvios(rutaEnvios).porProveedor(emailProveedor);
+    }
+
+    // === ESCRITURA POR LOTES ===
+
+    /**
+     * Configura el agrupamiento de escrituras de {@link #guardarPedido} y {@link #guardarEnvio}.
+     *
+     * @param tamañoLote Cantidad máxima de líneas que se escriben juntas
+     * @param esperaMaximaMs Tiempo máximo que se espera a completar un lote (0 escribe lo que haya)
+     * @param durabilidad Momento en que se confirma cada escritura
+     */
+    public static void configurarEscrituraPorLotes(int tamañoLote, long esperaMaximaMs, Durabilidad durabilidad) {
+        Anexador.configurar(tamañoLote, esperaMaximaMs, durabilidad);
+    }
+
+    /**
+     * Escribe todo lo encolado en los archivos de pedidos y envíos, guarda sus contadores y los cierra.
+     * Conviene llamarlo antes de terminar la aplicación.
+     */
+    public static void cerrarEscrituras() {
+        Agregados.guardarTodos();
+        Anexador.cerrarTodos();
+    }
+
+    static <T> T esperar(CompletableFuture<T> escritura) throws IOException {
+        try {
+            return escritura.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
             }
+            throw e;
         }
-        return envios;
+    }
+
+    // === FLUJOS ===
+
+    /**
+     * Convierte un lector en un flujo perezoso que se cierra junto con el flujo.
+     *
+     * @param lector Lector abierto
+     * @param fila Función que convierte la fila actual en un objeto, o {@code null} para omitirla
+     * @return Flujo secuencial y ordenado
+     */
+    static <T> Stream<T> flujo(LectorCSV lector, Function<LectorCSV, T> fila) {
+        Spliterator<T> filas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    while (lector.siguienteFila()) {
+                        T valor = fila.apply(lector);
+                        if (valor != null) {
+                            accion.accept(valor);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(filas, false).onClose(() -> {
+            try {
+                lector.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 }
\ No newline at end of file
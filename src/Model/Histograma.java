@@ -0,0 +1,116 @@
+package Model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubetas log-lineales, al estilo de HdrHistogram.
+ * Cada potencia de dos se divide en 32 cubetas iguales, así el error relativo de
+ * cualquier percentil es menor al 3% en todo el rango (1 ns a unas 4 horas).
+ * Registrar un valor no reserva memoria ni toma bloqueos: es un incremento atómico
+ * en un arreglo de tamaño fijo. Los percentiles se calculan al consultar.
+ * @author andres
+ */
+final class Histograma {
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int EXPONENTE_MAXIMO = 43;
+    private static final long VALOR_MAXIMO = (1L << (EXPONENTE_MAXIMO + 1)) - 1;
+    private static final int CUBETAS = (EXPONENTE_MAXIMO - BITS_SUBCUBETA + 2) * SUBCUBETAS;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra un valor.
+     * @param valor Valor a registrar (negativos cuentan como 0; los mayores al rango, como el máximo).
+     */
+    void registrar(long valor) {
+        long v = Math.max(0, Math.min(valor, VALOR_MAXIMO));
+        cubetas.getAndIncrement(indice(v));
+        suma.add(v);
+        maximo.accumulate(v);
+    }
+
+    static int indice(long v) {
+        if (v < SUBCUBETAS) {
+            return (int) v;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(v);
+        int desplazamiento = exponente - BITS_SUBCUBETA;
+        return (desplazamiento + 1) * SUBCUBETAS + (int) (v >>> desplazamiento) - SUBCUBETAS;
+    }
+
+    /** @return Mayor valor que cae en la cubeta {@code i}. */
+    static long limiteSuperior(int i) {
+        if (i < SUBCUBETAS) {
+            return i;
+        }
+        int desplazamiento = i / SUBCUBETAS - 1;
+        long mantisa = i % SUBCUBETAS + SUBCUBETAS;
+        return ((mantisa + 1) << desplazamiento) - 1;
+    }
+
+    /**
+     * Vacía el histograma. Los valores registrados durante el vaciado pueden conservarse o no.
+     */
+    void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        suma.reset();
+        maximo.reset();
+    }
+
+    /** @return Copia de los contadores, para calcular varios percentiles sobre los mismos datos. */
+    Instantanea instantanea() {
+        long[] copia = new long[CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            total += copia[i];
+        }
+        return new Instantanea(copia, total, suma.sum(), maximo.get());
+    }
+
+    /** Estado del histograma en un momento dado. */
+    static final class Instantanea {
+        final long[] cubetas;
+        final long cuenta;
+        final long suma;
+        final long maximo;
+
+        Instantanea(long[] cubetas, long cuenta, long suma, long maximo) {
+            this.cubetas = cubetas;
+            this.cuenta = cuenta;
+            this.suma = suma;
+            this.maximo = maximo;
+        }
+
+        /** @return Promedio de los valores, o 0 si no hay ninguno. */
+        double media() {
+            return cuenta == 0 ? 0 : (double) suma / cuenta;
+        }
+
+        /**
+         * @param percentil Percentil entre 0 y 100.
+         * @return Valor por debajo del cual queda ese porcentaje de los registros (0 si no hay ninguno).
+         */
+        long percentil(double percentil) {
+            if (cuenta == 0) {
+                return 0;
+            }
+            long objetivo = Math.max(1, (long) Math.ceil(percentil / 100 * cuenta));
+            long acumulado = 0;
+            for (int i = 0; i < cubetas.length; i++) {
+                acumulado += cubetas[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(limiteSuperior(i), maximo);
+                }
+            }
+            return maximo;
+        }
+    }
+}
\ No newline at end of file
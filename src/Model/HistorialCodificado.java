@@ -0,0 +1,370 @@
+package Model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Versión codificada con diccionario de los archivos de pedidos y envíos, en {@code <archivo>.cod}.
+ * Los emails y los IDs se guardan una sola vez en una tabla y cada fila solo lleva sus
+ * códigos; las fechas y las posiciones van como diferencias con la fila anterior. Todos
+ * los enteros de las filas son de largo variable, así que una fila ocupa unos 11 bytes
+ * en lugar de los 60 a 70 del CSV. Formato (enteros fijos en big-endian):
+ * <pre>
+ *   int    mágico "SPH1"
+ *   short  versión
+ *   byte   tipo ('P' pedidos, 'E' envíos)
+ *   long   bytes del CSV que cubre
+ *   int    CRC32 de los últimos {@value #MUESTRA} bytes cubiertos del CSV
+ *   int    cantidad de textos, y cada texto como varint largo + UTF-8
+ *   int    cantidad de filas
+ *   ...    filas de varints: pedido = email, producto, Δfecha (zigzag), Δposición;
+ *          envío = email, producto, cantidad (zigzag), Δfecha (zigzag)
+ *   int    CRC32 de todo lo anterior
+ * </pre>
+ * El CSV sigue siendo el archivo principal y puede seguir creciendo: al cargar se decodifica
+ * la parte cubierta y se lee del CSV solo lo agregado después. Si el CSV se reescribió
+ * (compactación o guardado completo) la copia se borra; si no coincide la muestra, se ignora.
+ * @author andres
+ */
+final class HistorialCodificado {
+    static final String EXTENSION = ".cod";
+    static final short VERSION = 1;
+
+    private static final int MAGICO = 0x53504831; // "SPH1"
+    private static final byte PEDIDOS = 'P';
+    private static final byte ENVIOS = 'E';
+    private static final int MUESTRA = 4096;
+    private static final Metricas.Contador BYTES_LEIDOS = Metricas.contador("binario.bytesLeidos");
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("binario.bytesEscritos");
+
+    private HistorialCodificado() {
+    }
+
+    /**
+     * @param rutaArchivo Ruta del CSV.
+     * @return Ruta de su versión codificada.
+     */
+    static Path de(String rutaArchivo) {
+        return Paths.get(rutaArchivo + EXTENSION);
+    }
+
+    /**
+     * Borra la versión codificada, por ejemplo porque el CSV se reescribió.
+     * @param rutaArchivo Ruta del CSV.
+     * @throws IOException Si no se puede borrar.
+     */
+    static void descartar(String rutaArchivo) throws IOException {
+        Files.deleteIfExists(de(rutaArchivo));
+    }
+
+    // === ESCRITURA ===
+
+    /**
+     * Codifica las filas completas de un archivo de pedidos.
+     * @param rutaArchivo Ruta del CSV de pedidos.
+     * @return Tamaño del archivo codificado.
+     * @throws IOException Si ocurre un error al leer o escribir.
+     */
+    static long guardarPedidos(String rutaArchivo) throws IOException {
+        return guardar(rutaArchivo, PEDIDOS);
+    }
+
+    /**
+     * Codifica las filas completas de un archivo de envíos.
+     * @param rutaArchivo Ruta del CSV de envíos.
+     * @return Tamaño del archivo codificado.
+     * @throws IOException Si ocurre un error al leer o escribir.
+     */
+    static long guardarEnvios(String rutaArchivo) throws IOException {
+        return guardar(rutaArchivo, ENVIOS);
+    }
+
+    /**
+     * Vuelve a codificar un archivo de pedidos sin interrumpir a quien lo reescribió:
+     * si falla, se borra la versión codificada y las cargas leen solo el CSV.
+     * @param rutaArchivo Ruta del CSV de pedidos.
+     */
+    static void guardarPedidosSinFallar(String rutaArchivo) {
+        try {
+            guardarPedidos(rutaArchivo);
+        } catch (IOException e) {
+            try {
+                descartar(rutaArchivo);
+            } catch (IOException ignorada) {
+                // La muestra del CSV ya no coincide: la copia vieja se ignorará al cargar.
+            }
+        }
+    }
+
+    private static long guardar(String rutaArchivo, byte tipo) throws IOException {
+        Diccionario diccionario = new Diccionario();
+        Salida filas = new Salida(1 << 16);
+        int cantidad = 0;
+        long cubierto = 0;
+        long fechaAnterior = 0;
+        long posicionAnterior = 0;
+        try (LectorCSV lector = new LectorCSV(rutaArchivo)) {
+            while (lector.siguienteFila() && lector.filaTerminada()) {
+                if (tipo == PEDIDOS && lector.numeroCampos() >= 3) {
+                    long fecha = lector.marcaTiempo(2);
+                    filas.varint(diccionario.codigo(lector, 0));
+                    filas.varint(diccionario.codigo(lector, 1));
+                    filas.varint(zigzag(fecha - fechaAnterior));
+                    filas.varint(lector.posicionFila() - posicionAnterior);
+                    fechaAnterior = fecha;
+                    posicionAnterior = lector.posicionFila();
+                    cantidad++;
+                } else if (tipo == ENVIOS && lector.numeroCampos() >= 4) {
+                    long fecha = lector.marcaTiempo(3);
+                    filas.varint(diccionario.codigo(lector, 0));
+                    filas.varint(diccionario.codigo(lector, 1));
+                    filas.varint(zigzag(lector.entero(2)));
+                    filas.varint(zigzag(fecha - fechaAnterior));
+                    fechaAnterior = fecha;
+                    cantidad++;
+                }
+                cubierto = lector.posicionSiguiente();
+            }
+        }
+
+        Salida salida = new Salida(filas.buffer.position() + 64 * diccionario.tamaño() + 64);
+        salida.buffer.putInt(MAGICO).putShort(VERSION).put(tipo)
+                .putLong(cubierto).putInt(muestra(Paths.get(rutaArchivo), cubierto)).putInt(diccionario.tamaño());
+        for (int c = 0; c < diccionario.tamaño(); c++) {
+            byte[] texto = diccionario.texto(c).getBytes(StandardCharsets.UTF_8);
+            salida.varint(texto.length);
+            salida.asegurar(texto.length);
+            salida.buffer.put(texto);
+        }
+        salida.asegurar(4 + filas.buffer.position() + 4);
+        salida.buffer.putInt(cantidad).put(filas.buffer.array(), 0, filas.buffer.position());
+        return salida.terminar(de(rutaArchivo));
+    }
+
+    /** Buffer que crece según haga falta, con escritura de enteros de largo variable. */
+    private static final class Salida {
+        ByteBuffer buffer;
+
+        Salida(int capacidad) {
+            buffer = ByteBuffer.allocate(capacidad);
+        }
+
+        void varint(long valor) {
+            asegurar(10);
+            while ((valor & ~0x7FL) != 0) {
+                buffer.put((byte) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            buffer.put((byte) valor);
+        }
+
+        void asegurar(int bytes) {
+            if (buffer.remaining() < bytes + 4) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes + 4));
+                buffer.flip();
+                buffer = mayor.put(buffer);
+            }
+        }
+
+        long terminar(Path destino) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            BYTES_ESCRITOS.sumar(buffer.limit());
+            Path temporal = Paths.get(destino + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return buffer.limit();
+        }
+    }
+
+    // === LECTURA ===
+
+    /**
+     * Carga los pedidos vigentes de la versión codificada, si la hay y corresponde al CSV.
+     * @param rutaArchivo Ruta del CSV de pedidos.
+     * @param diccionario Diccionario donde quedan los textos, para compartirlos con el resto de la carga.
+     * @param bajas Bajas vigentes, por posición.
+     * @param destino Lista donde se agregan los pedidos.
+     * @return Byte del CSV desde donde hay que seguir leyendo (0 si no hay copia válida).
+     */
+    static long cargarPedidos(String rutaArchivo, Diccionario diccionario, Map<Long, Pedido> bajas, List<Pedido> destino) {
+        Lector l = abrir(rutaArchivo, PEDIDOS, diccionario);
+        if (l == null) {
+            return 0;
+        }
+        try {
+            List<Pedido> pedidos = new ArrayList<>(l.filas);
+            long fecha = 0;
+            long posicion = 0;
+            for (int i = 0; i < l.filas; i++) {
+                String email = l.texto();
+                String idProducto = l.texto();
+                fecha += deszigzag(l.varint());
+                posicion += l.varint();
+                Pedido p = new Pedido(email, idProducto, fecha);
+                p.setPosicion(posicion);
+                if (!IndicePedidos.esBaja(bajas, p)) pedidos.add(p);
+            }
+            destino.addAll(pedidos);
+            return l.cubierto;
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Carga los envíos de la versión codificada, si la hay y corresponde al CSV.
+     * @param rutaArchivo Ruta del CSV de envíos.
+     * @param diccionario Diccionario donde quedan los textos, para compartirlos con el resto de la carga.
+     * @param destino Lista donde se agregan los envíos.
+     * @return Byte del CSV desde donde hay que seguir leyendo (0 si no hay copia válida).
+     */
+    static long cargarEnvios(String rutaArchivo, Diccionario diccionario, List<Envio> destino) {
+        Lector l = abrir(rutaArchivo, ENVIOS, diccionario);
+        if (l == null) {
+            return 0;
+        }
+        try {
+            List<Envio> envios = new ArrayList<>(l.filas);
+            long fecha = 0;
+            for (int i = 0; i < l.filas; i++) {
+                String email = l.texto();
+                String idProducto = l.texto();
+                int cantidad = (int) deszigzag(l.varint());
+                fecha += deszigzag(l.varint());
+                envios.add(new Envio(email, idProducto, cantidad, fecha));
+            }
+            destino.addAll(envios);
+            return l.cubierto;
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Lee el archivo completo, valida cabecera, suma de verificación y muestra del CSV,
+     * y carga la tabla de textos en el diccionario.
+     */
+    private static Lector abrir(String rutaArchivo, byte tipo, Diccionario diccionario) {
+        Path ruta = de(rutaArchivo);
+        if (!Files.exists(ruta)) {
+            return null;
+        }
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamaño = canal.size();
+            if (tamaño < 31 || tamaño > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) tamaño);
+            while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+                // Lectura completa en bloque.
+            }
+            buffer.flip();
+            BYTES_LEIDOS.sumar(buffer.limit());
+            if (buffer.getInt() != MAGICO || buffer.getShort() != VERSION || buffer.get() != tipo) {
+                return null;
+            }
+            long cubierto = buffer.getLong();
+            int muestra = buffer.getInt();
+            Path csv = Paths.get(rutaArchivo);
+            if (!Files.exists(csv) || Files.size(csv) < cubierto || muestra(csv, cubierto) != muestra) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - 4);
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+                return null;
+            }
+            buffer.limit(buffer.limit() - 4);
+            Lector l = new Lector(buffer, cubierto);
+            int textos = buffer.getInt();
+            l.textos = new String[textos];
+            for (int c = 0; c < textos; c++) {
+                int largo = (int) l.varint();
+                String texto = new String(buffer.array(), buffer.position(), largo, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + largo);
+                l.textos[c] = diccionario.compartido(texto);
+            }
+            l.filas = buffer.getInt();
+            return l;
+        } catch (IOException | RuntimeException e) {
+            // Copia ausente, ilegible o de otra versión del CSV: se usa el CSV.
+            return null;
+        }
+    }
+
+    /** Decodifica las filas de una copia ya validada. */
+    private static final class Lector {
+        final ByteBuffer buffer;
+        final byte[] datos;
+        final long cubierto;
+        String[] textos;
+        int filas;
+
+        Lector(ByteBuffer buffer, long cubierto) {
+            this.buffer = buffer;
+            this.datos = buffer.array();
+            this.cubierto = cubierto;
+        }
+
+        long varint() {
+            int p = buffer.position();
+            long valor = 0;
+            for (int desplazamiento = 0; ; desplazamiento += 7) {
+                byte b = datos[p++];
+                valor |= (long) (b & 0x7F) << desplazamiento;
+                if (b >= 0) {
+                    break;
+                }
+                if (desplazamiento > 56) {
+                    throw new IllegalStateException("Entero variable inválido");
+                }
+            }
+            if (p > buffer.limit()) {
+                throw new IllegalStateException("Fila truncada");
+            }
+            buffer.position(p);
+            return valor;
+        }
+
+        String texto() {
+            return textos[(int) varint()];
+        }
+    }
+
+    // CRC32 de los últimos MUESTRA bytes antes de 'hasta': detecta que el CSV ya no es el que se codificó.
+    private static int muestra(Path csv, long hasta) throws IOException {
+        int largo = (int) Math.min(MUESTRA, hasta);
+        ByteBuffer bytes = ByteBuffer.allocate(largo);
+        if (largo > 0) {
+            try (FileChannel canal = FileChannel.open(csv, StandardOpenOption.READ)) {
+                while (bytes.hasRemaining() && canal.read(bytes, hasta - largo + bytes.position()) >= 0) {
+                    // Lectura completa de la muestra.
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, bytes.position());
+        return (int) crc.getValue();
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long deszigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+}
\ No newline at end of file
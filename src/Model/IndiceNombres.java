@@ -0,0 +1,377 @@
+package Model;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de búsqueda por nombre de producto, sin distinguir mayúsculas ni tildes.
+ * Es un índice invertido de trigramas: cada nombre normalizado (por ejemplo
+ * {@code "Teclado mecánico"} pasa a {@code "teclado mecanico"}) aporta sus secuencias de tres
+ * caracteres, y cada trigrama guarda la lista ordenada de productos que lo contienen.
+ * Una consulta recorre la lista más corta de sus trigramas, salta en las demás y solo
+ * compara texto contra los productos que están en todas; se detiene apenas junta los
+ * resultados pedidos. Las consultas de uno o dos caracteres buscan palabras que empiecen así.
+ *
+ * <p>El índice se construye la primera vez que se busca, para no alargar el arranque,
+ * y desde entonces se mantiene al agregar, reemplazar o eliminar productos del catálogo.
+ * Las búsquedas pueden correr en paralelo; las actualizaciones son exclusivas.</p>
+ * @author andres
+ */
+class IndiceNombres {
+    private static final char INICIO_PALABRA = ' ';
+    private static final char FIN_CLAVE = '\0';
+    // Marca las claves que solo aparecen al principio del nombre.
+    private static final long INICIO_NOMBRE = 1L << 48;
+
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private boolean construido;
+
+    // Documento = posición en estos arreglos. Un documento muerto tiene producto nulo.
+    private Producto[] productos = new Producto[0];
+    private String[] nombres = new String[0];
+    private int documentos;
+    private int muertos;
+    private final Map<String, Integer> documentoPorId = new HashMap<>();
+
+    // Tabla hash abierta clave -> publicaciones; 0 marca una celda libre (ninguna clave vale 0).
+    private long[] claves = new long[1024];
+    private Publicaciones[] listas = new Publicaciones[1024];
+    private int usadas;
+
+    /** Lista creciente de documentos que contienen un trigrama. */
+    private static final class Publicaciones {
+        int[] documentos = new int[2];
+        int tamaño;
+
+        void agregar(int documento) {
+            // Un trigrama repetido en el mismo nombre se publica una sola vez.
+            if (tamaño > 0 && documentos[tamaño - 1] == documento) {
+                return;
+            }
+            if (tamaño == documentos.length) {
+                documentos = Arrays.copyOf(documentos, tamaño * 2);
+            }
+            documentos[tamaño++] = documento;
+        }
+    }
+
+    /** Condición que debe cumplir el nombre normalizado en cada fase de la búsqueda. */
+    private interface Filtro {
+        boolean acepta(String nombre);
+    }
+
+    /**
+     * Normaliza un texto para indexarlo o buscarlo: sin tildes ni diéresis, en minúsculas
+     * y con los espacios repetidos reducidos a uno.
+     * @param texto Texto original.
+     * @return Texto normalizado (vacío si el texto es nulo).
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        boolean ascii = true;
+        for (int i = 0; i < texto.length() && ascii; i++) {
+            ascii = texto.charAt(i) < 128;
+        }
+        String base = ascii ? texto : Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(base.length());
+        boolean espacio = true;
+        for (int i = 0; i < base.length(); i++) {
+            char c = base.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (!espacio) {
+                    sb.append(' ');
+                    espacio = true;
+                }
+                continue;
+            }
+            sb.append(Character.toLowerCase(c));
+            espacio = false;
+        }
+        int largo = sb.length();
+        if (largo > 0 && sb.charAt(largo - 1) == ' ') {
+            sb.setLength(largo - 1);
+        }
+        return sb.toString();
+    }
+
+    private static long clave(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    // === ACTUALIZACIÓN ===
+
+    /**
+     * Incorpora o reemplaza un producto. No hace nada si el índice todavía no se construyó.
+     * @param producto Producto agregado o con datos nuevos.
+     */
+    void agregar(Producto producto) {
+        bloqueo.writeLock().lock();
+        try {
+            if (!construido) {
+                return;
+            }
+            Integer anterior = documentoPorId.get(producto.getId());
+            if (anterior != null) {
+                if (productos[anterior] == producto) {
+                    return;
+                }
+                matar(anterior);
+            }
+            indexar(producto);
+            compactarSiHaceFalta();
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un producto del índice.
+     * @param producto Producto eliminado del catálogo.
+     */
+    void eliminar(Producto producto) {
+        bloqueo.writeLock().lock();
+        try {
+            if (!construido) {
+                return;
+            }
+            Integer documento = documentoPorId.get(producto.getId());
+            if (documento != null && productos[documento] == producto) {
+                matar(documento);
+                documentoPorId.remove(producto.getId());
+                compactarSiHaceFalta();
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    private void indexar(Producto producto) {
+        if (documentos == productos.length) {
+            int capacidad = Math.max(16, documentos * 2);
+            productos = Arrays.copyOf(productos, capacidad);
+            nombres = Arrays.copyOf(nombres, capacidad);
+        }
+        int documento = documentos++;
+        String nombre = normalizar(producto.getNombre());
+        productos[documento] = producto;
+        nombres[documento] = nombre;
+        documentoPorId.put(producto.getId(), documento);
+        if (nombre.isEmpty()) {
+            return;
+        }
+
+        // Un espacio al principio hace que el inicio de cada palabra tenga su trigrama " xy".
+        String texto = INICIO_PALABRA + nombre;
+        publicar(INICIO_NOMBRE | clave(INICIO_PALABRA, texto.charAt(1), FIN_CLAVE), documento);
+        if (texto.length() > 2) {
+            publicar(INICIO_NOMBRE | clave(INICIO_PALABRA, texto.charAt(1), texto.charAt(2)), documento);
+        }
+        for (int i = 0; i + 2 < texto.length(); i++) {
+            publicar(clave(texto.charAt(i), texto.charAt(i + 1), texto.charAt(i + 2)), documento);
+        }
+        for (int i = 0; i + 1 < texto.length(); i++) {
+            if (texto.charAt(i) == INICIO_PALABRA) {
+                publicar(clave(INICIO_PALABRA, texto.charAt(i + 1), FIN_CLAVE), documento);
+            }
+        }
+    }
+
+    private void publicar(long clave, int documento) {
+        int i = posicion(clave);
+        if (claves[i] == 0) {
+            claves[i] = clave;
+            listas[i] = new Publicaciones();
+            if (++usadas * 2 > claves.length) {
+                agrandarTabla();
+                i = posicion(clave);
+            }
+        }
+        listas[i].agregar(documento);
+    }
+
+    private Publicaciones publicaciones(long clave) {
+        int i = posicion(clave);
+        return claves[i] == 0 ? null : listas[i];
+    }
+
+    private int posicion(long clave) {
+        int mascara = claves.length - 1;
+        int i = (int) (clave * 0x9E3779B97F4A7C15L >>> 40) & mascara;
+        while (claves[i] != 0 && claves[i] != clave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void agrandarTabla() {
+        long[] viejasClaves = claves;
+        Publicaciones[] viejasListas = listas;
+        claves = new long[viejasClaves.length * 2];
+        listas = new Publicaciones[viejasClaves.length * 2];
+        for (int j = 0; j < viejasClaves.length; j++) {
+            if (viejasClaves[j] != 0) {
+                int i = posicion(viejasClaves[j]);
+                claves[i] = viejasClaves[j];
+                listas[i] = viejasListas[j];
+            }
+        }
+    }
+
+    private void matar(int documento) {
+        productos[documento] = null;
+        nombres[documento] = null;
+        muertos++;
+    }
+
+    // Los documentos muertos siguen en las listas; cuando son mayoría se reconstruye todo.
+    private void compactarSiHaceFalta() {
+        if (muertos > 1024 && muertos > documentos - muertos) {
+            Producto[] vivos = Arrays.copyOf(productos, documentos);
+            productos = new Producto[0];
+            nombres = new String[0];
+            documentos = 0;
+            muertos = 0;
+            documentoPorId.clear();
+            claves = new long[1024];
+            listas = new Publicaciones[1024];
+            usadas = 0;
+            for (Producto p : vivos) {
+                if (p != null) indexar(p);
+            }
+        }
+    }
+
+    // === BÚSQUEDA ===
+
+    /**
+     * Busca productos cuyo nombre contenga el texto, sin distinguir mayúsculas ni tildes.
+     * Primero los que empiezan con el texto, luego los que tienen una palabra que empieza
+     * con él y al final el resto; dentro de cada grupo, en el orden en que se indexaron.
+     * @param consulta Texto a buscar.
+     * @param limite Cantidad máxima de resultados.
+     * @param catalogo Catálogo del que se construye el índice la primera vez.
+     * @return Productos encontrados, mejores primero.
+     */
+    List<Producto> buscar(String consulta, int limite, Collection<Producto> catalogo) {
+        String q = normalizar(consulta);
+        List<Producto> resultado = new ArrayList<>();
+        if (q.isEmpty() || limite <= 0) {
+            return resultado;
+        }
+        asegurarConstruido(catalogo);
+        bloqueo.readLock().lock();
+        try {
+            // Trigramas del texto completo; en las consultas cortas no hay ninguno.
+            long[] internos = new long[Math.max(0, q.length() - 2)];
+            for (int i = 0; i < internos.length; i++) {
+                internos[i] = clave(q.charAt(i), q.charAt(i + 1), q.charAt(i + 2));
+            }
+            long inicio = q.length() == 1
+                    ? clave(INICIO_PALABRA, q.charAt(0), FIN_CLAVE)
+                    : clave(INICIO_PALABRA, q.charAt(0), q.charAt(1));
+            String palabra = INICIO_PALABRA + q;
+
+            recorrer(INICIO_NOMBRE | inicio, internos, nombre -> nombre.startsWith(q), limite, resultado);
+            recorrer(inicio, internos, nombre -> !nombre.startsWith(q) && nombre.contains(palabra), limite, resultado);
+            if (internos.length > 0) {
+                recorrer(0, internos, nombre -> nombre.contains(q) && !nombre.startsWith(q)
+                        && !nombre.contains(palabra), limite, resultado);
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private void asegurarConstruido(Collection<Producto> catalogo) {
+        bloqueo.readLock().lock();
+        try {
+            if (construido) {
+                return;
+            }
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+        bloqueo.writeLock().lock();
+        try {
+            if (!construido) {
+                for (Producto p : catalogo) {
+                    if (!documentoPorId.containsKey(p.getId())) indexar(p);
+                }
+                construido = true;
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega al resultado los documentos presentes en todas las listas de las claves dadas
+     * que cumplen el filtro, hasta llegar al límite. Recorre la lista más corta y en las
+     * demás avanza con búsqueda galopante, así que corta en cuanto junta lo necesario.
+     * @param primera Clave adicional a exigir, o 0 si no hay.
+     */
+    private void recorrer(long primera, long[] resto, Filtro filtro, int limite, List<Producto> resultado) {
+        if (resultado.size() >= limite) {
+            return;
+        }
+        List<Publicaciones> usar = new ArrayList<>(resto.length + 1);
+        if (primera != 0) {
+            usar.add(publicaciones(primera));
+        }
+        for (long c : resto) {
+            usar.add(publicaciones(c));
+        }
+        for (Publicaciones p : usar) {
+            if (p == null) return;
+        }
+        usar.sort(Comparator.comparingInt(p -> p.tamaño));
+        Publicaciones base = usar.get(0);
+        int[] cursores = new int[usar.size()];
+
+        siguiente:
+        for (int i = 0; i < base.tamaño; i++) {
+            int documento = base.documentos[i];
+            for (int j = 1; j < cursores.length; j++) {
+                Publicaciones otra = usar.get(j);
+                cursores[j] = buscarDesde(otra.documentos, cursores[j], otra.tamaño, documento);
+                if (cursores[j] == otra.tamaño) {
+                    return;
+                }
+                if (otra.documentos[cursores[j]] != documento) {
+                    continue siguiente;
+                }
+            }
+            String nombre = nombres[documento];
+            if (nombre != null && filtro.acepta(nombre)) {
+                resultado.add(productos[documento]);
+                if (resultado.size() >= limite) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Búsqueda galopante: primera posición desde 'desde' con valor >= d.
+    private static int buscarDesde(int[] a, int desde, int n, int d) {
+        if (desde >= n || a[desde] >= d) {
+            return desde;
+        }
+        int paso = 1;
+        int bajo = desde;
+        int alto = desde + 1;
+        while (alto < n && a[alto] < d) {
+            bajo = alto;
+            paso <<= 1;
+            alto = bajo + paso;
+        }
+        int idx = Arrays.binarySearch(a, bajo + 1, Math.min(alto, n - 1) + 1, d);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,400 @@
+package Model;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice secundario persistente de pedidos por email de cliente, junto con
+ * las bajas (pedidos ya enviados) pendientes de compactar.
+ * Guarda en {@code <archivo>.idx} una línea {@code posicion,email} por pedido, donde
+ * {@code posicion} es el byte del archivo de pedidos en que empieza la fila.
+ * Al cargarlo se comprueba contra el archivo de datos: si faltan filas al final se
+ * indexan, y si el archivo fue reescrito el índice se reconstruye desde cero.
+ * <p>
+ * Enviar un pedido no reescribe el archivo: se agrega una lápida
+ * {@code posicion,email,idProducto,fecha} a {@code <archivo>.bajas} y los lectores omiten
+ * esa fila. Las lápidas se escriben con el {@link Anexador}, con la misma {@link Durabilidad}
+ * que los pedidos: si una fila de pedido llegó al disco, su lápida también, y un pedido enviado
+ * no reaparece como pendiente tras una caída. La lápida repite los datos del pedido, así una lápida vieja que quedara
+ * tras una compactación interrumpida no coincide con la fila nueva en esa posición
+ * y se ignora. Cuando la proporción de filas dadas de baja supera el umbral, el archivo
+ * se reescribe en segundo plano sin ellas.
+ * @author andres
+ */
+class IndicePedidos {
+    static final String EXTENSION = ".idx";
+    static final String EXTENSION_BAJAS = ".bajas";
+
+    private static final Map<String, IndicePedidos> indices = new ConcurrentHashMap<>();
+    private static volatile double proporcionCompactacion = 0.5;
+
+    private final Path rutaPedidos;
+    private final Path rutaIndice;
+    private final Path rutaBajas;
+    private Map<String, Posiciones> porCliente;
+    private long cubierto;
+    private int filas;
+    private Map<Long, Pedido> bajas;
+    private CompletableFuture<Void> compactacionEnCurso;
+    // Veces que se reconstruyó el índice: las posiciones de antes ya no valen.
+    private volatile long reconstrucciones;
+
+    /** Lista creciente de posiciones sin objetos envoltorio. */
+    private static final class Posiciones {
+        long[] valores = new long[4];
+        int cantidad;
+
+        void agregar(long posicion) {
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, cantidad * 2);
+            }
+            valores[cantidad++] = posicion;
+        }
+    }
+
+    private IndicePedidos(String rutaPedidos) {
+        this.rutaPedidos = Paths.get(rutaPedidos);
+        this.rutaIndice = Paths.get(rutaPedidos + EXTENSION);
+        this.rutaBajas = Paths.get(rutaPedidos + EXTENSION_BAJAS);
+    }
+
+    /**
+     * Obtiene el índice asociado a un archivo de pedidos.
+     * @param rutaPedidos Ruta del archivo de pedidos.
+     * @return Índice compartido para esa ruta.
+     */
+    static IndicePedidos de(String rutaPedidos) {
+        return indices.computeIfAbsent(Paths.get(rutaPedidos).toAbsolutePath().normalize().toString(),
+                k -> new IndicePedidos(rutaPedidos));
+    }
+
+    /**
+     * Cambia la proporción de filas dadas de baja que dispara la compactación.
+     * @param proporcion Valor entre 0 y 1; 0 o menos compacta en cada baja, 1 o más la desactiva.
+     */
+    static void setProporcionCompactacion(double proporcion) {
+        proporcionCompactacion = proporcion;
+    }
+
+    /**
+     * Deja el índice en memoria y al día con el archivo de pedidos.
+     * Las filas agregadas al final desde la última vez se indexan aquí, así quien escribe
+     * pedidos no necesita tocar el índice.
+     * @throws IOException Si ocurre un error al leer o escribir.
+     */
+    synchronized void asegurarCargado() throws IOException {
+        if (porCliente != null && cubierto == tamañoDatos()) {
+            return;
+        }
+        if (porCliente == null) {
+            cargar();
+        }
+        long tamaño = tamañoDatos();
+        if (cubierto > tamaño) {
+            reconstruir();
+        } else if (cubierto < tamaño) {
+            indexarDesde(cubierto);
+        }
+    }
+
+    /**
+     * Devuelve las posiciones de las filas de un cliente, en orden de archivo.
+     * @param emailCliente Email exacto del cliente.
+     * @return Posiciones de sus pedidos (vacío si no tiene).
+     * @throws IOException Si ocurre un error al cargar el índice.
+     */
+    synchronized long[] posiciones(String emailCliente) throws IOException {
+        asegurarCargado();
+        Posiciones p = porCliente.get(emailCliente);
+        return p == null ? new long[0] : Arrays.copyOf(p.valores, p.cantidad);
+    }
+
+    /**
+     * Cambia cada vez que se reconstruye el índice, es decir, cada vez que el archivo de pedidos
+     * se reescribe (al compactarlo o al guardarlo completo). Quien guarda posiciones de pedidos,
+     * o IDs derivados de ellas, las vuelve a leer cuando este valor cambia.
+     * @return Cantidad de reconstrucciones desde que se abrió el índice.
+     */
+    long reconstrucciones() {
+        return reconstrucciones;
+    }
+
+    /**
+     * Vuelve a construir el índice leyendo todo el archivo de pedidos.
+     * @throws IOException Si ocurre un error al leer o escribir.
+     */
+    synchronized void reconstruir() throws IOException {
+        reconstrucciones++;
+        porCliente = new HashMap<>();
+        cubierto = 0;
+        filas = 0;
+        Path temporal = Paths.get(rutaIndice + ".tmp");
+        Files.deleteIfExists(temporal);
+        try {
+            indexarHacia(temporal);
+            Files.move(temporal, rutaIndice, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private void indexarHacia(Path destino) throws IOException {
+        if (!Files.exists(rutaPedidos)) {
+            Files.createFile(destino);
+            return;
+        }
+        try (LectorCSV lector = new LectorCSV(rutaPedidos.toString());
+             BufferedWriter writer = new BufferedWriter(new FileWriter(destino.toFile()))) {
+            cubierto = indexarFilas(lector, writer);
+        }
+    }
+
+    private void cargar() throws IOException {
+        porCliente = new HashMap<>();
+        cubierto = 0;
+        filas = 0;
+        if (!Files.exists(rutaIndice)) {
+            return;
+        }
+        long ultima = -1;
+        String ultimoEmail = null;
+        try (LectorCSV lector = new LectorCSV(rutaIndice.toString())) {
+            while (lector.siguienteFila()) {
+                if (lector.numeroCampos() < 2) continue;
+                long posicion = lector.largo(0);
+                String email = lector.texto(1);
+                indexar(email, posicion);
+                if (posicion > ultima) {
+                    ultima = posicion;
+                    ultimoEmail = email;
+                }
+            }
+        }
+        if (ultima < 0) {
+            return;
+        }
+        // Comprobar que la última fila indexada sigue en su lugar y ver dónde termina.
+        if (!Files.exists(rutaPedidos) || ultima >= tamañoDatos()) {
+            cubierto = Long.MAX_VALUE;
+            return;
+        }
+        try (LectorCSV lector = new LectorCSV(rutaPedidos.toString(), ultima)) {
+            if (lector.siguienteFila() && lector.numeroCampos() >= 3 && lector.texto(0).equals(ultimoEmail)) {
+                cubierto = lector.posicionSiguiente();
+            } else {
+                cubierto = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private void indexarDesde(long desde) throws IOException {
+        try (LectorCSV lector = new LectorCSV(rutaPedidos.toString(), desde);
+             BufferedWriter writer = new BufferedWriter(new FileWriter(rutaIndice.toFile(), true))) {
+            cubierto = indexarFilas(lector, writer);
+        }
+    }
+
+    /**
+     * Devuelve una copia de las bajas vigentes, por posición de fila.
+     * @return Pedidos dados de baja (vacío si no hay).
+     * @throws IOException Si no se puede leer el archivo de bajas.
+     */
+    synchronized Map<Long, Pedido> bajas() throws IOException {
+        cargarBajas();
+        return bajas.isEmpty() ? Collections.emptyMap() : new HashMap<>(bajas);
+    }
+
+    /**
+     * Indica si un pedido leído del archivo está dado de baja.
+     * @param bajas Bajas obtenidas con {@link #bajas()}.
+     * @param pedido Pedido leído, con su posición.
+     * @return {@code true} si hay una lápida con los mismos datos en esa posición.
+     */
+    static boolean esBaja(Map<Long, Pedido> bajas, Pedido pedido) {
+        return !bajas.isEmpty() && pedido.mismosDatos(bajas.get(pedido.getPosicion()));
+    }
+
+    /**
+     * Da de baja un pedido agregando una lápida, sin reescribir el archivo de pedidos.
+     * Si la posición del pedido ya no corresponde a sus datos (por ejemplo, porque el archivo
+     * se compactó después de leerlo) se busca la primera fila vigente con los mismos datos.
+     * @param pedido Pedido a dar de baja.
+     * @return {@code true} si se dio de baja, {@code false} si no había un pedido vigente igual.
+     * @throws IOException Si ocurre un error al leer o escribir.
+     */
+    synchronized boolean darDeBaja(Pedido pedido) throws IOException {
+        asegurarCargado();
+        cargarBajas();
+        long posicion = ubicar(pedido);
+        if (posicion < 0) {
+            return false;
+        }
+        Pedido baja = new Pedido(pedido.getEmailCliente(), pedido.getIdProducto(), pedido.getMarcaTiempo());
+        baja.setPosicion(posicion);
+        GestorCSV.esperar(Anexador.de(rutaBajas.toString()).anexar(posicion + "," + GestorCSV.filaPedido(baja)));
+        bajas.put(posicion, baja);
+        Agregados.dePedidos(rutaPedidos.toString()).registrarBaja(baja);
+        if (filas > 0 && bajas.size() >= proporcionCompactacion * filas) {
+            compactarEnSegundoPlano();
+        }
+        return true;
+    }
+
+    /**
+     * Reescribe el archivo de pedidos sin las filas dadas de baja,
+     * reconstruye el índice y vacía el archivo de bajas.
+     * @throws IOException Si ocurre un error al leer o escribir.
+     */
+    synchronized void compactar() throws IOException {
+        cargarBajas();
+        if (bajas.isEmpty() || !Files.exists(rutaPedidos)) {
+            return;
+        }
+        // Los contadores se cargan antes de reescribir, mientras el historial completo sigue en el archivo.
+        Agregados agregados = Agregados.dePedidos(rutaPedidos.toString());
+        agregados.asegurarCargado();
+        // Si se cae a mitad de la reescritura, que no quede un punto de control con posiciones viejas.
+        agregados.descartarPunto();
+        boolean codificado = Files.exists(HistorialCodificado.de(rutaPedidos.toString()));
+        SegmentosHistorial historial = SegmentosHistorial.dePedidos(rutaPedidos.toString());
+        historial.preparar();
+        Anexador.de(rutaPedidos.toString()).pausar(this::reescribirSinBajas);
+        historial.registrarEstado();
+        agregados.guardar();
+        if (codificado) {
+            HistorialCodificado.guardarPedidosSinFallar(rutaPedidos.toString());
+        }
+    }
+
+    private void reescribirSinBajas() throws IOException {
+        Path temporal = Paths.get(rutaPedidos + ".tmp");
+        try (LectorCSV lector = new LectorCSV(rutaPedidos.toString());
+             BufferedWriter writer = new BufferedWriter(new FileWriter(temporal.toFile()))) {
+            while (lector.siguienteFila()) {
+                Pedido p = GestorCSV.leerPedido(lector);
+                if (p == null || esBaja(bajas, p)) continue;
+                writer.write(GestorCSV.filaPedido(p));
+                writer.newLine();
+            }
+        }
+        Files.move(temporal, rutaPedidos, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        HistorialCodificado.descartar(rutaPedidos.toString());
+        borrarBajas();
+        bajas = new HashMap<>();
+        reconstruir();
+    }
+
+    /**
+     * Lanza la compactación en el hilo de fondo, o devuelve la que ya está en curso.
+     * @return Futuro que se completa cuando termina la compactación.
+     */
+    synchronized CompletableFuture<Void> compactarEnSegundoPlano() {
+        if (compactacionEnCurso == null) {
+            compactacionEnCurso = TareasFondo.ejecutar(this::compactar, () -> {
+                synchronized (IndicePedidos.this) {
+                    compactacionEnCurso = null;
+                }
+            });
+        }
+        return compactacionEnCurso;
+    }
+
+    /**
+     * Descarta las bajas en memoria y las del archivo, por ejemplo tras reescribir
+     * el archivo de pedidos completo.
+     * @throws IOException Si no se puede borrar el archivo de bajas.
+     */
+    synchronized void descartarBajas() throws IOException {
+        borrarBajas();
+        bajas = new HashMap<>();
+    }
+
+    // Con el canal del anexador cerrado: si no, seguiría escribiendo en el archivo borrado.
+    private void borrarBajas() throws IOException {
+        Anexador.de(rutaBajas.toString()).pausar(() -> Files.deleteIfExists(rutaBajas));
+    }
+
+    private long ubicar(Pedido pedido) throws IOException {
+        if (!Files.exists(rutaPedidos)) {
+            return -1;
+        }
+        try (LectorCSV lector = new LectorCSV(rutaPedidos.toString())) {
+            long posicion = pedido.getPosicion();
+            if (posicion >= 0 && posicion < lector.tamaño()) {
+                lector.posicionar(posicion);
+                if (lector.siguienteFila()) {
+                    Pedido fila = GestorCSV.leerPedido(lector);
+                    if (fila != null && fila.mismosDatos(pedido)) {
+                        fila.setPosicion(posicion);
+                        return esBaja(bajas, fila) ? -1 : posicion;
+                    }
+                }
+            }
+            // La posición quedó vieja: buscar por datos solo entre las filas del cliente.
+            Posiciones candidatas = porCliente.get(pedido.getEmailCliente());
+            if (candidatas == null) {
+                return -1;
+            }
+            for (int i = 0; i < candidatas.cantidad; i++) {
+                lector.posicionar(candidatas.valores[i]);
+                if (!lector.siguienteFila()) continue;
+                Pedido fila = GestorCSV.leerPedido(lector);
+                if (fila == null) continue;
+                fila.setPosicion(candidatas.valores[i]);
+                if (fila.mismosDatos(pedido) && !esBaja(bajas, fila)) {
+                    return candidatas.valores[i];
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void cargarBajas() throws IOException {
+        if (bajas != null) {
+            return;
+        }
+        bajas = new HashMap<>();
+        if (!Files.exists(rutaBajas)) {
+            return;
+        }
+        try (LectorCSV lector = new LectorCSV(rutaBajas.toString())) {
+            while (lector.siguienteFila()) {
+                if (lector.numeroCampos() < 4) continue;
+                Pedido baja = new Pedido(lector.texto(1), lector.texto(2), lector.marcaTiempo(3));
+                baja.setPosicion(lector.largo(0));
+                bajas.put(baja.getPosicion(), baja);
+            }
+        }
+    }
+
+    private void indexar(String email, long posicion) {
+        porCliente.computeIfAbsent(email, k -> new Posiciones()).agregar(posicion);
+        filas++;
+    }
+
+    // Indexa hasta la última fila completa; una fila a medio escribir se indexa en la próxima llamada.
+    private long indexarFilas(LectorCSV lector, BufferedWriter writer) throws IOException {
+        long hasta = lector.posicionSiguiente();
+        while (lector.siguienteFila() && lector.filaTerminada()) {
+            hasta = lector.posicionSiguiente();
+            if (lector.numeroCampos() < 3) continue;
+            String email = lector.texto(0);
+            long posicion = lector.posicionFila();
+            indexar(email, posicion);
+            escribir(writer, posicion, email);
+        }
+        return hasta;
+    }
+
+    private long tamañoDatos() throws IOException {
+        return Files.exists(rutaPedidos) ? Files.size(rutaPedidos) : 0;
+    }
+
+    private static void escribir(BufferedWriter writer, long posicion, String email) throws IOException {
+        writer.write(posicion + "," + GestorCSV.campo(email));
+        writer.newLine();
+    }
+}
@@ -0,0 +1,251 @@
+package Model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Índices ordenados por precio y por cantidad de los productos de un catálogo.
+ * Cada índice es un mapa ordenado cuya clave es el valor más el número de orden del
+ * producto en el catálogo, así los empates quedan en orden de inserción y cada fila
+ * tiene una posición única que sirve de cursor. Una consulta por rango o una página
+ * solo recorre las filas que devuelve.
+ *
+ * <p>Los cambios de stock llegan desde {@link Producto}: después de cada cambio el producto
+ * avisa a su {@link Registro}, que solo se marca como pendiente (un CAS sobre una marca, y
+ * la primera vez se encola). Así la reserva de stock no toma ningún bloqueo ni toca los
+ * mapas. Cada consulta mueve primero las entradas pendientes leyendo la cantidad actual;
+ * como se relee el valor vigente, el índice termina con la cantidad final aunque los
+ * cambios simultáneos se avisen desordenados.</p>
+ *
+ * <p>Los índices se arman la primera vez que se consultan; hasta entonces los avisos
+ * no hacen nada. Un producto pertenece a un solo catálogo a la vez.</p>
+ * @author andres
+ */
+class IndiceRangos {
+
+    /** Posición de un producto en un índice: valor y, para desempatar, orden en el catálogo. */
+    private static final class Clave implements Comparable<Clave> {
+        final double valor;
+        final long orden;
+
+        Clave(double valor, long orden) {
+            this.valor = valor;
+            this.orden = orden;
+        }
+
+        @Override
+        public int compareTo(Clave otra) {
+            int c = Double.compare(valor, otra.valor);
+            return c != 0 ? c : Long.compare(orden, otra.orden);
+        }
+    }
+
+    /** Estado de un producto dentro de los índices; el producto lo guarda y lo avisa. */
+    static final class Registro {
+        private static final VarHandle PENDIENTE;
+
+        static {
+            try {
+                PENDIENTE = MethodHandles.lookup().findVarHandle(Registro.class, "pendiente", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final IndiceRangos indice;
+        private final long orden;
+        private final Producto producto;
+        private volatile boolean pendiente;
+        private Clave precio;
+        private Clave cantidad;
+        private boolean quitado;
+
+        private Registro(IndiceRangos indice, long orden, Producto producto) {
+            this.indice = indice;
+            this.orden = orden;
+            this.producto = producto;
+        }
+
+        /**
+         * Marca el producto para volver a ubicarlo en la próxima consulta. No bloquea.
+         */
+        void refrescar() {
+            // Antes de la primera consulta no se mantiene nada; después, solo el primer aviso
+            // desde la última consulta encola el registro.
+            if (indice.activo && !pendiente && PENDIENTE.compareAndSet(this, false, true)) {
+                indice.encolados.incrementAndGet();
+                indice.pendientes.add(this);
+            }
+        }
+
+        /** Vuelve a ubicar el producto según su precio y cantidad actuales. */
+        private void aplicar() {
+            // Se desmarca antes de leer la cantidad: un cambio posterior vuelve a encolarlo.
+            pendiente = false;
+            actualizar();
+        }
+
+        private synchronized void actualizar() {
+            if (quitado) {
+                return;
+            }
+            if (precio == null) {
+                precio = new Clave(producto.getPrecio(), orden);
+                indice.porPrecio.put(precio, producto);
+            }
+            int actual = producto.getCantidad();
+            if (cantidad == null || cantidad.valor != actual) {
+                if (cantidad != null) {
+                    indice.porCantidad.remove(cantidad);
+                }
+                cantidad = new Clave(actual, orden);
+                indice.porCantidad.put(cantidad, producto);
+            }
+        }
+
+        private synchronized void quitar() {
+            quitado = true;
+            if (precio != null) {
+                indice.porPrecio.remove(precio);
+                precio = null;
+            }
+            if (cantidad != null) {
+                indice.porCantidad.remove(cantidad);
+                cantidad = null;
+            }
+        }
+    }
+
+    private final ConcurrentSkipListMap<Clave, Producto> porPrecio = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Clave, Producto> porCantidad = new ConcurrentSkipListMap<>();
+    private final ConcurrentLinkedQueue<Registro> pendientes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger encolados = new AtomicInteger();
+    private volatile boolean activo;
+
+    /**
+     * Asocia un producto a los índices con su número de orden en el catálogo.
+     * @param producto Producto agregado al catálogo.
+     * @param orden Número de orden del producto.
+     */
+    void incorporar(Producto producto, long orden) {
+        Registro registro = new Registro(this, orden, producto);
+        producto.registro = registro;
+        registro.refrescar();
+    }
+
+    /**
+     * Quita un producto de los índices.
+     * @param producto Producto eliminado o reemplazado en el catálogo.
+     */
+    void quitar(Producto producto) {
+        Registro registro = producto.registro;
+        if (registro != null && registro.indice == this) {
+            registro.quitar();
+            producto.registro = null;
+        }
+    }
+
+    // Los avisos empiezan a aplicarse antes de recorrer el catálogo, así no se pierde
+    // ningún cambio que ocurra mientras se arma.
+    private void asegurarActivo(Collection<Producto> catalogo) {
+        if (activo) {
+            return;
+        }
+        synchronized (this) {
+            if (activo) {
+                return;
+            }
+            activo = true;
+            for (Producto p : catalogo) {
+                Registro registro = p.registro;
+                if (registro != null && registro.indice == this) {
+                    registro.actualizar();
+                }
+            }
+        }
+    }
+
+    // Aplica los avisos que había al empezar la consulta. Los que lleguen mientras tanto
+    // quedan para la siguiente, así una escritura constante no demora la consulta sin fin.
+    private void aplicarPendientes() {
+        for (int n = encolados.get(); n > 0; n--) {
+            Registro registro = pendientes.poll();
+            if (registro == null) {
+                return;
+            }
+            encolados.decrementAndGet();
+            registro.aplicar();
+        }
+    }
+
+    /**
+     * Página de productos con precio dentro del rango, de menor a mayor precio.
+     * @see CatalogoProductos#porPrecio(double, double, String, int)
+     */
+    Pagina<Producto> porPrecio(double minimo, double maximo, String cursor, int tamaño, Collection<Producto> catalogo) {
+        asegurarActivo(catalogo);
+        aplicarPendientes();
+        return pagina(porPrecio, minimo, maximo, cursor, tamaño);
+    }
+
+    /**
+     * Página de productos con cantidad dentro del rango, de menor a mayor cantidad.
+     * @see CatalogoProductos#porCantidad(int, int, String, int)
+     */
+    Pagina<Producto> porCantidad(int minimo, int maximo, String cursor, int tamaño, Collection<Producto> catalogo) {
+        asegurarActivo(catalogo);
+        aplicarPendientes();
+        return pagina(porCantidad, minimo, maximo, cursor, tamaño);
+    }
+
+    private static Pagina<Producto> pagina(ConcurrentSkipListMap<Clave, Producto> mapa, double minimo, double maximo,
+            String cursor, int tamaño) {
+        if (tamaño <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser positivo: " + tamaño);
+        }
+        Clave desde = new Clave(minimo, Long.MIN_VALUE);
+        Clave hasta = new Clave(maximo, Long.MAX_VALUE);
+        boolean incluirDesde = true;
+        if (cursor != null) {
+            // El cursor no puede llevar la página por debajo del mínimo pedido: vale el mayor de los dos.
+            Clave despuesDe = leerCursor(cursor);
+            if (despuesDe.compareTo(desde) >= 0) {
+                desde = despuesDe;
+                incluirDesde = false;
+            }
+        }
+        // Rango vacío (mínimo mayor que el máximo, o cursor al final): subMap lanzaría IllegalArgumentException.
+        if (desde.compareTo(hasta) >= 0) {
+            return new Pagina<>(new ArrayList<>(), null);
+        }
+        Map<Clave, Producto> rango = mapa.subMap(desde, incluirDesde, hasta, true);
+        List<Producto> elementos = new ArrayList<>(Math.min(tamaño, 1024));
+        Iterator<Map.Entry<Clave, Producto>> it = rango.entrySet().iterator();
+        Clave ultima = null;
+        while (elementos.size() < tamaño && it.hasNext()) {
+            Map.Entry<Clave, Producto> e = it.next();
+            elementos.add(e.getValue());
+            ultima = e.getKey();
+        }
+        String siguiente = ultima != null && it.hasNext() ? ultima.valor + ":" + ultima.orden : null;
+        return new Pagina<>(elementos, siguiente);
+    }
+
+    private static Clave leerCursor(String cursor) {
+        int separador = cursor.lastIndexOf(':');
+        try {
+            return new Clave(Double.parseDouble(cursor.substring(0, separador)),
+                    Long.parseLong(cursor.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,364 @@
+package Model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Copia binaria de los archivos de productos y usuarios, para arrancar sin volver a analizar el CSV.
+ * Se guarda en {@code <archivo>.bin} con este formato (enteros en big-endian):
+ * <pre>
+ *   int    mágico "SPB1"
+ *   short  versión
+ *   byte   tipo ('P' productos, 'U' usuarios)
+ *   long   productos: secuencia del diario de stock incluida (-1 si no aplica);
+ *          usuarios: bajas que siguen anotadas en el CSV (ver {@link ArchivoUsuarios})
+ *   long   tamaño del CSV del que es copia
+ *   long   última modificación del CSV, en nanosegundos
+ *   int    cantidad de registros
+ *   ...    registros
+ *   int    CRC32 de todo lo anterior
+ * </pre>
+ * Producto: id, nombre, {@code double} precio, {@code int} cantidad.
+ * Usuario: {@code byte} tipo, nombre, email, contraseña.
+ * Los textos van como {@code int} largo en bytes (-1 para nulo) seguido de UTF-8.
+ * La copia solo se usa si el CSV no cambió desde que se escribió; si no, se vuelve al CSV.
+ * @author andres
+ */
+final class InstantaneaBinaria {
+    static final String EXTENSION = ".bin";
+    static final short VERSION = 1;
+
+    private static final int MAGICO = 0x53504231; // "SPB1"
+    private static final byte PRODUCTOS = 'P';
+    private static final byte USUARIOS = 'U';
+    private static final int CABECERA = 4 + 2 + 1 + 8 + 8 + 8 + 4;
+    private static final Metricas.Contador BYTES_LEIDOS = Metricas.contador("binario.bytesLeidos");
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("binario.bytesEscritos");
+
+    private static final byte CLIENTE = 0;
+    private static final byte ADMINISTRADOR = 1;
+    private static final byte PROVEEDOR = 2;
+
+    private InstantaneaBinaria() {
+    }
+
+    /**
+     * @param rutaArchivo Ruta del CSV.
+     * @return Ruta de su copia binaria.
+     */
+    static Path de(String rutaArchivo) {
+        return Paths.get(rutaArchivo + EXTENSION);
+    }
+
+    // === ESCRITURA ===
+
+    /**
+     * Escribe la copia binaria de un archivo de productos recién guardado.
+     * @param productos Productos guardados en el CSV.
+     * @param secuencia Secuencia del diario incluida en el CSV.
+     * @param rutaArchivo Ruta del CSV.
+     * @throws IOException Si no se puede escribir la copia.
+     */
+    static void guardarProductos(Collection<Producto> productos, long secuencia, String rutaArchivo) throws IOException {
+        Escritor e = new Escritor(PRODUCTOS, secuencia, Paths.get(rutaArchivo), productos.size());
+        for (Producto p : productos) {
+            e.texto(p.getId());
+            e.texto(p.getNombre());
+            e.asegurar(12);
+            e.buffer.putDouble(p.getPrecio()).putInt(p.getCantidad());
+        }
+        e.terminar(de(rutaArchivo));
+    }
+
+    /**
+     * Escribe la copia binaria de un archivo de usuarios recién guardado o leído.
+     * @param usuarios Usuarios vigentes del CSV.
+     * @param bajas Bajas que siguen anotadas en el CSV.
+     * @param rutaArchivo Ruta del CSV.
+     * @throws IOException Si no se puede escribir la copia.
+     */
+    static void guardarUsuarios(Collection<Usuario> usuarios, long bajas, String rutaArchivo) throws IOException {
+        List<Usuario> conocidos = new ArrayList<>(usuarios.size());
+        for (Usuario u : usuarios) {
+            if (tipo(u) >= 0) conocidos.add(u);
+        }
+        Escritor e = new Escritor(USUARIOS, bajas, Paths.get(rutaArchivo), conocidos.size());
+        for (Usuario u : conocidos) {
+            e.asegurar(1);
+            e.buffer.put(tipo(u));
+            e.texto(u.getNombre());
+            e.texto(u.getEmail());
+            e.texto(u.getContraseña());
+        }
+        e.terminar(de(rutaArchivo));
+    }
+
+    /**
+     * Escribe la copia binaria sin interrumpir a quien guardó el CSV: si falla, se borra
+     * la copia anterior para que no quede una desactualizada y se seguirá usando el CSV.
+     */
+    static void guardarProductosSinFallar(Collection<Producto> productos, long secuencia, String rutaArchivo) {
+        try {
+            guardarProductos(productos, secuencia, rutaArchivo);
+        } catch (IOException e) {
+            descartar(rutaArchivo);
+        }
+    }
+
+    /** Igual que {@link #guardarProductosSinFallar}, para usuarios. */
+    static void guardarUsuariosSinFallar(Collection<Usuario> usuarios, long bajas, String rutaArchivo) {
+        try {
+            guardarUsuarios(usuarios, bajas, rutaArchivo);
+        } catch (IOException e) {
+            descartar(rutaArchivo);
+        }
+    }
+
+    private static void descartar(String rutaArchivo) {
+        try {
+            Files.deleteIfExists(de(rutaArchivo));
+        } catch (IOException e) {
+            // La marca del CSV ya no coincide: la copia vieja se ignorará al cargar.
+        }
+    }
+
+    private static byte tipo(Usuario u) {
+        if (u instanceof Cliente) return CLIENTE;
+        if (u instanceof Administrador) return ADMINISTRADOR;
+        if (u instanceof Proveedor) return PROVEEDOR;
+        return -1;
+    }
+
+    /** Arma la copia en memoria y la escribe con una sola operación. */
+    private static final class Escritor {
+        ByteBuffer buffer;
+
+        Escritor(byte tipo, long secuencia, Path fuente, int registros) throws IOException {
+            long tamaño = -1;
+            long modificado = -1;
+            if (Files.exists(fuente)) {
+                BasicFileAttributes atributos = Files.readAttributes(fuente, BasicFileAttributes.class);
+                tamaño = atributos.size();
+                modificado = atributos.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            }
+            buffer = ByteBuffer.allocate(CABECERA + registros * 48 + 4);
+            buffer.putInt(MAGICO).putShort(VERSION).put(tipo)
+                    .putLong(secuencia).putLong(tamaño).putLong(modificado).putInt(registros);
+        }
+
+        void texto(String valor) {
+            if (valor == null) {
+                asegurar(4);
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+            asegurar(4 + bytes.length);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        void asegurar(int bytes) {
+            if (buffer.remaining() < bytes + 4) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes + 4));
+                buffer.flip();
+                buffer = mayor.put(buffer);
+            }
+        }
+
+        void terminar(Path destino) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            BYTES_ESCRITOS.sumar(buffer.limit());
+            Path temporal = Paths.get(destino + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // === LECTURA ===
+
+    /**
+     * Lee la copia binaria de un archivo de productos si está vigente.
+     * @param rutaArchivo Ruta del CSV.
+     * @param secuencia Arreglo de un elemento donde se deja la secuencia del diario incluida.
+     * @return Productos leídos, o {@code null} si no hay copia válida y hay que leer el CSV.
+     */
+    static List<Producto> cargarProductos(String rutaArchivo, long[] secuencia) {
+        Lector l = abrir(de(rutaArchivo), PRODUCTOS, Paths.get(rutaArchivo));
+        try {
+            return l == null ? null : l.productos(secuencia);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lee la copia binaria de un archivo de usuarios si está vigente.
+     * @param rutaArchivo Ruta del CSV.
+     * @param bajas Arreglo de un elemento donde se dejan las bajas anotadas en el CSV.
+     * @return Usuarios leídos, o {@code null} si no hay copia válida y hay que leer el CSV.
+     */
+    static List<Usuario> cargarUsuarios(String rutaArchivo, long[] bajas) {
+        Lector l = abrir(de(rutaArchivo), USUARIOS, Paths.get(rutaArchivo));
+        try {
+            if (l == null) {
+                return null;
+            }
+            // Las copias anteriores guardaban -1.
+            bajas[0] = Math.max(0, l.secuencia);
+            return l.usuarios();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lee un archivo binario de productos sin compararlo con ningún CSV.
+     * @param rutaBinaria Ruta del archivo binario.
+     * @param secuencia Arreglo de un elemento donde se deja la secuencia del diario incluida.
+     * @return Productos leídos.
+     * @throws IOException Si el archivo no existe, no es de productos o está dañado.
+     */
+    static List<Producto> leerProductos(String rutaBinaria, long[] secuencia) throws IOException {
+        try {
+            return abrirOFallar(rutaBinaria, PRODUCTOS).productos(secuencia);
+        } catch (RuntimeException e) {
+            throw new IOException("Archivo binario inválido o dañado: " + rutaBinaria, e);
+        }
+    }
+
+    /**
+     * Lee un archivo binario de usuarios sin compararlo con ningún CSV.
+     * @param rutaBinaria Ruta del archivo binario.
+     * @return Usuarios leídos.
+     * @throws IOException Si el archivo no existe, no es de usuarios o está dañado.
+     */
+    static List<Usuario> leerUsuarios(String rutaBinaria) throws IOException {
+        try {
+            return abrirOFallar(rutaBinaria, USUARIOS).usuarios();
+        } catch (RuntimeException e) {
+            throw new IOException("Archivo binario inválido o dañado: " + rutaBinaria, e);
+        }
+    }
+
+    private static Lector abrirOFallar(String rutaBinaria, byte tipo) throws IOException {
+        Path ruta = Paths.get(rutaBinaria);
+        if (!Files.exists(ruta)) {
+            throw new FileNotFoundException(rutaBinaria);
+        }
+        Lector l = abrir(ruta, tipo, null);
+        if (l == null) {
+            throw new IOException("Archivo binario inválido o dañado: " + rutaBinaria);
+        }
+        return l;
+    }
+
+    /**
+     * Lee el archivo completo con una sola lectura y valida cabecera, versión,
+     * marca del CSV (si se indica) y suma de verificación.
+     */
+    private static Lector abrir(Path ruta, byte tipo, Path fuente) {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamaño = canal.size();
+            if (tamaño < CABECERA + 4 || tamaño > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) tamaño);
+            while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+                // Lectura completa en bloque.
+            }
+            buffer.flip();
+            BYTES_LEIDOS.sumar(buffer.limit());
+            if (buffer.getInt() != MAGICO || buffer.getShort() != VERSION || buffer.get() != tipo) {
+                return null;
+            }
+            long secuencia = buffer.getLong();
+            long tamañoFuente = buffer.getLong();
+            long modificadoFuente = buffer.getLong();
+            if (fuente != null) {
+                BasicFileAttributes atributos = Files.readAttributes(fuente, BasicFileAttributes.class);
+                if (atributos.size() != tamañoFuente
+                        || atributos.lastModifiedTime().to(TimeUnit.NANOSECONDS) != modificadoFuente) {
+                    return null;
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - 4);
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+                return null;
+            }
+            buffer.limit(buffer.limit() - 4);
+            return new Lector(buffer, secuencia, buffer.getInt());
+        } catch (IOException | RuntimeException e) {
+            // Copia ausente, ilegible o truncada: se usa el CSV.
+            return null;
+        }
+    }
+
+    /** Decodifica los registros de una copia ya validada. */
+    private static final class Lector {
+        final ByteBuffer buffer;
+        final byte[] datos;
+        final long secuencia;
+        final int registros;
+
+        Lector(ByteBuffer buffer, long secuencia, int registros) {
+            this.buffer = buffer;
+            this.datos = buffer.array();
+            this.secuencia = secuencia;
+            this.registros = registros;
+        }
+
+        List<Producto> productos(long[] secuenciaLeida) {
+            List<Producto> productos = new ArrayList<>(registros);
+            for (int i = 0; i < registros; i++) {
+                String id = texto();
+                String nombre = texto();
+                productos.add(new Producto(id, nombre, buffer.getDouble(), buffer.getInt()));
+            }
+            secuenciaLeida[0] = secuencia;
+            return productos;
+        }
+
+        List<Usuario> usuarios() {
+            List<Usuario> usuarios = new ArrayList<>(registros);
+            for (int i = 0; i < registros; i++) {
+                byte tipo = buffer.get();
+                String nombre = texto();
+                String email = texto();
+                String contraseña = texto();
+                switch (tipo) {
+                    case CLIENTE -> usuarios.add(new Cliente(nombre, email, contraseña));
+                    case ADMINISTRADOR -> usuarios.add(new Administrador(nombre, email, contraseña));
+                    case PROVEEDOR -> usuarios.add(new Proveedor(nombre, email, contraseña));
+                    default -> throw new IllegalStateException("Tipo de usuario desconocido: " + tipo);
+                }
+            }
+            return usuarios;
+        }
+
+        private String texto() {
+            int largo = buffer.getInt();
+            if (largo < 0) {
+                return null;
+            }
+            int inicio = buffer.position();
+            buffer.position(inicio + largo);
+            return new String(datos, inicio, largo, StandardCharsets.UTF_8);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,522 @@
+package Model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Lector de archivos CSV sobre un {@link FileChannel} mapeado en memoria (o leído por
+ * ventanas en un buffer propio, ver {@link #MAPEAR}).
+ * Recorre el archivo fila por fila marcando los límites de cada campo dentro del buffer,
+ * sin crear cadenas intermedias; los números y fechas se interpretan directamente desde los bytes
+ * y solo se crea un {@code String} cuando se pide el texto de un campo.
+ * Soporta comillas según RFC 4180 (campos con comas, saltos de línea o comillas dobles escapadas).
+ * Los archivos grandes se recorren por ventanas, por lo que no hay límite de tamaño.
+ * @author andres
+ */
+public class LectorCSV implements Closeable {
+    private static final int VENTANA = 64 << 20;
+    private static final int VENTANA_LECTURA = 1 << 20;
+
+    /**
+     * Si los archivos se mapean en memoria. Un mapeo sigue vivo después de {@link #close()} hasta
+     * que el recolector lo libera, y en Windows un archivo mapeado no se puede reemplazar: las
+     * compactaciones, que reemplazan los archivos con {@code Files.move}, fallarían con
+     * {@code AccessDeniedException}. Por eso en Windows se lee con {@link FileChannel#read}.
+     * La propiedad de sistema {@code shopplus.csv.mapear} ({@code true} o {@code false}) lo fuerza.
+     */
+    static final boolean MAPEAR = Boolean.parseBoolean(System.getProperty("shopplus.csv.mapear",
+            String.valueOf(!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows"))));
+    private static final Metricas.Contador FILAS_LEIDAS = Metricas.contador("csv.filasLeidas");
+    private static final Metricas.Contador BYTES_LEIDOS = Metricas.contador("csv.bytesLeidos");
+    private static final double[] POTENCIAS_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final FileChannel canal;
+    private long tamañoArchivo;
+    private final Charset charset;
+
+    private ByteBuffer buffer;
+    private long base;
+    private int limite;
+    private int posicion;
+    private long inicioFila;
+    private boolean terminada;
+
+    private int campos;
+    private int[] inicios = new int[8];
+    private int[] fines = new int[8];
+    private boolean[] entreComillas = new boolean[8];
+    private byte[] auxiliar = new byte[128];
+
+    // Se acumulan aquí y se suman a las métricas al cerrar, para no tocar contadores compartidos por fila.
+    private long filasLeidas;
+    private long bytesLeidos;
+
+    /**
+     * Abre un archivo CSV para lectura.
+     * @param rutaArchivo Ruta del archivo.
+     * @throws IOException Si el archivo no existe o no se puede leer.
+     */
+    public LectorCSV(String rutaArchivo) throws IOException {
+        this(rutaArchivo, 0);
+    }
+
+    /**
+     * Abre un archivo CSV para lectura a partir de una posición.
+     * @param rutaArchivo Ruta del archivo.
+     * @param desde Byte donde empieza la primera fila a leer.
+     * @throws IOException Si el archivo no existe o no se puede leer.
+     */
+    public LectorCSV(String rutaArchivo, long desde) throws IOException {
+        this.canal = FileChannel.open(Paths.get(rutaArchivo), StandardOpenOption.READ);
+        this.tamañoArchivo = canal.size();
+        this.charset = Charset.defaultCharset();
+        mapear(Math.min(desde, tamañoArchivo), ventana());
+    }
+
+    /**
+     * Avanza a la siguiente fila del archivo.
+     * @return {@code true} si hay una fila disponible, {@code false} al llegar al final.
+     * @throws IOException Si ocurre un error al leer.
+     */
+    public boolean siguienteFila() throws IOException {
+        while (true) {
+            long inicio = base + posicion;
+            if (inicio >= tamañoArchivo) {
+                campos = 0;
+                return false;
+            }
+            int fin = escanearFila(posicion);
+            if (fin >= 0) {
+                inicioFila = inicio;
+                bytesLeidos += fin - posicion;
+                filasLeidas++;
+                posicion = fin;
+                return true;
+            }
+            // La fila no entra en la ventana actual: volver a mapear desde su inicio.
+            int tamaño = inicio == base ? (int) Math.min(Integer.MAX_VALUE, 2L * limite) : ventana();
+            mapear(inicio, tamaño);
+        }
+    }
+
+    /**
+     * Mueve el lector para que la próxima fila leída empiece en la posición indicada.
+     * Si la posición cae dentro de la ventana mapeada no se vuelve a mapear.
+     * @param desde Byte del archivo donde empieza la fila.
+     * @throws IOException Si ocurre un error al mapear el archivo.
+     */
+    public void posicionar(long desde) throws IOException {
+        if (desde >= base && desde < base + limite) {
+            posicion = (int) (desde - base);
+        } else {
+            mapear(Math.min(desde, tamañoArchivo), ventana());
+        }
+    }
+
+    /** @return Tamaño del archivo en bytes al momento de abrirlo. */
+    public long tamaño() {
+        return tamañoArchivo;
+    }
+
+    /** @return Byte del archivo donde empieza la fila actual. */
+    public long posicionFila() {
+        return inicioFila;
+    }
+
+    /** @return Byte del archivo donde empieza la fila siguiente. */
+    public long posicionSiguiente() {
+        return base + posicion;
+    }
+
+    /**
+     * Indica si la fila actual termina con un salto de línea. La última fila de un archivo
+     * que se está escribiendo puede estar incompleta.
+     * @return {@code true} si la fila tiene su salto de línea.
+     */
+    public boolean filaTerminada() {
+        return terminada;
+    }
+
+    /** @return Cantidad de campos de la fila actual. */
+    public int numeroCampos() {
+        return campos;
+    }
+
+    /**
+     * Compara un campo con un texto ASCII sin crear cadenas.
+     * @param i Índice del campo.
+     * @param ascii Texto esperado.
+     * @return {@code true} si el campo es exactamente ese texto.
+     */
+    public boolean campoEs(int i, String ascii) {
+        if (entreComillas[i]) {
+            return ascii.equals(texto(i));
+        }
+        int ini = inicios[i];
+        int largo = fines[i] - ini;
+        if (largo != ascii.length()) {
+            return false;
+        }
+        for (int k = 0; k < largo; k++) {
+            if (buffer.get(ini + k) != ascii.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compara un campo con un valor ya codificado, sin crear cadenas.
+     * Pensado para filtrar filas antes de construir objetos.
+     * @param i Índice del campo.
+     * @param valor Bytes del valor esperado, obtenidos con {@link #codificar(String)}.
+     * @return {@code true} si el campo es exactamente ese valor.
+     */
+    public boolean campoIgual(int i, byte[] valor) {
+        if (entreComillas[i]) {
+            return new String(valor, charset).equals(texto(i));
+        }
+        int ini = inicios[i];
+        if (fines[i] - ini != valor.length) {
+            return false;
+        }
+        for (int k = 0; k < valor.length; k++) {
+            if (buffer.get(ini + k) != valor[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copia los bytes de un campo, sin comillas, al comienzo de un arreglo.
+     * @param i Índice del campo.
+     * @param destino Arreglo donde copiar.
+     * @return Cantidad de bytes copiados, o -1 si no entran en el destino.
+     */
+    int copiarCampo(int i, byte[] destino) {
+        if (entreComillas[i]) {
+            byte[] b = codificar(texto(i));
+            if (b.length > destino.length) {
+                return -1;
+            }
+            System.arraycopy(b, 0, destino, 0, b.length);
+            return b.length;
+        }
+        int largo = fines[i] - inicios[i];
+        if (largo > destino.length) {
+            return -1;
+        }
+        buffer.get(inicios[i], destino, 0, largo);
+        return largo;
+    }
+
+    /**
+     * Codifica un texto con el mismo juego de caracteres que usa el lector.
+     * @param texto Texto a codificar.
+     * @return Bytes del texto, o {@code null} si el texto es nulo.
+     */
+    public byte[] codificar(String texto) {
+        return texto == null ? null : texto.getBytes(charset);
+    }
+
+    /**
+     * Devuelve el texto de un campo, sin comillas y con las comillas dobles escapadas resueltas.
+     * @param i Índice del campo.
+     * @return Texto del campo.
+     */
+    public String texto(int i) {
+        int ini = inicios[i];
+        int largo = fines[i] - ini;
+        if (auxiliar.length < largo) {
+            auxiliar = new byte[Math.max(largo, auxiliar.length * 2)];
+        }
+        if (!entreComillas[i]) {
+            buffer.get(ini, auxiliar, 0, largo);
+            return new String(auxiliar, 0, largo, charset);
+        }
+        int n = 0;
+        for (int k = ini; k < ini + largo; k++) {
+            byte b = buffer.get(k);
+            auxiliar[n++] = b;
+            if (b == '"') {
+                k++;
+            }
+        }
+        return new String(auxiliar, 0, n, charset);
+    }
+
+    /**
+     * Interpreta un campo como entero.
+     * @param i Índice del campo.
+     * @return Valor del campo.
+     * @throws NumberFormatException Si el campo no es un entero válido.
+     */
+    public int entero(int i) {
+        long valor = largo(i);
+        if (valor != (int) valor) {
+            throw new NumberFormatException("Valor fuera de rango: " + texto(i));
+        }
+        return (int) valor;
+    }
+
+    /**
+     * Interpreta un campo como entero largo.
+     * @param i Índice del campo.
+     * @return Valor del campo.
+     * @throws NumberFormatException Si el campo no es un entero válido.
+     */
+    public long largo(int i) {
+        int k = inicios[i];
+        int fin = fines[i];
+        boolean negativo = false;
+        if (k < fin && (buffer.get(k) == '-' || buffer.get(k) == '+')) {
+            negativo = buffer.get(k) == '-';
+            k++;
+        }
+        if (k == fin || fin - k > 18) {
+            return Long.parseLong(texto(i));
+        }
+        long valor = 0;
+        for (; k < fin; k++) {
+            int d = buffer.get(k) - '0';
+            if (d < 0 || d > 9) {
+                return Long.parseLong(texto(i));
+            }
+            valor = valor * 10 + d;
+        }
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Interpreta un campo como número decimal.
+     * Los valores con hasta 15 dígitos significativos y sin exponente se calculan
+     * directamente (con redondeo exacto); el resto se delega a {@link Double#parseDouble}.
+     * @param i Índice del campo.
+     * @return Valor del campo.
+     * @throws NumberFormatException Si el campo no es un número válido.
+     */
+    public double decimal(int i) {
+        int k = inicios[i];
+        int fin = fines[i];
+        boolean negativo = false;
+        if (k < fin && (buffer.get(k) == '-' || buffer.get(k) == '+')) {
+            negativo = buffer.get(k) == '-';
+            k++;
+        }
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = -1;
+        boolean hayDigitos = false;
+        for (; k < fin; k++) {
+            byte b = buffer.get(k);
+            if (b == '.' && decimales < 0) {
+                decimales = 0;
+                continue;
+            }
+            int d = b - '0';
+            if (d < 0 || d > 9 || digitos >= 15) {
+                return Double.parseDouble(texto(i));
+            }
+            hayDigitos = true;
+            mantisa = mantisa * 10 + d;
+            if (mantisa != 0) {
+                digitos++;
+            }
+            if (decimales >= 0) {
+                decimales++;
+            }
+        }
+        if (!hayDigitos || decimales > 22) {
+            return Double.parseDouble(texto(i));
+        }
+        double valor = decimales > 0 ? mantisa / POTENCIAS_10[decimales] : mantisa;
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Interpreta un campo con el formato de {@link LocalDateTime#toString()}.
+     * @param i Índice del campo.
+     * @return Fecha y hora del campo.
+     * @throws java.time.DateTimeException Si el campo no es una fecha válida dentro del rango de {@link MarcaTiempo}.
+     */
+    public LocalDateTime fechaHora(int i) {
+        return MarcaTiempo.aFecha(marcaTiempo(i));
+    }
+
+    /**
+     * Interpreta un campo con el formato de {@link LocalDateTime#toString()}
+     * ({@code aaaa-MM-ddTHH:mm[:ss[.fffffffff]]}) leyendo los dígitos directamente del buffer,
+     * sin crear objetos.
+     * @param i Índice del campo.
+     * @return Marca de tiempo del campo (ver {@link MarcaTiempo}).
+     * @throws java.time.DateTimeException Si el campo no es una fecha válida dentro del rango de {@link MarcaTiempo}.
+     */
+    public long marcaTiempo(int i) {
+        int k = inicios[i];
+        int largo = fines[i] - k;
+        if (entreComillas[i] || largo < 16 || buffer.get(k + 4) != '-' || buffer.get(k + 7) != '-'
+                || buffer.get(k + 10) != 'T' || buffer.get(k + 13) != ':') {
+            return MarcaTiempo.leer(texto(i));
+        }
+        int año = digitos(k, 4);
+        int mes = digitos(k + 5, 2);
+        int dia = digitos(k + 8, 2);
+        int hora = digitos(k + 11, 2);
+        int minuto = digitos(k + 14, 2);
+        int segundo = 0;
+        int nanos = 0;
+        if (largo > 16) {
+            if (largo < 19 || buffer.get(k + 16) != ':') {
+                return MarcaTiempo.leer(texto(i));
+            }
+            segundo = digitos(k + 17, 2);
+            if (largo > 19) {
+                int fraccion = largo - 20;
+                if (buffer.get(k + 19) != '.' || fraccion < 1 || fraccion > 9) {
+                    return MarcaTiempo.leer(texto(i));
+                }
+                nanos = MarcaTiempo.escalarFraccion(digitos(k + 20, fraccion), fraccion);
+            }
+        }
+        if ((año | mes | dia | hora | minuto | segundo | nanos) < 0) {
+            return MarcaTiempo.leer(texto(i));
+        }
+        return MarcaTiempo.de(año, mes, dia, hora, minuto, segundo, nanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        FILAS_LEIDAS.sumar(filasLeidas);
+        BYTES_LEIDOS.sumar(bytesLeidos);
+        filasLeidas = 0;
+        bytesLeidos = 0;
+        canal.close();
+    }
+
+    // Lee 'n' dígitos decimales; devuelve -1 si alguno no es un dígito.
+    private int digitos(int desde, int n) {
+        int valor = 0;
+        for (int k = desde; k < desde + n; k++) {
+            int d = buffer.get(k) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            valor = valor * 10 + d;
+        }
+        return valor;
+    }
+
+    private static int ventana() {
+        return MAPEAR ? VENTANA : VENTANA_LECTURA;
+    }
+
+    // Deja en 'buffer' los bytes [desde, desde + tamaño) del archivo, mapeados o leídos.
+    private void mapear(long desde, int tamaño) throws IOException {
+        long disponible = tamañoArchivo - desde;
+        base = desde;
+        limite = (int) Math.min(disponible, tamaño);
+        posicion = 0;
+        if (MAPEAR) {
+            buffer = canal.map(FileChannel.MapMode.READ_ONLY, base, limite);
+            return;
+        }
+        if (buffer == null || buffer.capacity() < limite) {
+            buffer = ByteBuffer.allocate(limite);
+        }
+        buffer.clear().limit(limite);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, base + buffer.position()) < 0) {
+                // El archivo se acortó desde que se abrió: se lee hasta donde llega.
+                limite = buffer.position();
+                tamañoArchivo = base + limite;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Marca los campos de la fila que empieza en {@code p}.
+     * @return Posición siguiente al fin de línea, o -1 si la fila sigue más allá de la ventana.
+     */
+    private int escanearFila(int p) {
+        boolean ultimaVentana = base + limite >= tamañoArchivo;
+        campos = 0;
+        int i = p;
+        while (true) {
+            int ini;
+            int fin;
+            boolean comillas = i < limite && buffer.get(i) == '"';
+            if (comillas) {
+                ini = ++i;
+                while (true) {
+                    if (i >= limite) {
+                        if (!ultimaVentana) return -1;
+                        fin = i;
+                        break;
+                    }
+                    if (buffer.get(i) == '"') {
+                        if (i + 1 >= limite && !ultimaVentana) return -1;
+                        if (i + 1 < limite && buffer.get(i + 1) == '"') {
+                            i += 2;
+                            continue;
+                        }
+                        fin = i++;
+                        break;
+                    }
+                    i++;
+                }
+                // Tolerar basura entre la comilla de cierre y el separador.
+                while (i < limite && !esSeparador(buffer.get(i))) i++;
+            } else {
+                ini = i;
+                while (i < limite && !esSeparador(buffer.get(i))) i++;
+                fin = i;
+            }
+            agregarCampo(ini, fin, comillas);
+
+            if (i >= limite) {
+                terminada = false;
+                return ultimaVentana ? i : -1;
+            }
+            byte b = buffer.get(i++);
+            if (b == ',') {
+                continue;
+            }
+            if (b == '\r') {
+                if (i >= limite && !ultimaVentana) return -1;
+                if (i < limite && buffer.get(i) == '\n') i++;
+            }
+            terminada = true;
+            return i;
+        }
+    }
+
+    private static boolean esSeparador(byte b) {
+        return b == ',' || b == '\n' || b == '\r';
+    }
+
+    private void agregarCampo(int ini, int fin, boolean comillas) {
+        if (campos == inicios.length) {
+            int n = campos * 2;
+            inicios = Arrays.copyOf(inicios, n);
+            fines = Arrays.copyOf(fines, n);
+            entreComillas = Arrays.copyOf(entreComillas, n);
+        }
+        inicios[campos] = ini;
+        fines[campos] = fin;
+        entreComillas[campos] = comillas;
+        campos++;
+    }
+}
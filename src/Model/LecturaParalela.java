@@ -0,0 +1,127 @@
+package Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Lectura en paralelo de los archivos grandes de pedidos y envíos.
+ *
+ * <p>El archivo se divide en tramos de bytes que se leen en un {@link ForkJoinPool}, cada uno
+ * con su propio {@link LectorCSV}, y las filas se juntan en el orden del archivo. Los tramos
+ * se cortan igual que en {@link AnaliticaVentas}: cada uno empieza en la primera fila que
+ * comienza dentro de él y termina con la fila que cruza su final. Por eso solo sirve para
+ * archivos cuyos campos no tienen saltos de línea, como los emails, IDs y fechas de pedidos
+ * y envíos; los nombres de productos y usuarios sí pueden tenerlos.</p>
+ *
+ * <p>Un archivo chico, o un pool de un solo hilo, se lee de corrido en el hilo que llama.</p>
+ * @author andres
+ */
+final class LecturaParalela {
+    private static final long TRAMO_MINIMO = 8L << 20;
+
+    private LecturaParalela() {
+    }
+
+    /** Convierte la fila actual en un objeto. */
+    interface Fila<T> {
+        /**
+         * @param lector Lector posicionado en una fila.
+         * @return Objeto leído, o {@code null} para omitir la fila.
+         */
+        T leer(LectorCSV lector);
+    }
+
+    /**
+     * Lee las filas de un archivo desde un byte dado, con el pool común de fork-join.
+     * @param ruta Archivo a leer.
+     * @param desde Byte donde empieza una fila (0 para leer todo).
+     * @param filas Crea el conversor de cada tramo; como cada tramo corre en su hilo, puede tener estado propio.
+     * @return Objetos leídos, en el orden del archivo.
+     * @throws IOException Si no se puede leer el archivo.
+     */
+    static <T> List<T> leer(String ruta, long desde, Supplier<Fila<T>> filas) throws IOException {
+        return leer(ruta, desde, filas, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Igual que {@link #leer(String, long, Supplier)}, con un pool dado.
+     */
+    static <T> List<T> leer(String ruta, long desde, Supplier<Fila<T>> filas, ForkJoinPool pool) throws IOException {
+        long hasta = Files.size(Paths.get(ruta));
+        // Unos cuatro tramos por hilo, para repartir bien aunque algunos terminen antes.
+        long tamañoHoja = Math.max(TRAMO_MINIMO, (hasta - desde) / (4L * pool.getParallelism()) + 1);
+        if (pool.getParallelism() < 2 || hasta - desde <= tamañoHoja) {
+            // De corrido hasta el final, incluidas las filas que se agreguen mientras tanto.
+            return new Tramo<>(ruta, desde, desde, Long.MAX_VALUE, tamañoHoja, filas).recorrer();
+        }
+        try {
+            return pool.invoke(new Tramo<>(ruta, desde, desde, hasta, tamañoHoja, filas));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Tramo de bytes [desde, hasta) de un archivo que se lee a partir de {@code inicio}. */
+    private static final class Tramo<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+        private final String ruta;
+        private final long inicio;
+        private final long desde;
+        private final long hasta;
+        private final long tamañoHoja;
+        private final Supplier<Fila<T>> filas;
+
+        Tramo(String ruta, long inicio, long desde, long hasta, long tamañoHoja, Supplier<Fila<T>> filas) {
+            this.ruta = ruta;
+            this.inicio = inicio;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.tamañoHoja = tamañoHoja;
+            this.filas = filas;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (hasta - desde > tamañoHoja) {
+                long medio = desde + (hasta - desde) / 2;
+                Tramo<T> derecha = new Tramo<>(ruta, inicio, medio, hasta, tamañoHoja, filas);
+                derecha.fork();
+                List<T> resultado = new Tramo<>(ruta, inicio, desde, medio, tamañoHoja, filas).compute();
+                resultado.addAll(derecha.join());
+                return resultado;
+            }
+            try {
+                return recorrer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        List<T> recorrer() throws IOException {
+            List<T> resultado = new ArrayList<>();
+            Fila<T> fila = filas.get();
+            // Empezando un byte antes, la primera "fila" leída es el resto de la que cruza 'desde'
+            // (o solo su salto de línea): al descartarla quedamos al inicio de una fila propia.
+            boolean cortado = desde > inicio;
+            try (LectorCSV lector = new LectorCSV(ruta, cortado ? desde - 1 : desde)) {
+                if (cortado && !lector.siguienteFila()) {
+                    return resultado;
+                }
+                while (lector.posicionSiguiente() < hasta && lector.siguienteFila()) {
+                    T valor = fila.leer(lector);
+                    if (valor != null) {
+                        resultado.add(valor);
+                    }
+                }
+            }
+            return resultado;
+        }
+    }
+}
\ No newline at end of file
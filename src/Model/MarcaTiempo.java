@@ -0,0 +1,247 @@
+package Model;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Fechas y horas representadas como un {@code long}: nanosegundos desde
+ * 1970-01-01T00:00 en hora local (sin zona), igual que el {@link LocalDateTime} que reemplazan.
+ * Pedidos y envíos guardan así su fecha, para no tener un objeto por fila, y los archivos
+ * se leen y escriben con el codificador de esta clase, que no crea objetos intermedios.
+ *
+ * <p>El texto es el mismo de {@link LocalDateTime#toString()}: {@code aaaa-MM-ddTHH:mm}, más
+ * {@code :ss} si hay segundos o fracción, y la fracción con 3, 6 o 9 dígitos según haga falta.
+ * Se usan nanosegundos (y no microsegundos) porque los archivos existentes tienen fracciones
+ * de hasta 9 dígitos, y tienen que leerse sin perder precisión. Al volver a escribirse se
+ * conserva el valor, no el texto: una fracción de 7 u 8 dígitos sale con 9, como la
+ * escribiría {@link LocalDateTime#toString()} ({@code 10:11:12.1234567} queda
+ * {@code 10:11:12.123456700}). El rango representable va de {@value #AÑO_MINIMO}
+ * a {@value #AÑO_MAXIMO}.</p>
+ * @author andres
+ */
+public final class MarcaTiempo {
+    /** Primer año representable. */
+    public static final int AÑO_MINIMO = 1678;
+    /** Último año representable. */
+    public static final int AÑO_MAXIMO = 2261;
+    public static final long NANOS_POR_SEGUNDO = 1_000_000_000L;
+    public static final long NANOS_POR_DIA = 86_400L * NANOS_POR_SEGUNDO;
+
+    private static final long NANOS_POR_HORA = 3_600L * NANOS_POR_SEGUNDO;
+    private static final long NANOS_POR_MINUTO = 60L * NANOS_POR_SEGUNDO;
+    private static final int[] POTENCIAS_10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    private MarcaTiempo() {
+    }
+
+    /**
+     * Arma una marca de tiempo a partir de sus campos, validándolos como {@link LocalDateTime#of}.
+     * @param año Año ({@value #AÑO_MINIMO} a {@value #AÑO_MAXIMO}).
+     * @param mes Mes (1 a 12).
+     * @param dia Día del mes.
+     * @param hora Hora (0 a 23).
+     * @param minuto Minuto (0 a 59).
+     * @param segundo Segundo (0 a 59).
+     * @param nanos Nanosegundos (0 a 999.999.999).
+     * @return Marca de tiempo.
+     * @throws DateTimeException Si algún campo está fuera de rango.
+     */
+    public static long de(int año, int mes, int dia, int hora, int minuto, int segundo, int nanos) {
+        if (año < AÑO_MINIMO || año > AÑO_MAXIMO || mes < 1 || mes > 12 || dia < 1 || dia > diasDelMes(año, mes)
+                || hora < 0 || hora > 23 || minuto < 0 || minuto > 59 || segundo < 0 || segundo > 59
+                || nanos < 0 || nanos >= NANOS_POR_SEGUNDO) {
+            throw new DateTimeException("Fecha inválida o fuera de rango: " + año + "-" + mes + "-" + dia
+                    + " " + hora + ":" + minuto + ":" + segundo + "." + nanos);
+        }
+        return diaEpoca(año, mes, dia) * NANOS_POR_DIA + hora * NANOS_POR_HORA + minuto * NANOS_POR_MINUTO
+                + segundo * NANOS_POR_SEGUNDO + nanos;
+    }
+
+    /**
+     * @param fecha Fecha y hora.
+     * @return Marca de tiempo equivalente.
+     * @throws DateTimeException Si la fecha está fuera del rango representable.
+     */
+    public static long desde(LocalDateTime fecha) {
+        return de(fecha.getYear(), fecha.getMonthValue(), fecha.getDayOfMonth(), fecha.getHour(),
+                fecha.getMinute(), fecha.getSecond(), fecha.getNano());
+    }
+
+    /**
+     * @param marca Marca de tiempo.
+     * @return Fecha y hora equivalente.
+     */
+    public static LocalDateTime aFecha(long marca) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(marca, NANOS_POR_SEGUNDO),
+                (int) Math.floorMod(marca, NANOS_POR_SEGUNDO), ZoneOffset.UTC);
+    }
+
+    /** @return Marca de tiempo de la hora local actual. */
+    public static long ahora() {
+        return desde(LocalDateTime.now());
+    }
+
+    /**
+     * @param marca Marca de tiempo.
+     * @return Día, contado desde 1970-01-01 (como {@link java.time.LocalDate#toEpochDay()}).
+     */
+    public static long dia(long marca) {
+        return Math.floorDiv(marca, NANOS_POR_DIA);
+    }
+
+    /**
+     * @param marca Marca de tiempo.
+     * @return Hora del día (0 a 23).
+     */
+    public static int hora(long marca) {
+        return (int) (Math.floorMod(marca, NANOS_POR_DIA) / NANOS_POR_HORA);
+    }
+
+    /**
+     * Escribe una marca de tiempo con el formato de {@link LocalDateTime#toString()}.
+     * @param marca Marca de tiempo.
+     * @param destino Donde se agrega el texto.
+     * @return El mismo destino.
+     */
+    public static StringBuilder escribir(long marca, StringBuilder destino) {
+        long dias = dia(marca);
+        long resto = marca - dias * NANOS_POR_DIA;
+        // Conversión de días a fecha civil (algoritmo de H. Hinnant, con años que empiezan en marzo).
+        long z = dias + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        int diaEra = (int) (z - era * 146_097);
+        int añoEra = (diaEra - diaEra / 1_460 + diaEra / 36_524 - diaEra / 146_096) / 365;
+        int diaAño = diaEra - (365 * añoEra + añoEra / 4 - añoEra / 100);
+        int mesMarzo = (5 * diaAño + 2) / 153;
+        int dia = diaAño - (153 * mesMarzo + 2) / 5 + 1;
+        int mes = mesMarzo < 10 ? mesMarzo + 3 : mesMarzo - 9;
+        int año = (int) (añoEra + era * 400) + (mes <= 2 ? 1 : 0);
+
+        int hora = (int) (resto / NANOS_POR_HORA);
+        int minuto = (int) (resto / NANOS_POR_MINUTO % 60);
+        int segundo = (int) (resto / NANOS_POR_SEGUNDO % 60);
+        int nanos = (int) (resto % NANOS_POR_SEGUNDO);
+
+        digitos(destino, año, 4).append('-');
+        digitos(destino, mes, 2).append('-');
+        digitos(destino, dia, 2).append('T');
+        digitos(destino, hora, 2).append(':');
+        digitos(destino, minuto, 2);
+        if ((segundo | nanos) != 0) {
+            digitos(destino.append(':'), segundo, 2);
+            if (nanos != 0) {
+                destino.append('.');
+                if (nanos % 1_000_000 == 0) {
+                    digitos(destino, nanos / 1_000_000, 3);
+                } else if (nanos % 1_000 == 0) {
+                    digitos(destino, nanos / 1_000, 6);
+                } else {
+                    digitos(destino, nanos, 9);
+                }
+            }
+        }
+        return destino;
+    }
+
+    /**
+     * @param marca Marca de tiempo.
+     * @return Texto con el formato de {@link LocalDateTime#toString()}.
+     */
+    public static String texto(long marca) {
+        return escribir(marca, new StringBuilder(29)).toString();
+    }
+
+    /**
+     * Interpreta un texto con el formato de {@link LocalDateTime#toString()}
+     * ({@code aaaa-MM-ddTHH:mm[:ss[.f...]]}, de 1 a 9 dígitos de fracción).
+     * @param texto Texto a interpretar.
+     * @return Marca de tiempo.
+     * @throws DateTimeException Si el texto no es una fecha válida o está fuera de rango.
+     */
+    public static long leer(CharSequence texto) {
+        int largo = texto.length();
+        if (largo < 16 || texto.charAt(4) != '-' || texto.charAt(7) != '-' || texto.charAt(10) != 'T'
+                || texto.charAt(13) != ':') {
+            return desde(LocalDateTime.parse(texto));
+        }
+        int año = digitos(texto, 0, 4);
+        int mes = digitos(texto, 5, 2);
+        int dia = digitos(texto, 8, 2);
+        int hora = digitos(texto, 11, 2);
+        int minuto = digitos(texto, 14, 2);
+        int segundo = 0;
+        int nanos = 0;
+        if (largo > 16) {
+            if (largo < 19 || texto.charAt(16) != ':') {
+                return desde(LocalDateTime.parse(texto));
+            }
+            segundo = digitos(texto, 17, 2);
+            if (largo > 19) {
+                int fraccion = largo - 20;
+                if (texto.charAt(19) != '.' || fraccion < 1 || fraccion > 9) {
+                    return desde(LocalDateTime.parse(texto));
+                }
+                nanos = escalarFraccion(digitos(texto, 20, fraccion), fraccion);
+            }
+        }
+        if ((año | mes | dia | hora | minuto | segundo | nanos) < 0) {
+            return desde(LocalDateTime.parse(texto));
+        }
+        return de(año, mes, dia, hora, minuto, segundo, nanos);
+    }
+
+    /**
+     * Lleva una fracción de segundo leída con {@code digitos} cifras a nanosegundos.
+     * @param fraccion Valor leído ({@code -1} si no era numérico).
+     * @param digitos Cantidad de cifras leídas (1 a 9).
+     * @return Nanosegundos, o -1 si la fracción no era numérica.
+     */
+    static int escalarFraccion(int fraccion, int digitos) {
+        if (fraccion < 0) {
+            return -1;
+        }
+        for (int f = digitos; f < 9; f++) {
+            fraccion *= 10;
+        }
+        return fraccion;
+    }
+
+    // Días desde 1970-01-01 (algoritmo de H. Hinnant).
+    private static long diaEpoca(int año, int mes, int dia) {
+        int a = mes <= 2 ? año - 1 : año;
+        int era = Math.floorDiv(a, 400);
+        int añoEra = a - era * 400;
+        int diaAño = (153 * (mes > 2 ? mes - 3 : mes + 9) + 2) / 5 + dia - 1;
+        int diaEra = añoEra * 365 + añoEra / 4 - añoEra / 100 + diaAño;
+        return era * 146_097L + diaEra - 719_468;
+    }
+
+    private static int diasDelMes(int año, int mes) {
+        if (mes == 2) {
+            return (año % 4 == 0 && (año % 100 != 0 || año % 400 == 0)) ? 29 : 28;
+        }
+        return (mes == 4 || mes == 6 || mes == 9 || mes == 11) ? 30 : 31;
+    }
+
+    // Agrega 'n' dígitos con ceros a la izquierda.
+    private static StringBuilder digitos(StringBuilder destino, int valor, int n) {
+        for (int divisor = POTENCIAS_10[n - 1]; divisor > 0; divisor /= 10) {
+            destino.append((char) ('0' + valor / divisor % 10));
+        }
+        return destino;
+    }
+
+    // Lee 'n' dígitos decimales; devuelve -1 si alguno no es un dígito.
+    private static int digitos(CharSequence texto, int desde, int n) {
+        int valor = 0;
+        for (int k = desde; k < desde + n; k++) {
+            int d = texto.charAt(k) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            valor = valor * 10 + d;
+        }
+        return valor;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,366 @@
+package Model;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Métricas de ShopPlus: latencia por operación (histogramas con percentiles) y contadores
+ * de bytes y filas. Está pensada para dejarse activa siempre: medir una operación cuesta
+ * dos lecturas del reloj y unos pocos incrementos atómicos, sin reservar memoria.
+ * Para operaciones de menos de un microsegundo, donde leer el reloj costaría más que la
+ * operación, se puede medir el tiempo solo de una de cada N llamadas; la cuenta sigue siendo exacta.
+ *
+ * <p>Uso típico, con la operación obtenida una sola vez en un campo estático:</p>
+ * <pre>
+ *   private static final Metricas.Operacion CARGAR = Metricas.operacion("GestorCSV.cargarProductos");
+ *   ...
+ *   long inicio = CARGAR.inicio();
+ *   try {
+ *       ...
+ *   } finally {
+ *       CARGAR.registrar(inicio);
+ *   }
+ * </pre>
+ *
+ * <p>Las métricas se publican como MBeans bajo el dominio {@code ShopPlus} y pueden volcarse
+ * como texto cada cierto tiempo. {@link #configurarDesdePropiedades()} lee estas propiedades:</p>
+ * <ul>
+ *   <li>{@code shopplus.metricas}: {@code false} desactiva la medición</li>
+ *   <li>{@code shopplus.metricas.jmx}: {@code false} no publica los MBeans</li>
+ *   <li>{@code shopplus.metricas.volcado}: segundos entre volcados de texto (0, el valor por defecto, no vuelca)</li>
+ *   <li>{@code shopplus.metricas.archivo}: archivo donde se agregan los volcados (por defecto {@code Metricas.txt})</li>
+ * </ul>
+ * <p>Los errores al publicar un MBean o al escribir un volcado no interrumpen nada: se cuentan
+ * en {@code metricas.publicacionesFallidas} y {@code metricas.volcadosFallidos}.</p>
+ * @author andres
+ */
+public final class Metricas {
+    private static final String DOMINIO = "ShopPlus";
+
+    private static final Map<String, Operacion> operaciones = new ConcurrentSkipListMap<>();
+    private static final Map<String, Contador> contadores = new ConcurrentSkipListMap<>();
+    private static final Set<String> publicadas = ConcurrentHashMap.newKeySet();
+    private static final Contador PUBLICACIONES_FALLIDAS = contador("metricas.publicacionesFallidas");
+    private static final Contador VOLCADOS_FALLIDOS = contador("metricas.volcadosFallidos");
+
+    private static volatile boolean activas = true;
+    private static volatile boolean jmx;
+    private static ScheduledExecutorService volcador;
+
+    private Metricas() {
+    }
+
+    // === API ===
+
+    /** Atributos de una operación expuestos por JMX (tiempos en microsegundos). */
+    public interface OperacionMBean {
+        long getCuenta();
+        double getMediaMicros();
+        double getP50Micros();
+        double getP90Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaximoMicros();
+        void reiniciar();
+    }
+
+    /** Atributos de un contador expuestos por JMX. */
+    public interface ContadorMBean {
+        long getValor();
+        void reiniciar();
+    }
+
+    /** Latencias de una operación. */
+    public static final class Operacion implements OperacionMBean {
+        private static final long DESACTIVADA = Long.MIN_VALUE;
+        private static final long SIN_MUESTRA = Long.MIN_VALUE + 1;
+
+        private final String nombre;
+        private final int muestreo;
+        private final LongAdder llamadas = new LongAdder();
+        private final Histograma histograma = new Histograma();
+
+        private Operacion(String nombre, int muestreo) {
+            this.nombre = nombre;
+            this.muestreo = muestreo;
+        }
+
+        /**
+         * Marca el inicio de una ejecución.
+         * @return Valor que debe pasarse a {@link #registrar(long)} al terminar.
+         */
+        public long inicio() {
+            if (!activas) {
+                return DESACTIVADA;
+            }
+            if (muestreo > 1 && ThreadLocalRandom.current().nextInt(muestreo) != 0) {
+                return SIN_MUESTRA;
+            }
+            return System.nanoTime();
+        }
+
+        /**
+         * Registra una ejecución que empezó en {@code inicio}.
+         * @param inicio Valor devuelto por {@link #inicio()}.
+         */
+        public void registrar(long inicio) {
+            if (inicio == DESACTIVADA) {
+                return;
+            }
+            llamadas.increment();
+            if (inicio != SIN_MUESTRA) {
+                histograma.registrar(System.nanoTime() - inicio);
+            }
+        }
+
+        /** @return Nombre de la operación. */
+        public String getNombre() {
+            return nombre;
+        }
+
+        @Override
+        public long getCuenta() {
+            return llamadas.sum();
+        }
+
+        @Override
+        public double getMediaMicros() {
+            return histograma.instantanea().media() / 1e3;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histograma.instantanea().percentil(50) / 1e3;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return histograma.instantanea().percentil(90) / 1e3;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histograma.instantanea().percentil(99) / 1e3;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return histograma.instantanea().percentil(99.9) / 1e3;
+        }
+
+        @Override
+        public double getMaximoMicros() {
+            return histograma.instantanea().maximo / 1e3;
+        }
+
+        @Override
+        public void reiniciar() {
+            llamadas.reset();
+            histograma.reiniciar();
+        }
+    }
+
+    /** Contador acumulado (bytes, filas). */
+    public static final class Contador implements ContadorMBean {
+        private final LongAdder valor = new LongAdder();
+
+        private Contador() {
+        }
+
+        /**
+         * Suma una cantidad al contador.
+         * @param cantidad Cantidad a sumar.
+         */
+        public void sumar(long cantidad) {
+            if (activas) {
+                valor.add(cantidad);
+            }
+        }
+
+        @Override
+        public long getValor() {
+            return valor.sum();
+        }
+
+        @Override
+        public void reiniciar() {
+            valor.reset();
+        }
+    }
+
+    /**
+     * Obtiene (o crea) la operación con el nombre dado, midiendo el tiempo de todas sus llamadas.
+     * @param nombre Nombre, por ejemplo {@code GestorCSV.cargarProductos}.
+     * @return Operación compartida.
+     */
+    public static Operacion operacion(String nombre) {
+        return operacion(nombre, 1);
+    }
+
+    /**
+     * Obtiene (o crea) la operación con el nombre dado.
+     * @param nombre Nombre, por ejemplo {@code ControladorProducto.buscarProducto}.
+     * @param muestreo Se mide el tiempo de una de cada {@code muestreo} llamadas, elegidas al azar.
+     * @return Operación compartida (si ya existía, conserva su muestreo).
+     */
+    public static Operacion operacion(String nombre, int muestreo) {
+        if (muestreo < 1) {
+            throw new IllegalArgumentException("El muestreo debe ser positivo: " + muestreo);
+        }
+        Operacion op = operaciones.computeIfAbsent(nombre, k -> new Operacion(k, muestreo));
+        if (jmx) {
+            publicar("Operacion", nombre, op, OperacionMBean.class);
+        }
+        return op;
+    }
+
+    /**
+     * Obtiene (o crea) el contador con el nombre dado.
+     * @param nombre Nombre, por ejemplo {@code csv.bytesLeidos}.
+     * @return Contador compartido.
+     */
+    public static Contador contador(String nombre) {
+        Contador c = contadores.computeIfAbsent(nombre, k -> new Contador());
+        if (jmx) {
+            publicar("Contador", nombre, c, ContadorMBean.class);
+        }
+        return c;
+    }
+
+    /**
+     * Activa o desactiva la medición. Desactivada, cada punto de medición cuesta una lectura de un campo volátil.
+     * @param valor {@code true} para medir.
+     */
+    public static void setActivas(boolean valor) {
+        activas = valor;
+    }
+
+    /** @return {@code true} si se está midiendo. */
+    public static boolean isActivas() {
+        return activas;
+    }
+
+    // === PUBLICACIÓN ===
+
+    /**
+     * Publica todas las métricas (y las que se creen después) en el servidor de MBeans de la plataforma,
+     * como {@code ShopPlus:type=Operacion,name=...} y {@code ShopPlus:type=Contador,name=...}.
+     */
+    public static void publicarJMX() {
+        jmx = true;
+        for (Operacion op : operaciones.values()) {
+            publicar("Operacion", op.getNombre(), op, OperacionMBean.class);
+        }
+        for (Map.Entry<String, Contador> e : contadores.entrySet()) {
+            publicar("Contador", e.getKey(), e.getValue(), ContadorMBean.class);
+        }
+    }
+
+    private static <T> void publicar(String tipo, String nombre, T metrica, Class<T> interfaz) {
+        String clave = tipo + ":" + nombre;
+        if (!publicadas.add(clave)) {
+            return;
+        }
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objeto = new ObjectName(DOMINIO + ":type=" + tipo + ",name=" + ObjectName.quote(nombre));
+            if (!servidor.isRegistered(objeto)) {
+                servidor.registerMBean(new StandardMBean(metrica, interfaz), objeto);
+            }
+        } catch (JMException e) {
+            // Queda sin publicar y se reintenta la próxima vez que se pida; el fallo se cuenta.
+            publicadas.remove(clave);
+            PUBLICACIONES_FALLIDAS.sumar(1);
+        }
+    }
+
+    /**
+     * Escribe un resumen en texto de todas las métricas.
+     * @param salida Destino del resumen.
+     * @throws IOException Si no se puede escribir.
+     */
+    public static void volcar(Appendable salida) throws IOException {
+        salida.append(String.format(Locale.ROOT, "=== Métricas ShopPlus %s ===%n", LocalDateTime.now()));
+        salida.append(String.format(Locale.ROOT, "%-36s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operación (us)", "cuenta", "media", "p50", "p90", "p99", "p99.9", "máximo"));
+        for (Operacion op : operaciones.values()) {
+            Histograma.Instantanea h = op.histograma.instantanea();
+            long cuenta = op.getCuenta();
+            if (cuenta == 0) continue;
+            salida.append(String.format(Locale.ROOT, "%-36s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    op.getNombre(), cuenta, h.media() / 1e3, h.percentil(50) / 1e3, h.percentil(90) / 1e3,
+                    h.percentil(99) / 1e3, h.percentil(99.9) / 1e3, h.maximo / 1e3));
+        }
+        for (Map.Entry<String, Contador> e : contadores.entrySet()) {
+            long valor = e.getValue().getValor();
+            if (valor == 0) continue;
+            salida.append(String.format(Locale.ROOT, "%-36s %10d%n", e.getKey(), valor));
+        }
+    }
+
+    /**
+     * Agrega un resumen al archivo indicado cada cierto tiempo, en un hilo de fondo.
+     * Reemplaza cualquier volcado periódico anterior.
+     * @param segundos Intervalo entre volcados.
+     * @param archivo Archivo al que se agregan los resúmenes.
+     */
+    public static synchronized void volcarPeriodicamente(long segundos, Path archivo) {
+        detenerVolcado();
+        volcador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "volcado-metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        volcador.scheduleAtFixedRate(() -> {
+            try (BufferedWriter writer = Files.newBufferedWriter(archivo,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                volcar(writer);
+                writer.newLine();
+            } catch (IOException e) {
+                // El volcado siguiente lo vuelve a intentar; el fallo queda en la métrica.
+                VOLCADOS_FALLIDOS.sumar(1);
+            }
+        }, segundos, segundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Detiene el volcado periódico, si hay uno.
+     */
+    public static synchronized void detenerVolcado() {
+        if (volcador != null) {
+            volcador.shutdownNow();
+            volcador = null;
+        }
+    }
+
+    /**
+     * Configura las métricas a partir de las propiedades del sistema descritas en la documentación de la clase.
+     */
+    public static void configurarDesdePropiedades() {
+        setActivas(!"false".equalsIgnoreCase(System.getProperty("shopplus.metricas")));
+        if (!activas) {
+            return;
+        }
+        if (!"false".equalsIgnoreCase(System.getProperty("shopplus.metricas.jmx"))) {
+            publicarJMX();
+        }
+        long segundos = Long.getLong("shopplus.metricas.volcado", 0);
+        if (segundos > 0) {
+            volcarPeriodicamente(segundos, Paths.get(System.getProperty("shopplus.metricas.archivo", "Metricas.txt")));
+        }
+    }
+}
\ No newline at end of file
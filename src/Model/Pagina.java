@@ -0,0 +1,42 @@
+package Model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de un listado recorrido con cursor.
+ * El cursor es un texto opaco que indica dónde terminó la página; se pasa tal cual
+ * para pedir la siguiente. A diferencia de un desplazamiento numérico, sigue siendo
+ * válido aunque se agreguen o quiten elementos antes de esa posición.
+ * @param <T> Tipo de los elementos.
+ * @author andres
+ */
+public final class Pagina<T> {
+    private final List<T> elementos;
+    private final String cursorSiguiente;
+
+    /**
+     * Crea una página.
+     * @param elementos Elementos de la página.
+     * @param cursorSiguiente Cursor para pedir la página siguiente, o {@code null} si es la última.
+     */
+    public Pagina(List<T> elementos, String cursorSiguiente) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.cursorSiguiente = cursorSiguiente;
+    }
+
+    /** @return Elementos de la página (solo lectura). */
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    /** @return Cursor de la página siguiente, o {@code null} si no hay más. */
+    public String getCursorSiguiente() {
+        return cursorSiguiente;
+    }
+
+    /** @return {@code true} si hay una página siguiente. */
+    public boolean hayMas() {
+        return cursorSiguiente != null;
+    }
+}
\ No newline at end of file
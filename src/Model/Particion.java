@@ -0,0 +1,68 @@
+package Model;
+
+import java.time.LocalDate;
+
+/**
+ * Período que abarca cada segmento del historial de pedidos y envíos.
+ * @author andres
+ * @see GestorCSV#setParticionHistorial(Particion)
+ */
+public enum Particion {
+    /** Un segmento por día. */
+    DIARIA,
+    /** Un segmento por mes. */
+    MENSUAL;
+
+    /**
+     * @param marca Marca de tiempo.
+     * @return Comienzo del período que contiene la marca.
+     */
+    long inicio(long marca) {
+        long dia = MarcaTiempo.dia(marca);
+        if (this == MENSUAL) {
+            dia = LocalDate.ofEpochDay(dia).withDayOfMonth(1).toEpochDay();
+        }
+        return dia * MarcaTiempo.NANOS_POR_DIA;
+    }
+
+    /**
+     * @param inicio Comienzo de un período.
+     * @return Comienzo del período siguiente.
+     */
+    long fin(long inicio) {
+        if (this == DIARIA) {
+            return inicio + MarcaTiempo.NANOS_POR_DIA;
+        }
+        LocalDate dia = LocalDate.ofEpochDay(MarcaTiempo.dia(inicio));
+        return dia.plusMonths(1).toEpochDay() * MarcaTiempo.NANOS_POR_DIA;
+    }
+
+    /**
+     * @param inicio Comienzo de un período.
+     * @return Nombre del período: {@code aaaa-MM-dd} o {@code aaaa-MM}.
+     */
+    String nombre(long inicio) {
+        String dia = LocalDate.ofEpochDay(MarcaTiempo.dia(inicio)).toString();
+        return this == DIARIA ? dia : dia.substring(0, 7);
+    }
+
+    /**
+     * Interpreta un nombre devuelto por {@link #nombre(long)}.
+     * @param nombre Nombre del período.
+     * @return Partición a la que corresponde el nombre.
+     * @throws java.time.format.DateTimeParseException Si no es un nombre de período.
+     */
+    static Particion de(String nombre) {
+        LocalDate.parse(nombre.length() == 7 ? nombre + "-01" : nombre);
+        return nombre.length() == 7 ? MENSUAL : DIARIA;
+    }
+
+    /**
+     * @param nombre Nombre de un período.
+     * @return Comienzo del período.
+     * @throws java.time.format.DateTimeParseException Si no es un nombre de período.
+     */
+    static long inicio(String nombre) {
+        return LocalDate.parse(nombre.length() == 7 ? nombre + "-01" : nombre).toEpochDay() * MarcaTiempo.NANOS_POR_DIA;
+    }
+}
\ No newline at end of file
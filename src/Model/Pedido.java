@@ -1,9 +1,11 @@
 package Model;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 /**
  * Representa un pedido realizado por un cliente.
  * Cada pedido contiene el correo del cliente, el ID del producto solicitado y la fecha en que se registró.
+ * Los pedidos pendientes que devuelve un {@link RepositorioPedidos} traen además un ID propio.
  * @author andres
  */
 public class Pedido {
@@ -14,8 +16,14 @@ public class Pedido {
     /** Identificador del producto solicitado */
     private String idProducto;
 
-    /** Fecha y hora en que se registró el pedido */
-    private LocalDateTime fecha;
+    /** Fecha y hora en que se registró el pedido, como {@link MarcaTiempo} */
+    private long fecha;
+
+    /** Byte del archivo de pedidos donde está guardado (-1 si no se leyó ni guardó en archivo) */
+    private long posicion = -1;
+
+    /** Identificador asignado por el repositorio, creciente en orden de registro (-1 si no tiene) */
+    private long id = -1;
 
     /**
      * Constructor completo para crear un objeto Pedido.
@@ -25,9 +33,20 @@ public class Pedido {
      * @param fecha Fecha y hora del pedido
      */
     public Pedido(String emailCliente, String idProducto, LocalDateTime fecha) {
+        this(emailCliente, idProducto, MarcaTiempo.desde(fecha));
+    }
+
+    /**
+     * Crea un pedido con la fecha como marca de tiempo, sin pasar por {@link LocalDateTime}.
+     *
+     * @param emailCliente Correo electrónico del cliente
+     * @param idProducto Identificador del producto solicitado
+     * @param marcaTiempo Fecha y hora del pedido (ver {@link MarcaTiempo})
+     */
+    public Pedido(String emailCliente, String idProducto, long marcaTiempo) {
         this.emailCliente = emailCliente;
         this.idProducto = idProducto;
-        this.fecha = fecha;
+        this.fecha = marcaTiempo;
     }
 
     /** @return Correo electrónico del cliente */
@@ -52,12 +71,59 @@ public class Pedido {
 
     /** @return Fecha y hora del pedido */
     public LocalDateTime getFecha() {
-        return fecha;
+        return MarcaTiempo.aFecha(fecha);
     }
 
     /** @param fecha Nueva fecha y hora del pedido */
     public void setFecha(LocalDateTime fecha) {
-        this.fecha = fecha;
+        this.fecha = MarcaTiempo.desde(fecha);
+    }
+
+    /** @return Fecha y hora del pedido como {@link MarcaTiempo} */
+    public long getMarcaTiempo() {
+        return fecha;
+    }
+
+    /** @param marcaTiempo Nueva fecha y hora del pedido como {@link MarcaTiempo} */
+    public void setMarcaTiempo(long marcaTiempo) {
+        this.fecha = marcaTiempo;
+    }
+
+    /** @return Byte del archivo de pedidos donde está guardado, o -1 si se desconoce */
+    public long getPosicion() {
+        return posicion;
+    }
+
+    /** @param posicion Byte del archivo de pedidos donde está guardado */
+    public void setPosicion(long posicion) {
+        this.posicion = posicion;
+    }
+
+    /**
+     * @return Identificador del pedido, o -1 si no lo devolvió un repositorio.
+     *         Es su posición al guardarlo y se mantiene al reiniciar; solo cambia si se
+     *         reescribe el archivo de pedidos (al compactarlo, por ejemplo).
+     */
+    public long getId() {
+        return id;
+    }
+
+    /** @param id Identificador del pedido */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Indica si otro pedido tiene los mismos datos (cliente, producto y fecha).
+     *
+     * @param otro Pedido a comparar
+     * @return {@code true} si ambos pedidos tienen los mismos datos
+     */
+    public boolean mismosDatos(Pedido otro) {
+        return otro != null
+                && Objects.equals(emailCliente, otro.emailCliente)
+                && Objects.equals(idProducto, otro.idProducto)
+                && fecha == otro.fecha;
     }
 
     /**
@@ -67,6 +133,6 @@ public class Pedido {
      */
     @Override
     public String toString() {
-        return emailCliente + "," + idProducto + "," + fecha;
+        return emailCliente + "," + idProducto + "," + MarcaTiempo.texto(fecha);
     }
 }
\ No newline at end of file
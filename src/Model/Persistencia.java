@@ -0,0 +1,86 @@
+package Model;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Conjunto de repositorios donde ShopPlus guarda usuarios, productos, pedidos y envíos.
+ * Hay tres implementaciones:
+ * <ul>
+ *   <li>{@link #csv(String)}: los archivos de texto de siempre ({@code Usuarios.txt}, {@code Productos.txt},
+ *       {@code Pedidos.txt}, {@code Envios.txt}), con sus diarios, índices y copias binarias.</li>
+ *   <li>{@link #binaria(String)}: todo en memoria, respaldado por registros binarios que solo crecen
+ *       al final; no se analiza texto ni al cargar ni al guardar.</li>
+ *   <li>{@link #enMemoria()}: sin archivos, para pruebas de carga; los datos se pierden al salir.</li>
+ * </ul>
+ * @author andres
+ */
+public interface Persistencia {
+
+    /** @return Repositorio de usuarios. */
+    RepositorioUsuarios usuarios();
+
+    /** @return Repositorio de productos. */
+    RepositorioProductos productos();
+
+    /** @return Repositorio de pedidos. */
+    RepositorioPedidos pedidos();
+
+    /** @return Repositorio de envíos. */
+    RepositorioEnvios envios();
+
+    /**
+     * Calcula el reporte de ventas sobre los pedidos y envíos guardados.
+     * @param catalogo Catálogo del que se toman nombres y precios.
+     * @return Reporte de ventas.
+     * @throws IOException Si no se pueden leer los pedidos o los envíos.
+     */
+    ReporteVentas reporteVentas(CatalogoProductos catalogo) throws IOException;
+
+    /**
+     * Termina las escrituras pendientes y libera los archivos. Se llama al salir.
+     */
+    void cerrar();
+
+    /**
+     * @param directorio Directorio de los archivos CSV (debe existir).
+     * @return Persistencia en archivos CSV.
+     */
+    static Persistencia csv(String directorio) {
+        return new PersistenciaCSV(directorio);
+    }
+
+    /**
+     * @param directorio Directorio de los archivos binarios (se crea si no existe).
+     * @return Persistencia en registros binarios.
+     */
+    static Persistencia binaria(String directorio) {
+        return new PersistenciaBinaria(directorio);
+    }
+
+    /** @return Persistencia vacía que solo vive en memoria. */
+    static Persistencia enMemoria() {
+        return new PersistenciaMemoria();
+    }
+
+    /**
+     * Crea la persistencia indicada por las propiedades de sistema {@code shopplus.persistencia}
+     * ({@code csv}, {@code binario} o {@code memoria}; por defecto {@code csv}) y
+     * {@code shopplus.datos} (directorio de los archivos; por defecto el actual).
+     * @return Persistencia configurada.
+     */
+    static Persistencia desdePropiedades() {
+        String valor = System.getProperty("shopplus.persistencia", "csv");
+        String directorio = System.getProperty("shopplus.datos", ".");
+        switch (valor.toLowerCase(Locale.ROOT)) {
+            case "csv":
+                return csv(directorio);
+            case "binario":
+                return binaria(directorio);
+            case "memoria":
+                return enMemoria();
+            default:
+                throw new IllegalArgumentException("Valor inválido para shopplus.persistencia: " + valor);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,352 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistencia en archivos binarios: los datos viven en memoria (ver {@link PersistenciaMemoria})
+ * y cada cambio se agrega al final de un {@link RegistroBinario} antes de aplicarse.
+ * Nada se analiza como texto: cargar es leer los registros en orden y guardar es una
+ * sola escritura por cambio.
+ *
+ * <p>Archivos dentro del directorio:</p>
+ * <ul>
+ *   <li>{@code usuarios.bin} y {@code usuarios.log}: copia de los usuarios (formato de
+ *       {@link InstantaneaBinaria}) y las altas ({@code 'A', tipo, nombre, email, contraseña}) y bajas
+ *       ({@code 'B', email}) posteriores. Al juntar tantos registros como el umbral de
+ *       {@link GestorCSV#setUmbralCompactacionUsuarios} se escribe una copia nueva y se vacía el registro.</li>
+ *   <li>{@code productos.bin} y {@code productos.log}: copia del catálogo con la secuencia del último
+ *       cambio de stock incluido, y los cambios posteriores ({@code secuencia, id, delta}).
+ *       Compactar escribe una copia nueva y vacía el registro.</li>
+ *   <li>{@code pedidos.log}: altas ({@code 'A', email, id, fecha}) y bajas ({@code 'B', posición});
+ *       la posición de un pedido es el número de su alta.</li>
+ *   <li>{@code envios.log}: un registro por envío ({@code 'E', email, id, cantidad, fecha}).</li>
+ * </ul>
+ * En pedidos y envíos los emails e IDs van como códigos: cada texto nuevo se escribe una sola
+ * vez en un registro {@code 'T'} y recibe el código siguiente, así al cargar no se decodifica
+ * ningún texto repetido y los pedidos comparten las mismas cadenas.
+ * Los pedidos y envíos no se compactan: son el historial del que salen los reportes.
+ * Cada repositorio carga su archivo la primera vez que se usa.
+ * @author andres
+ */
+final class PersistenciaBinaria extends PersistenciaMemoria {
+    private static final byte USUARIOS = 'U';
+    private static final byte PRODUCTOS = 'P';
+    private static final byte PEDIDOS = 'O';
+    private static final byte ENVIOS = 'E';
+    private static final byte TEXTO = 'T';
+    private static final byte ALTA = 'A';
+    private static final byte BAJA = 'B';
+    private static final byte ENVIO = 'E';
+
+    private final Usuarios usuarios;
+    private final Productos productos;
+    private final Pedidos pedidos;
+    private final Envios envios;
+
+    /**
+     * @param directorio Directorio de los archivos (se crea si no existe).
+     */
+    PersistenciaBinaria(String directorio) {
+        this(Paths.get(directorio));
+    }
+
+    private PersistenciaBinaria(Path directorio) {
+        this(new Usuarios(directorio), new Productos(directorio), new Pedidos(directorio), new Envios(directorio));
+    }
+
+    private PersistenciaBinaria(Usuarios usuarios, Productos productos, Pedidos pedidos, Envios envios) {
+        super(usuarios, productos, pedidos, envios);
+        this.usuarios = usuarios;
+        this.productos = productos;
+        this.pedidos = pedidos;
+        this.envios = envios;
+    }
+
+    @Override
+    public void cerrar() {
+        synchronized (usuarios) {
+            usuarios.registro.cerrar();
+        }
+        synchronized (productos) {
+            productos.registro.cerrar();
+        }
+        synchronized (pedidos) {
+            pedidos.registro.cerrar();
+        }
+        synchronized (envios) {
+            envios.registro.cerrar();
+        }
+    }
+
+    private static void crearDirectorio(Path directorio) throws IOException {
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+        }
+    }
+
+    /** Textos de un registro de pedidos o envíos, con el código con que se escribió cada uno. */
+    private static final class Textos {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> textos = new ArrayList<>();
+
+        /** Incorpora un texto leído de un registro {@code 'T'}. */
+        void leido(String texto) {
+            codigos.put(texto, textos.size());
+            textos.add(texto);
+        }
+
+        String texto(int codigo) {
+            return textos.get(codigo);
+        }
+
+        /** Código de un texto; si es nuevo, antes lo escribe en el registro. */
+        int codigo(String texto, RegistroBinario registro) throws IOException {
+            Integer codigo = codigos.get(texto);
+            if (codigo == null) {
+                registro.anexar(new RegistroBinario.Escritura().octeto(TEXTO).texto(texto));
+                codigo = textos.size();
+                leido(texto);
+            }
+            return codigo;
+        }
+    }
+
+    private static final class Usuarios extends UsuariosEnMemoria {
+        private final Path ruta;
+        final RegistroBinario registro;
+        private int registrosEnLog;
+        private boolean cargado;
+
+        Usuarios(Path directorio) {
+            this.ruta = directorio.resolve("usuarios");
+            this.registro = new RegistroBinario(directorio.resolve("usuarios.log"), USUARIOS);
+        }
+
+        @Override
+        void asegurarCargado() throws IOException {
+            if (cargado) {
+                return;
+            }
+            Path binario = InstantaneaBinaria.de(ruta.toString());
+            if (Files.exists(binario)) {
+                reemplazar(InstantaneaBinaria.leerUsuarios(binario.toString()));
+            }
+            // Un corte entre escribir la copia y vaciar el registro repite cambios ya incluidos:
+            // reaplicarlos da el mismo resultado.
+            registrosEnLog = registro.leer(r -> {
+                byte tipo = r.get();
+                if (tipo == ALTA) {
+                    String clase = RegistroBinario.texto(r);
+                    String nombre = RegistroBinario.texto(r);
+                    String email = RegistroBinario.texto(r);
+                    String contraseña = RegistroBinario.texto(r);
+                    Usuario u = switch (clase) {
+                        case "Cliente" -> new Cliente(nombre, email, contraseña);
+                        case "Administrador" -> new Administrador(nombre, email, contraseña);
+                        case "Proveedor" -> new Proveedor(nombre, email, contraseña);
+                        default -> null;
+                    };
+                    if (u != null) incorporar(u);
+                } else if (tipo == BAJA) {
+                    quitar(RegistroBinario.texto(r));
+                }
+            });
+            cargado = true;
+        }
+
+        @Override
+        void anotar(Collection<Usuario> nuevos) throws IOException {
+            escribirCopia(nuevos);
+        }
+
+        @Override
+        void anotarAlta(Usuario usuario) throws IOException {
+            registro.anexar(new RegistroBinario.Escritura().octeto(ALTA).texto(usuario.getClass().getSimpleName())
+                    .texto(usuario.getNombre()).texto(usuario.getEmail()).texto(usuario.getContraseña()));
+            registrosEnLog++;
+        }
+
+        @Override
+        void anotarBaja(String email) throws IOException {
+            registro.anexar(new RegistroBinario.Escritura().octeto(BAJA).texto(email));
+            registrosEnLog++;
+        }
+
+        @Override
+        void compactarArchivo() throws IOException {
+            escribirCopia(usuarios.values());
+        }
+
+        @Override
+        public synchronized void registrar(Usuario usuario) throws IOException {
+            super.registrar(usuario);
+            compactarSiHaceFalta();
+        }
+
+        @Override
+        public synchronized void eliminar(String email) throws IOException {
+            super.eliminar(email);
+            compactarSiHaceFalta();
+        }
+
+        private void compactarSiHaceFalta() throws IOException {
+            int umbral = ArchivoUsuarios.umbralCompactacion();
+            if (umbral > 0 && registrosEnLog >= umbral) {
+                compactarArchivo();
+            }
+        }
+
+        private void escribirCopia(Collection<Usuario> lista) throws IOException {
+            crearDirectorio(ruta.getParent());
+            InstantaneaBinaria.guardarUsuarios(lista, 0, ruta.toString());
+            registro.vaciar();
+            registrosEnLog = 0;
+        }
+    }
+
+    private static final class Productos extends ProductosEnMemoria {
+        private final Path ruta;
+        final RegistroBinario registro;
+        private long ultimaSecuencia = -1;
+        private boolean cargado;
+
+        Productos(Path directorio) {
+            this.ruta = directorio.resolve("productos");
+            this.registro = new RegistroBinario(directorio.resolve("productos.log"), PRODUCTOS);
+        }
+
+        @Override
+        void asegurarCargado() throws IOException {
+            if (cargado) {
+                return;
+            }
+            long[] secuencia = {-1};
+            Path binario = InstantaneaBinaria.de(ruta.toString());
+            if (Files.exists(binario)) {
+                reemplazar(InstantaneaBinaria.leerProductos(binario.toString(), secuencia));
+            }
+            ultimaSecuencia = secuencia[0];
+            long incluida = secuencia[0];
+            registro.leer(r -> {
+                long s = r.getLong();
+                String id = RegistroBinario.texto(r);
+                int delta = r.getInt();
+                // Un corte entre escribir la copia y vaciar el registro deja cambios ya incluidos.
+                if (s > incluida) {
+                    aplicar(id, delta);
+                }
+                ultimaSecuencia = Math.max(ultimaSecuencia, s);
+            });
+            cargado = true;
+        }
+
+        @Override
+        void anotar(Collection<Producto> nuevos) throws IOException {
+            escribirCopia(nuevos);
+        }
+
+        @Override
+        void anotarCambio(String idProducto, int delta) throws IOException {
+            registro.anexar(new RegistroBinario.Escritura().largo(ultimaSecuencia + 1).texto(idProducto).entero(delta));
+            ultimaSecuencia++;
+        }
+
+        @Override
+        void compactarArchivo() throws IOException {
+            escribirCopia(productos.values());
+        }
+
+        private void escribirCopia(Collection<Producto> lista) throws IOException {
+            crearDirectorio(ruta.getParent());
+            InstantaneaBinaria.guardarProductos(lista, ultimaSecuencia, ruta.toString());
+            registro.vaciar();
+        }
+    }
+
+    private static final class Pedidos extends PedidosEnMemoria {
+        final RegistroBinario registro;
+        private final Textos textos = new Textos();
+        private boolean cargado;
+
+        Pedidos(Path directorio) {
+            this.registro = new RegistroBinario(directorio.resolve("pedidos.log"), PEDIDOS);
+        }
+
+        @Override
+        void asegurarCargado() throws IOException {
+            if (cargado) {
+                return;
+            }
+            registro.leer(r -> {
+                byte tipo = r.get();
+                if (tipo == ALTA) {
+                    String email = textos.texto(r.getInt());
+                    String id = textos.texto(r.getInt());
+                    incorporar(email, id, r.getLong());
+                } else if (tipo == BAJA) {
+                    quitar(r.getLong());
+                } else {
+                    textos.leido(RegistroBinario.texto(r));
+                }
+            });
+            cargado = true;
+        }
+
+        @Override
+        void anotarAlta(Pedido pedido) throws IOException {
+            int email = textos.codigo(pedido.getEmailCliente(), registro);
+            int id = textos.codigo(pedido.getIdProducto(), registro);
+            registro.anexar(new RegistroBinario.Escritura().octeto(ALTA).entero(email).entero(id)
+                    .largo(pedido.getMarcaTiempo()));
+        }
+
+        @Override
+        void anotarBaja(Pedido pedido) throws IOException {
+            registro.anexar(new RegistroBinario.Escritura().octeto(BAJA).largo(pedido.getPosicion()));
+        }
+    }
+
+    private static final class Envios extends EnviosEnMemoria {
+        final RegistroBinario registro;
+        private final Textos textos = new Textos();
+        private boolean cargado;
+
+        Envios(Path directorio) {
+            this.registro = new RegistroBinario(directorio.resolve("envios.log"), ENVIOS);
+        }
+
+        @Override
+        void asegurarCargado() throws IOException {
+            if (cargado) {
+                return;
+            }
+            registro.leer(r -> {
+                if (r.get() == ENVIO) {
+                    String email = textos.texto(r.getInt());
+                    String id = textos.texto(r.getInt());
+                    int cantidad = r.getInt();
+                    incorporar(new Envio(email, id, cantidad, r.getLong()));
+                } else {
+                    textos.leido(RegistroBinario.texto(r));
+                }
+            });
+            cargado = true;
+        }
+
+        @Override
+        void anotar(Envio envio) throws IOException {
+            int email = textos.codigo(envio.getEmailProveedor(), registro);
+            int id = textos.codigo(envio.getIdProducto(), registro);
+            registro.anexar(new RegistroBinario.Escritura().octeto(ENVIO).entero(email).entero(id)
+                    .entero(envio.getCantidad()).largo(envio.getMarcaTiempo()));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,392 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistencia en los archivos CSV de ShopPlus, a través de {@link GestorCSV}.
+ * Un archivo que todavía no existe se toma como vacío. Los pedidos pendientes y los envíos
+ * se leen recién la primera vez que se usan y después se conservan en memoria; para eso
+ * todos los cambios a esos archivos tienen que pasar por estos repositorios.
+ * @author andres
+ */
+final class PersistenciaCSV implements Persistencia {
+    private final String rutaUsuarios;
+    private final String rutaProductos;
+    private final String rutaPedidos;
+    private final String rutaEnvios;
+
+    private final RepositorioUsuarios usuarios;
+    private final RepositorioProductos productos;
+    private final RepositorioPedidos pedidos;
+    private final RepositorioEnvios envios;
+
+    /**
+     * @param directorio Directorio de {@code Usuarios.txt}, {@code Productos.txt},
+     *                   {@code Pedidos.txt} y {@code Envios.txt}.
+     */
+    PersistenciaCSV(String directorio) {
+        this.rutaUsuarios = Paths.get(directorio, "Usuarios.txt").toString();
+        this.rutaProductos = Paths.get(directorio, "Productos.txt").toString();
+        this.rutaPedidos = Paths.get(directorio, "Pedidos.txt").toString();
+        this.rutaEnvios = Paths.get(directorio, "Envios.txt").toString();
+        this.usuarios = new Usuarios();
+        this.productos = new Productos();
+        this.pedidos = new Pedidos();
+        this.envios = new Envios();
+    }
+
+    @Override
+    public RepositorioUsuarios usuarios() {
+        return usuarios;
+    }
+
+    @Override
+    public RepositorioProductos productos() {
+        return productos;
+    }
+
+    @Override
+    public RepositorioPedidos pedidos() {
+        return pedidos;
+    }
+
+    @Override
+    public RepositorioEnvios envios() {
+        return envios;
+    }
+
+    @Override
+    public ReporteVentas reporteVentas(CatalogoProductos catalogo) throws IOException {
+        return AnaliticaVentas.calcular(rutaPedidos, rutaEnvios, catalogo);
+    }
+
+    @Override
+    public void cerrar() {
+        GestorCSV.cerrarEscrituras();
+    }
+
+    private static boolean existe(String ruta) {
+        return Files.exists(Paths.get(ruta));
+    }
+
+    private static Pedido copia(Pedido p) {
+        Pedido c = new Pedido(p.getEmailCliente(), p.getIdProducto(), p.getMarcaTiempo());
+        c.setPosicion(p.getPosicion());
+        c.setId(p.getId());
+        return c;
+    }
+
+    private static Envio copia(Envio e) {
+        return new Envio(e.getEmailProveedor(), e.getIdProducto(), e.getCantidad(), e.getMarcaTiempo());
+    }
+
+    private final class Usuarios implements RepositorioUsuarios {
+        @Override
+        public List<Usuario> cargar() throws IOException {
+            return existe(rutaUsuarios) ? GestorCSV.cargarUsuarios(rutaUsuarios) : new ArrayList<>();
+        }
+
+        @Override
+        public void guardar(Collection<Usuario> lista) throws IOException {
+            GestorCSV.guardarUsuarios(lista, rutaUsuarios);
+        }
+
+        @Override
+        public void registrar(Usuario usuario) throws IOException {
+            GestorCSV.registrarUsuario(usuario, rutaUsuarios);
+        }
+
+        @Override
+        public void eliminar(String email) throws IOException {
+            GestorCSV.eliminarUsuario(email, rutaUsuarios);
+        }
+
+        @Override
+        public void compactar() throws IOException {
+            GestorCSV.compactarUsuarios(rutaUsuarios);
+        }
+    }
+
+    private final class Productos implements RepositorioProductos {
+        @Override
+        public List<Producto> cargar() throws IOException {
+            return existe(rutaProductos) ? GestorCSV.cargarProductos(rutaProductos) : new ArrayList<>();
+        }
+
+        @Override
+        public void guardar(Collection<Producto> lista) throws IOException {
+            GestorCSV.guardarProductos(lista, rutaProductos);
+        }
+
+        @Override
+        public void registrarCambioStock(String idProducto, int delta) throws IOException {
+            GestorCSV.registrarCambioStock(idProducto, delta, rutaProductos);
+        }
+
+        @Override
+        public void compactar() throws IOException {
+            GestorCSV.compactarProductos(rutaProductos);
+        }
+    }
+
+    /**
+     * Los pedidos pendientes se leen del archivo la primera vez que se usan y desde entonces
+     * quedan en memoria ({@link ColaPedidos}), al día con cada alta y baja hecha por este repositorio.
+     * Altas y bajas toman el cerrojo de lectura de {@code carga}, así pueden ir a la vez y agruparse
+     * en el anexador; la carga toma el de escritura, para que ninguna quede escrita en el archivo
+     * pero no en memoria (o al revés) mientras se lee.
+     * El ID de cada pedido es el byte donde empieza su fila, así se mantiene al reiniciar. Si el
+     * archivo se reescribe (al compactarlo, por ejemplo), la cola se vuelve a cargar con los IDs nuevos.
+     */
+    private final class Pedidos implements RepositorioPedidos {
+        private final ReentrantReadWriteLock carga = new ReentrantReadWriteLock();
+        private final IndicePedidos indice = IndicePedidos.de(rutaPedidos);
+        // Reconstrucciones del índice cuando se cargó la cola, o -1 si hay que cargarla. Los IDs son
+        // posiciones en el archivo: si se reescribió desde entonces, la cola se vuelve a cargar.
+        private volatile long cargadoEn = -1;
+        // Protegida por this.
+        private ColaPedidos pendientes;
+
+        private void asegurarCargado() throws IOException {
+            if (cargadoEn >= 0 && cargadoEn == indice.reconstrucciones()) {
+                return;
+            }
+            carga.writeLock().lock();
+            try {
+                long reconstrucciones = indice.reconstrucciones();
+                if (cargadoEn == reconstrucciones) {
+                    return;
+                }
+                List<Pedido> lista = existe(rutaPedidos) ? GestorCSV.cargarPedidos(rutaPedidos) : new ArrayList<>();
+                synchronized (this) {
+                    pendientes = new ColaPedidos();
+                    for (Pedido p : lista) {
+                        pendientes.agregar(p);
+                    }
+                }
+                cargadoEn = reconstrucciones;
+            } finally {
+                carga.writeLock().unlock();
+            }
+        }
+
+        private void quitar(Pedido pedido) {
+            Pedido actual = pendientes.buscar(pedido.getId());
+            if (actual != null && actual.mismosDatos(pedido)) {
+                pendientes.quitar(actual.getId());
+                return;
+            }
+            // Pedido sin ID (no salió de este repositorio): buscarlo por sus datos.
+            for (Pedido p : pendientes.deCliente(pedido.getEmailCliente())) {
+                if (p.mismosDatos(pedido)) {
+                    pendientes.quitar(p.getId());
+                    return;
+                }
+            }
+        }
+
+        private Pedido copiaONull(Pedido pedido) {
+            return pedido == null ? null : copia(pedido);
+        }
+
+        private List<Pedido> copias(Collection<Pedido> origen, String idProducto) {
+            List<Pedido> lista = new ArrayList<>(idProducto == null ? origen.size() : 16);
+            for (Pedido p : origen) {
+                if (idProducto == null || idProducto.equals(p.getIdProducto())) {
+                    lista.add(copia(p));
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public void guardar(Pedido pedido) throws IOException {
+            // Cargar antes, para no contar dos veces el pedido al cargar la cola.
+            asegurarCargado();
+            carga.readLock().lock();
+            try {
+                // El ID es la posición de la fila, que se conoce cuando está escrita.
+                GestorCSV.guardarPedidoConPosicion(pedido, rutaPedidos);
+                pedido.setId(pedido.getPosicion());
+                synchronized (this) {
+                    if (cargadoEn == indice.reconstrucciones()) {
+                        pendientes.agregar(copia(pedido));
+                    } else {
+                        // El archivo se reescribió mientras tanto: la próxima consulta lo vuelve a cargar.
+                        cargadoEn = -1;
+                    }
+                }
+            } finally {
+                carga.readLock().unlock();
+            }
+        }
+
+        @Override
+        public List<Pedido> pendientes() throws IOException {
+            asegurarCargado();
+            synchronized (this) {
+                return copias(pendientes.todos(), null);
+            }
+        }
+
+        @Override
+        public List<Pedido> pendientesDe(String emailCliente) throws IOException {
+            asegurarCargado();
+            synchronized (this) {
+                return copias(pendientes.deCliente(emailCliente), null);
+            }
+        }
+
+        @Override
+        public Stream<Pedido> leer(String emailCliente, String idProducto) throws IOException {
+            asegurarCargado();
+            synchronized (this) {
+                if (emailCliente == null) {
+                    return copias(idProducto == null ? pendientes.todos() : pendientes.deProducto(idProducto), null).stream();
+                }
+                return copias(pendientes.deCliente(emailCliente), idProducto).stream();
+            }
+        }
+
+        @Override
+        public boolean marcarEnviado(Pedido pedido) throws IOException {
+            carga.readLock().lock();
+            try {
+                boolean dadoDeBaja = GestorCSV.marcarPedidoEnviado(pedido, rutaPedidos);
+                // Si el archivo dice que ya no estaba pendiente, tampoco debe quedar en la cola.
+                synchronized (this) {
+                    if (pendientes != null) {
+                        quitar(pedido);
+                    }
+                }
+                return dadoDeBaja;
+            } finally {
+                carga.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Pedido siguientePendiente(String idProducto) throws IOException {
+            asegurarCargado();
+            synchronized (this) {
+                return copiaONull(pendientes.siguiente(idProducto));
+            }
+        }
+
+        @Override
+        public Pedido pendiente(long id) throws IOException {
+            asegurarCargado();
+            synchronized (this) {
+                return copiaONull(pendientes.buscar(id));
+            }
+        }
+
+        @Override
+        public long cantidadPendientes() throws IOException {
+            return GestorCSV.pedidosPendientes(rutaPedidos);
+        }
+
+        @Override
+        public long cantidadPendientes(String idProducto) throws IOException {
+            return GestorCSV.pedidosPendientes(rutaPedidos, idProducto);
+        }
+
+        @Override
+        public List<Pedido> registradosEntre(long desde, long hasta) throws IOException {
+            // Los pendientes en memoria no alcanzan: el rango incluye los enviados, que están en los segmentos.
+            try (Stream<Pedido> pedidos = GestorCSV.leerPedidosEntre(rutaPedidos, desde, hasta)) {
+                return pedidos.collect(Collectors.toList());
+            }
+        }
+
+        @Override
+        public long cantidadDelDia(LocalDate dia) throws IOException {
+            return GestorCSV.pedidosDelDia(rutaPedidos, dia);
+        }
+    }
+
+    /** Los envíos quedan en memoria desde la primera vez que se cargan, igual que los pedidos. */
+    private final class Envios implements RepositorioEnvios {
+        private final ReentrantReadWriteLock carga = new ReentrantReadWriteLock();
+        private volatile boolean cargado;
+        // Protegido por this.
+        private List<Envio> envios;
+
+        private void asegurarCargado() throws IOException {
+            if (cargado) {
+                return;
+            }
+            carga.writeLock().lock();
+            try {
+                if (cargado) {
+                    return;
+                }
+                List<Envio> lista = existe(rutaEnvios) ? GestorCSV.cargarEnvios(rutaEnvios) : new ArrayList<>();
+                synchronized (this) {
+                    envios = lista;
+                }
+                cargado = true;
+            } finally {
+                carga.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void guardar(Envio envio) throws IOException {
+            carga.readLock().lock();
+            try {
+                GestorCSV.guardarEnvio(envio, rutaEnvios);
+                synchronized (this) {
+                    if (envios != null) {
+                        envios.add(copia(envio));
+                    }
+                }
+            } finally {
+                carga.readLock().unlock();
+            }
+        }
+
+        @Override
+        public List<Envio> cargar() throws IOException {
+            asegurarCargado();
+            synchronized (this) {
+                List<Envio> lista = new ArrayList<>(envios.size());
+                for (Envio e : envios) {
+                    lista.add(copia(e));
+                }
+                return lista;
+            }
+        }
+
+        @Override
+        public long unidadesEnviadas(String idProducto) throws IOException {
+            return GestorCSV.unidadesEnviadas(rutaEnvios, idProducto);
+        }
+
+        @Override
+        public long unidadesDelDia(LocalDate dia) throws IOException {
+            return GestorCSV.unidadesEnviadasDelDia(rutaEnvios, dia);
+        }
+
+        @Override
+        public List<Envio> entre(long desde, long hasta) throws IOException {
+            try (Stream<Envio> envios = GestorCSV.leerEnviosEntre(rutaEnvios, desde, hasta)) {
+                return envios.collect(Collectors.toList());
+            }
+        }
+
+        @Override
+        public long unidadesPorProveedor(String emailProveedor) throws IOException {
+            return GestorCSV.unidadesEnviadasPorProveedor(rutaEnvios, emailProveedor);
+        }
+    }
+}
\ No newline at end of file
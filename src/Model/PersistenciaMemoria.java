@@ -0,0 +1,480 @@
+package Model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Persistencia que guarda todo en memoria, sin tocar el disco.
+ * Cada repositorio guarda copias propias de los objetos y mantiene los contadores de los
+ * indicadores al día en cada cambio, así que ninguna consulta recorre el historial.
+ * Los repositorios son seguros para varias sesiones a la vez: cada uno se sincroniza sobre sí mismo.
+ *
+ * <p>{@link PersistenciaBinaria} usa estos mismos repositorios y agrega el archivo por debajo:
+ * cada cambio pasa primero por un método {@code anotar...}, que acá no hace nada, y los
+ * datos se cargan la primera vez que se usan en {@code asegurarCargado}.</p>
+ * @author andres
+ */
+class PersistenciaMemoria implements Persistencia {
+    private final UsuariosEnMemoria usuarios;
+    private final ProductosEnMemoria productos;
+    private final PedidosEnMemoria pedidos;
+    private final EnviosEnMemoria envios;
+
+    /**
+     * Crea una persistencia vacía.
+     */
+    PersistenciaMemoria() {
+        this(new UsuariosEnMemoria(), new ProductosEnMemoria(), new PedidosEnMemoria(), new EnviosEnMemoria());
+    }
+
+    PersistenciaMemoria(UsuariosEnMemoria usuarios, ProductosEnMemoria productos, PedidosEnMemoria pedidos,
+            EnviosEnMemoria envios) {
+        this.usuarios = usuarios;
+        this.productos = productos;
+        this.pedidos = pedidos;
+        this.envios = envios;
+    }
+
+    @Override
+    public RepositorioUsuarios usuarios() {
+        return usuarios;
+    }
+
+    @Override
+    public RepositorioProductos productos() {
+        return productos;
+    }
+
+    @Override
+    public RepositorioPedidos pedidos() {
+        return pedidos;
+    }
+
+    @Override
+    public RepositorioEnvios envios() {
+        return envios;
+    }
+
+    @Override
+    public ReporteVentas reporteVentas(CatalogoProductos catalogo) throws IOException {
+        List<Pedido> registrados;
+        List<Pedido> pendientes;
+        synchronized (pedidos) {
+            pedidos.asegurarCargado();
+            registrados = new ArrayList<>(pedidos.registrados);
+            pendientes = pedidos.filtrar(null, null, false);
+        }
+        List<Envio> enviados;
+        synchronized (envios) {
+            envios.asegurarCargado();
+            enviados = new ArrayList<>(envios.envios);
+        }
+        return AnaliticaVentas.calcular(registrados, pendientes, enviados, catalogo);
+    }
+
+    @Override
+    public void cerrar() {
+        // No hay nada que escribir.
+    }
+
+    private static <K> void sumar(Map<K, long[]> mapa, K clave, long cantidad) {
+        long[] v = mapa.get(clave);
+        if (v == null) {
+            mapa.put(clave, new long[] {cantidad});
+        } else {
+            v[0] += cantidad;
+        }
+    }
+
+    private static <K> long valor(Map<K, long[]> mapa, K clave) {
+        long[] v = mapa.get(clave);
+        return v == null ? 0 : v[0];
+    }
+
+    // === USUARIOS ===
+
+    static class UsuariosEnMemoria implements RepositorioUsuarios {
+        // Por email normalizado, en orden de registro; ante emails repetidos queda el primero.
+        Map<String, Usuario> usuarios = new LinkedHashMap<>();
+
+        void asegurarCargado() throws IOException {
+        }
+
+        void anotar(Collection<Usuario> nuevos) throws IOException {
+        }
+
+        void anotarAlta(Usuario usuario) throws IOException {
+        }
+
+        void anotarBaja(String email) throws IOException {
+        }
+
+        void compactarArchivo() throws IOException {
+        }
+
+        /** Reemplaza el contenido por los usuarios dados. */
+        void reemplazar(Collection<Usuario> nuevos) {
+            Map<String, Usuario> porEmail = new LinkedHashMap<>(Math.max(16, (int) (nuevos.size() / 0.75f) + 1));
+            for (Usuario u : nuevos) {
+                porEmail.putIfAbsent(DirectorioUsuarios.normalizar(u.getEmail()), u);
+            }
+            usuarios = porEmail;
+        }
+
+        /** Incorpora un usuario nuevo, salvo que su email ya esté. */
+        void incorporar(Usuario usuario) {
+            usuarios.putIfAbsent(DirectorioUsuarios.normalizar(usuario.getEmail()), usuario);
+        }
+
+        /** Quita al usuario de un email. */
+        void quitar(String email) {
+            usuarios.remove(DirectorioUsuarios.normalizar(email));
+        }
+
+        @Override
+        public synchronized List<Usuario> cargar() throws IOException {
+            asegurarCargado();
+            return new ArrayList<>(usuarios.values());
+        }
+
+        @Override
+        public synchronized void guardar(Collection<Usuario> nuevos) throws IOException {
+            asegurarCargado();
+            anotar(nuevos);
+            reemplazar(nuevos);
+        }
+
+        @Override
+        public synchronized void registrar(Usuario usuario) throws IOException {
+            asegurarCargado();
+            anotarAlta(usuario);
+            incorporar(usuario);
+        }
+
+        @Override
+        public synchronized void eliminar(String email) throws IOException {
+            asegurarCargado();
+            anotarBaja(email);
+            quitar(email);
+        }
+
+        @Override
+        public synchronized void compactar() throws IOException {
+            asegurarCargado();
+            compactarArchivo();
+        }
+    }
+
+    // === PRODUCTOS ===
+
+    static class ProductosEnMemoria implements RepositorioProductos {
+        Map<String, Producto> productos = new LinkedHashMap<>();
+
+        void asegurarCargado() throws IOException {
+        }
+
+        void anotar(Collection<Producto> nuevos) throws IOException {
+        }
+
+        void anotarCambio(String idProducto, int delta) throws IOException {
+        }
+
+        void compactarArchivo() throws IOException {
+        }
+
+        /** Reemplaza el contenido por copias de los productos dados. */
+        void reemplazar(Collection<Producto> nuevos) {
+            Map<String, Producto> copias = new LinkedHashMap<>(Math.max(16, (int) (nuevos.size() / 0.75f) + 1));
+            for (Producto p : nuevos) {
+                copias.put(p.getId(), copia(p));
+            }
+            productos = copias;
+        }
+
+        /** Aplica un cambio de stock; los productos desconocidos se ignoran, como en el diario CSV. */
+        void aplicar(String idProducto, int delta) {
+            Producto p = productos.get(idProducto);
+            if (p != null) {
+                p.setCantidad(p.getCantidad() + delta);
+            }
+        }
+
+        private static Producto copia(Producto p) {
+            return new Producto(p.getId(), p.getNombre(), p.getPrecio(), p.getCantidad());
+        }
+
+        @Override
+        public synchronized List<Producto> cargar() throws IOException {
+            asegurarCargado();
+            List<Producto> lista = new ArrayList<>(productos.size());
+            for (Producto p : productos.values()) {
+                lista.add(copia(p));
+            }
+            return lista;
+        }
+
+        @Override
+        public synchronized void guardar(Collection<Producto> nuevos) throws IOException {
+            asegurarCargado();
+            anotar(nuevos);
+            reemplazar(nuevos);
+        }
+
+        @Override
+        public synchronized void registrarCambioStock(String idProducto, int delta) throws IOException {
+            asegurarCargado();
+            anotarCambio(idProducto, delta);
+            aplicar(idProducto, delta);
+        }
+
+        @Override
+        public synchronized void compactar() throws IOException {
+            asegurarCargado();
+            compactarArchivo();
+        }
+    }
+
+    // === PEDIDOS ===
+
+    static class PedidosEnMemoria implements RepositorioPedidos {
+        // Todos los pedidos registrados, también los enviados: el reporte los cuenta por día.
+        // La posición de cada pedido es su índice en esta lista.
+        final List<Pedido> registrados = new ArrayList<>();
+        // Los mismos objetos que registrados, solo los pendientes.
+        private final ColaPedidos cola = new ColaPedidos();
+        private final BitSet enviados = new BitSet();
+        private long pendientes;
+        private final Map<String, long[]> pendientesPorProducto = new HashMap<>();
+        private final Map<Long, long[]> porDia = new HashMap<>();
+        // Los pedidos llegan en orden de fecha: casi siempre suman al mismo día que el anterior.
+        private long ultimoDia = Long.MIN_VALUE;
+        private long[] contadorUltimoDia;
+
+        void asegurarCargado() throws IOException {
+        }
+
+        void anotarAlta(Pedido pedido) throws IOException {
+        }
+
+        void anotarBaja(Pedido pedido) throws IOException {
+        }
+
+        /** Agrega un pedido ya guardado, con la posición siguiente. */
+        Pedido incorporar(String emailCliente, String idProducto, long marcaTiempo) {
+            Pedido p = new Pedido(emailCliente, idProducto, marcaTiempo);
+            p.setPosicion(registrados.size());
+            registrados.add(p);
+            cola.agregar(p);
+            pendientes++;
+            sumar(pendientesPorProducto, idProducto, 1);
+            long dia = MarcaTiempo.dia(marcaTiempo);
+            if (dia != ultimoDia) {
+                contadorUltimoDia = porDia.computeIfAbsent(dia, k -> new long[1]);
+                ultimoDia = dia;
+            }
+            contadorUltimoDia[0]++;
+            return p;
+        }
+
+        /** Quita un pedido de los pendientes; devuelve {@code false} si no estaba. */
+        boolean quitar(long posicion) {
+            if (posicion < 0 || posicion >= registrados.size() || enviados.get((int) posicion)) {
+                return false;
+            }
+            enviados.set((int) posicion);
+            cola.quitar(registrados.get((int) posicion).getId());
+            pendientes--;
+            sumar(pendientesPorProducto, registrados.get((int) posicion).getIdProducto(), -1);
+            return true;
+        }
+
+        private static Pedido copia(Pedido p) {
+            Pedido c = new Pedido(p.getEmailCliente(), p.getIdProducto(), p.getMarcaTiempo());
+            c.setPosicion(p.getPosicion());
+            c.setId(p.getId());
+            return c;
+        }
+
+        /** Pedidos pendientes que cumplen los filtros, copiados o no. */
+        List<Pedido> filtrar(String emailCliente, String idProducto, boolean copiar) {
+            List<Pedido> candidatos = emailCliente != null ? cola.deCliente(emailCliente)
+                    : idProducto != null ? cola.deProducto(idProducto) : cola.todos();
+            List<Pedido> lista = new ArrayList<>(candidatos.size());
+            for (Pedido p : candidatos) {
+                if (idProducto == null || idProducto.equals(p.getIdProducto())) {
+                    lista.add(copiar ? copia(p) : p);
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public synchronized void guardar(Pedido pedido) throws IOException {
+            asegurarCargado();
+            anotarAlta(pedido);
+            Pedido guardado = incorporar(pedido.getEmailCliente(), pedido.getIdProducto(), pedido.getMarcaTiempo());
+            pedido.setPosicion(guardado.getPosicion());
+            pedido.setId(guardado.getId());
+        }
+
+        @Override
+        public synchronized List<Pedido> pendientes() throws IOException {
+            asegurarCargado();
+            return filtrar(null, null, true);
+        }
+
+        @Override
+        public synchronized List<Pedido> pendientesDe(String emailCliente) throws IOException {
+            asegurarCargado();
+            return filtrar(emailCliente, null, true);
+        }
+
+        @Override
+        public synchronized Stream<Pedido> leer(String emailCliente, String idProducto) throws IOException {
+            asegurarCargado();
+            return filtrar(emailCliente, idProducto, true).stream();
+        }
+
+        @Override
+        public synchronized boolean marcarEnviado(Pedido pedido) throws IOException {
+            asegurarCargado();
+            long posicion = pedido.getPosicion();
+            if (posicion < 0 || posicion >= registrados.size() || enviados.get((int) posicion)) {
+                return false;
+            }
+            Pedido actual = registrados.get((int) posicion);
+            if (!actual.mismosDatos(pedido)) {
+                return false;
+            }
+            anotarBaja(actual);
+            return quitar(actual.getPosicion());
+        }
+
+        @Override
+        public synchronized Pedido siguientePendiente(String idProducto) throws IOException {
+            asegurarCargado();
+            Pedido p = cola.siguiente(idProducto);
+            return p == null ? null : copia(p);
+        }
+
+        @Override
+        public synchronized Pedido pendiente(long id) throws IOException {
+            asegurarCargado();
+            Pedido p = cola.buscar(id);
+            return p == null ? null : copia(p);
+        }
+
+        @Override
+        public synchronized long cantidadPendientes() throws IOException {
+            asegurarCargado();
+            return pendientes;
+        }
+
+        @Override
+        public synchronized long cantidadPendientes(String idProducto) throws IOException {
+            asegurarCargado();
+            return valor(pendientesPorProducto, idProducto);
+        }
+
+        @Override
+        public synchronized List<Pedido> registradosEntre(long desde, long hasta) throws IOException {
+            asegurarCargado();
+            List<Pedido> lista = new ArrayList<>();
+            for (Pedido p : registrados) {
+                if (p.getMarcaTiempo() >= desde && p.getMarcaTiempo() < hasta) {
+                    lista.add(copia(p));
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public synchronized long cantidadDelDia(LocalDate dia) throws IOException {
+            asegurarCargado();
+            return valor(porDia, dia.toEpochDay());
+        }
+    }
+
+    // === ENVIOS ===
+
+    static class EnviosEnMemoria implements RepositorioEnvios {
+        final List<Envio> envios = new ArrayList<>();
+        private final Map<String, long[]> porProducto = new HashMap<>();
+        private final Map<Long, long[]> porDia = new HashMap<>();
+        private final Map<String, long[]> porProveedor = new HashMap<>();
+
+        void asegurarCargado() throws IOException {
+        }
+
+        void anotar(Envio envio) throws IOException {
+        }
+
+        /** Agrega un envío ya guardado. */
+        void incorporar(Envio envio) {
+            envios.add(envio);
+            sumar(porProducto, envio.getIdProducto(), envio.getCantidad());
+            sumar(porDia, MarcaTiempo.dia(envio.getMarcaTiempo()), envio.getCantidad());
+            sumar(porProveedor, envio.getEmailProveedor(), envio.getCantidad());
+        }
+
+        private static Envio copia(Envio e) {
+            return new Envio(e.getEmailProveedor(), e.getIdProducto(), e.getCantidad(), e.getMarcaTiempo());
+        }
+
+        @Override
+        public synchronized void guardar(Envio envio) throws IOException {
+            asegurarCargado();
+            Envio e = copia(envio);
+            anotar(e);
+            incorporar(e);
+        }
+
+        @Override
+        public synchronized List<Envio> cargar() throws IOException {
+            asegurarCargado();
+            List<Envio> lista = new ArrayList<>(envios.size());
+            for (Envio e : envios) {
+                lista.add(copia(e));
+            }
+            return lista;
+        }
+
+        @Override
+        public synchronized long unidadesEnviadas(String idProducto) throws IOException {
+            asegurarCargado();
+            return valor(porProducto, idProducto);
+        }
+
+        @Override
+        public synchronized long unidadesDelDia(LocalDate dia) throws IOException {
+            asegurarCargado();
+            return valor(porDia, dia.toEpochDay());
+        }
+
+        @Override
+        public synchronized List<Envio> entre(long desde, long hasta) throws IOException {
+            asegurarCargado();
+            List<Envio> lista = new ArrayList<>();
+            for (Envio e : envios) {
+                if (e.getMarcaTiempo() >= desde && e.getMarcaTiempo() < hasta) {
+                    lista.add(copia(e));
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public synchronized long unidadesPorProveedor(String emailProveedor) throws IOException {
+            asegurarCargado();
+            return valor(porProveedor, emailProveedor);
+        }
+    }
+}
\ No newline at end of file
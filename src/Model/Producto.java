@@ -1,18 +1,36 @@
 package Model;
-import java.util.List;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 import Exception.ProductoNoEncontradoException;
 
 /**
  * Representa un producto disponible en el sistema ShopPlus.
  * Contiene información como ID, nombre, precio y cantidad en inventario.
+ * La cantidad se modifica con operaciones atómicas (CAS), así varias sesiones pueden
+ * reservar stock a la vez sin bloquearse y sin vender más unidades de las que hay.
+ * Después de cada cambio de cantidad se avisa al catálogo que lo contiene, que solo
+ * marca el producto para reubicarlo en su índice por stock en la próxima consulta.
  * @author andres
  */
 public class Producto {
+    private static final VarHandle CANTIDAD;
+
+    static {
+        try {
+            CANTIDAD = MethodHandles.lookup().findVarHandle(Producto.class, "cantidad", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String id;
     private String nombre;
     private double precio;
-    private int cantidad;
+    private volatile int cantidad;
+    // Posición en los índices ordenados del catálogo que contiene al producto (si hay uno).
+    volatile IndiceRangos.Registro registro;
 
     /**
      * Crea un nuevo producto con los datos especificados.
@@ -46,21 +64,95 @@ public class Producto {
      */
     public void setCantidad(int cantidad) {
         this.cantidad = cantidad;
+        avisarCambio();
+    }
+
+    /**
+     * Reemplaza la cantidad disponible de forma atómica.
+     * @param cantidad Nueva cantidad en inventario.
+     * @return Cantidad que había antes del cambio.
+     */
+    public int cambiarCantidad(int cantidad) {
+        int anterior = (int) CANTIDAD.getAndSet(this, cantidad);
+        avisarCambio();
+        return anterior;
+    }
+
+    /**
+     * Intenta reservar unidades descontándolas del stock.
+     * Nunca deja la cantidad por debajo de cero, aunque haya reservas simultáneas.
+     * @param unidades Unidades a reservar (mayor que cero).
+     * @return {@code true} si había stock suficiente y se descontó.
+     */
+    public boolean intentarReservar(int unidades) {
+        if (unidades <= 0) {
+            throw new IllegalArgumentException("Las unidades a reservar deben ser positivas: " + unidades);
+        }
+        int actual = cantidad;
+        while (actual >= unidades) {
+            int observada = (int) CANTIDAD.compareAndExchange(this, actual, actual - unidades);
+            if (observada == actual) {
+                avisarCambio();
+                return true;
+            }
+            actual = observada;
+        }
+        return false;
     }
 
     /**
-     * Busca un producto por su ID dentro de una lista.
-     * @param inventario Lista de productos disponibles.
+     * Devuelve al stock unidades reservadas que no se llegaron a usar.
+     * @param unidades Unidades a devolver (mayor que cero).
+     */
+    public void liberar(int unidades) {
+        reabastecer(unidades);
+    }
+
+    /**
+     * Agrega unidades al stock de forma atómica.
+     * @param unidades Unidades a agregar (mayor que cero).
+     * @return Cantidad resultante.
+     */
+    public int reabastecer(int unidades) {
+        if (unidades <= 0) {
+            throw new IllegalArgumentException("Las unidades a agregar deben ser positivas: " + unidades);
+        }
+        int resultado = (int) CANTIDAD.getAndAdd(this, unidades) + unidades;
+        avisarCambio();
+        return resultado;
+    }
+
+    /**
+     * Suma o resta unidades sin validar el resultado, de forma atómica. Sirve para deshacer un
+     * cambio que no se pudo registrar sin pisar los que otras sesiones hicieron mientras tanto.
+     * @param delta Unidades a sumar (negativo para restar).
+     * @return Cantidad resultante.
+     */
+    public int ajustarCantidad(int delta) {
+        int resultado = (int) CANTIDAD.getAndAdd(this, delta) + delta;
+        avisarCambio();
+        return resultado;
+    }
+
+    void avisarCambio() {
+        IndiceRangos.Registro r = registro;
+        if (r != null) {
+            r.refrescar();
+        }
+    }
+
+    /**
+     * Busca un producto por su ID dentro de un catálogo indexado.
+     * @param inventario Catálogo de productos disponibles.
      * @param idBuscado ID del producto a buscar.
      * @return Producto encontrado.
      * @throws ProductoNoEncontradoException Si no se encuentra el producto.
      */
-    public static Producto buscarPorId(List<Producto> inventario, String idBuscado) throws ProductoNoEncontradoException {
-        for (Producto p : inventario) {
-            if (p.getId().equals(idBuscado)) {
-                return p;
-            }
+    public static Producto buscarPorId(CatalogoProductos inventario, String idBuscado) throws ProductoNoEncontradoException {
+        Producto p = inventario.buscar(idBuscado);
+        if (p == null) {
+            throw ProductoNoEncontradoException.paraId(idBuscado);
         }
-        throw new ProductoNoEncontradoException("Producto con ID '" + idBuscado + "' no encontrado.");
+        return p;
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package Model;
+
+/**
+ * Vista de una fila de un {@link AlmacenColumnar}. No guarda datos propios: cada lectura
+ * y cada cambio de stock van directo a las columnas del almacén, con las mismas
+ * garantías atómicas que {@link Producto}.
+ * @author andres
+ */
+final class ProductoColumnar extends Producto {
+    final AlmacenColumnar.Bloque bloque;
+    final int fila;
+
+    ProductoColumnar(AlmacenColumnar.Bloque bloque, int fila) {
+        super(null, null, 0, 0);
+        this.bloque = bloque;
+        this.fila = fila;
+    }
+
+    @Override
+    public String getId() { return bloque.ids[fila]; }
+
+    @Override
+    public String getNombre() { return bloque.nombres[fila]; }
+
+    @Override
+    public double getPrecio() { return bloque.precio(fila); }
+
+    @Override
+    public int getCantidad() { return bloque.cantidad(fila); }
+
+    @Override
+    public void setCantidad(int cantidad) {
+        bloque.setCantidad(fila, cantidad);
+        avisarCambio();
+    }
+
+    @Override
+    public int cambiarCantidad(int cantidad) {
+        int anterior = bloque.obtenerYAsignar(fila, cantidad);
+        avisarCambio();
+        return anterior;
+    }
+
+    @Override
+    public boolean intentarReservar(int unidades) {
+        if (unidades <= 0) {
+            throw new IllegalArgumentException("Las unidades a reservar deben ser positivas: " + unidades);
+        }
+        int actual = bloque.cantidad(fila);
+        while (actual >= unidades) {
+            int observada = bloque.compararEIntercambiar(fila, actual, actual - unidades);
+            if (observada == actual) {
+                avisarCambio();
+                return true;
+            }
+            actual = observada;
+        }
+        return false;
+    }
+
+    @Override
+    public int reabastecer(int unidades) {
+        if (unidades <= 0) {
+            throw new IllegalArgumentException("Las unidades a agregar deben ser positivas: " + unidades);
+        }
+        int resultado = bloque.obtenerYSumar(fila, unidades) + unidades;
+        avisarCambio();
+        return resultado;
+    }
+}
\ No newline at end of file
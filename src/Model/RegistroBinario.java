@@ -0,0 +1,253 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Archivo de registros binarios que solo crece al final, usado por {@link PersistenciaBinaria}.
+ * Formato (enteros en big-endian):
+ * <pre>
+ *   int    mágico "SPL1"
+ *   short  versión
+ *   byte   tipo de registros
+ *   ...    registros: int largo, bytes del registro, int CRC32 de esos bytes
+ * </pre>
+ * Cada registro se escribe con una sola llamada. Si el programa se corta a mitad de una
+ * escritura, al leer se toma todo hasta el primer registro incompleto o dañado y el
+ * archivo se recorta ahí, para que lo siguiente se escriba a continuación de lo válido.
+ * No es seguro para varios hilos: lo protege el repositorio que lo usa.
+ * @author andres
+ */
+final class RegistroBinario {
+    static final short VERSION = 1;
+
+    private static final int MAGICO = 0x53504c31; // "SPL1"
+    private static final int CABECERA = 4 + 2 + 1;
+    private static final int MAXIMO_REGISTRO = 1 << 20;
+    private static final int BLOQUE = 1 << 16;
+    private static final Metricas.Contador BYTES_LEIDOS = Metricas.contador("binario.bytesLeidos");
+    private static final Metricas.Contador BYTES_ESCRITOS = Metricas.contador("binario.bytesEscritos");
+
+    private final Path ruta;
+    private final byte tipo;
+    private final CRC32 crc = new CRC32();
+    private FileChannel canal;
+
+    /**
+     * @param ruta Ruta del archivo (se crea, junto con su directorio, al escribir el primer registro).
+     * @param tipo Tipo de registros que guarda, para no confundir un archivo con otro.
+     */
+    RegistroBinario(Path ruta, byte tipo) {
+        this.ruta = ruta;
+        this.tipo = tipo;
+    }
+
+    /** Arma el contenido de un registro. */
+    static final class Escritura {
+        private ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        Escritura octeto(byte valor) {
+            asegurar(1);
+            buffer.put(valor);
+            return this;
+        }
+
+        Escritura entero(int valor) {
+            asegurar(4);
+            buffer.putInt(valor);
+            return this;
+        }
+
+        Escritura largo(long valor) {
+            asegurar(8);
+            buffer.putLong(valor);
+            return this;
+        }
+
+        /** Texto como {@code int} largo en bytes (-1 para nulo) seguido de UTF-8. */
+        Escritura texto(String valor) {
+            if (valor == null) {
+                return entero(-1);
+            }
+            byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+            entero(bytes.length);
+            asegurar(bytes.length);
+            buffer.put(bytes);
+            return this;
+        }
+
+        private void asegurar(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                buffer = mayor.put(buffer);
+            }
+        }
+    }
+
+    /**
+     * Lee un texto escrito con {@link Escritura#texto}.
+     * @param registro Registro posicionado al comienzo del texto.
+     * @return Texto leído, o {@code null}.
+     */
+    static String texto(ByteBuffer registro) {
+        int largo = registro.getInt();
+        if (largo < 0) {
+            return null;
+        }
+        String valor = new String(registro.array(), registro.arrayOffset() + registro.position(), largo,
+                StandardCharsets.UTF_8);
+        registro.position(registro.position() + largo);
+        return valor;
+    }
+
+    /**
+     * Recorre los registros válidos en orden y recorta lo que haya después del último.
+     * @param accion Recibe cada registro, posicionado al comienzo de su contenido.
+     * @return Cantidad de registros leídos.
+     * @throws IOException Si el archivo no es de este tipo o no se puede leer.
+     */
+    int leer(Consumer<ByteBuffer> accion) throws IOException {
+        cerrar();
+        if (!Files.exists(ruta)) {
+            return 0;
+        }
+        int registros = 0;
+        try (FileChannel lectura = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (lectura.size() < CABECERA) {
+                // Se cortó al crear el archivo: se vuelve a escribir la cabecera al anexar.
+                lectura.truncate(0);
+                return 0;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BLOQUE);
+            buffer.flip();
+            llenar(lectura, buffer, CABECERA);
+            if (buffer.getInt() != MAGICO || buffer.getShort() != VERSION || buffer.get() != tipo) {
+                throw new IOException("No es un registro binario válido: " + ruta);
+            }
+            long valido = CABECERA;
+            while (llenar(lectura, buffer, 4)) {
+                int largo = buffer.getInt(buffer.position());
+                if (largo < 0 || largo > MAXIMO_REGISTRO) {
+                    break;
+                }
+                if (buffer.capacity() < largo + 8) {
+                    ByteBuffer mayor = ByteBuffer.allocate(largo + 8 + BLOQUE);
+                    buffer = mayor.put(buffer);
+                    buffer.flip();
+                }
+                if (!llenar(lectura, buffer, largo + 8)) {
+                    break;
+                }
+                int inicio = buffer.position() + 4;
+                crc.reset();
+                crc.update(buffer.array(), inicio, largo);
+                if ((int) crc.getValue() != buffer.getInt(inicio + largo)) {
+                    break;
+                }
+                ByteBuffer registro = buffer.duplicate();
+                registro.position(inicio).limit(inicio + largo);
+                accion.accept(registro);
+                buffer.position(inicio + largo + 4);
+                valido += largo + 8;
+                registros++;
+            }
+            BYTES_LEIDOS.sumar(valido);
+            if (valido < lectura.size()) {
+                lectura.truncate(valido);
+            }
+        }
+        return registros;
+    }
+
+    /**
+     * Agrega un registro al final del archivo.
+     * @param registro Contenido del registro.
+     * @throws IOException Si no se puede escribir.
+     */
+    void anexar(Escritura registro) throws IOException {
+        ByteBuffer contenido = registro.buffer;
+        int largo = contenido.position();
+        crc.reset();
+        crc.update(contenido.array(), 0, largo);
+        ByteBuffer marco = ByteBuffer.allocate(largo + 8);
+        marco.putInt(largo).put(contenido.array(), 0, largo).putInt((int) crc.getValue());
+        marco.flip();
+        escribir(marco);
+    }
+
+    /**
+     * Deja el archivo sin registros.
+     * @throws IOException Si no se puede escribir.
+     */
+    void vaciar() throws IOException {
+        abrir();
+        canal.truncate(CABECERA);
+    }
+
+    /**
+     * Cierra el archivo; se vuelve a abrir en la próxima escritura.
+     */
+    void cerrar() {
+        if (canal != null) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // Todo lo escrito ya se entregó al sistema operativo.
+            }
+            canal = null;
+        }
+    }
+
+    private void escribir(ByteBuffer datos) throws IOException {
+        abrir();
+        int bytes = datos.remaining();
+        try {
+            while (datos.hasRemaining()) {
+                canal.write(datos);
+            }
+        } catch (IOException e) {
+            cerrar();
+            throw e;
+        }
+        BYTES_ESCRITOS.sumar(bytes);
+    }
+
+    private void abrir() throws IOException {
+        if (canal != null) {
+            return;
+        }
+        if (ruta.getParent() != null) {
+            Files.createDirectories(ruta.getParent());
+        }
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (canal.size() == 0) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            cabecera.putInt(MAGICO).putShort(VERSION).put(tipo);
+            cabecera.flip();
+            while (cabecera.hasRemaining()) {
+                canal.write(cabecera);
+            }
+        }
+    }
+
+    /** Deja al menos {@code bytes} bytes disponibles en el buffer; {@code false} si el archivo se termina antes. */
+    private static boolean llenar(FileChannel lectura, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes && lectura.read(buffer) >= 0) {
+            // Se sigue leyendo hasta tener el registro completo o llegar al final.
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package Model;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Resultado de {@link AnaliticaVentas}: unidades pedidas y enviadas por producto,
+ * ingresos, pedidos por día y por hora, unidades enviadas por proveedor y pedidos pendientes.
+ * @author andres
+ */
+public final class ReporteVentas {
+
+    /** Cifras de un producto. */
+    public static final class PorProducto {
+        private final String idProducto;
+        private final String nombre;
+        private final long pendientes;
+        private final long enviadas;
+        private final double ingresos;
+
+        PorProducto(String idProducto, String nombre, long pendientes, long enviadas, double ingresos) {
+            this.idProducto = idProducto;
+            this.nombre = nombre;
+            this.pendientes = pendientes;
+            this.enviadas = enviadas;
+            this.ingresos = ingresos;
+        }
+
+        /** @return ID del producto. */
+        public String getIdProducto() { return idProducto; }
+
+        /** @return Nombre actual del producto, o {@code null} si ya no está en el catálogo. */
+        public String getNombre() { return nombre; }
+
+        /** @return Unidades pedidas: las pendientes más las ya enviadas. */
+        public long getPedidas() { return pendientes + enviadas; }
+
+        /** @return Unidades enviadas. */
+        public long getEnviadas() { return enviadas; }
+
+        /** @return Pedidos pendientes de envío. */
+        public long getPendientes() { return pendientes; }
+
+        /** @return Unidades enviadas por el precio actual del producto (0 si ya no existe). */
+        public double getIngresos() { return ingresos; }
+    }
+
+    private final List<PorProducto> productos;
+    private final SortedMap<LocalDate, Long> pedidosPorDia;
+    private final long[] pedidosPorHora;
+    private final Map<String, Long> unidadesPorProveedor;
+    private final long bytesLeidos;
+    private final long milisegundos;
+
+    ReporteVentas(List<PorProducto> productos, SortedMap<LocalDate, Long> pedidosPorDia, long[] pedidosPorHora,
+            Map<String, Long> unidadesPorProveedor, long bytesLeidos, long milisegundos) {
+        this.productos = Collections.unmodifiableList(productos);
+        this.pedidosPorDia = Collections.unmodifiableSortedMap(pedidosPorDia);
+        this.pedidosPorHora = pedidosPorHora;
+        this.unidadesPorProveedor = Collections.unmodifiableMap(unidadesPorProveedor);
+        this.bytesLeidos = bytesLeidos;
+        this.milisegundos = milisegundos;
+    }
+
+    /** @return Cifras por producto, de mayor a menor ingreso. */
+    public List<PorProducto> getProductos() {
+        return productos;
+    }
+
+    /** @return Pedidos registrados por día, pendientes y enviados. */
+    public SortedMap<LocalDate, Long> getPedidosPorDia() {
+        return pedidosPorDia;
+    }
+
+    /** @return Pedidos registrados por hora del día; la posición 0 es de 00:00 a 00:59. */
+    public long[] getPedidosPorHora() {
+        return pedidosPorHora.clone();
+    }
+
+    /** @return Unidades enviadas por email de proveedor, de mayor a menor. */
+    public Map<String, Long> getUnidadesPorProveedor() {
+        return unidadesPorProveedor;
+    }
+
+    /** @return Pedidos pendientes de envío en total. */
+    public long getTotalPendientes() {
+        long total = 0;
+        for (PorProducto p : productos) total += p.pendientes;
+        return total;
+    }
+
+    /** @return Unidades enviadas en total. */
+    public long getTotalEnviadas() {
+        long total = 0;
+        for (PorProducto p : productos) total += p.enviadas;
+        return total;
+    }
+
+    /** @return Ingresos totales. */
+    public double getIngresosTotales() {
+        double total = 0;
+        for (PorProducto p : productos) total += p.ingresos;
+        return total;
+    }
+
+    /** @return Bytes leídos de los archivos de pedidos y envíos. */
+    public long getBytesLeidos() {
+        return bytesLeidos;
+    }
+
+    /** @return Duración del cálculo en milisegundos. */
+    public long getMilisegundos() {
+        return milisegundos;
+    }
+}
\ No newline at end of file
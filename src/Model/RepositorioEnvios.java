@@ -0,0 +1,56 @@
+package Model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Almacenamiento de los envíos realizados. Los envíos solo se agregan.
+ * @author andres
+ * @see Persistencia
+ */
+public interface RepositorioEnvios {
+
+    /**
+     * Registra un envío.
+     * @param envio Envío a guardar.
+     * @throws IOException Si no se puede guardar.
+     */
+    void guardar(Envio envio) throws IOException;
+
+    /**
+     * @return Envíos registrados en orden.
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Envio> cargar() throws IOException;
+
+    /**
+     * Envíos registrados en un rango de fechas.
+     * @param desde Marca de tiempo mínima, incluida (ver {@link MarcaTiempo}).
+     * @param hasta Marca de tiempo máxima, excluida.
+     * @return Envíos del rango, del período más antiguo al más reciente.
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Envio> entre(long desde, long hasta) throws IOException;
+
+    /**
+     * @param idProducto ID del producto.
+     * @return Unidades enviadas del producto.
+     * @throws IOException Si hay que leer los envíos y no se puede.
+     */
+    long unidadesEnviadas(String idProducto) throws IOException;
+
+    /**
+     * @param dia Día a consultar.
+     * @return Unidades enviadas ese día.
+     * @throws IOException Si hay que leer los envíos y no se puede.
+     */
+    long unidadesDelDia(LocalDate dia) throws IOException;
+
+    /**
+     * @param emailProveedor Email del proveedor.
+     * @return Unidades enviadas por el proveedor.
+     * @throws IOException Si hay que leer los envíos y no se puede.
+     */
+    long unidadesPorProveedor(String emailProveedor) throws IOException;
+}
\ No newline at end of file
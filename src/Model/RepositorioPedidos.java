@@ -0,0 +1,100 @@
+package Model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Almacenamiento de los pedidos. Un pedido queda pendiente hasta que se marca como enviado.
+ * Los pedidos pendientes devueltos traen su ID ({@link Pedido#getId()}), que los identifica al
+ * darlos de baja, y su posición en el almacenamiento ({@link Pedido#getPosicion()}). El ID se
+ * deriva de la posición, así un pedido conserva su ID al reiniciar.
+ * Para repartir envíos, cada producto tiene su cola de pendientes en orden de registro.
+ * @author andres
+ * @see Persistencia
+ */
+public interface RepositorioPedidos {
+
+    /**
+     * Registra un pedido nuevo.
+     * @param pedido Pedido a guardar.
+     * @throws IOException Si no se puede guardar.
+     */
+    void guardar(Pedido pedido) throws IOException;
+
+    /**
+     * @return Pedidos pendientes en orden de registro.
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Pedido> pendientes() throws IOException;
+
+    /**
+     * @param emailCliente Email del cliente.
+     * @return Pedidos pendientes del cliente en orden de registro.
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Pedido> pendientesDe(String emailCliente) throws IOException;
+
+    /**
+     * Recorre los pedidos pendientes que cumplen los filtros, en orden de registro.
+     * El flujo puede mantener archivos abiertos: debe cerrarse (por ejemplo con try-with-resources).
+     * @param emailCliente Email del cliente, o {@code null} para no filtrar por cliente.
+     * @param idProducto ID del producto, o {@code null} para no filtrar por producto.
+     * @return Flujo de pedidos pendientes.
+     * @throws IOException Si no se pueden leer.
+     */
+    Stream<Pedido> leer(String emailCliente, String idProducto) throws IOException;
+
+    /**
+     * Da de baja un pedido enviado.
+     * @param pedido Pedido devuelto por este repositorio.
+     * @return {@code true} si se dio de baja, {@code false} si ya no estaba pendiente.
+     * @throws IOException Si no se puede registrar la baja.
+     */
+    boolean marcarEnviado(Pedido pedido) throws IOException;
+
+    /**
+     * Pedido pendiente más antiguo de un producto, sin recorrer los demás pendientes.
+     * @param idProducto ID del producto.
+     * @return Pedido pendiente, o {@code null} si el producto no tiene ninguno.
+     * @throws IOException Si no se pueden leer.
+     */
+    Pedido siguientePendiente(String idProducto) throws IOException;
+
+    /**
+     * @param id ID del pedido ({@link Pedido#getId()}).
+     * @return Pedido pendiente con ese ID, o {@code null} si no existe o ya se envió.
+     * @throws IOException Si no se pueden leer.
+     */
+    Pedido pendiente(long id) throws IOException;
+
+    /**
+     * @return Pedidos pendientes de todos los productos.
+     * @throws IOException Si hay que leer los pedidos y no se puede.
+     */
+    long cantidadPendientes() throws IOException;
+
+    /**
+     * @param idProducto ID del producto.
+     * @return Pedidos pendientes del producto.
+     * @throws IOException Si hay que leer los pedidos y no se puede.
+     */
+    long cantidadPendientes(String idProducto) throws IOException;
+
+    /**
+     * Pedidos registrados en un rango de fechas, enviados o no.
+     * @param desde Marca de tiempo mínima, incluida (ver {@link MarcaTiempo}).
+     * @param hasta Marca de tiempo máxima, excluida.
+     * @return Pedidos del rango, del período más antiguo al más reciente.
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Pedido> registradosEntre(long desde, long hasta) throws IOException;
+
+    /**
+     * @param dia Día a consultar.
+     * @return Pedidos registrados ese día, enviados o no.
+     * @throws IOException Si hay que leer los pedidos y no se puede.
+     */
+    long cantidadDelDia(LocalDate dia) throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package Model;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Almacenamiento del inventario.
+ * El catálogo completo se guarda de vez en cuando; entre medio solo se registran los
+ * cambios de stock, que se reaplican al cargar.
+ * @author andres
+ * @see Persistencia
+ */
+public interface RepositorioProductos {
+
+    /**
+     * @return Productos guardados con los cambios de stock ya aplicados (vacío si no hay ninguno).
+     *         Cada llamada devuelve objetos nuevos.
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Producto> cargar() throws IOException;
+
+    /**
+     * Reemplaza el catálogo guardado. Los cambios de stock registrados hasta ahora quedan incluidos.
+     * @param productos Productos a guardar.
+     * @throws IOException Si no se pueden escribir.
+     */
+    void guardar(Collection<Producto> productos) throws IOException;
+
+    /**
+     * Registra un cambio de stock sin reescribir el catálogo.
+     * @param idProducto ID del producto modificado.
+     * @param delta Unidades sumadas (positivo) o restadas (negativo).
+     * @throws IOException Si no se puede registrar.
+     */
+    void registrarCambioStock(String idProducto, int delta) throws IOException;
+
+    /**
+     * Incorpora los cambios de stock registrados al catálogo guardado.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    void compactar() throws IOException;
+}
\ No newline at end of file
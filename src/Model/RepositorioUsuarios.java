@@ -0,0 +1,49 @@
+package Model;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Almacenamiento de los usuarios registrados.
+ * Registrar y eliminar un usuario solo anotan el cambio; el conjunto completo se escribe al
+ * guardar o al compactar.
+ * @author andres
+ * @see Persistencia
+ */
+public interface RepositorioUsuarios {
+
+    /**
+     * @return Usuarios guardados, en orden de registro (vacío si todavía no hay ninguno).
+     * @throws IOException Si no se pueden leer.
+     */
+    List<Usuario> cargar() throws IOException;
+
+    /**
+     * Reemplaza los usuarios guardados.
+     * @param usuarios Usuarios a guardar.
+     * @throws IOException Si no se pueden escribir.
+     */
+    void guardar(Collection<Usuario> usuarios) throws IOException;
+
+    /**
+     * Agrega un usuario sin reescribir los demás. No comprueba duplicados: el email ya
+     * debe estar validado contra los usuarios cargados.
+     * @param usuario Usuario nuevo.
+     * @throws IOException Si no se puede registrar.
+     */
+    void registrar(Usuario usuario) throws IOException;
+
+    /**
+     * Elimina los usuarios con un email, sin distinguir mayúsculas, anotando la baja.
+     * @param email Email del usuario a eliminar.
+     * @throws IOException Si no se puede registrar la baja.
+     */
+    void eliminar(String email) throws IOException;
+
+    /**
+     * Reescribe los usuarios guardados sin las bajas anotadas.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    void compactar() throws IOException;
+}
\ No newline at end of file
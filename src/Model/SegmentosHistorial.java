@@ -0,0 +1,616 @@
+package Model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.DateTimeException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Historial de pedidos o envíos partido por períodos, en el directorio {@code <archivo>.segmentos}.
+ * Cada fila se guarda, además de en el archivo principal, en el segmento del período de su fecha
+ * (un día o un mes, según la {@link Particion}). Cada segmento es un CSV con el mismo formato que
+ * el archivo principal, precedido por una cabecera de ancho fijo
+ * {@code #segmento,<fecha mínima>,<fecha máxima>}: una consulta por rango de fechas abre solo
+ * los segmentos que se superponen con él.
+ *
+ * <p>Solo el segmento más reciente recibe escrituras. Las escribe el mismo {@link Anexador} del
+ * archivo principal, como copia de cada línea y en el mismo lote, así guardar en los dos lugares
+ * no agrega otro hilo ni otra espera. La cabecera del segmento abierto dice que abarca todo el tiempo,
+ * así nunca se descarta por error. Cuando llega una fila
+ * de un período posterior, el segmento se sella: se reescribe su cabecera con las fechas reales
+ * y queda de solo lectura. Los sellados no vuelven a cambiar, así que se leen mapeados en memoria
+ * sin coordinar con nadie. Una fila de un período ya sellado (llega tarde) va al segmento abierto,
+ * que amplía su rango.</p>
+ *
+ * <p>A diferencia del archivo principal de pedidos, que solo tiene los pendientes, los segmentos
+ * guardan todo lo registrado: los pedidos enviados siguen en ellos. La primera vez que se usa,
+ * el directorio se arma con las filas que tenga el archivo principal.</p>
+ *
+ * <p>Cada fila queda en dos archivos, que pueden diferir si el proceso se corta entre la escritura
+ * del principal y la de la copia, o si se cierra con copias atrasadas: a los segmentos les faltan
+ * las últimas filas. Para detectarlo, el archivo {@code estado} del directorio anota hasta dónde
+ * coincidían (tamaño y huella del principal, segmento abierto y su tamaño). Al cargar, las filas
+ * que el principal recibió desde ese punto se comparan, en orden, con las que llegaron a los
+ * segmentos, y las que faltan al final se agregan. Si no coinciden, en envíos (cuyo archivo
+ * principal conserva todas las filas) los segmentos se vuelven a armar desde él; en pedidos,
+ * cuyo principal se compacta, solo se cuenta en la métrica {@code segmentos.divergencias}.
+ * Las reescrituras del archivo de pedidos anotan un estado nuevo al terminar.</p>
+ *
+ * <p>Al guardar, el historial se bloquea antes que los contadores ({@link Agregados}).</p>
+ * @author andres
+ */
+final class SegmentosHistorial {
+    static final String EXTENSION = ".segmentos";
+    private static final String SUFIJO = ".csv";
+    private static final String MARCA = "#segmento,";
+    // La cabecera tiene siempre el mismo largo, para poder reescribirla en su lugar al sellar.
+    static final int LARGO_CABECERA = MARCA.length() + 20 + 1 + 20 + 1;
+
+    private static final String ESTADO = "estado";
+    private static final String MARCA_ESTADO = "#estado,1,";
+
+    private static final Map<String, SegmentosHistorial> segmentos = new ConcurrentHashMap<>();
+    private static final Metricas.Contador FILAS_RECUPERADAS = Metricas.contador("segmentos.filasRecuperadas");
+    private static final Metricas.Contador DIVERGENCIAS = Metricas.contador("segmentos.divergencias");
+    private static volatile Particion particion = Particion.MENSUAL;
+
+    /** Un archivo de segmento y el rango de fechas de sus filas. */
+    private static final class Segmento {
+        final Path ruta;
+        final long inicio;
+        long minima = Long.MAX_VALUE;
+        long maxima = Long.MIN_VALUE;
+
+        Segmento(Path ruta, long inicio) {
+            this.ruta = ruta;
+            this.inicio = inicio;
+        }
+
+        void incluir(long fecha) {
+            minima = Math.min(minima, fecha);
+            maxima = Math.max(maxima, fecha);
+        }
+
+        boolean vacio() {
+            return minima > maxima;
+        }
+
+        boolean seSuperpone(long desde, long hasta) {
+            return minima < hasta && maxima >= desde;
+        }
+    }
+
+    private final String rutaDatos;
+    private final Path directorio;
+    // El archivo principal conserva todas las filas (envíos), así que puede rearmar los segmentos.
+    private final boolean principalCompleto;
+    private final int columnaFecha;
+    private final Function<LectorCSV, String> fila;
+    // Sellados en orden de período; el abierto es el único que recibe filas.
+    private final List<Segmento> sellados = new ArrayList<>();
+    private Segmento abierto;
+    private long finAbierto;
+    private boolean inicializado;
+
+    private SegmentosHistorial(String rutaDatos, boolean principalCompleto, int columnaFecha,
+            Function<LectorCSV, String> fila) {
+        this.rutaDatos = rutaDatos;
+        this.directorio = Paths.get(rutaDatos + EXTENSION);
+        this.principalCompleto = principalCompleto;
+        this.columnaFecha = columnaFecha;
+        this.fila = fila;
+    }
+
+    /**
+     * Obtiene el historial por períodos de un archivo de pedidos.
+     * @param rutaPedidos Ruta del archivo de pedidos.
+     * @return Historial compartido para esa ruta.
+     */
+    static SegmentosHistorial dePedidos(String rutaPedidos) {
+        return segmentos.computeIfAbsent("P" + Paths.get(rutaPedidos).toAbsolutePath().normalize(),
+                k -> new SegmentosHistorial(rutaPedidos, false, 2, l -> {
+                    Pedido p = GestorCSV.leerPedido(l);
+                    return p == null ? null : GestorCSV.filaPedido(p);
+                }));
+    }
+
+    /**
+     * Obtiene el historial por períodos de un archivo de envíos.
+     * @param rutaEnvios Ruta del archivo de envíos.
+     * @return Historial compartido para esa ruta.
+     */
+    static SegmentosHistorial deEnvios(String rutaEnvios) {
+        return segmentos.computeIfAbsent("E" + Paths.get(rutaEnvios).toAbsolutePath().normalize(),
+                k -> new SegmentosHistorial(rutaEnvios, true, 3, l -> {
+                    Envio e = GestorCSV.leerEnvio(l);
+                    return e == null ? null : GestorCSV.filaEnvio(e);
+                }));
+    }
+
+    /**
+     * Cambia el período de los segmentos. Aplica a los segmentos que se creen desde ahora.
+     * @param nueva Partición a usar.
+     */
+    static void setParticion(Particion nueva) {
+        particion = Objects.requireNonNull(nueva);
+    }
+
+    /**
+     * Elige el segmento de una fila, sellando el abierto si la fila es de un período posterior, y la
+     * encola con {@code encolar}, que recibe la ruta del segmento. Se encola con el historial bloqueado:
+     * así ningún segmento se sella mientras todavía hay filas en camino hacia él.
+     * @param fecha Fecha de la fila.
+     * @param encolar Encola la línea en el archivo principal con el segmento como copia.
+     * @return Futuro de la escritura; falla si no se pudo preparar el segmento.
+     */
+    CompletableFuture<Void> anexar(long fecha, Function<Path, CompletableFuture<Void>> encolar) {
+        try {
+            synchronized (this) {
+                inicializar();
+                if (abierto == null || fecha >= finAbierto) {
+                    abrir(fecha);
+                }
+                abierto.incluir(fecha);
+                return encolar.apply(abierto.ruta);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Recorre de forma perezosa las filas con fecha en {@code [desde, hasta)}, abriendo solo los
+     * segmentos cuyo rango se superpone con el pedido. Los segmentos se recorren en orden de
+     * período y las filas de cada uno en el orden en que se registraron.
+     * @param desde Fecha mínima (incluida).
+     * @param hasta Fecha máxima (excluida).
+     * @param convertir Función que convierte la fila actual en un objeto, o {@code null} para omitirla.
+     * @return Flujo de filas del rango; debe cerrarse.
+     * @throws IOException Si no se puede preparar el directorio de segmentos.
+     */
+    <T> Stream<T> leer(long desde, long hasta, Function<LectorCSV, T> convertir) throws IOException {
+        List<Path> rutas = new ArrayList<>();
+        synchronized (this) {
+            inicializar();
+            for (Segmento s : sellados) {
+                if (s.seSuperpone(desde, hasta)) rutas.add(s.ruta);
+            }
+            if (abierto != null && abierto.seSuperpone(desde, hasta)) rutas.add(abierto.ruta);
+        }
+        return rutas.stream().flatMap(ruta -> {
+            LectorCSV lector;
+            try {
+                lector = new LectorCSV(ruta.toString(), LARGO_CABECERA);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return GestorCSV.flujo(lector, l -> {
+                // La última fila del segmento abierto puede estar a medio escribir.
+                if (!l.filaTerminada() || l.numeroCampos() <= columnaFecha) return null;
+                long fecha = l.marcaTiempo(columnaFecha);
+                return fecha >= desde && fecha < hasta ? convertir.apply(l) : null;
+            });
+        });
+    }
+
+    /**
+     * Todos los segmentos, en orden de período y con el abierto al final. Las filas de cada uno
+     * empiezan después de la cabecera, en {@link #LARGO_CABECERA}; la última del abierto puede
+     * estar a medio escribir.
+     * @return Rutas de los segmentos.
+     * @throws IOException Si no se puede preparar el directorio de segmentos.
+     */
+    synchronized List<Path> rutas() throws IOException {
+        inicializar();
+        List<Path> rutas = new ArrayList<>(sellados.size() + 1);
+        for (Segmento s : sellados) {
+            rutas.add(s.ruta);
+        }
+        if (abierto != null) rutas.add(abierto.ruta);
+        return rutas;
+    }
+
+    /**
+     * Prepara los segmentos (y los compara con el archivo principal) si todavía no se usaron.
+     * Se llama antes de reescribir el principal, mientras el estado anotado sigue valiendo.
+     * @throws IOException Si no se puede preparar el directorio de segmentos.
+     */
+    synchronized void preparar() throws IOException {
+        inicializar();
+    }
+
+    /**
+     * Anota que los segmentos coinciden con el archivo principal tal como está ahora. Se llama
+     * después de reescribir el principal, para que la próxima carga compare desde este punto.
+     * @throws IOException Si no se puede escribir el estado.
+     */
+    synchronized void registrarEstado() throws IOException {
+        inicializar();
+        escribirEstado();
+    }
+
+    /**
+     * @return Cantidad de segmentos, contando el abierto.
+     * @throws IOException Si no se puede preparar el directorio de segmentos.
+     */
+    synchronized int cantidad() throws IOException {
+        inicializar();
+        return sellados.size() + (abierto == null ? 0 : 1);
+    }
+
+    private void abrir(long fecha) throws IOException {
+        if (abierto != null) {
+            Anexador.de(rutaDatos).soltarCopia(abierto.ruta);
+            sellar(abierto);
+            sellados.add(abierto);
+        }
+        Particion p = particion;
+        long inicio = p.inicio(fecha);
+        abierto = new Segmento(crear(directorio, p.nombre(inicio)), inicio);
+        finAbierto = p.fin(inicio);
+    }
+
+    // === ARRANQUE ===
+
+    private void inicializar() throws IOException {
+        if (inicializado) {
+            return;
+        }
+        if (Files.isDirectory(directorio)) {
+            leerDirectorio();
+            reconciliar();
+        } else {
+            armarDesdeArchivo();
+        }
+        inicializado = true;
+        escribirEstado();
+    }
+
+    private void leerDirectorio() throws IOException {
+        List<Segmento> abiertos = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*" + SUFIJO)) {
+            for (Path ruta : archivos) {
+                String nombre = ruta.getFileName().toString();
+                long inicio;
+                try {
+                    inicio = Particion.inicio(periodo(nombre));
+                } catch (DateTimeException e) {
+                    continue;
+                }
+                Segmento s = new Segmento(ruta, inicio);
+                long[] rango = leerCabecera(ruta);
+                if (rango == null) {
+                    // Sin cabecera válida: se lee siempre.
+                    s.minima = Long.MIN_VALUE;
+                    s.maxima = Long.MAX_VALUE;
+                    sellados.add(s);
+                } else if (rango[0] == Long.MIN_VALUE && rango[1] == Long.MAX_VALUE) {
+                    abiertos.add(s);
+                } else {
+                    s.minima = rango[0];
+                    s.maxima = rango[1];
+                    sellados.add(s);
+                }
+            }
+        }
+        // Normalmente hay un solo abierto; si quedaron más (se cortó un sellado), se sellan todos menos el último.
+        abiertos.sort(Comparator.comparingLong((Segmento s) -> s.inicio).thenComparing(s -> s.ruta));
+        for (int i = 0; i < abiertos.size(); i++) {
+            Segmento s = abiertos.get(i);
+            medir(s);
+            if (i == abiertos.size() - 1) {
+                abierto = s;
+                finAbierto = Particion.de(periodo(s.ruta.getFileName().toString())).fin(s.inicio);
+            } else if (s.vacio()) {
+                Files.delete(s.ruta);
+            } else {
+                sellar(s);
+                sellados.add(s);
+            }
+        }
+        sellados.sort(Comparator.comparingLong((Segmento s) -> s.inicio).thenComparing(s -> s.ruta));
+    }
+
+    /** Reparte las filas del archivo principal por período, en un directorio temporal que después se renombra. */
+    private void armarDesdeArchivo() throws IOException {
+        Path temporal = Paths.get(directorio + ".tmp");
+        borrar(temporal);
+        Files.createDirectories(temporal);
+        Particion p = particion;
+        TreeMap<Long, Segmento> porPeriodo = new TreeMap<>();
+        Map<Long, BufferedWriter> escritores = new HashMap<>();
+        Anexador.de(rutaDatos).vaciar();
+        try {
+            if (Files.exists(Paths.get(rutaDatos))) {
+                try (LectorCSV lector = new LectorCSV(rutaDatos)) {
+                    while (lector.siguienteFila()) {
+                        String linea = fila.apply(lector);
+                        if (linea == null) continue;
+                        long fecha = lector.marcaTiempo(columnaFecha);
+                        long inicio = p.inicio(fecha);
+                        BufferedWriter writer = escritores.get(inicio);
+                        if (writer == null) {
+                            Segmento s = new Segmento(crear(temporal, p.nombre(inicio)), inicio);
+                            porPeriodo.put(inicio, s);
+                            writer = new BufferedWriter(new FileWriter(s.ruta.toFile(), true));
+                            escritores.put(inicio, writer);
+                        }
+                        writer.write(linea);
+                        writer.newLine();
+                        porPeriodo.get(inicio).incluir(fecha);
+                    }
+                }
+            }
+        } finally {
+            for (BufferedWriter writer : escritores.values()) {
+                writer.close();
+            }
+        }
+        Map.Entry<Long, Segmento> ultimo = porPeriodo.pollLastEntry();
+        for (Segmento s : porPeriodo.values()) {
+            sellar(s);
+        }
+        Files.move(temporal, directorio, StandardCopyOption.ATOMIC_MOVE);
+        for (Segmento s : porPeriodo.values()) {
+            sellados.add(movido(s));
+        }
+        if (ultimo != null) {
+            abierto = movido(ultimo.getValue());
+            finAbierto = p.fin(abierto.inicio);
+        }
+    }
+
+    // === ESTADO ===
+
+    /**
+     * Compara las filas del archivo principal posteriores al estado anotado con las que llegaron
+     * a los segmentos desde entonces, y agrega a los segmentos las que les faltan al final.
+     */
+    private void reconciliar() throws IOException {
+        Anexador.de(rutaDatos).vaciar();
+        Path datos = Paths.get(rutaDatos);
+        String[] estado = leerEstado();
+        List<Path> desde = null;
+        long tamañoDatos = 0;
+        long tamañoSegmento = LARGO_CABECERA;
+        if (estado != null) {
+            tamañoDatos = Long.parseLong(estado[0]);
+            if (tamañoDatos <= Agregados.tamaño(datos)
+                    && Agregados.huella(datos, tamañoDatos) == Long.parseLong(estado[1])) {
+                desde = segmentosDesde(estado[2]);
+                if (!estado[2].isEmpty()) tamañoSegmento = Long.parseLong(estado[3]);
+            }
+        }
+        if (desde == null) {
+            // Sin estado (directorio anterior a esta verificación) o el principal cambió por fuera.
+            if (principalCompleto) {
+                rearmar();
+            } else if (estado != null) {
+                DIVERGENCIAS.sumar(1);
+            }
+            return;
+        }
+
+        List<String[]> faltan = new ArrayList<>();
+        boolean coinciden = true;
+        try (LectorCSV principal = new LectorCSV(rutaDatos, tamañoDatos)) {
+            for (int i = 0; i < desde.size() && coinciden; i++) {
+                Path ruta = desde.get(i);
+                try (LectorCSV segmento = new LectorCSV(ruta.toString(), i == 0 ? tamañoSegmento : LARGO_CABECERA)) {
+                    while (segmento.siguienteFila()) {
+                        if (!segmento.filaTerminada()) {
+                            // Una fila de la copia a medio escribir: se descarta y vuelve a agregarse abajo.
+                            if (abierto != null && ruta.equals(abierto.ruta)) recortar(ruta, segmento.posicionFila());
+                            break;
+                        }
+                        String copia = fila.apply(segmento);
+                        if (copia == null) continue;
+                        String original = siguiente(principal);
+                        if (!copia.equals(original)) {
+                            coinciden = false;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (coinciden) {
+                String original;
+                while ((original = siguiente(principal)) != null) {
+                    faltan.add(new String[] {original, Long.toString(principal.marcaTiempo(columnaFecha))});
+                }
+            }
+        }
+        if (!coinciden) {
+            DIVERGENCIAS.sumar(1);
+            if (principalCompleto) {
+                rearmar();
+            }
+            return;
+        }
+        for (String[] f : faltan) {
+            long fecha = Long.parseLong(f[1]);
+            if (abierto == null || fecha >= finAbierto) {
+                abrir(fecha);
+            }
+            abierto.incluir(fecha);
+            Files.write(abierto.ruta, (f[0] + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        }
+        FILAS_RECUPERADAS.sumar(faltan.size());
+    }
+
+    /** @return La próxima fila completa del archivo principal, normalizada, o {@code null} al final. */
+    private String siguiente(LectorCSV principal) throws IOException {
+        while (principal.siguienteFila() && principal.filaTerminada()) {
+            String linea = fila.apply(principal);
+            if (linea != null) return linea;
+        }
+        return null;
+    }
+
+    /**
+     * Segmentos que recibieron filas después del estado: el que estaba abierto y los creados después.
+     * @param nombre Nombre del segmento abierto al anotar el estado (vacío si no había ninguno).
+     * @return Rutas en orden de escritura, o {@code null} si ese segmento ya no existe.
+     */
+    private List<Path> segmentosDesde(String nombre) {
+        List<Path> todos = new ArrayList<>();
+        for (Segmento s : sellados) todos.add(s.ruta);
+        if (abierto != null) todos.add(abierto.ruta);
+        if (nombre.isEmpty()) {
+            return todos;
+        }
+        for (int i = 0; i < todos.size(); i++) {
+            if (todos.get(i).getFileName().toString().equals(nombre)) {
+                return todos.subList(i, todos.size());
+            }
+        }
+        return null;
+    }
+
+    /** Borra los segmentos y los vuelve a armar con el archivo principal. */
+    private void rearmar() throws IOException {
+        if (abierto != null) {
+            Anexador.de(rutaDatos).soltarCopia(abierto.ruta);
+        }
+        sellados.clear();
+        abierto = null;
+        borrar(directorio);
+        armarDesdeArchivo();
+    }
+
+    /** @return Campos del estado anotado (tamaño, huella, segmento, tamaño del segmento), o {@code null}. */
+    private String[] leerEstado() throws IOException {
+        Path ruta = directorio.resolve(ESTADO);
+        if (!Files.exists(ruta)) {
+            return null;
+        }
+        List<String> lineas = Files.readAllLines(ruta, StandardCharsets.US_ASCII);
+        if (lineas.isEmpty() || !lineas.get(0).startsWith(MARCA_ESTADO)) {
+            return null;
+        }
+        String[] campos = lineas.get(0).substring(MARCA_ESTADO.length()).split(",", -1);
+        try {
+            Long.parseLong(campos[0]);
+            Long.parseLong(campos[1]);
+            Long.parseLong(campos[3]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+        return campos;
+    }
+
+    /** Anota el punto actual, si todas las filas del principal llegaron a los segmentos. */
+    private void escribirEstado() throws IOException {
+        Anexador anexador = Anexador.de(rutaDatos);
+        anexador.vaciar();
+        if (!anexador.copiasAlDia()) {
+            // Con copias atrasadas el punto no coincide; queda el anterior hasta que se pongan al día.
+            return;
+        }
+        Path datos = Paths.get(rutaDatos);
+        long tamaño = Agregados.tamaño(datos);
+        String linea = MARCA_ESTADO + tamaño + "," + Agregados.huella(datos, tamaño) + ","
+                + (abierto == null ? "" : abierto.ruta.getFileName()) + ","
+                + (abierto == null ? 0 : Files.size(abierto.ruta));
+        Path temporal = directorio.resolve(ESTADO + ".tmp");
+        Files.write(temporal, linea.getBytes(StandardCharsets.US_ASCII));
+        Files.move(temporal, directorio.resolve(ESTADO), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Corta una copia al largo dado, para quitar una fila incompleta del final. */
+    private static void recortar(Path ruta, long largo) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.WRITE)) {
+            canal.truncate(largo);
+        }
+    }
+
+    /** El mismo segmento, con la ruta que tiene en el directorio definitivo. */
+    private Segmento movido(Segmento s) {
+        Segmento m = new Segmento(directorio.resolve(s.ruta.getFileName()), s.inicio);
+        m.minima = s.minima;
+        m.maxima = s.maxima;
+        return m;
+    }
+
+    // === ARCHIVOS ===
+
+    /** Crea un segmento vacío con la cabecera de abierto; si el nombre ya existe, le agrega un número. */
+    private static Path crear(Path carpeta, String periodo) throws IOException {
+        Path ruta = carpeta.resolve(periodo + SUFIJO);
+        for (int n = 1; Files.exists(ruta); n++) {
+            ruta = carpeta.resolve(periodo + "." + n + SUFIJO);
+        }
+        Files.write(ruta, cabecera(Long.MIN_VALUE, Long.MAX_VALUE), StandardOpenOption.CREATE_NEW);
+        return ruta;
+    }
+
+    /** Recorre un segmento abierto para conocer su rango de fechas. */
+    private void medir(Segmento s) throws IOException {
+        try (LectorCSV lector = new LectorCSV(s.ruta.toString(), LARGO_CABECERA)) {
+            while (lector.siguienteFila()) {
+                if (lector.numeroCampos() > columnaFecha) s.incluir(lector.marcaTiempo(columnaFecha));
+            }
+        }
+    }
+
+    /** Escribe la cabecera definitiva de un segmento y lo deja de solo lectura. */
+    private static void sellar(Segmento s) throws IOException {
+        try (FileChannel canal = FileChannel.open(s.ruta, StandardOpenOption.WRITE)) {
+            ByteBuffer datos = ByteBuffer.wrap(cabecera(s.minima, s.maxima));
+            while (datos.hasRemaining()) {
+                canal.write(datos, datos.position());
+            }
+            canal.force(false);
+        }
+        s.ruta.toFile().setReadOnly();
+    }
+
+    private static byte[] cabecera(long minima, long maxima) {
+        return String.format("%s%20d,%20d\n", MARCA, minima, maxima).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** @return Fechas mínima y máxima de la cabecera, o {@code null} si no tiene una válida. */
+    private static long[] leerCabecera(Path ruta) throws IOException {
+        byte[] bytes = new byte[LARGO_CABECERA];
+        try (InputStream in = Files.newInputStream(ruta)) {
+            if (in.readNBytes(bytes, 0, bytes.length) < bytes.length) return null;
+        }
+        String texto = new String(bytes, StandardCharsets.US_ASCII);
+        if (!texto.startsWith(MARCA) || bytes[bytes.length - 1] != '\n') return null;
+        String[] partes = texto.substring(MARCA.length()).trim().split(",");
+        try {
+            return new long[] {Long.parseLong(partes[0].trim()), Long.parseLong(partes[1].trim())};
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /** @return Nombre del período de un archivo de segmento ({@code 2024-05.csv} o {@code 2024-05.1.csv}). */
+    private static String periodo(String nombreArchivo) {
+        int punto = nombreArchivo.indexOf('.');
+        return punto < 0 ? nombreArchivo : nombreArchivo.substring(0, punto);
+    }
+
+    private static void borrar(Path carpeta) throws IOException {
+        if (!Files.exists(carpeta)) {
+            return;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(carpeta)) {
+            for (Path ruta : archivos) {
+                // Los sellados son de solo lectura, y en Windows no se pueden borrar así.
+                ruta.toFile().setWritable(true);
+                Files.delete(ruta);
+            }
+        }
+        Files.delete(carpeta);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package Model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hilo de fondo compartido para las tareas de mantenimiento de archivos
+ * (compactación del diario de stock y del archivo de pedidos).
+ * Es un único hilo demonio, así las tareas nunca compiten entre sí por el disco.
+ * @author andres
+ */
+final class TareasFondo {
+    private static final ExecutorService ejecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "mantenimiento-archivos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TareasFondo() {
+    }
+
+    /** Tarea de mantenimiento que puede fallar con una excepción comprobada. */
+    interface Tarea {
+        void ejecutar() throws Exception;
+    }
+
+    /**
+     * Ejecuta una tarea en el hilo de fondo.
+     * @param tarea Tarea a ejecutar.
+     * @param alTerminar Acción que se ejecuta al terminar, antes de completar el futuro.
+     * @return Futuro que se completa cuando la tarea termina.
+     */
+    static CompletableFuture<Void> ejecutar(Tarea tarea, Runnable alTerminar) {
+        CompletableFuture<Void> futuro = new CompletableFuture<>();
+        ejecutor.execute(() -> {
+            Throwable error = null;
+            try {
+                tarea.ejecutar();
+            } catch (Throwable e) {
+                error = e;
+            }
+            alTerminar.run();
+            if (error == null) {
+                futuro.complete(null);
+            } else {
+                futuro.completeExceptionally(error);
+            }
+        });
+        return futuro;
+    }
+}
\ No newline at end of file
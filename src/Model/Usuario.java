@@ -46,6 +46,16 @@ public abstract class Usuario {
         }
     }
 
+    /**
+     * Comprueba la contraseña sin lanzar excepciones.
+     * Pensado para búsquedas indexadas donde el email ya fue resuelto.
+     * @param contraseñaIngresada Contraseña ingresada.
+     * @return {@code true} si la contraseña coincide.
+     */
+    public boolean tieneContraseña(String contraseñaIngresada) {
+        return this.contraseña.equals(contraseñaIngresada);
+    }
+
     /**
      * Muestra las opciones disponibles para el tipo de usuario.
      * Este método debe ser implementado por las subclases.
@@ -5,7 +5,7 @@ import Exception.*;
 import Model.*;
 import java.util.*;
 import java.io.*;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 
 /**
  * Vista principal en consola del sistema ShopPlus.
@@ -14,11 +14,14 @@ import java.time.LocalDateTime;
  * @author andres
  */
 public class App {
+    private static final int TAMAÑO_PAGINA = 20;
     
     /**
      * Método principal que inicia la aplicación ShopPlus.
      * 
-     * <p>Carga datos desde archivos CSV, inicializa los controladores necesarios
+     * <p>Carga usuarios y productos en paralelo desde la persistencia configurada (ver
+     * {@link Persistencia#desdePropiedades()}; por defecto, los archivos CSV del directorio actual),
+     * informa cuánto tardó el arranque, inicializa los controladores necesarios
      * y presenta el menú principal para que los usuarios puedan:</p>
      * <ul>
      *   <li>Iniciar sesión con credenciales existentes</li>
@@ -33,23 +36,39 @@ public class App {
      *   <li><b>Proveedor:</b> Actualizar stock y procesar envíos</li>
      * </ul>
      * 
-     * @param args Argumentos de línea de comandos (no utilizados)
+     * @param args Argumentos de línea de comandos: {@code --servidor [puerto]} inicia el modo servidor
+     * @see ServidorShopPlus
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            ServidorShopPlus.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        Metricas.configurarDesdePropiedades();
+
         Scanner scanner = new Scanner(System.in);
 
-        // Cargar usuarios y productos desde archivos
+        // Cargar usuarios y productos a la vez; pedidos y envíos se cargan al usarlos por primera vez
+        Persistencia persistencia = Persistencia.desdePropiedades();
+        CargaInicial carga = CargaInicial.iniciar(persistencia);
         List<Usuario> usuarios = new ArrayList<>();
         List<Producto> productos = new ArrayList<>();
         try {
-            usuarios = GestorCSV.cargarUsuarios("Usuarios.txt");
-            productos = GestorCSV.cargarProductos("Productos.txt");
+            usuarios = carga.usuarios();
+        } catch (IOException e) {
+            System.out.println("Error al cargar archivos: " + e.getMessage());
+        }
+        try {
+            productos = carga.productos();
         } catch (IOException e) {
             System.out.println("Error al cargar archivos: " + e.getMessage());
         }
         
         ControladorUsuario controladorUsuario = new ControladorUsuario(usuarios);
-        ControladorProducto controladorProducto = new ControladorProducto(productos);
+        ControladorProducto controladorProducto = new ControladorProducto(
+                new CatalogoProductos(productos, AlmacenColumnar.desdePropiedades()));
+        ControladorPedido controladorPedido = new ControladorPedido(controladorProducto, persistencia);
+        System.out.println(carga.resumen());
 
         boolean salir = false;
 
@@ -91,12 +110,15 @@ public class App {
                                         Producto p = controladorProducto.buscarProducto(idCompra);
                                         System.out.println("Producto encontrado: " + p.getNombre() + " - $" + p.getPrecio());
 
-                                        Pedido nuevoPedido = new Pedido(usuario.getEmail(), p.getId(), LocalDateTime.now());
-                                        GestorCSV.guardarPedido(nuevoPedido, "Pedidos.txt");
+                                        controladorPedido.comprar(usuario, p.getId());
 
                                         System.out.println("Pedido registrado. Esperando envío del proveedor.");
                                     } catch (ProductoNoEncontradoException e) {
                                         System.out.println(e.getMessage());
+                                        // Quizás escribió el nombre en vez del ID: sugerir los más parecidos.
+                                        for (Producto sugerido : controladorProducto.buscarPorNombre(idCompra, 5)) {
+                                            System.out.println("  ¿Quiso decir " + sugerido.getId() + " - " + sugerido.getNombre() + "?");
+                                        }
                                     } catch (IOException e) {
                                         System.out.println("Error al guardar el pedido: " + e.getMessage());
                                     }
@@ -105,14 +127,11 @@ public class App {
                                     case "2":
                                         // Ver pedidos del cliente
                                     	try {
-                                    	    List<Pedido> pedidosCliente = GestorCSV.cargarPedidos("Pedidos.txt");
                                     	    System.out.println("\nTus pedidos:");
                                     	    boolean tienePedidos = false;
-                                    	    for (Pedido pedido : pedidosCliente) {
-                                    	        if (pedido.getEmailCliente().equals(usuario.getEmail())) {
-                                    	            System.out.println("- Producto ID: " + pedido.getIdProducto() + " | Fecha: " + pedido.getFecha());
-                                    	            tienePedidos = true;
-                                    	        }
+                                    	    for (Pedido pedido : controladorPedido.pedidosDe(usuario)) {
+                                    	        System.out.println("- Producto ID: " + pedido.getIdProducto() + " | Fecha: " + pedido.getFecha());
+                                    	        tienePedidos = true;
                                     	    }
                                     	    if (!tienePedidos) {
                                     	        System.out.println("No tienes pedidos registrados.");
@@ -138,9 +157,69 @@ public class App {
 
                                 switch (opcionAdmin) {
                                     case "1":
-                                        // Ver inventario
-                                        System.out.println("\nInventario actual:");
-                                        controladorProducto.mostrarInventario();
+                                        // Ver inventario: completo o filtrado, de a una página
+                                        System.out.println("\n1. Ver todo el inventario");
+                                        System.out.println("2. Filtrar por rango de precio");
+                                        System.out.println("3. Ver productos con stock bajo");
+                                        System.out.println("4. Ver resumen del inventario");
+                                        System.out.println("5. Ver reporte de ventas");
+                                        System.out.println("6. Ver indicadores del día");
+                                        System.out.print("Seleccione una opción: ");
+                                        String opcionInventario = scanner.nextLine();
+                                        try {
+                                            switch (opcionInventario) {
+                                                case "1":
+                                                    System.out.println("\nInventario actual:");
+                                                    recorrerPaginas(scanner, controladorProducto,
+                                                            cursor -> controladorProducto.listarInventario(cursor, TAMAÑO_PAGINA));
+                                                    break;
+                                                case "2":
+                                                    System.out.print("Precio mínimo: ");
+                                                    double minimo = Double.parseDouble(scanner.nextLine());
+                                                    System.out.print("Precio máximo: ");
+                                                    double maximo = Double.parseDouble(scanner.nextLine());
+                                                    recorrerPaginas(scanner, controladorProducto,
+                                                            cursor -> controladorProducto.filtrarPorPrecio(minimo, maximo, cursor, TAMAÑO_PAGINA));
+                                                    break;
+                                                case "3":
+                                                    System.out.print("Mostrar productos con stock menor o igual a: ");
+                                                    int umbral = Integer.parseInt(scanner.nextLine());
+                                                    recorrerPaginas(scanner, controladorProducto,
+                                                            cursor -> controladorProducto.stockBajo(umbral, cursor, TAMAÑO_PAGINA));
+                                                    break;
+                                                case "4":
+                                                    System.out.println("Unidades en stock: " + controladorProducto.unidadesEnStock());
+                                                    System.out.printf("Valor del inventario: $%.2f%n", controladorProducto.valorInventario());
+                                                    break;
+                                                case "5":
+                                                    try {
+                                                        mostrarReporte(controladorPedido.reporteVentas());
+                                                    } catch (IOException e) {
+                                                        System.out.println("Error al leer pedidos y envíos: " + e.getMessage());
+                                                    }
+                                                    break;
+                                                case "6":
+                                                    try {
+                                                        LocalDate hoy = LocalDate.now();
+                                                        System.out.println("Pedidos de hoy: " + controladorPedido.pedidosDelDia(hoy));
+                                                        System.out.println("Unidades enviadas hoy: " + controladorPedido.unidadesEnviadasDelDia(hoy));
+                                                        System.out.println("Pedidos pendientes: " + controladorPedido.pendientes(null));
+                                                        System.out.print("ID de producto para ver su detalle (vacío para omitir): ");
+                                                        String idDetalle = scanner.nextLine().trim();
+                                                        if (!idDetalle.isEmpty()) {
+                                                            System.out.println("Pendientes: " + controladorPedido.pendientes(idDetalle)
+                                                                    + " | Unidades enviadas: " + controladorPedido.unidadesEnviadas(idDetalle));
+                                                        }
+                                                    } catch (IOException e) {
+                                                        System.out.println("Error al leer pedidos y envíos: " + e.getMessage());
+                                                    }
+                                                    break;
+                                                default:
+                                                    System.out.println("Opción inválida.");
+                                            }
+                                        } catch (NumberFormatException e) {
+                                            System.out.println("Entrada inválida. Debe ingresar un número.");
+                                        }
                                         break;
                                         
                                     case "2":
@@ -159,7 +238,7 @@ public class App {
                                                 case "1":
                                                     // Listar todos los usuarios
                                                     System.out.println("\nUsuarios registrados:");
-                                                    for (Usuario u : usuarios) {
+                                                    for (Usuario u : controladorUsuario.listarUsuarios()) {
                                                         System.out.println("- " + u.getClass().getSimpleName() + ": " + u.getNombre() + " | " + u.getEmail());
                                                     }
                                                     break;
@@ -168,18 +247,13 @@ public class App {
                                                     // Buscar usuario por email
                                                     System.out.print("Ingrese el email del usuario a buscar: ");
                                                     String emailBuscar = scanner.nextLine();
-                                                    boolean encontrado = false;
-                                                    for (Usuario u : usuarios) {
-                                                        if (u.getEmail().equalsIgnoreCase(emailBuscar)) {
-                                                            System.out.println("Usuario encontrado:");
-                                                            System.out.println("- Tipo: " + u.getClass().getSimpleName());
-                                                            System.out.println("- Nombre: " + u.getNombre());
-                                                            System.out.println("- Email: " + u.getEmail());
-                                                            encontrado = true;
-                                                            break;
-                                                        }
-                                                    }
-                                                    if (!encontrado) {
+                                                    Usuario encontrado = controladorUsuario.buscarPorEmail(emailBuscar);
+                                                    if (encontrado != null) {
+                                                        System.out.println("Usuario encontrado:");
+                                                        System.out.println("- Tipo: " + encontrado.getClass().getSimpleName());
+                                                        System.out.println("- Nombre: " + encontrado.getNombre());
+                                                        System.out.println("- Email: " + encontrado.getEmail());
+                                                    } else {
                                                         System.out.println("No se encontró ningún usuario con ese email.");
                                                     }
                                                     break;
@@ -188,17 +262,10 @@ public class App {
                                                     // Eliminar usuario
                                                     System.out.print("Ingrese el email del usuario a eliminar: ");
                                                     String emailEliminar = scanner.nextLine();
-                                                    Usuario usuarioAEliminar = null;
-                                                    for (Usuario u : usuarios) {
-                                                        if (u.getEmail().equalsIgnoreCase(emailEliminar)) {
-                                                            usuarioAEliminar = u;
-                                                            break;
-                                                        }
-                                                    }
+                                                    Usuario usuarioAEliminar = controladorUsuario.eliminarPorEmail(emailEliminar);
                                                     if (usuarioAEliminar != null) {
-                                                        usuarios.remove(usuarioAEliminar);
                                                         try {
-                                                            GestorCSV.guardarUsuarios(usuarios, "Usuarios.txt");
+                                                            persistencia.usuarios().eliminar(usuarioAEliminar.getEmail());
                                                             System.out.println("Usuario eliminado correctamente.");
                                                         } catch (IOException e) {
                                                             System.out.println("Error al guardar cambios: " + e.getMessage());
@@ -243,59 +310,45 @@ public class App {
                         	            System.out.print("Nueva cantidad: ");
                         	            int cantidad = Integer.parseInt(scanner.nextLine());
                         	            try {
-                        	                controladorProducto.actualizarCantidad(id, cantidad);
+                        	                controladorPedido.actualizarCantidad(id, cantidad);
                         	                System.out.println("Cantidad actualizada correctamente.");
                         	            } catch (ProductoNoEncontradoException e) {
                         	                System.out.println(e.getMessage());
+                        	            } catch (IOException e) {
+                        	                System.out.println("Error al guardar el stock: " + e.getMessage());
                         	            }
                         	            break;
                         	            
                         	        case "2":
                         	            // Procesar y enviar pedidos
                         	            try {
-                        	                List<Pedido> pedidos = GestorCSV.cargarPedidos("Pedidos.txt");
+                        	                List<Pedido> pedidos = controladorPedido.pendientes();
                         	                if (pedidos.isEmpty()) {
                         	                    System.out.println("No hay pedidos pendientes.");
                         	                    break;
                         	                }
 
                         	                System.out.println("\nPedidos pendientes:");
-                        	                for (int i = 0; i < pedidos.size(); i++) {
-                        	                    Pedido pedido = pedidos.get(i);
-                        	                    System.out.println((i + 1) + ". Cliente: " + pedido.getEmailCliente() +
+                        	                for (Pedido pedido : pedidos) {
+                        	                    System.out.println(pedido.getId() + ". Cliente: " + pedido.getEmailCliente() +
                         	                                       " | Producto ID: " + pedido.getIdProducto() +
                         	                                       " | Fecha: " + pedido.getFecha());
                         	                }
 
-                        	                System.out.print("Seleccione el número del pedido a enviar: ");
-                        	                int seleccion = Integer.parseInt(scanner.nextLine()) - 1;
+                        	                System.out.print("Ingrese el ID del pedido a enviar: ");
+                        	                long idPedido = Long.parseLong(scanner.nextLine().trim());
 
-                        	                if (seleccion < 0 || seleccion >= pedidos.size()) {
-                        	                    System.out.println("Selección inválida.");
+                        	                // Procesar envío por ID; si otra sesión ya lo envió, la unidad reservada se devuelve
+                        	                if (controladorPedido.enviar(usuario, idPedido) == null) {
+                        	                    System.out.println("No hay un pedido pendiente con ese ID (quizás ya fue enviado).");
                         	                    break;
                         	                }
-
-                        	                Pedido pedidoAEnviar = pedidos.get(seleccion);
-                        	                Producto producto = controladorProducto.buscarProducto(pedidoAEnviar.getIdProducto());
-
-                        	                if (producto.getCantidad() > 0) {
-                        	                    // Procesar envío
-                        	                    producto.setCantidad(producto.getCantidad() - 1);
-                        	                    GestorCSV.guardarProductos(productos, "Productos.txt");
-
-                        	                    Envio envio = new Envio(usuario.getEmail(), producto.getId(), 1, LocalDateTime.now());
-                        	                    GestorCSV.guardarEnvio(envio, "Envios.txt");
-
-                        	                    pedidos.remove(seleccion);
-                        	                    GestorCSV.guardarPedidos(pedidos, "Pedidos.txt");
-
-                        	                    System.out.println("✅ Envío realizado. Stock actualizado.");
-                        	                } else {
-                        	                    System.out.println("❌ No hay stock suficiente para este producto.");
-                        	                }
+                        	                System.out.println("✅ Envío realizado. Stock actualizado.");
 
                         	            } catch (ProductoNoEncontradoException e) {
                         	                System.out.println("Producto no encontrado: " + e.getMessage());
+                        	            } catch (StockInsuficienteException e) {
+                        	                System.out.println("❌ No hay stock suficiente para este producto.");
                         	            } catch (IOException e) {
                         	                System.out.println("Error al guardar archivos: " + e.getMessage());
                         	            } catch (NumberFormatException e) {
@@ -315,9 +368,6 @@ public class App {
                         	}
                         }
 
-                        // Guardar cambios en productos
-                        GestorCSV.guardarProductos(productos, "Productos.txt");
-
                     } catch (UsuarioInvalidoException e) {
                         System.out.println("Error de autenticación: " + e.getMessage());
                     } catch (Exception e) {
@@ -349,11 +399,16 @@ public class App {
                         break;
                     }
 
-                    usuarios.add(nuevoUsuario);
+                    if (!controladorUsuario.registrar(nuevoUsuario)) {
+                        System.out.println("Ya existe un usuario con ese email.");
+                        break;
+                    }
                     try {
-                        GestorCSV.guardarUsuarios(usuarios, "Usuarios.txt");
+                        persistencia.usuarios().registrar(nuevoUsuario);
                         System.out.println("Usuario registrado exitosamente.");
                     } catch (IOException e) {
+                        // Si no quedó guardado, tampoco debe quedar registrado en esta sesión.
+                        controladorUsuario.eliminarPorEmail(nuevoUsuario.getEmail());
                         System.out.println("Error al guardar el usuario: " + e.getMessage());
                     }
                     break;
@@ -361,6 +416,12 @@ public class App {
                 case "3":
                     // Salir del sistema
                     salir = true;
+                    try {
+                        persistencia.productos().compactar();
+                    } catch (IOException e) {
+                        System.out.println("Error al compactar el inventario: " + e.getMessage());
+                    }
+                    persistencia.cerrar();
                     System.out.println("Gracias por usar ShopPlus.");
                     break;
 
@@ -369,4 +430,61 @@ public class App {
             }
         }
     }
+
+    /**
+     * Muestra en consola un reporte de ventas.
+     * @param reporte Reporte calculado.
+     */
+    private static void mostrarReporte(ReporteVentas reporte) {
+        System.out.println("\nProductos (ID - nombre: pedidas / enviadas / pendientes / ingresos):");
+        for (ReporteVentas.PorProducto p : reporte.getProductos()) {
+            System.out.printf("%s - %s: %d / %d / %d / $%.2f%n", p.getIdProducto(),
+                    p.getNombre() == null ? "(eliminado)" : p.getNombre(),
+                    p.getPedidas(), p.getEnviadas(), p.getPendientes(), p.getIngresos());
+        }
+        System.out.printf("Total: %d enviadas, %d pendientes, $%.2f%n",
+                reporte.getTotalEnviadas(), reporte.getTotalPendientes(), reporte.getIngresosTotales());
+
+        System.out.println("\nUnidades enviadas por proveedor:");
+        for (Map.Entry<String, Long> e : reporte.getUnidadesPorProveedor().entrySet()) {
+            System.out.println("- " + e.getKey() + ": " + e.getValue());
+        }
+        System.out.println("\nPedidos por día:");
+        for (Map.Entry<java.time.LocalDate, Long> e : reporte.getPedidosPorDia().entrySet()) {
+            System.out.println("- " + e.getKey() + ": " + e.getValue());
+        }
+        System.out.println("\nPedidos por hora:");
+        long[] porHora = reporte.getPedidosPorHora();
+        for (int h = 0; h < porHora.length; h++) {
+            if (porHora[h] > 0) {
+                System.out.printf("- %02d:00: %d%n", h, porHora[h]);
+            }
+        }
+        System.out.println("(" + reporte.getBytesLeidos() + " bytes leídos en " + reporte.getMilisegundos() + " ms)");
+    }
+
+    /**
+     * Muestra un listado de productos de a una página, esperando Enter entre páginas.
+     * @param scanner Entrada de la consola.
+     * @param controladorProducto Controlador que imprime cada página.
+     * @param paginas Función que devuelve la página que sigue al cursor dado ({@code null} para la primera).
+     */
+    private static void recorrerPaginas(Scanner scanner, ControladorProducto controladorProducto,
+            java.util.function.Function<String, Pagina<Producto>> paginas) {
+        String cursor = null;
+        do {
+            Pagina<Producto> pagina = paginas.apply(cursor);
+            if (cursor == null && pagina.getElementos().isEmpty()) {
+                System.out.println("No hay productos que mostrar.");
+            }
+            controladorProducto.mostrar(pagina);
+            cursor = pagina.getCursorSiguiente();
+            if (cursor != null) {
+                System.out.print("-- Enter para ver más, 'q' para terminar -- ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
+        } while (cursor != null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,484 @@
+package view;
+
+import Controller.*;
+import Exception.*;
+import Model.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modo servidor del sistema ShopPlus: atiende varias sesiones a la vez por TCP,
+ * compartiendo los mismos controladores y la misma persistencia que la consola.
+ *
+ * <p>El protocolo es de texto, una orden por línea (UTF-8):</p>
+ * <ul>
+ *   <li>{@code LOGIN <email> <contraseña>}</li>
+ *   <li>{@code INVENTARIO}</li>
+ *   <li>{@code BUSCAR <texto>}: hasta 20 productos cuyo nombre contiene el texto, sin distinguir tildes</li>
+ *   <li>{@code PRECIO <mínimo> <máximo> [cursor]}: productos en ese rango de precio, del más barato al más caro</li>
+ *   <li>{@code STOCKBAJO <umbral> [cursor]}: productos con stock menor o igual al umbral</li>
+ *   <li>{@code INDICADORES [idProducto]}: sin producto, {@code OK <pendientes> <pedidosHoy> <unidadesEnviadasHoy>};
+ *       con producto, {@code OK <pendientes> <unidadesEnviadas>}</li>
+ *   <li>{@code COMPRAR <idProducto>} (Cliente)</li>
+ *   <li>{@code PEDIDOS} (Cliente)</li>
+ *   <li>{@code ENVIAR <idProducto>} (Proveedor): envía el pedido pendiente más antiguo del producto</li>
+ *   <li>{@code REABASTECER <idProducto> <unidades>} (Proveedor)</li>
+ *   <li>{@code SALIR}</li>
+ * </ul>
+ * <p>Cada respuesta es una línea {@code OK ...} o {@code ERROR ...}. Los listados responden
+ * {@code OK <n>} seguido de {@code n} líneas con campos separados por comas. Los listados
+ * paginados ({@value #TAMAÑO_PAGINA} filas) agregan a la primera línea el cursor de la página
+ * siguiente, si la hay: {@code OK <n> <cursor>}.</p>
+ *
+ * <p>Cada sesión corre en su propio hilo virtual cuando la JVM los ofrece (Java 21 o superior);
+ * en versiones anteriores se usa un hilo de plataforma por sesión con pila reducida.</p>
+ * @author andres
+ */
+public class ServidorShopPlus implements Closeable {
+    /** Puerto por defecto del servidor. */
+    public static final int PUERTO_POR_DEFECTO = 5050;
+    /** Filas por página en los listados paginados. */
+    public static final int TAMAÑO_PAGINA = 50;
+
+    private static final long PILA_SESION = 256 * 1024;
+    /** Espera inicial y máxima tras un fallo de {@code accept()} (por ejemplo, sin descriptores libres). */
+    private static final long ESPERA_MINIMA_MS = 10;
+    private static final long ESPERA_MAXIMA_MS = 1000;
+
+    private final ControladorUsuario controladorUsuario;
+    private final ControladorProducto controladorProducto;
+    private final ControladorPedido controladorPedido;
+
+    private final Set<Socket> conexiones = ConcurrentHashMap.newKeySet();
+    private ServerSocket servidor;
+    private ExecutorService sesiones;
+    private Thread aceptador;
+    private volatile boolean cerrado;
+
+    /**
+     * Crea un servidor sobre controladores compartidos.
+     * @param controladorUsuario Controlador de usuarios.
+     * @param controladorProducto Controlador de productos.
+     * @param controladorPedido Controlador de pedidos y envíos.
+     */
+    public ServidorShopPlus(ControladorUsuario controladorUsuario, ControladorProducto controladorProducto,
+            ControladorPedido controladorPedido) {
+        this.controladorUsuario = controladorUsuario;
+        this.controladorProducto = controladorProducto;
+        this.controladorPedido = controladorPedido;
+    }
+
+    /**
+     * Abre el puerto en la interfaz local (loopback) y empieza a aceptar sesiones.
+     * @param puerto Puerto a escuchar; 0 elige uno libre.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public synchronized void iniciar(int puerto) throws IOException {
+        iniciar(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto));
+    }
+
+    /**
+     * Abre el puerto en la dirección dada y empieza a aceptar sesiones.
+     * @param direccion Dirección y puerto a escuchar.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public synchronized void iniciar(InetSocketAddress direccion) throws IOException {
+        if (servidor != null) {
+            throw new IllegalStateException("El servidor ya está iniciado.");
+        }
+        servidor = new ServerSocket();
+        servidor.setReuseAddress(true);
+        servidor.bind(direccion, 1024);
+        sesiones = crearEjecutor();
+        aceptador = new Thread(this::aceptar, "servidor-shopplus");
+        aceptador.start();
+    }
+
+    /** @return Puerto en el que escucha el servidor, o -1 si no está iniciado. */
+    public synchronized int getPuerto() {
+        return servidor == null ? -1 : servidor.getLocalPort();
+    }
+
+    /**
+     * Espera a que el servidor se cierre.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public void esperar() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = aceptador;
+        }
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * Deja de aceptar sesiones, corta las abiertas y espera a que terminen.
+     */
+    @Override
+    public void close() throws IOException {
+        ServerSocket s;
+        ExecutorService e;
+        synchronized (this) {
+            if (cerrado || servidor == null) {
+                cerrado = true;
+                return;
+            }
+            cerrado = true;
+            s = servidor;
+            e = sesiones;
+        }
+        s.close();
+        for (Socket c : conexiones) {
+            try {
+                c.close();
+            } catch (IOException ex) {
+                // La sesión termina igual al fallar su próxima lectura.
+            }
+        }
+        e.shutdown();
+        try {
+            e.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bucle del hilo aceptador. Si {@code accept()} falla una y otra vez, espera cada vez más
+     * (hasta {@link #ESPERA_MAXIMA_MS}) y avisa solo del primer fallo de la racha, para no
+     * girar en vacío ni llenar la salida mientras el problema dure.
+     */
+    private void aceptar() {
+        long espera = 0;
+        int fallos = 0;
+        while (!cerrado) {
+            Socket conexion;
+            try {
+                conexion = servidor.accept();
+            } catch (IOException e) {
+                if (cerrado) {
+                    break;
+                }
+                if (fallos++ == 0) {
+                    System.out.println("Error al aceptar conexión: " + e.getMessage());
+                }
+                espera = espera == 0 ? ESPERA_MINIMA_MS : Math.min(espera * 2, ESPERA_MAXIMA_MS);
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            if (fallos > 1) {
+                System.out.println("Se vuelven a aceptar conexiones tras " + fallos + " fallos.");
+            }
+            fallos = 0;
+            espera = 0;
+            conexiones.add(conexion);
+            try {
+                sesiones.execute(() -> atender(conexion));
+            } catch (RuntimeException e) {
+                // El ejecutor ya se cerró.
+                cerrarConexion(conexion);
+            }
+        }
+    }
+
+    /**
+     * Crea el ejecutor de sesiones: un hilo virtual por sesión si la JVM los ofrece,
+     * o un hilo de plataforma con pila reducida en caso contrario.
+     */
+    private static ExecutorService crearEjecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger contador = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, "sesion-" + contador.incrementAndGet(), PILA_SESION);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void atender(Socket conexion) {
+        try (conexion;
+             BufferedReader entrada = new BufferedReader(new InputStreamReader(conexion.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter salida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(conexion.getOutputStream(), StandardCharsets.UTF_8)))) {
+            conexion.setTcpNoDelay(true);
+            Sesion sesion = new Sesion(salida);
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                boolean seguir = sesion.procesar(linea);
+                salida.flush();
+                if (!seguir) {
+                    break;
+                }
+            }
+        } catch (SocketException e) {
+            // Conexión cortada por el cliente o por el cierre del servidor.
+        } catch (IOException e) {
+            if (!cerrado) {
+                System.out.println("Error en la sesión: " + e.getMessage());
+            }
+        } finally {
+            conexiones.remove(conexion);
+        }
+    }
+
+    private void cerrarConexion(Socket conexion) {
+        conexiones.remove(conexion);
+        try {
+            conexion.close();
+        } catch (IOException e) {
+            // Nada más que hacer.
+        }
+    }
+
+    /** Estado de una conexión: el usuario autenticado y la salida hacia el cliente. */
+    private final class Sesion {
+        private final PrintWriter salida;
+        private Usuario usuario;
+
+        Sesion(PrintWriter salida) {
+            this.salida = salida;
+        }
+
+        /**
+         * Ejecuta una orden y escribe su respuesta.
+         * @return {@code false} si la sesión debe terminar.
+         */
+        boolean procesar(String linea) {
+            String[] partes = linea.trim().split("\\s+");
+            String orden = partes[0].toUpperCase(Locale.ROOT);
+            if (orden.equals("LOGIN")) {
+                // La contraseña es el resto de la línea y puede contener espacios.
+                partes = linea.trim().split("\\s+", 3);
+            }
+            try {
+                switch (orden) {
+                    case "LOGIN":
+                        exigirArgumentos(partes, 3);
+                        usuario = controladorUsuario.autenticar(partes[1], partes[2]);
+                        ok(usuario.getClass().getSimpleName() + " " + usuario.getNombre());
+                        break;
+
+                    case "INVENTARIO":
+                        exigirSesion();
+                        List<String> filas = new ArrayList<>();
+                        for (Producto p : controladorProducto.getInventario().listar()) {
+                            filas.add(fila(p));
+                        }
+                        listado(filas);
+                        break;
+
+                    case "BUSCAR":
+                        exigirSesion();
+                        exigirArgumentos(partes, 2);
+                        List<String> encontrados = new ArrayList<>();
+                        String texto = linea.trim().substring(partes[0].length()).trim();
+                        for (Producto p : controladorProducto.buscarPorNombre(texto, 20)) {
+                            encontrados.add(fila(p));
+                        }
+                        listado(encontrados);
+                        break;
+
+                    case "PRECIO":
+                        exigirSesion();
+                        exigirArgumentos(partes, 3);
+                        pagina(controladorProducto.filtrarPorPrecio(Double.parseDouble(partes[1]),
+                                Double.parseDouble(partes[2]), partes.length > 3 ? partes[3] : null, TAMAÑO_PAGINA));
+                        break;
+
+                    case "STOCKBAJO":
+                        exigirSesion();
+                        exigirArgumentos(partes, 2);
+                        pagina(controladorProducto.stockBajo(Integer.parseInt(partes[1]),
+                                partes.length > 2 ? partes[2] : null, TAMAÑO_PAGINA));
+                        break;
+
+                    case "INDICADORES":
+                        exigirSesion();
+                        if (partes.length > 1) {
+                            ok(controladorPedido.pendientes(partes[1]) + " " + controladorPedido.unidadesEnviadas(partes[1]));
+                        } else {
+                            LocalDate hoy = LocalDate.now();
+                            ok(controladorPedido.pendientes(null) + " " + controladorPedido.pedidosDelDia(hoy) + " "
+                                    + controladorPedido.unidadesEnviadasDelDia(hoy));
+                        }
+                        break;
+
+                    case "COMPRAR":
+                        exigirRol(Cliente.class);
+                        exigirArgumentos(partes, 2);
+                        Pedido pedido = controladorPedido.comprar(usuario, partes[1]);
+                        ok(pedido.getIdProducto() + " " + pedido.getFecha());
+                        break;
+
+                    case "PEDIDOS":
+                        exigirRol(Cliente.class);
+                        List<String> pedidos = new ArrayList<>();
+                        for (Pedido p : controladorPedido.pedidosDe(usuario)) {
+                            pedidos.add(p.getIdProducto() + "," + p.getFecha());
+                        }
+                        listado(pedidos);
+                        break;
+
+                    case "ENVIAR":
+                        exigirRol(Proveedor.class);
+                        exigirArgumentos(partes, 2);
+                        Envio envio = controladorPedido.enviarSiguiente(usuario, partes[1]);
+                        if (envio == null) {
+                            error("No hay pedidos pendientes de ese producto.");
+                        } else {
+                            ok(envio.getIdProducto() + " " + envio.getFecha());
+                        }
+                        break;
+
+                    case "REABASTECER":
+                        exigirRol(Proveedor.class);
+                        exigirArgumentos(partes, 3);
+                        ok(String.valueOf(controladorPedido.reabastecer(partes[1], Integer.parseInt(partes[2]))));
+                        break;
+
+                    case "SALIR":
+                        ok("Gracias por usar ShopPlus.");
+                        return false;
+
+                    default:
+                        error("Orden desconocida: " + partes[0]);
+                }
+            } catch (UsuarioInvalidoException | ProductoNoEncontradoException | StockInsuficienteException e) {
+                error(e.getMessage());
+            } catch (NumberFormatException e) {
+                error("Entrada inválida. Debe ingresar un número.");
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                error(e.getMessage());
+            } catch (IOException e) {
+                error("Error al guardar archivos: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Un fallo inesperado en una orden no debe cortar la sesión sin respuesta.
+                System.out.println("Error inesperado en la sesión: " + e);
+                error("Error interno: " + e.getMessage());
+            }
+            return true;
+        }
+
+        private void exigirArgumentos(String[] partes, int cantidad) {
+            if (partes.length < cantidad) {
+                throw new IllegalArgumentException("Faltan datos para " + partes[0].toUpperCase(Locale.ROOT) + ".");
+            }
+        }
+
+        private void exigirSesion() {
+            if (usuario == null) {
+                throw new IllegalStateException("Debe iniciar sesión.");
+            }
+        }
+
+        private void exigirRol(Class<? extends Usuario> rol) {
+            exigirSesion();
+            if (!rol.isInstance(usuario)) {
+                throw new IllegalStateException("Opción disponible solo para " + rol.getSimpleName() + ".");
+            }
+        }
+
+        private void ok(String mensaje) {
+            salida.print("OK " + mensaje + "\n");
+        }
+
+        private void error(String mensaje) {
+            salida.print("ERROR " + mensaje + "\n");
+        }
+
+        private void listado(List<String> filas) {
+            salida.print("OK " + filas.size() + "\n");
+            for (String fila : filas) {
+                salida.print(fila + "\n");
+            }
+        }
+
+        private void pagina(Pagina<Producto> pagina) {
+            StringBuilder sb = new StringBuilder("OK ").append(pagina.getElementos().size());
+            if (pagina.hayMas()) {
+                sb.append(' ').append(pagina.getCursorSiguiente());
+            }
+            sb.append('\n');
+            for (Producto p : pagina.getElementos()) {
+                sb.append(fila(p)).append('\n');
+            }
+            salida.print(sb);
+        }
+
+        private String fila(Producto p) {
+            return p.getId() + "," + p.getNombre() + "," + p.getPrecio() + "," + p.getCantidad();
+        }
+    }
+
+    /**
+     * Inicia ShopPlus en modo servidor con la misma persistencia que la consola.
+     * @param args Puerto opcional (por defecto {@value #PUERTO_POR_DEFECTO}).
+     */
+    public static void main(String[] args) {
+        int puerto = args.length > 0 ? Integer.parseInt(args[0]) : PUERTO_POR_DEFECTO;
+        Metricas.configurarDesdePropiedades();
+
+        Persistencia persistencia = Persistencia.desdePropiedades();
+        CargaInicial carga = CargaInicial.iniciar(persistencia);
+        List<Usuario> usuarios = new ArrayList<>();
+        List<Producto> productos = new ArrayList<>();
+        try {
+            usuarios = carga.usuarios();
+        } catch (IOException e) {
+            System.out.println("Error al cargar archivos: " + e.getMessage());
+        }
+        try {
+            productos = carga.productos();
+        } catch (IOException e) {
+            System.out.println("Error al cargar archivos: " + e.getMessage());
+        }
+
+        ControladorUsuario controladorUsuario = new ControladorUsuario(usuarios);
+        ControladorProducto controladorProducto = new ControladorProducto(
+                new CatalogoProductos(productos, AlmacenColumnar.desdePropiedades()));
+        ControladorPedido controladorPedido = new ControladorPedido(controladorProducto, persistencia);
+
+        ServidorShopPlus servidor = new ServidorShopPlus(controladorUsuario, controladorProducto, controladorPedido);
+        try {
+            servidor.iniciar(puerto);
+        } catch (IOException e) {
+            System.out.println("No se pudo iniciar el servidor: " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                servidor.close();
+            } catch (IOException e) {
+                // Se está apagando la JVM.
+            }
+            persistencia.cerrar();
+        }, "cierre-servidor"));
+        System.out.println("ShopPlus escuchando en el puerto " + servidor.getPuerto() + ". " + carga.resumen());
+        try {
+            servidor.esperar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file